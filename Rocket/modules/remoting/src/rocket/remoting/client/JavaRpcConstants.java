@@ -0,0 +1,31 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.client;
+
+/**
+ * Constants shared by the java rpc client and server.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class JavaRpcConstants {
+	/**
+	 * Written in place of the interface name to mark a request holding several
+	 * invocations. Each invocation is preceded by a true boolean and the batch
+	 * is terminated by a false boolean. The response holds the number of
+	 * results followed by each exception flag and result.
+	 */
+	public static final String BATCH = "*batch*";
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.client.support.rpc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rocket.remoting.client.JavaRpcConstants;
+import rocket.remoting.client.RpcException;
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.client.SerializationFactory;
+import rocket.util.client.Checker;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.http.client.RequestBuilder.Method;
+
+/**
+ * Gathers several {@link JavaRpcServiceMethodInvoker invokers} and sends them
+ * to the server as a single request, dispatching each result to the matching
+ * invoker once the response arrives.
+ * 
+ * All invokers write to the one ObjectOutputStream which means strings and
+ * objects common to several invocations are only sent once.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class JavaRpcBatch extends RpcServiceMethodInvoker<Object> {
+
+	public JavaRpcBatch() {
+		super();
+		this.setInvokers(new ArrayList<JavaRpcServiceMethodInvoker>());
+	}
+
+	/**
+	 * Adds an invoker to this batch, the invoker must not have written
+	 * anything yet.
+	 * 
+	 * @param invoker
+	 */
+	public void add(final JavaRpcServiceMethodInvoker invoker) {
+		Checker.notNull("parameter:invoker", invoker);
+
+		final List<JavaRpcServiceMethodInvoker> invokers = this.getInvokers();
+		if (invokers.isEmpty()) {
+			final SerializationFactory serializationFactory = invoker.getSerializationFactory();
+			this.setSerializationFactory(serializationFactory);
+
+			final ObjectOutputStream objectOutputStream = serializationFactory.createObjectOutputStream();
+			objectOutputStream.writeObject(JavaRpcConstants.BATCH);
+			this.setObjectOutputStream(objectOutputStream);
+		}
+
+		// another invocation follows...
+		final ObjectOutputStream objectOutputStream = this.getObjectOutputStream();
+		objectOutputStream.writeBoolean(true);
+
+		invoker.setObjectOutputStream(objectOutputStream);
+		invoker.setBatch(this);
+		invokers.add(invoker);
+	}
+
+	/**
+	 * The invokers in the order they were added.
+	 */
+	private List<JavaRpcServiceMethodInvoker> invokers;
+
+	protected List<JavaRpcServiceMethodInvoker> getInvokers() {
+		Checker.notNull("field:invokers", invokers);
+		return this.invokers;
+	}
+
+	protected void setInvokers(final List<JavaRpcServiceMethodInvoker> invokers) {
+		Checker.notNull("parameter:invokers", invokers);
+		this.invokers = invokers;
+	}
+
+	/**
+	 * The serialization factory taken from the first invoker.
+	 */
+	private SerializationFactory serializationFactory;
+
+	protected SerializationFactory getSerializationFactory() {
+		Checker.notNull("field:serializationFactory", serializationFactory);
+		return this.serializationFactory;
+	}
+
+	protected void setSerializationFactory(final SerializationFactory serializationFactory) {
+		Checker.notNull("parameter:serializationFactory", serializationFactory);
+		this.serializationFactory = serializationFactory;
+	}
+
+	/**
+	 * The stream shared by all invokers.
+	 */
+	private ObjectOutputStream objectOutputStream;
+
+	protected ObjectOutputStream getObjectOutputStream() {
+		Checker.notNull("field:objectOutputStream", objectOutputStream);
+		return this.objectOutputStream;
+	}
+
+	protected void setObjectOutputStream(final ObjectOutputStream objectOutputStream) {
+		Checker.notNull("parameter:objectOutputStream", objectOutputStream);
+		this.objectOutputStream = objectOutputStream;
+	}
+
+	protected RequestBuilder createRequestBuilder() {
+		return new RequestBuilder(this.getRequestMethod(), this.getUrl());
+	}
+
+	protected Method getRequestMethod() {
+		return RequestBuilder.POST;
+	}
+
+	/**
+	 * Terminates the batch and returns the serialized form of all
+	 * invocations.
+	 */
+	protected String getRequestData() {
+		final ObjectOutputStream objectOutputStream = this.getObjectOutputStream();
+		objectOutputStream.writeBoolean(false);
+		return objectOutputStream.getText();
+	}
+
+	protected void setHeaders(final RequestBuilder request) {
+		request.setHeader(Constants.CONTENT_TYPE_HEADER, Constants.POST_CONTENT_TYPE);
+	}
+
+	protected void onSuccessfulResponse(final Request request, final Response response) {
+		final List<JavaRpcServiceMethodInvoker> invokers = this.getInvokers();
+		final int count = invokers.size();
+		int i = 0;
+
+		try {
+			final ObjectInputStream objectInputStream = this.getSerializationFactory().createObjectInputStream(response.getText());
+			final int resultCount = objectInputStream.readInt();
+			if (resultCount != count) {
+				throw new RpcException("The response contains " + resultCount + " results when " + count + " were expected.");
+			}
+
+			while (i < count) {
+				final JavaRpcServiceMethodInvoker invoker = invokers.get(i);
+				i++;
+
+				final boolean exceptionWasThrown = objectInputStream.readBoolean();
+				final Object result = objectInputStream.readObject();
+				invoker.onResult(exceptionWasThrown, result);
+			}
+		} catch (final Throwable throwable) {
+			// the remaining invokers will never receive their results...
+			while (i < count) {
+				invokers.get(i).getCallback().onFailure(throwable);
+				i++;
+			}
+		}
+	}
+
+	protected void onFailedRequest(final Throwable throwable) {
+		for (int i = 0; i < this.getInvokers().size(); i++) {
+			this.getInvokers().get(i).onFailedRequest(throwable);
+		}
+	}
+
+	protected void onFailedResponse(final Request request, final Response response) {
+		for (int i = 0; i < this.getInvokers().size(); i++) {
+			this.getInvokers().get(i).onFailedResponse(request, response);
+		}
+	}
+
+	public String toString() {
+		return super.toString() + ", invokers: " + invokers;
+	}
+}
@@ -15,6 +15,8 @@
  */
 package rocket.remoting.client.support.rpc;
 
+import com.google.gwt.user.client.Command;
+import com.google.gwt.user.client.DeferredCommand;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.rpc.ServiceDefTarget;
 
@@ -25,6 +27,10 @@ import com.google.gwt.user.client.rpc.ServiceDefTarget;
  * handle the task of serializing incoming parameters and invoking the
  * {@link #makeRequest(String, String[], String, AsyncCallback)} method.
  * 
+ * When {@link #batching} is enabled all calls made before control returns to
+ * the browser are sent together as a single request. The server must also
+ * support batches.
+ * 
  * @author Miroslav Pokorny
  */
 abstract public class JavaRpcServiceClient extends RpcServiceClient implements ServiceDefTarget {
@@ -32,4 +38,49 @@ abstract public class JavaRpcServiceClient extends RpcServiceClient implements S
 	protected JavaRpcServiceClient() {
 		super();
 	}
+
+	/**
+	 * When true calls are gathered into batches.
+	 */
+	private boolean batching;
+
+	public boolean isBatching() {
+		return this.batching;
+	}
+
+	public void setBatching(final boolean batching) {
+		this.batching = batching;
+	}
+
+	/**
+	 * The batch gathering calls which will be sent once control returns to the
+	 * browser.
+	 */
+	private JavaRpcBatch batch;
+
+	/**
+	 * Returns the pending batch, creating and scheduling a new one if
+	 * necessary.
+	 * 
+	 * @return
+	 */
+	protected JavaRpcBatch getBatch() {
+		if (null == this.batch) {
+			final JavaRpcBatch batch = this.createBatch();
+			batch.prepare(this);
+			this.batch = batch;
+
+			DeferredCommand.addCommand(new Command() {
+				public void execute() {
+					JavaRpcServiceClient.this.batch = null;
+					batch.makeRequest();
+				}
+			});
+		}
+		return this.batch;
+	}
+
+	protected JavaRpcBatch createBatch() {
+		return new JavaRpcBatch();
+	}
 }
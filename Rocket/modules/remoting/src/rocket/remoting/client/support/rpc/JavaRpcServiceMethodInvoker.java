@@ -47,6 +47,11 @@ import com.google.gwt.user.client.rpc.AsyncCallback;
  * <li>make the request</li>
  * </ol>
  * 
+ * When the client has batching enabled the invoker joins the client's pending
+ * {@link JavaRpcBatch} during {@link #prepare(RpcServiceClient)}, writing to
+ * the stream shared by the batch, and making the request only completes the
+ * invocation. The batch itself sends the request.
+ * 
  * @author Miroslav Pokorny
  */
 public class JavaRpcServiceMethodInvoker<R> extends RpcServiceMethodInvoker<R> implements RequestCallback {
@@ -72,6 +77,48 @@ public class JavaRpcServiceMethodInvoker<R> extends RpcServiceMethodInvoker<R> i
 		this.serializationFactory = serializationFactory;
 	}
 
+	public void prepare(final RpcServiceClient client) {
+		super.prepare(client);
+
+		if (client instanceof JavaRpcServiceClient) {
+			final JavaRpcServiceClient javaRpcServiceClient = (JavaRpcServiceClient) client;
+			if (javaRpcServiceClient.isBatching()) {
+				javaRpcServiceClient.getBatch().add(this);
+			}
+		}
+	}
+
+	/**
+	 * The batch this invoker belongs to if any.
+	 */
+	private JavaRpcBatch batch;
+
+	protected JavaRpcBatch getBatch() {
+		Checker.notNull("field:batch", batch);
+		return this.batch;
+	}
+
+	protected boolean hasBatch() {
+		return null != this.batch;
+	}
+
+	protected void setBatch(final JavaRpcBatch batch) {
+		Checker.notNull("parameter:batch", batch);
+		this.batch = batch;
+	}
+
+	/**
+	 * Batched invokers only need to complete writing their invocation, the
+	 * batch will make the actual request.
+	 */
+	public void makeRequest() {
+		if (this.hasBatch()) {
+			this.commitParameterTypesIfNecessary();
+		} else {
+			super.makeRequest();
+		}
+	}
+
 	/**
 	 * The ObjectOutputStream that will be serializing the entire rpc request,
 	 * this includes the service method and parameters.
@@ -257,8 +304,6 @@ public class JavaRpcServiceMethodInvoker<R> extends RpcServiceMethodInvoker<R> i
 				this.onFailedResponse(request, response);
 				break;
 			}
-			final AsyncCallback<R> callback = this.getCallback();
-
 			try {
 				final SerializationFactory serializationFactory = this.getSerializationFactory();
 				final String stream = response.getText();
@@ -266,17 +311,32 @@ public class JavaRpcServiceMethodInvoker<R> extends RpcServiceMethodInvoker<R> i
 				final boolean exceptionWasThrown = objectInputStream.readBoolean();
 				final Object result = objectInputStream.readObject();
 
-				if (exceptionWasThrown) {
-					callback.onFailure((Throwable) result);
-					break;
-				}
-
-				callback.onSuccess((R) result);
+				this.onResult(exceptionWasThrown, result);
 
 			} catch (final Throwable throwable) {
-				callback.onFailure(throwable);
+				this.getCallback().onFailure(throwable);
 			}
 			break;
 		}
 	}
+
+	/**
+	 * Passes the deserialized result to the callback.
+	 * 
+	 * @param exceptionWasThrown
+	 * @param result
+	 */
+	protected void onResult(final boolean exceptionWasThrown, final Object result) {
+		final AsyncCallback<R> callback = this.getCallback();
+
+		try {
+			if (exceptionWasThrown) {
+				callback.onFailure((Throwable) result);
+			} else {
+				callback.onSuccess((R) result);
+			}
+		} catch (final Throwable throwable) {
+			callback.onFailure(throwable);
+		}
+	}
 }
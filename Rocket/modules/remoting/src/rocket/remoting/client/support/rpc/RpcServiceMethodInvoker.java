@@ -46,13 +46,13 @@ abstract public class RpcServiceMethodInvoker<R> implements RequestCallback {
 
 		// copy over any authentication details
 		if (client.hasUsername()) {
-			this.setUsername(this.getUsername());
-			this.setPassword(this.getPassword());
+			this.setUsername(client.getUsername());
+			this.setPassword(client.getPassword());
 		}
 
 		// copy timeout value if present...
 		if (client.hasTimeout()) {
-			this.setTimeout(this.getTimeout());
+			this.setTimeout(client.getTimeout());
 		}
 	}
 
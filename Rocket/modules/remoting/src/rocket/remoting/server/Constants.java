@@ -0,0 +1,27 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.server;
+
+/**
+ * A collection of constants used exclusively within this package.
+ * 
+ * @author Miroslav Pokorny
+ */
+class Constants {
+	final static String MAXIMUM_CONCURRENT_REQUESTS_INIT_PARAMETER = "maximum-concurrent-requests";
+
+	final static String CONCURRENCY_LIMIT_WAIT_INIT_PARAMETER = "concurrency-limit-wait";
+}
@@ -17,8 +17,11 @@ package rocket.remoting.server;
 
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -36,11 +39,71 @@ import com.google.gwt.user.server.rpc.RemoteServiceServlet;
  * This server side service simply does the WebRequest and returns the
  * WebResponse to the client.
  * 
+ * The number of requests being performed at once may be limited using the
+ * maximum-concurrent-requests init parameter, requests that cannot start within
+ * concurrency-limit-wait milliseconds (default 0) fail.
+ * 
  * @author Miroslav Pokorny (mP)
  */
 public class WebRequestServiceImpl extends RemoteServiceServlet implements WebRequestService {
 
+	/**
+	 * Reads the optional concurrency limit init parameters.
+	 */
+	@Override
+	public void init() throws ServletException {
+		super.init();
+
+		final int maximum = this.getPositiveNumberInitParameter(Constants.MAXIMUM_CONCURRENT_REQUESTS_INIT_PARAMETER);
+		if (maximum > 0) {
+			this.setConcurrencyLimit(new Semaphore(maximum));
+		}
+		this.setConcurrencyLimitWait(this.getPositiveNumberInitParameter(Constants.CONCURRENCY_LIMIT_WAIT_INIT_PARAMETER));
+	}
+
+	protected int getPositiveNumberInitParameter(final String name) throws ServletException {
+		int number = 0;
+
+		final String value = this.getInitParameter(name);
+		if (false == Tester.isNullOrEmpty(value)) {
+			try {
+				number = Integer.parseInt(value.trim());
+			} catch (final NumberFormatException badNumber) {
+				number = -1;
+			}
+			if (number < 0) {
+				throw new ServletException("The init parameter \"" + name + "\" with a value of \"" + value
+						+ "\" doesnt contain a positive number, from the servlet \"" + this.getServletName() + "\".");
+			}
+		}
+
+		return number;
+	}
+
 	public WebResponse doRequest(final WebRequest webRequest) throws FailedWebRequestException {
+		final Semaphore concurrencyLimit = this.getConcurrencyLimit();
+		if (null == concurrencyLimit) {
+			return this.doRequestWithinLimit(webRequest);
+		}
+
+		boolean acquired = false;
+		try {
+			acquired = concurrencyLimit.tryAcquire(this.getConcurrencyLimitWait(), TimeUnit.MILLISECONDS);
+		} catch (final InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (false == acquired) {
+			throw new FailedWebRequestException("Too many concurrent requests, unable to perform request to \"" + webRequest.getUrl()
+					+ "\".");
+		}
+		try {
+			return this.doRequestWithinLimit(webRequest);
+		} finally {
+			concurrencyLimit.release();
+		}
+	}
+
+	protected WebResponse doRequestWithinLimit(final WebRequest webRequest) throws FailedWebRequestException {
 		try {
 			final HttpServletRequest request = this.getThreadLocalRequest();
 			final HttpServletResponse response = this.getThreadLocalResponse();
@@ -180,4 +243,32 @@ public class WebRequestServiceImpl extends RemoteServiceServlet implements WebRe
 		return checkedUrl;
 	}
 
+	/**
+	 * When present limits the number of requests performed at the same time.
+	 */
+	private Semaphore concurrencyLimit;
+
+	protected Semaphore getConcurrencyLimit() {
+		return this.concurrencyLimit;
+	}
+
+	protected void setConcurrencyLimit(final Semaphore concurrencyLimit) {
+		Checker.notNull("parameter:concurrencyLimit", concurrencyLimit);
+		this.concurrencyLimit = concurrencyLimit;
+	}
+
+	/**
+	 * The number of milliseconds to wait when the limit has been reached.
+	 */
+	private long concurrencyLimitWait;
+
+	protected long getConcurrencyLimitWait() {
+		return this.concurrencyLimitWait;
+	}
+
+	protected void setConcurrencyLimitWait(final long concurrencyLimitWait) {
+		Checker.greaterThanOrEqual("parameter:concurrencyLimitWait", 0, concurrencyLimitWait);
+		this.concurrencyLimitWait = concurrencyLimitWait;
+	}
+
 }
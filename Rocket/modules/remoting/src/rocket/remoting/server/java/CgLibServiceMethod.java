@@ -0,0 +1,55 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.server.java;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import net.sf.cglib.reflect.FastClass;
+import net.sf.cglib.reflect.FastMethod;
+import rocket.util.client.Checker;
+
+/**
+ * A {@link ServiceMethod} that invokes the method using a class generated by
+ * CGLIB, which calls the method directly by index rather than using
+ * reflection.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class CgLibServiceMethod extends ServiceMethod {
+
+	public CgLibServiceMethod(final Class serviceProviderType, final Method method) {
+		super(serviceProviderType, method);
+
+		this.setFastMethod(FastClass.create(serviceProviderType).getMethod(method));
+	}
+
+	public Object invoke(final Object serviceProvider, final Object[] parameters) throws InvocationTargetException {
+		return this.getFastMethod().invoke(serviceProvider, parameters);
+	}
+
+	private FastMethod fastMethod;
+
+	protected FastMethod getFastMethod() {
+		Checker.notNull("field:fastMethod", fastMethod);
+		return this.fastMethod;
+	}
+
+	protected void setFastMethod(final FastMethod fastMethod) {
+		Checker.notNull("parameter:fastMethod", fastMethod);
+		this.fastMethod = fastMethod;
+	}
+}
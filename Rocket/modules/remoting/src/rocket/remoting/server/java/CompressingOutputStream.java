@@ -0,0 +1,164 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.server.java;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import rocket.util.client.Checker;
+
+/**
+ * An OutputStream that buffers everything written until more than a threshold
+ * number of bytes have been written, after which all bytes are compressed as
+ * they are written. Output that never exceeds the threshold is written as is
+ * when the stream is closed, as compressing a few bytes gains nothing.
+ * 
+ * Sub classes should override {@link #compressing(String)} to add the
+ * Content-Encoding header, which happens before any bytes are written to the
+ * output.
+ * 
+ * Closing this stream finishes compressing but does not close the output.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class CompressingOutputStream extends OutputStream {
+
+	public CompressingOutputStream(final OutputStream output, final String contentEncoding, final int threshold) {
+		super();
+
+		Checker.notNull("parameter:output", output);
+		Checker.notEmpty("parameter:contentEncoding", contentEncoding);
+		Checker.greaterThanOrEqual("parameter:threshold", 0, threshold);
+
+		this.output = output;
+		this.contentEncoding = contentEncoding;
+		this.buffer = new byte[threshold];
+	}
+
+	/**
+	 * The stream that receives the plain or compressed bytes.
+	 */
+	private final OutputStream output;
+
+	private final String contentEncoding;
+
+	/**
+	 * Holds bytes until either the stream is closed or the buffer overflows.
+	 */
+	private final byte[] buffer;
+
+	private int count;
+
+	/**
+	 * The compressing stream which is created once the threshold is exceeded.
+	 */
+	private DeflaterOutputStream compressed;
+
+	private boolean closed;
+
+	public void write(final int b) throws IOException {
+		this.checkNotClosed();
+
+		if (null != this.compressed) {
+			this.compressed.write(b);
+		} else {
+			if (this.count < this.buffer.length) {
+				this.buffer[this.count] = (byte) b;
+				this.count++;
+			} else {
+				this.startCompressing();
+				this.compressed.write(b);
+			}
+		}
+	}
+
+	public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+		this.checkNotClosed();
+
+		if (null != this.compressed) {
+			this.compressed.write(bytes, offset, length);
+		} else {
+			if (this.count + length <= this.buffer.length) {
+				System.arraycopy(bytes, offset, this.buffer, this.count, length);
+				this.count = this.count + length;
+			} else {
+				this.startCompressing();
+				this.compressed.write(bytes, offset, length);
+			}
+		}
+	}
+
+	protected void startCompressing() throws IOException {
+		this.compressing(this.contentEncoding);
+
+		this.compressed = ContentEncoding.encode(this.contentEncoding, this.output);
+		this.compressed.write(this.buffer, 0, this.count);
+		this.count = 0;
+	}
+
+	/**
+	 * This method is called once just before the first compressed byte is
+	 * written.
+	 * 
+	 * @param contentEncoding
+	 */
+	protected void compressing(final String contentEncoding) {
+	}
+
+	/**
+	 * Tests if the output was or is being compressed.
+	 * 
+	 * @return
+	 */
+	public boolean isCompressed() {
+		return null != this.compressed;
+	}
+
+	/**
+	 * Nothing is flushed until the threshold is exceeded, as it is not yet known
+	 * whether the output will be compressed.
+	 */
+	public void flush() throws IOException {
+		if (null != this.compressed) {
+			this.compressed.flush();
+		}
+	}
+
+	public void close() throws IOException {
+		if (false == this.closed) {
+			this.closed = true;
+
+			if (null != this.compressed) {
+				this.compressed.finish();
+			} else {
+				this.output.write(this.buffer, 0, this.count);
+			}
+			this.output.flush();
+		}
+	}
+
+	protected void checkNotClosed() throws IOException {
+		if (this.closed) {
+			throw new IOException("Stream has been closed.");
+		}
+	}
+
+	public String toString() {
+		return super.toString() + ", contentEncoding: " + contentEncoding + ", threshold: " + buffer.length + ", compressed: "
+				+ (null != compressed);
+	}
+}
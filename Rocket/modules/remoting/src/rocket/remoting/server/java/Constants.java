@@ -0,0 +1,118 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.server.java;
+
+/**
+ * A collection of constants used exclusively within this package.
+ * 
+ * @author Miroslav Pokorny
+ */
+class Constants {
+	final static String COMPRESS_RESPONSES_INIT_PARAMETER = "compress-responses";
+
+	final static String COMPRESSION_THRESHOLD_INIT_PARAMETER = "compression-threshold";
+
+	final static String MAXIMUM_INFLATED_REQUEST_LENGTH_INIT_PARAMETER = "maximum-inflated-request-length";
+
+	final static String GENERATED_INVOKERS_INIT_PARAMETER = "generated-invokers";
+
+	final static String STREAMING_THRESHOLD_INIT_PARAMETER = "streaming-threshold";
+
+	final static String ALLOWED_TYPES_INIT_PARAMETER = "allowed-types";
+
+	final static String DENIED_TYPES_INIT_PARAMETER = "denied-types";
+
+	final static String ALLOW_SERVICE_INTERFACE_TYPES_INIT_PARAMETER = "allow-service-interface-types";
+
+	/**
+	 * The separators between the patterns of the allowed and denied types init
+	 * parameters.
+	 */
+	final static String TYPE_PATTERN_SEPARATORS = ", \t\r\n";
+
+	final static String MAXIMUM_BATCH_SIZE_INIT_PARAMETER = "maximum-batch-size";
+
+	final static String INVOCATION_THREADS_INIT_PARAMETER = "invocation-threads";
+
+	final static String INVOCATION_QUEUE_SIZE_INIT_PARAMETER = "invocation-queue-size";
+
+	final static String INVOCATION_TIMEOUT_INIT_PARAMETER = "invocation-timeout";
+
+	final static String BATCH_THREADS_INIT_PARAMETER = "batch-threads";
+
+	final static String MAXIMUM_CONCURRENT_INVOCATIONS_INIT_PARAMETER = "maximum-concurrent-invocations";
+
+	/**
+	 * Init parameters starting with this prefix followed by an interface name
+	 * set the limit for that interface.
+	 */
+	final static String MAXIMUM_CONCURRENT_INVOCATIONS_INIT_PARAMETER_PREFIX = MAXIMUM_CONCURRENT_INVOCATIONS_INIT_PARAMETER + '.';
+
+	final static String CONCURRENCY_LIMIT_WAIT_INIT_PARAMETER = "concurrency-limit-wait";
+
+	final static String RESPONSE_CACHE_SIZE_INIT_PARAMETER = "response-cache-size";
+
+	final static String RESPONSE_CACHE_BYTES_INIT_PARAMETER = "response-cache-bytes";
+
+	/**
+	 * Response caching is disabled unless a size is configured.
+	 */
+	final static int RESPONSE_CACHE_SIZE = 0;
+
+	final static int RESPONSE_CACHE_BYTES = 16 * 1024 * 1024;
+
+	final static String CACHE_KEY_DIGEST_ALGORITHM = "SHA-1";
+
+	final static int CACHE_KEY_DIGEST_BUFFER_SIZE = 1024;
+
+	final static int COMPRESSION_THRESHOLD = 1024;
+
+	final static int MAXIMUM_INFLATED_REQUEST_LENGTH = 16 * 1024 * 1024;
+
+	final static int MAXIMUM_BATCH_SIZE = 100;
+
+	/**
+	 * The initial size of the buffer used to read a request without a
+	 * Content-Length
+	 */
+	final static int REQUEST_BUFFER_SIZE = 4096;
+
+	/**
+	 * The largest buffer that will be allocated up front using the
+	 * Content-Length, larger requests grow the buffer as they are read.
+	 */
+	final static int MAXIMUM_PRESIZED_REQUEST_LENGTH = 4 * 1024 * 1024;
+
+	final static String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+
+	final static String CONTENT_ENCODING_HEADER = "Content-Encoding";
+
+	final static String VARY_HEADER = "Vary";
+
+	final static String RETRY_AFTER_HEADER = "Retry-After";
+
+	/**
+	 * The number of seconds a client is asked to wait after being refused
+	 * because all invocation threads are busy.
+	 */
+	final static int RETRY_AFTER_SECONDS = 1;
+
+	/**
+	 * The character encoding used by servlet containers when a request or
+	 * response does not specify one.
+	 */
+	final static String DEFAULT_CHARACTER_ENCODING = "ISO-8859-1";
+}
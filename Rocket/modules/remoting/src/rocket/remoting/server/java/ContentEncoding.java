@@ -0,0 +1,220 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.server.java;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import rocket.util.client.Checker;
+
+/**
+ * A collection of helpers that select, encode and decode the gzip and deflate
+ * http content encodings.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class ContentEncoding {
+
+	public final static String GZIP = "gzip";
+
+	public final static String X_GZIP = "x-gzip";
+
+	public final static String DEFLATE = "deflate";
+
+	public final static String IDENTITY = "identity";
+
+	final static String ANY = "*";
+
+	/**
+	 * Selects the encoding that should be used for a response given the value
+	 * of an Accept-Encoding header. Gzip is preferred over deflate unless the
+	 * client gives deflate a higher quality.
+	 * 
+	 * @param acceptEncoding
+	 *            May be null
+	 * @return {@link #GZIP}, {@link #DEFLATE} or null if neither is acceptable.
+	 */
+	static public String select(final String acceptEncoding) {
+		String selected = null;
+
+		if (null != acceptEncoding) {
+			float gzip = -1;
+			float deflate = -1;
+			float any = -1;
+
+			final String[] tokens = acceptEncoding.split(",");
+			for (int i = 0; i < tokens.length; i++) {
+				final String token = tokens[i];
+				final int semiColon = token.indexOf(';');
+				final String name = (-1 == semiColon ? token : token.substring(0, semiColon)).trim().toLowerCase();
+				final float quality = -1 == semiColon ? 1 : ContentEncoding.getQuality(token.substring(semiColon + 1));
+
+				if (GZIP.equals(name) || X_GZIP.equals(name)) {
+					gzip = Math.max(gzip, quality);
+					continue;
+				}
+				if (DEFLATE.equals(name)) {
+					deflate = Math.max(deflate, quality);
+					continue;
+				}
+				if (ANY.equals(name)) {
+					any = quality;
+				}
+			}
+
+			// encodings that were not mentioned take the quality of *
+			if (gzip < 0) {
+				gzip = any;
+			}
+			if (deflate < 0) {
+				deflate = any;
+			}
+
+			if (gzip > 0 && gzip >= deflate) {
+				selected = GZIP;
+			} else {
+				if (deflate > 0) {
+					selected = DEFLATE;
+				}
+			}
+		}
+
+		return selected;
+	}
+
+	/**
+	 * Extracts the quality from the parameters of a single encoding, an
+	 * invalid quality is treated as 0 which means not acceptable.
+	 * 
+	 * @param parameters
+	 * @return
+	 */
+	static float getQuality(final String parameters) {
+		float quality = 1;
+
+		final String trimmed = parameters.trim();
+		if (trimmed.startsWith("q=")) {
+			try {
+				quality = Float.parseFloat(trimmed.substring(2).trim());
+			} catch (final NumberFormatException invalid) {
+				quality = 0;
+			}
+		}
+		return quality;
+	}
+
+	/**
+	 * Tests if the given Content-Encoding of a request may be decoded.
+	 * 
+	 * @param contentEncoding
+	 *            May be null
+	 * @return
+	 */
+	static public boolean isSupported(final String contentEncoding) {
+		return ContentEncoding.isIdentity(contentEncoding) || null != ContentEncoding.normalize(contentEncoding);
+	}
+
+	/**
+	 * Tests if the given Content-Encoding means the content is not encoded.
+	 * 
+	 * @param contentEncoding
+	 *            May be null
+	 * @return
+	 */
+	static public boolean isIdentity(final String contentEncoding) {
+		return null == contentEncoding || 0 == contentEncoding.trim().length() || IDENTITY.equalsIgnoreCase(contentEncoding.trim());
+	}
+
+	/**
+	 * Returns {@link #GZIP} or {@link #DEFLATE} for the given encoding or null
+	 * if it is neither.
+	 */
+	static String normalize(final String contentEncoding) {
+		String normalized = null;
+		if (null != contentEncoding) {
+			final String name = contentEncoding.trim().toLowerCase();
+			if (GZIP.equals(name) || X_GZIP.equals(name)) {
+				normalized = GZIP;
+			} else {
+				if (DEFLATE.equals(name)) {
+					normalized = DEFLATE;
+				}
+			}
+		}
+		return normalized;
+	}
+
+	/**
+	 * Wraps the given input so that content with the given encoding is
+	 * decoded as it is read.
+	 * 
+	 * @param contentEncoding
+	 *            May be null or identity in which case the input is returned.
+	 * @param input
+	 * @return
+	 * @throws IOException
+	 */
+	static public InputStream decode(final String contentEncoding, final InputStream input) throws IOException {
+		Checker.notNull("parameter:input", input);
+
+		InputStream decoded = input;
+		if (false == ContentEncoding.isIdentity(contentEncoding)) {
+			final String normalized = ContentEncoding.normalize(contentEncoding);
+			if (GZIP.equals(normalized)) {
+				decoded = new GZIPInputStream(input);
+			} else {
+				if (DEFLATE.equals(normalized)) {
+					decoded = new InflaterInputStream(input);
+				} else {
+					throw new IOException("Unsupported content encoding \"" + contentEncoding + "\".");
+				}
+			}
+		}
+		return decoded;
+	}
+
+	/**
+	 * Wraps the given output so that everything written is compressed using
+	 * the given encoding.
+	 * 
+	 * @param contentEncoding
+	 *            Either {@link #GZIP} or {@link #DEFLATE}
+	 * @param output
+	 * @return
+	 * @throws IOException
+	 */
+	static public DeflaterOutputStream encode(final String contentEncoding, final OutputStream output) throws IOException {
+		Checker.notNull("parameter:output", output);
+
+		final String normalized = ContentEncoding.normalize(contentEncoding);
+		DeflaterOutputStream encoded = null;
+		if (GZIP.equals(normalized)) {
+			encoded = new GZIPOutputStream(output);
+		} else {
+			if (DEFLATE.equals(normalized)) {
+				encoded = new DeflaterOutputStream(output);
+			} else {
+				throw new IOException("Unsupported content encoding \"" + contentEncoding + "\".");
+			}
+		}
+		return encoded;
+	}
+}
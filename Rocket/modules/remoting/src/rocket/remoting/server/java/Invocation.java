@@ -0,0 +1,108 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.server.java;
+
+import rocket.util.client.Checker;
+
+/**
+ * A single decoded request, holding the method and parameters before it is
+ * executed and the result afterwards.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class Invocation {
+
+	public Invocation(final Class interfacee, final ServiceMethod serviceMethod) {
+		super();
+
+		this.setInterface(interfacee);
+		this.setServiceMethod(serviceMethod);
+	}
+
+	/**
+	 * The interface named by the request
+	 */
+	private Class interfacee;
+
+	public Class getInterface() {
+		Checker.notNull("field:interface", interfacee);
+		return this.interfacee;
+	}
+
+	protected void setInterface(final Class interfacee) {
+		Checker.notNull("parameter:interface", interfacee);
+		this.interfacee = interfacee;
+	}
+
+	/**
+	 * The method being invoked
+	 */
+	private ServiceMethod serviceMethod;
+
+	public ServiceMethod getServiceMethod() {
+		Checker.notNull("field:serviceMethod", serviceMethod);
+		return this.serviceMethod;
+	}
+
+	protected void setServiceMethod(final ServiceMethod serviceMethod) {
+		Checker.notNull("parameter:serviceMethod", serviceMethod);
+		this.serviceMethod = serviceMethod;
+	}
+
+	/**
+	 * The deserialized parameters, which are read after the method has been
+	 * resolved.
+	 */
+	private Object[] parameters;
+
+	public Object[] getParameters() {
+		Checker.notNull("field:parameters", parameters);
+		return this.parameters;
+	}
+
+	protected void setParameters(final Object[] parameters) {
+		Checker.notNull("parameter:parameters", parameters);
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Either the value returned by the method or the exception that will be
+	 * sent to the client.
+	 */
+	private Object result;
+
+	public Object getResult() {
+		return this.result;
+	}
+
+	/**
+	 * When true the result is an exception.
+	 */
+	private boolean exceptionWasThrown;
+
+	public boolean isExceptionWasThrown() {
+		return this.exceptionWasThrown;
+	}
+
+	public void setResult(final boolean exceptionWasThrown, final Object result) {
+		this.exceptionWasThrown = exceptionWasThrown;
+		this.result = result;
+	}
+
+	public String toString() {
+		return super.toString() + ", interface: " + interfacee + ", serviceMethod: " + serviceMethod + ", exceptionWasThrown: " + exceptionWasThrown;
+	}
+}
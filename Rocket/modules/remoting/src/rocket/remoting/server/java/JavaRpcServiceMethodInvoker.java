@@ -15,12 +15,37 @@
  */
 package rocket.remoting.server.java;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import rocket.remoting.client.JavaRpcConstants;
+import rocket.remoting.client.JavaRpcService;
 import rocket.remoting.client.RpcException;
 import rocket.serialization.client.ObjectInputStream;
 import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.client.SerializationException;
+import rocket.serialization.server.BinaryServerObjectOutputStream;
+import rocket.serialization.server.ReplayableOutput;
+import rocket.serialization.server.StreamingServerObjectOutputStream;
+import rocket.serialization.server.TypeResolver;
 import rocket.util.client.Checker;
 
 /**
@@ -29,9 +54,45 @@ import rocket.util.client.Checker;
  * value or an exception) of invoking method is then serialized.
  * 
  * The located method and parameters are actually executed at
- * {@link #invoke(Object, Method, Object[]) which provides an opportunity to
- * change behaviour. The other {@link #invoke(String, Object)} method takes care
- * of marshalling/unmarshalling.
+ * {@link #invoke(Object, ServiceMethod, Object[]) which provides an opportunity
+ * to change behaviour. The other {@link #invoke(String, Object)} method takes
+ * care of marshalling/unmarshalling.
+ * 
+ * Resolved methods are kept in a dispatch table keyed by interface, method name
+ * and parameter types, so the class and method lookups only happen the first
+ * time a signature is requested. {@link #prepare(Object)} fills the table
+ * ahead of the first request.
+ * 
+ * A request may also hold a batch of invocations, marked by
+ * {@link JavaRpcConstants#BATCH}, in which case all results are written to the
+ * one response sharing the same string and object tables. An invocation of a
+ * batch that is refused because of a concurrency limit or a saturated executor
+ * fails alone with a {@link RpcException}, as others may already have run.
+ * Batched invocations
+ * are executed in order unless a {@link #batchExecutorService} is present.
+ * 
+ * When an {@link #invocationExecutorService} is present service methods run
+ * upon its threads, the calling thread waiting at most
+ * {@link #invocationTimeout} milliseconds for the result. A
+ * {@link RejectedExecutionException} escapes if the executor is saturated.
+ * This only bounds the number of methods executing at once, it does not free
+ * the calling thread, which blocks until the result arrives, so each such
+ * invocation occupies two threads.
+ * 
+ * The number of methods of any one interface executing at the same time may be
+ * limited, either for all interfaces using
+ * {@link #maximumConcurrentInvocations} or for a particular interface using
+ * {@link #setConcurrencyLimit(Class, int)}. An invocation that cannot start
+ * within {@link #concurrencyLimitWait} milliseconds is also refused with a
+ * {@link RejectedExecutionException}, which means one slow backend cannot
+ * occupy every available thread. Limits must be set before {@link #prepare}
+ * is called or the first invocation executes, after which they are fixed.
+ * 
+ * When a {@link ResponseCache} is set, successful responses of methods marked
+ * with {@link CachedResponse} are kept keyed by interface, method and a digest
+ * of the text request. An identical text request is answered with the cached
+ * text, skipping parameter deserialization, invocation and serialization.
+ * Requests for other methods never consult the cache.
  * 
  * Instances of this class are threadsafe and idepotent.
  * 
@@ -51,19 +112,414 @@ public class JavaRpcServiceMethodInvoker {
 	 *         method.
 	 */
 	public String invoke(final String input, final Object serviceProvider) {
-		Checker.notNull("parameter:serviceProvider", serviceProvider);
+		final ReplayableOutput response = this.invoke0(input, serviceProvider);
 
-		ServerSerializationFactory serializationFactory = createSerializationFactory();
+		String text = null;
+		if (response instanceof CachedText) {
+			text = ((CachedText) response).text;
+		} else {
+			text = this.serialize(response);
+			this.cacheResponseIfPossible(response, text);
+		}
+		return text;
+	}
 
-		final ObjectInputStream inputStream = serializationFactory.createObjectInputStream(input);
-		final ObjectOutputStream outputStream = serializationFactory.createObjectOutputStream();
+	/**
+	 * Serializes the given response into a String.
+	 * 
+	 * @param response
+	 * @return
+	 */
+	protected String serialize(final ReplayableOutput response) {
+		final ServerSerializationFactory serializationFactory = this.getSerializationFactory();
+		final ObjectOutputStream outputStream = serializationFactory.acquireObjectOutputStream();
+		try {
+			response.write(outputStream);
+			return outputStream.getText();
+		} finally {
+			serializationFactory.releaseObjectOutputStream(outputStream);
+		}
+	}
 
-		Object result = null;
-		boolean exceptionWasThrown = false;
-		Method method = null;
+	/**
+	 * Processes an incoming Http request writing the serialized result directly
+	 * to the given writer, without building the entire response in memory.
+	 * 
+	 * @param input
+	 *            The serialized form of the request.
+	 * @param serviceProvider
+	 *            the instance that contains the service method which will be
+	 *            executed once parameters are unmarshalled.
+	 * @param writer
+	 *            The destination of the serialized result.
+	 * @throws IOException
+	 *             if writing to the writer fails.
+	 */
+	public void invoke(final CharSequence input, final Object serviceProvider, final Writer writer) throws IOException {
+		final ReplayableOutput response = this.invoke0(input, serviceProvider);
+		if (response instanceof CachedText) {
+			writer.write(((CachedText) response).text);
+			return;
+		}
+		if (response instanceof CacheableResponse) {
+			final String text = this.serialize(response);
+			this.cacheResponseIfPossible(response, text);
+			writer.write(text);
+			return;
+		}
+
+		final ServerSerializationFactory serializationFactory = this.getSerializationFactory();
+		final StreamingServerObjectOutputStream outputStream = serializationFactory.acquireStreamingObjectOutputStream();
+		try {
+			outputStream.writeTo(response, writer);
+		} finally {
+			serializationFactory.releaseStreamingObjectOutputStream(outputStream);
+		}
+	}
+
+	/**
+	 * Processes a request encoded using the binary format writing the binary
+	 * encoded result to the given output.
+	 * 
+	 * @param input
+	 *            The binary form of the request.
+	 * @param serviceProvider
+	 *            the instance that contains the service method which will be
+	 *            executed once parameters are unmarshalled.
+	 * @param output
+	 *            The destination of the serialized result.
+	 */
+	public void invoke(final byte[] input, final Object serviceProvider, final OutputStream output) {
+		final ServerSerializationFactory serializationFactory = this.getSerializationFactory();
+		final ReplayableOutput response = this.invoke0(serializationFactory.createBinaryObjectInputStream(input), serviceProvider);
+
+		final BinaryServerObjectOutputStream outputStream = serializationFactory.createBinaryObjectOutputStream(output);
+		response.write(outputStream);
+		outputStream.flush();
+	}
+
+	/**
+	 * Deserializes the request, invokes the service method and returns a
+	 * {@link ReplayableOutput} which writes the outcome. If the response of a
+	 * {@link CachedResponse} method is already cached a {@link CachedText} is
+	 * returned, which must be written as text rather than replayed.
+	 * 
+	 * @param input
+	 * @param serviceProvider
+	 * @return
+	 */
+	protected ReplayableOutput invoke0(final CharSequence input, final Object serviceProvider) {
+		final ServerSerializationFactory serializationFactory = this.getSerializationFactory();
+		final ObjectInputStream inputStream = serializationFactory.acquireObjectInputStream(input);
+		try {
+			return this.invoke0(inputStream, serviceProvider, input);
+		} finally {
+			serializationFactory.releaseObjectInputStream(inputStream);
+		}
+	}
+
+	/**
+	 * Reads the request from the given stream, invokes the service method and
+	 * returns a {@link ReplayableOutput} which writes the outcome.
+	 * 
+	 * @param inputStream
+	 * @param serviceProvider
+	 * @return
+	 */
+	protected ReplayableOutput invoke0(final ObjectInputStream inputStream, final Object serviceProvider) {
+		return this.invoke0(inputStream, serviceProvider, null);
+	}
+
+	/**
+	 * Reads the request from the given stream, invokes the service method and
+	 * returns a {@link ReplayableOutput} which writes the outcome.
+	 * 
+	 * When the text of the request is present and the requested method is a
+	 * {@link CachedResponse} method the cache is consulted before the
+	 * parameters are even read. Requests for any other method never touch the
+	 * cache.
+	 * 
+	 * @param inputStream
+	 * @param serviceProvider
+	 * @param request
+	 *            The text of the request or null if responses may not be
+	 *            cached.
+	 * @return
+	 */
+	protected ReplayableOutput invoke0(final ObjectInputStream inputStream, final Object serviceProvider, final CharSequence request) {
+		Checker.notNull("parameter:inputStream", inputStream);
+		Checker.notNull("parameter:serviceProvider", serviceProvider);
 
 		// read in the interface...
 		final String interfaceName = (String) inputStream.readObject();
+
+		ReplayableOutput response = null;
+		if (JavaRpcConstants.BATCH.equals(interfaceName)) {
+			response = this.invokeBatch(inputStream, serviceProvider);
+		} else {
+			final Invocation invocation = this.readMethod(interfaceName, inputStream, serviceProvider);
+
+			while (true) {
+				final ResponseCache responseCache = this.getResponseCache();
+				String cacheKey = null;
+				long generation = 0;
+				if (null != request && null != responseCache && invocation.getServiceMethod().isCacheable()) {
+					cacheKey = this.getCacheKey(invocation, request);
+					final String cached = responseCache.get(cacheKey);
+					if (null != cached) {
+						response = new CachedText(cached);
+						break;
+					}
+
+					// read before executing so an invalidation during execution is not lost.
+					generation = responseCache.getGeneration(invocation.getInterface());
+				}
+
+				this.readParameters(invocation, inputStream);
+				this.execute(invocation, serviceProvider);
+				response = this.createResponse(invocation.isExceptionWasThrown(), invocation.getResult());
+
+				if (null != cacheKey && false == invocation.isExceptionWasThrown()) {
+					response = new CacheableResponse(response, invocation, cacheKey, generation);
+				}
+				break;
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Builds the key of a cached response from the interface, the method
+	 * signature and a digest of the request text, which holds the serialized
+	 * parameters. The key is small no matter how large the request is.
+	 * 
+	 * @param invocation
+	 * @param request
+	 * @return
+	 */
+	protected String getCacheKey(final Invocation invocation, final CharSequence request) {
+		final StringBuilder key = new StringBuilder();
+		key.append(invocation.getInterface().getName());
+		key.append('#');
+		key.append(invocation.getServiceMethod().getSignature());
+		key.append('#');
+
+		final byte[] digest = this.digest(request);
+		for (int i = 0; i < digest.length; i++) {
+			final int b = digest[i] & 0xff;
+			key.append(Character.forDigit(b >> 4, 16));
+			key.append(Character.forDigit(b & 0xf, 16));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Computes a SHA-1 digest of the given characters without copying them into
+	 * a String.
+	 * 
+	 * @param chars
+	 * @return
+	 */
+	protected byte[] digest(final CharSequence chars) {
+		MessageDigest messageDigest = null;
+		try {
+			messageDigest = MessageDigest.getInstance(Constants.CACHE_KEY_DIGEST_ALGORITHM);
+		} catch (final NoSuchAlgorithmException unavailable) {
+			throw new RpcException(unavailable);
+		}
+
+		final byte[] buffer = new byte[Constants.CACHE_KEY_DIGEST_BUFFER_SIZE];
+		final int length = chars.length();
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			final char c = chars.charAt(i);
+			buffer[count++] = (byte) (c >> 8);
+			buffer[count++] = (byte) c;
+			if (count == buffer.length) {
+				messageDigest.update(buffer, 0, count);
+				count = 0;
+			}
+		}
+		messageDigest.update(buffer, 0, count);
+		return messageDigest.digest();
+	}
+
+	/**
+	 * Adds the serialized response to the cache if it belongs to a
+	 * {@link CachedResponse} method.
+	 * 
+	 * @param response
+	 * @param text
+	 */
+	protected void cacheResponseIfPossible(final ReplayableOutput response, final String text) {
+		final ResponseCache responseCache = this.getResponseCache();
+		if (null != responseCache && response instanceof CacheableResponse) {
+			final CacheableResponse cacheable = (CacheableResponse) response;
+			final Invocation invocation = cacheable.invocation;
+			final ServiceMethod serviceMethod = invocation.getServiceMethod();
+			responseCache.put(cacheable.cacheKey, text, invocation.getInterface(), serviceMethod.getMethod().getName(), serviceMethod
+					.getTimeToLive(), cacheable.generation);
+		}
+	}
+
+	/**
+	 * Wraps the response of a successful invocation whose response may be
+	 * cached.
+	 */
+	static class CacheableResponse implements ReplayableOutput {
+		CacheableResponse(final ReplayableOutput response, final Invocation invocation, final String cacheKey, final long generation) {
+			super();
+
+			this.response = response;
+			this.invocation = invocation;
+			this.cacheKey = cacheKey;
+			this.generation = generation;
+		}
+
+		final ReplayableOutput response;
+
+		final Invocation invocation;
+
+		final String cacheKey;
+
+		/**
+		 * The generation of the interface read before the method executed.
+		 */
+		final long generation;
+
+		public void write(final ObjectOutputStream objectOutputStream) {
+			this.response.write(objectOutputStream);
+		}
+	}
+
+	/**
+	 * A response taken from the cache, which is already serialized text.
+	 */
+	static class CachedText implements ReplayableOutput {
+		CachedText(final String text) {
+			super();
+
+			this.text = text;
+		}
+
+		final String text;
+
+		public void write(final ObjectOutputStream objectOutputStream) {
+			throw new UnsupportedOperationException("A cached response must be written as text.");
+		}
+	}
+
+	/**
+	 * Reads every invocation belonging to a batch before executing them all and
+	 * returning a {@link ReplayableOutput} which writes all their outcomes.
+	 * 
+	 * @param inputStream
+	 * @param serviceProvider
+	 * @return
+	 */
+	protected ReplayableOutput invokeBatch(final ObjectInputStream inputStream, final Object serviceProvider) {
+		final int maximumBatchSize = this.getMaximumBatchSize();
+		final List<Invocation> invocations = new ArrayList<Invocation>();
+
+		while (inputStream.readBoolean()) {
+			if (invocations.size() == maximumBatchSize) {
+				this.throwBatchTooLarge(maximumBatchSize);
+			}
+			final String interfaceName = (String) inputStream.readObject();
+			invocations.add(this.readInvocation(interfaceName, inputStream, serviceProvider));
+		}
+
+		final ExecutorService executorService = this.getBatchExecutorService();
+		if (null == executorService || invocations.size() < 2) {
+			final Iterator<Invocation> iterator = invocations.iterator();
+			while (iterator.hasNext()) {
+				this.executeBatched(iterator.next(), serviceProvider);
+			}
+		} else {
+			this.execute(invocations, serviceProvider, executorService);
+		}
+
+		return this.createBatchResponse(invocations);
+	}
+
+	protected void throwBatchTooLarge(final int maximumBatchSize) {
+		throw new RpcException("The batch contains more than " + maximumBatchSize + " invocations.");
+	}
+
+	/**
+	 * Executes a single invocation belonging to a batch. A refused invocation
+	 * records a {@link RpcException} as its result rather than failing the
+	 * entire batch, whose other invocations may already have executed.
+	 * 
+	 * @param invocation
+	 * @param serviceProvider
+	 */
+	protected void executeBatched(final Invocation invocation, final Object serviceProvider) {
+		try {
+			this.execute(invocation, serviceProvider);
+		} catch (final RejectedExecutionException rejected) {
+			invocation.setResult(true, new RpcException(rejected.getMessage()));
+		}
+	}
+
+	/**
+	 * Executes all the invocations using the given executor waiting for them
+	 * all to complete.
+	 * 
+	 * @param invocations
+	 * @param serviceProvider
+	 * @param executorService
+	 */
+	protected void execute(final List<Invocation> invocations, final Object serviceProvider, final ExecutorService executorService) {
+		final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		final Iterator<Invocation> iterator = invocations.iterator();
+		while (iterator.hasNext()) {
+			final Invocation invocation = iterator.next();
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					JavaRpcServiceMethodInvoker.this.executeBatched(invocation, serviceProvider);
+					return null;
+				}
+			});
+		}
+
+		try {
+			final Iterator<Future<Object>> futures = executorService.invokeAll(tasks).iterator();
+			while (futures.hasNext()) {
+				futures.next().get();
+			}
+		} catch (final InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+			throw new RpcException("Interrupted while waiting for batched invocations to complete.");
+		} catch (final ExecutionException executionFailed) {
+			throw new RpcException(executionFailed.getCause());
+		}
+	}
+
+	/**
+	 * Reads the method and parameters of a single invocation.
+	 * 
+	 * @param interfaceName
+	 * @param inputStream
+	 * @param serviceProvider
+	 * @return
+	 */
+	protected Invocation readInvocation(final String interfaceName, final ObjectInputStream inputStream, final Object serviceProvider) {
+		final Invocation invocation = this.readMethod(interfaceName, inputStream, serviceProvider);
+		this.readParameters(invocation, inputStream);
+		return invocation;
+	}
+
+	/**
+	 * Reads the method name and parameter types of an invocation, returning an
+	 * invocation whose parameters have not yet been read.
+	 * 
+	 * @param interfaceName
+	 * @param inputStream
+	 * @param serviceProvider
+	 * @return
+	 */
+	protected Invocation readMethod(final String interfaceName, final ObjectInputStream inputStream, final Object serviceProvider) {
 		final Class interfacee = this.getRequestedInterface(interfaceName);
 
 		// verify the serviceProvider actually implements $interface
@@ -81,40 +537,103 @@ public class JavaRpcServiceMethodInvoker {
 
 		// attempt to find a method on the given interface that matches the
 		// method signature...
-		method = this.getMethod(serviceProvider.getClass(), methodName, parameterTypes);
+		final ServiceMethod method = this.getServiceMethod(serviceProvider.getClass(), interfacee, methodName, parameterTypes);
+		return new Invocation(interfacee, method);
+	}
 
-		// deserialize parameters...
+	/**
+	 * Deserializes the parameters of the given invocation.
+	 * 
+	 * @param invocation
+	 * @param inputStream
+	 */
+	protected void readParameters(final Invocation invocation, final ObjectInputStream inputStream) {
+		final int parameterCount = invocation.getServiceMethod().getParameterCount();
 		final Object[] parameters = new Object[parameterCount];
 		for (int i = 0; i < parameterCount; i++) {
 			parameters[i] = inputStream.readObject();
 		}
+		invocation.setParameters(parameters);
+	}
+
+	/**
+	 * Invokes the method of the given invocation recording its result.
+	 * 
+	 * @param invocation
+	 * @param serviceProvider
+	 */
+	protected void execute(final Invocation invocation, final Object serviceProvider) {
+		if (false == this.isConcurrencyLimitsFixed()) {
+			this.setConcurrencyLimitsFixed(true);
+		}
+
+		final Semaphore concurrencyLimit = this.getConcurrencyLimit(invocation.getInterface());
+		if (null == concurrencyLimit) {
+			this.execute0(invocation, serviceProvider);
+		} else {
+			this.acquire(concurrencyLimit, invocation);
+			try {
+				this.execute0(invocation, serviceProvider);
+			} finally {
+				concurrencyLimit.release();
+			}
+		}
+	}
+
+	/**
+	 * Waits at most {@link #concurrencyLimitWait} milliseconds for a permit to
+	 * execute the given invocation.
+	 * 
+	 * @param concurrencyLimit
+	 * @param invocation
+	 * @throws RejectedExecutionException
+	 *             if a permit is not available in time.
+	 * @throws RpcException
+	 *             if the thread is interrupted while waiting, the interrupt
+	 *             status of the thread being restored.
+	 */
+	protected void acquire(final Semaphore concurrencyLimit, final Invocation invocation) {
+		boolean acquired = false;
+		try {
+			acquired = concurrencyLimit.tryAcquire(this.getConcurrencyLimitWait(), TimeUnit.MILLISECONDS);
+		} catch (final InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+			throw new RpcException("Interrupted while waiting to invoke a method of " + invocation.getInterface().getName(), interrupted);
+		}
+		if (false == acquired) {
+			this.throwConcurrencyLimitReached(invocation);
+		}
+	}
+
+	protected void throwConcurrencyLimitReached(final Invocation invocation) {
+		throw new RejectedExecutionException("Too many concurrent invocations of " + invocation.getInterface().getName());
+	}
+
+	protected void execute0(final Invocation invocation, final Object serviceProvider) {
+		final ServiceMethod method = invocation.getServiceMethod();
+		Object result = null;
+		boolean exceptionWasThrown = false;
 
 		// any exceptions that are thrown will be serialized and included in the
 		// response...
 		try {
 			// prepare to invoke method...
-			result = this.invoke(serviceProvider, method, parameters);
+			final ExecutorService executorService = this.getInvocationExecutorService();
+			result = null == executorService ? this.invoke(serviceProvider, method, invocation.getParameters()) : this.invoke(
+					serviceProvider, method, invocation.getParameters(), executorService);
 		} catch (final InvocationTargetException invocationTargetException) {
 			final Throwable caught = invocationTargetException.getTargetException();
 
 			// if method throws exception leave...
-			boolean thrown = false;
-			final Class caughtType = caught.getClass();
-			final Class[] thrownExceptions = method.getExceptionTypes();
-			for (int i = 0; i < thrownExceptions.length; i++) {
-				final Class thrownException = thrownExceptions[i];
-				if (caughtType.equals(thrownException)) {
-					thrown = true;
-					result = caught;
-					break;
-				}
-			}
-
-			if (false == thrown) {
+			if (method.isDeclaredException(caught)) {
+				result = caught;
+			} else {
 				result = new RpcException(caught.getMessage());
 			}
 			exceptionWasThrown = true;
 
+		} catch (final RejectedExecutionException rejected) {
+			throw rejected;
 		} catch (final RuntimeException runtimeException) {
 			exceptionWasThrown = true;
 			result = new RpcException(runtimeException.getMessage());
@@ -123,11 +642,46 @@ public class JavaRpcServiceMethodInvoker {
 			result = new RpcException(throwable.getMessage());
 		}
 
-		// write the result...
-		outputStream.writeBoolean(exceptionWasThrown);
-		outputStream.writeObject(result);
+		invocation.setResult(exceptionWasThrown, result);
+	}
 
-		return outputStream.getText();
+	/**
+	 * Creates a {@link ReplayableOutput} which writes the exception flag
+	 * followed by the result.
+	 * 
+	 * @param exceptionWasThrown
+	 * @param result
+	 * @return
+	 */
+	protected ReplayableOutput createResponse(final boolean exceptionWasThrown, final Object result) {
+		return new ReplayableOutput() {
+			public void write(final ObjectOutputStream objectOutputStream) {
+				objectOutputStream.writeBoolean(exceptionWasThrown);
+				objectOutputStream.writeObject(result);
+			}
+		};
+	}
+
+	/**
+	 * Creates a {@link ReplayableOutput} which writes the number of results
+	 * followed by the exception flag and result of each invocation.
+	 * 
+	 * @param invocations
+	 * @return
+	 */
+	protected ReplayableOutput createBatchResponse(final List<Invocation> invocations) {
+		return new ReplayableOutput() {
+			public void write(final ObjectOutputStream objectOutputStream) {
+				objectOutputStream.writeInt(invocations.size());
+
+				final Iterator<Invocation> iterator = invocations.iterator();
+				while (iterator.hasNext()) {
+					final Invocation invocation = iterator.next();
+					objectOutputStream.writeBoolean(invocation.isExceptionWasThrown());
+					objectOutputStream.writeObject(invocation.getResult());
+				}
+			}
+		};
 	}
 
 	/**
@@ -144,10 +698,385 @@ public class JavaRpcServiceMethodInvoker {
 	 * @throws Throwable
 	 *             The exception that was thrown.
 	 */
-	protected Object invoke(final Object serviceProvider, final Method method, final Object[] parameters) throws Throwable {
+	protected Object invoke(final Object serviceProvider, final ServiceMethod method, final Object[] parameters) throws Throwable {
 		return method.invoke(serviceProvider, parameters);
 	}
 
+	/**
+	 * Invokes the method upon a thread belonging to the given executor, waiting
+	 * for the result no longer than the {@link #invocationTimeout}. Methods
+	 * that are still running when the timeout expires or the calling thread is
+	 * interrupted are cancelled, interrupting the executor thread so it may be
+	 * returned to the pool. The calling thread is blocked for the entire wait.
+	 * 
+	 * @param serviceProvider
+	 * @param method
+	 * @param parameters
+	 * @param executorService
+	 * @return The result returned by the method
+	 * @throws Throwable
+	 *             The exception that was thrown.
+	 */
+	protected Object invoke(final Object serviceProvider, final ServiceMethod method, final Object[] parameters,
+			final ExecutorService executorService) throws Throwable {
+		final Future<Object> future = executorService.submit(new Callable<Object>() {
+			public Object call() throws Exception {
+				try {
+					return JavaRpcServiceMethodInvoker.this.invoke(serviceProvider, method, parameters);
+				} catch (final Exception exception) {
+					throw exception;
+				} catch (final Error error) {
+					throw error;
+				} catch (final Throwable throwable) {
+					throw new InvocationTargetException(throwable);
+				}
+			}
+		});
+
+		final long timeout = this.getInvocationTimeout();
+		try {
+			return timeout > 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+		} catch (final ExecutionException executionFailed) {
+			throw executionFailed.getCause();
+		} catch (final TimeoutException timedOut) {
+			future.cancel(true);
+			throw new RpcException("The method " + method.getMethod().getName() + " did not complete within " + timeout + " millis.");
+		} catch (final InterruptedException interrupted) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RpcException("Interrupted while waiting for the method " + method.getMethod().getName() + " to complete.");
+		}
+	}
+
+	/**
+	 * Resolves every method belonging to each {@link JavaRpcService} interface
+	 * implemented by the given provider, adding them to the dispatch table so
+	 * that no lookups are performed when requests arrive.
+	 * 
+	 * @param serviceProvider
+	 */
+	public void prepare(final Object serviceProvider) {
+		Checker.notNull("parameter:serviceProvider", serviceProvider);
+		this.setConcurrencyLimitsFixed(true);
+
+		final Class serviceProviderType = serviceProvider.getClass();
+		Class type = serviceProviderType;
+		while (null != type) {
+			final Class[] interfaces = type.getInterfaces();
+			for (int i = 0; i < interfaces.length; i++) {
+				final Class interfacee = interfaces[i];
+				if (false == JavaRpcService.class.isAssignableFrom(interfacee) || JavaRpcService.class.equals(interfacee)) {
+					continue;
+				}
+				this.getInterfaces().putIfAbsent(interfacee.getName(), interfacee);
+				this.prepare(serviceProviderType, interfacee);
+			}
+			type = type.getSuperclass();
+		}
+	}
+
+	protected void prepare(final Class serviceProviderType, final Class interfacee) {
+		final ConcurrentMap<String, ServiceMethod> serviceMethods = this.getServiceMethods();
+
+		final Method[] methods = interfacee.getMethods();
+		for (int i = 0; i < methods.length; i++) {
+			final Method method = methods[i];
+			final Class[] parameterTypes = method.getParameterTypes();
+			final String[] parameterTypeNames = new String[parameterTypes.length];
+			for (int j = 0; j < parameterTypes.length; j++) {
+				parameterTypeNames[j] = parameterTypes[j].getName();
+			}
+
+			final String key = this.getServiceMethodKey(interfacee.getName(), method.getName(), parameterTypeNames);
+			serviceMethods.putIfAbsent(key, this.createServiceMethod(serviceProviderType, method));
+		}
+	}
+
+	/**
+	 * Fetches the cached {@link ServiceMethod} for the given signature,
+	 * resolving and caching it upon the first request.
+	 * 
+	 * @param serviceProviderType
+	 * @param interfacee
+	 * @param methodName
+	 * @param parameterTypeNames
+	 * @return
+	 */
+	protected ServiceMethod getServiceMethod(final Class serviceProviderType, final Class interfacee, final String methodName,
+			final String[] parameterTypeNames) {
+		final ConcurrentMap<String, ServiceMethod> serviceMethods = this.getServiceMethods();
+		final String key = this.getServiceMethodKey(interfacee.getName(), methodName, parameterTypeNames);
+
+		ServiceMethod serviceMethod = serviceMethods.get(key);
+		if (null == serviceMethod || serviceMethod.getServiceProviderType() != serviceProviderType) {
+			final Method method = this.getMethod(interfacee, methodName, parameterTypeNames);
+			final ServiceMethod resolved = this.createServiceMethod(serviceProviderType, method);
+
+			// only the first provider type to request a signature is cached.
+			if (null == serviceMethod) {
+				serviceMethods.putIfAbsent(key, resolved);
+			}
+			serviceMethod = resolved;
+		}
+
+		return serviceMethod;
+	}
+
+	protected String getServiceMethodKey(final String interfaceName, final String methodName, final String[] parameterTypeNames) {
+		final StringBuilder key = new StringBuilder();
+		key.append(interfaceName);
+		key.append('#');
+		key.append(methodName);
+		key.append('(');
+		for (int i = 0; i < parameterTypeNames.length; i++) {
+			if (i > 0) {
+				key.append(',');
+			}
+			key.append(parameterTypeNames[i]);
+		}
+		key.append(')');
+		return key.toString();
+	}
+
+	/**
+	 * Factory which creates the invocable handle for a resolved method. When
+	 * {@link #generatedInvokers} is set a cglib generated invoker is attempted
+	 * first, falling back to reflection if generation fails.
+	 * 
+	 * @param serviceProviderType
+	 * @param method
+	 * @return
+	 */
+	protected ServiceMethod createServiceMethod(final Class serviceProviderType, final Method method) {
+		ServiceMethod serviceMethod = null;
+
+		if (this.isGeneratedInvokers()) {
+			try {
+				serviceMethod = new CgLibServiceMethod(serviceProviderType, method);
+			} catch (final RuntimeException generationFailed) {
+				// fall back to reflection below...
+			} catch (final LinkageError cglibMissing) {
+				// fall back to reflection below...
+			}
+		}
+		if (null == serviceMethod) {
+			serviceMethod = new ServiceMethod(serviceProviderType, method);
+		}
+		return serviceMethod;
+	}
+
+	/**
+	 * Interfaces that have already been resolved and verified keyed by name.
+	 */
+	private ConcurrentMap<String, Class> interfaces = new ConcurrentHashMap<String, Class>();
+
+	protected ConcurrentMap<String, Class> getInterfaces() {
+		return this.interfaces;
+	}
+
+	/**
+	 * The dispatch table of resolved methods keyed by
+	 * interface#method(parameterTypes)
+	 */
+	private ConcurrentMap<String, ServiceMethod> serviceMethods = new ConcurrentHashMap<String, ServiceMethod>();
+
+	protected ConcurrentMap<String, ServiceMethod> getServiceMethods() {
+		return this.serviceMethods;
+	}
+
+	/**
+	 * The largest number of invocations accepted within a single batch.
+	 */
+	private int maximumBatchSize = Constants.MAXIMUM_BATCH_SIZE;
+
+	public int getMaximumBatchSize() {
+		return this.maximumBatchSize;
+	}
+
+	public void setMaximumBatchSize(final int maximumBatchSize) {
+		Checker.greaterThan("parameter:maximumBatchSize", 0, maximumBatchSize);
+		this.maximumBatchSize = maximumBatchSize;
+	}
+
+	/**
+	 * When present the invocations of a batch are executed in parallel using
+	 * this executor, otherwise they are executed one after another. It must
+	 * not be the {@link #invocationExecutorService}, as each batch task waits
+	 * for its method to run upon that executor, and tasks waiting upon the
+	 * pool they occupy can wait forever.
+	 */
+	private ExecutorService batchExecutorService;
+
+	public ExecutorService getBatchExecutorService() {
+		return this.batchExecutorService;
+	}
+
+	public void setBatchExecutorService(final ExecutorService batchExecutorService) {
+		if (null != batchExecutorService && batchExecutorService == this.getInvocationExecutorService()) {
+			Checker.fail("parameter:batchExecutorService", "The batchExecutorService must not be the invocationExecutorService.");
+		}
+		this.batchExecutorService = batchExecutorService;
+	}
+
+	/**
+	 * Returns the semaphore limiting concurrent invocations of the given
+	 * interface or null if it is not limited.
+	 * 
+	 * @param interfacee
+	 * @return
+	 */
+	protected Semaphore getConcurrencyLimit(final Class interfacee) {
+		final ConcurrentMap<Class, Semaphore> concurrencyLimits = this.getConcurrencyLimits();
+		Semaphore concurrencyLimit = concurrencyLimits.get(interfacee);
+
+		if (null == concurrencyLimit) {
+			final int maximum = this.getMaximumConcurrentInvocations();
+			if (maximum > 0) {
+				concurrencyLimits.putIfAbsent(interfacee, new Semaphore(maximum));
+				concurrencyLimit = concurrencyLimits.get(interfacee);
+			}
+		}
+		return concurrencyLimit;
+	}
+
+	/**
+	 * Limits the number of methods belonging to the given interface that may
+	 * execute at the same time.
+	 * 
+	 * @param interfacee
+	 * @param maximum
+	 * @throws IllegalStateException
+	 *             if limits are already fixed.
+	 */
+	public void setConcurrencyLimit(final Class interfacee, final int maximum) {
+		Checker.notNull("parameter:interface", interfacee);
+		Checker.greaterThan("parameter:maximum", 0, maximum);
+		this.checkConcurrencyLimitsNotFixed();
+
+		this.getConcurrencyLimits().put(interfacee, new Semaphore(maximum));
+	}
+
+	protected void checkConcurrencyLimitsNotFixed() {
+		if (this.isConcurrencyLimitsFixed()) {
+			throw new IllegalStateException("Concurrency limits cannot be changed once prepared or invoked.");
+		}
+	}
+
+	/**
+	 * Becomes true once {@link #prepare(Object)} is called or a method is
+	 * executed. Semaphores may be held by executing invocations from then on,
+	 * so limits can no longer be replaced.
+	 */
+	private volatile boolean concurrencyLimitsFixed;
+
+	protected boolean isConcurrencyLimitsFixed() {
+		return this.concurrencyLimitsFixed;
+	}
+
+	protected void setConcurrencyLimitsFixed(final boolean concurrencyLimitsFixed) {
+		this.concurrencyLimitsFixed = concurrencyLimitsFixed;
+	}
+
+	/**
+	 * Semaphores keyed by interface.
+	 */
+	private ConcurrentMap<Class, Semaphore> concurrencyLimits = new ConcurrentHashMap<Class, Semaphore>();
+
+	protected ConcurrentMap<Class, Semaphore> getConcurrencyLimits() {
+		return this.concurrencyLimits;
+	}
+
+	/**
+	 * The limit applied to interfaces without their own limit, zero meaning
+	 * unlimited.
+	 */
+	private int maximumConcurrentInvocations;
+
+	public int getMaximumConcurrentInvocations() {
+		return this.maximumConcurrentInvocations;
+	}
+
+	public void setMaximumConcurrentInvocations(final int maximumConcurrentInvocations) {
+		Checker.greaterThanOrEqual("parameter:maximumConcurrentInvocations", 0, maximumConcurrentInvocations);
+		this.checkConcurrencyLimitsNotFixed();
+		this.maximumConcurrentInvocations = maximumConcurrentInvocations;
+	}
+
+	/**
+	 * The number of milliseconds an invocation waits for a limited interface
+	 * before being refused.
+	 */
+	private long concurrencyLimitWait;
+
+	public long getConcurrencyLimitWait() {
+		return this.concurrencyLimitWait;
+	}
+
+	public void setConcurrencyLimitWait(final long concurrencyLimitWait) {
+		Checker.greaterThanOrEqual("parameter:concurrencyLimitWait", 0, concurrencyLimitWait);
+		this.concurrencyLimitWait = concurrencyLimitWait;
+	}
+
+	/**
+	 * Holds the responses of {@link CachedResponse} methods, caching is
+	 * disabled unless a cache is set.
+	 */
+	private ResponseCache responseCache;
+
+	public ResponseCache getResponseCache() {
+		return this.responseCache;
+	}
+
+	public void setResponseCache(final ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	/**
+	 * When present service methods are executed by this executor rather than
+	 * the calling thread.
+	 */
+	private ExecutorService invocationExecutorService;
+
+	public ExecutorService getInvocationExecutorService() {
+		return this.invocationExecutorService;
+	}
+
+	public void setInvocationExecutorService(final ExecutorService invocationExecutorService) {
+		if (null != invocationExecutorService && invocationExecutorService == this.getBatchExecutorService()) {
+			Checker.fail("parameter:invocationExecutorService", "The invocationExecutorService must not be the batchExecutorService.");
+		}
+		this.invocationExecutorService = invocationExecutorService;
+	}
+
+	/**
+	 * The number of milliseconds to wait for a method running upon the
+	 * {@link #invocationExecutorService}, zero meaning forever.
+	 */
+	private long invocationTimeout;
+
+	public long getInvocationTimeout() {
+		return this.invocationTimeout;
+	}
+
+	public void setInvocationTimeout(final long invocationTimeout) {
+		Checker.greaterThanOrEqual("parameter:invocationTimeout", 0, invocationTimeout);
+		this.invocationTimeout = invocationTimeout;
+	}
+
+	/**
+	 * When true service methods are invoked using classes generated by cglib
+	 * rather than reflection.
+	 */
+	private boolean generatedInvokers;
+
+	public boolean isGeneratedInvokers() {
+		return this.generatedInvokers;
+	}
+
+	public void setGeneratedInvokers(final boolean generatedInvokers) {
+		this.generatedInvokers = generatedInvokers;
+	}
+
 	/**
 	 * Fetches the class object for the given requested interface name.
 	 * 
@@ -155,9 +1084,14 @@ public class JavaRpcServiceMethodInvoker {
 	 * @return
 	 */
 	protected Class getRequestedInterface(final String interfaceName) {
-		final Class classs = this.getClass(interfaceName);
-		if (false == classs.isInterface()) {
-			this.throwNotAnInterface(classs);
+		final ConcurrentMap<String, Class> interfaces = this.getInterfaces();
+		Class classs = interfaces.get(interfaceName);
+		if (null == classs) {
+			classs = this.getClass(interfaceName);
+			if (false == classs.isInterface()) {
+				this.throwNotAnInterface(classs);
+			}
+			interfaces.putIfAbsent(interfaceName, classs);
 		}
 		return classs;
 	}
@@ -210,23 +1144,34 @@ public class JavaRpcServiceMethodInvoker {
 
 	/**
 	 * Helper which takes a type name and returns the corresponding Class
-	 * object, converting any exceptions into RpcExceptions
+	 * object, converting any exceptions into RpcExceptions. Types are resolved
+	 * by the {@link TypeResolver} shared with the serialization factory, which
+	 * caches classes and enforces any allow and deny lists.
 	 * 
 	 * @param typeName
 	 * @return
 	 */
 	protected Class getClass(final String typeName) {
 		try {
-			return Class.forName(typeName);
-		} catch (final ExceptionInInitializerError error) {
-			throw new RpcException(error);
-		} catch (final LinkageError error) {
-			throw new RpcException(error);
-		} catch (final ClassNotFoundException exception) {
+			return this.getSerializationFactory().getTypeResolver().getType(typeName);
+		} catch (final SerializationException exception) {
 			throw new RpcException(exception);
 		}
 	}
 
+	/**
+	 * The serialization factory shared by all invocations, which is created
+	 * upon first use.
+	 */
+	private ServerSerializationFactory serializationFactory;
+
+	protected synchronized ServerSerializationFactory getSerializationFactory() {
+		if (null == this.serializationFactory) {
+			this.serializationFactory = this.createSerializationFactory();
+		}
+		return this.serializationFactory;
+	}
+
 	/**
 	 * Factory which creates a serialization factory which will be responsible
 	 * for deserializing/serializing any rpc.
@@ -15,15 +15,41 @@
  */
 package rocket.remoting.server.java;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import rocket.remoting.client.JavaRpcService;
+import rocket.serialization.server.BinaryServerObjectOutputStream;
+import rocket.serialization.server.TypeResolver;
 import rocket.util.client.Checker;
+import rocket.util.client.Tester;
 import rocket.util.server.InputOutput;
 
 /**
@@ -31,14 +57,391 @@ import rocket.util.server.InputOutput;
  * {@link com.google.gwt.user.server.rpc.RemoteServiceServlet}, in that the
  * developer is required to implement the service interface they wish to expose.
  * 
- * Unlike the GWT servlet this serlvet does not attempt to compress any output
- * leaving that responsibility to something else such as the Apache HTTPd or a
- * separate filter.
+ * Responses larger than the compression threshold are compressed using gzip or
+ * deflate when the client accepts either, the serializer writing straight into
+ * the compressing stream. Requests whose body has a gzip or deflate
+ * Content-Encoding are decoded as they are read. Both may be configured using
+ * the optional init parameters compress-responses (true or false),
+ * compression-threshold (bytes) and maximum-inflated-request-length (bytes).
+ * Set compress-responses to false when a filter or the Apache HTTPd already
+ * compresses responses.
+ * 
+ * Text responses are serialized in a single pass into a buffer. Responses whose
+ * values exceed the optional streaming-threshold init parameter (chars) are
+ * instead serialized a second time straight to the response, bounding memory
+ * at the cost of the extra pass.
+ * 
+ * Service methods may be executed by a bounded pool of threads by setting the
+ * invocation-threads init parameter. Requests arriving when every thread is
+ * busy and invocation-queue-size requests are already waiting are refused with
+ * a 503 and a Retry-After header. This only bounds the number of methods
+ * executing at once: the container's request thread still blocks while its
+ * method runs, as asynchronous requests are not available with Servlet 2.4.
+ * The optional invocation-timeout (millis) limits how long a request waits for
+ * its method, after which the method is interrupted and the client receives a
+ * RpcException.
+ * 
+ * The invocations of a batch run one after another unless the batch-threads
+ * init parameter creates a separate pool which executes them in parallel.
+ * Batch tasks wait upon the invocation threads for their methods, so the
+ * batch pool is never the invocation pool, otherwise a batch filling every
+ * invocation thread would wait forever for threads it occupies itself.
+ * 
+ * The maximum-concurrent-invocations init parameter limits how many methods of
+ * each service interface execute at once, while an init parameter named
+ * maximum-concurrent-invocations.<i>interface name</i> sets the limit of a
+ * single interface. Requests that cannot start within concurrency-limit-wait
+ * (millis, default 0) are also refused with a 503.
+ * 
+ * The types that requests may name are restricted by the deny lists
+ * (rocket-Serialization.txt) of the packages holding the service interfaces.
+ * The optional denied-types and allowed-types init parameters add comma
+ * separated patterns, such as com.acme.* or com.acme.Order, to the deny and
+ * allow lists. Once any type is allowed every other type is refused. Setting
+ * allow-service-interface-types to true allows the service interfaces and
+ * the types named in their method signatures. Those types alone do not cover
+ * sub types that only appear at runtime, for example an ArrayList passed to
+ * a List parameter or held in a field, which must be allowed as well.
+ * 
+ * Responses of methods marked with {@link CachedResponse} are cached when
+ * response-cache-size is set, holding at most that many responses and at most
+ * response-cache-bytes (default 16MB) of text. Caching is disabled by default.
+ * Sub classes should call {@link #invalidateCachedResponses(Class)} or
+ * {@link #invalidateCachedResponses(Class, String)} whenever data behind a
+ * cached method changes.
  * 
  * @author Miroslav Pokorny
  */
 public class JavaRpcServiceServlet extends HttpServlet {
 
+	public JavaRpcServiceServlet() {
+		super();
+
+		this.setConsumePostDataOverridden(this.isOverridden("consumePostData", new Class[] { HttpServletRequest.class }));
+		this.setInvokeTextOverridden(this.isOverridden("invoke", new Class[] { String.class }));
+	}
+
+	/**
+	 * Reads any of the optional compression and invocation init parameters,
+	 * before resolving all service methods.
+	 */
+	@Override
+	public void init() throws ServletException {
+		final String compressResponses = this.getInitParameter(Constants.COMPRESS_RESPONSES_INIT_PARAMETER);
+		if (false == Tester.isNullOrEmpty(compressResponses)) {
+			this.setCompressResponses(Boolean.valueOf(compressResponses.trim()).booleanValue());
+		}
+
+		this.setCompressionThreshold(this.getPositiveNumberInitParameter(Constants.COMPRESSION_THRESHOLD_INIT_PARAMETER, this
+				.getCompressionThreshold()));
+		this.setMaximumInflatedRequestLength(this.getPositiveNumberInitParameter(
+				Constants.MAXIMUM_INFLATED_REQUEST_LENGTH_INIT_PARAMETER, this.getMaximumInflatedRequestLength()));
+
+		// resolve all service methods now rather than upon their first request.
+		final JavaRpcServiceMethodInvoker invoker = this.getRpcServiceMethodInvoker();
+		final String generatedInvokers = this.getInitParameter(Constants.GENERATED_INVOKERS_INIT_PARAMETER);
+		if (false == Tester.isNullOrEmpty(generatedInvokers)) {
+			invoker.setGeneratedInvokers(Boolean.valueOf(generatedInvokers.trim()).booleanValue());
+		}
+		final ServerSerializationFactory serializationFactory = invoker.getSerializationFactory();
+		serializationFactory.setStreamingThreshold(this.getPositiveNumberInitParameter(Constants.STREAMING_THRESHOLD_INIT_PARAMETER,
+				serializationFactory.getStreamingThreshold()));
+		final int invocationThreads = this.getPositiveNumberInitParameter(Constants.INVOCATION_THREADS_INIT_PARAMETER, 0);
+		if (invocationThreads > 0) {
+			final int queueSize = this.getPositiveNumberInitParameter(Constants.INVOCATION_QUEUE_SIZE_INIT_PARAMETER, invocationThreads);
+			invoker.setInvocationExecutorService(this.createInvocationExecutorService(invocationThreads, queueSize));
+			invoker.setInvocationTimeout(this.getPositiveNumberInitParameter(Constants.INVOCATION_TIMEOUT_INIT_PARAMETER, 0));
+		}
+		final int batchThreads = this.getPositiveNumberInitParameter(Constants.BATCH_THREADS_INIT_PARAMETER, 0);
+		if (batchThreads > 0) {
+			invoker.setBatchExecutorService(this.createBatchExecutorService(batchThreads));
+		}
+
+		this.readConcurrencyLimits(invoker);
+		this.readTypeRestrictions(serializationFactory.getTypeResolver());
+
+		final int responseCacheSize = this.getPositiveNumberInitParameter(Constants.RESPONSE_CACHE_SIZE_INIT_PARAMETER,
+				Constants.RESPONSE_CACHE_SIZE);
+		if (responseCacheSize > 0) {
+			final int responseCacheBytes = this.getPositiveNumberInitParameter(Constants.RESPONSE_CACHE_BYTES_INIT_PARAMETER,
+					Constants.RESPONSE_CACHE_BYTES);
+			invoker.setResponseCache(this.createResponseCache(responseCacheSize, responseCacheBytes));
+		}
+
+		invoker.setMaximumBatchSize(this.getPositiveNumberInitParameter(Constants.MAXIMUM_BATCH_SIZE_INIT_PARAMETER, invoker
+				.getMaximumBatchSize()));
+		invoker.prepare(this);
+	}
+
+	/**
+	 * Reads the default and any per interface concurrency limits.
+	 * 
+	 * @param invoker
+	 * @throws ServletException
+	 */
+	protected void readConcurrencyLimits(final JavaRpcServiceMethodInvoker invoker) throws ServletException {
+		invoker.setMaximumConcurrentInvocations(this.getPositiveNumberInitParameter(
+				Constants.MAXIMUM_CONCURRENT_INVOCATIONS_INIT_PARAMETER, 0));
+		invoker.setConcurrencyLimitWait(this.getPositiveNumberInitParameter(Constants.CONCURRENCY_LIMIT_WAIT_INIT_PARAMETER, 0));
+
+		final String prefix = Constants.MAXIMUM_CONCURRENT_INVOCATIONS_INIT_PARAMETER_PREFIX;
+		final Enumeration names = this.getInitParameterNames();
+		while (names.hasMoreElements()) {
+			final String name = (String) names.nextElement();
+			if (false == name.startsWith(prefix)) {
+				continue;
+			}
+
+			final String interfaceName = name.substring(prefix.length());
+			final Class interfacee = this.getServiceInterface(interfaceName);
+			final int maximum = this.getPositiveNumberInitParameter(name, 0);
+			if (maximum > 0) {
+				invoker.setConcurrencyLimit(interfacee, maximum);
+			}
+		}
+	}
+
+	/**
+	 * Applies the deny lists of the packages holding the service interfaces
+	 * followed by any denied and allowed type patterns.
+	 * 
+	 * @param typeResolver
+	 */
+	protected void readTypeRestrictions(final TypeResolver typeResolver) {
+		final Class[] serviceInterfaces = this.getServiceInterfaces();
+
+		final Set<String> packageNames = new TreeSet<String>();
+		for (int i = 0; i < serviceInterfaces.length; i++) {
+			final String name = serviceInterfaces[i].getName();
+			final int dot = name.lastIndexOf('.');
+			if (-1 != dot) {
+				packageNames.add(name.substring(0, dot));
+			}
+		}
+		typeResolver.denyPackageLists(packageNames.toArray(new String[packageNames.size()]));
+
+		final String denied = this.getInitParameter(Constants.DENIED_TYPES_INIT_PARAMETER);
+		if (false == Tester.isNullOrEmpty(denied)) {
+			final StringTokenizer tokens = new StringTokenizer(denied, Constants.TYPE_PATTERN_SEPARATORS);
+			while (tokens.hasMoreTokens()) {
+				typeResolver.deny(tokens.nextToken());
+			}
+		}
+
+		final String allowed = this.getInitParameter(Constants.ALLOWED_TYPES_INIT_PARAMETER);
+		if (false == Tester.isNullOrEmpty(allowed)) {
+			final StringTokenizer tokens = new StringTokenizer(allowed, Constants.TYPE_PATTERN_SEPARATORS);
+			while (tokens.hasMoreTokens()) {
+				typeResolver.allow(tokens.nextToken());
+			}
+		}
+
+		final String allowServiceInterfaceTypes = this.getInitParameter(Constants.ALLOW_SERVICE_INTERFACE_TYPES_INIT_PARAMETER);
+		if (false == Tester.isNullOrEmpty(allowServiceInterfaceTypes)
+				&& Boolean.valueOf(allowServiceInterfaceTypes.trim()).booleanValue()) {
+			typeResolver.allowInterfaces(serviceInterfaces);
+		}
+	}
+
+	/**
+	 * Returns every {@link JavaRpcService} interface implemented by this
+	 * servlet.
+	 * 
+	 * @return
+	 */
+	protected Class[] getServiceInterfaces() {
+		final List<Class> serviceInterfaces = new ArrayList<Class>();
+
+		Class type = this.getClass();
+		while (null != type) {
+			final Class[] interfaces = type.getInterfaces();
+			for (int i = 0; i < interfaces.length; i++) {
+				final Class interfacee = interfaces[i];
+				if (JavaRpcService.class.isAssignableFrom(interfacee) && false == JavaRpcService.class.equals(interfacee)
+						&& false == serviceInterfaces.contains(interfacee)) {
+					serviceInterfaces.add(interfacee);
+				}
+			}
+			type = type.getSuperclass();
+		}
+
+		return serviceInterfaces.toArray(new Class[serviceInterfaces.size()]);
+	}
+
+	/**
+	 * Finds the named interface amongst those implemented by this servlet.
+	 * 
+	 * @param interfaceName
+	 * @return
+	 * @throws ServletException
+	 *             if this servlet does not implement the interface.
+	 */
+	protected Class getServiceInterface(final String interfaceName) throws ServletException {
+		Class found = null;
+
+		Class type = this.getClass();
+		while (null != type && null == found) {
+			final Class[] interfaces = type.getInterfaces();
+			for (int i = 0; i < interfaces.length; i++) {
+				if (interfaces[i].getName().equals(interfaceName)) {
+					found = interfaces[i];
+					break;
+				}
+			}
+			type = type.getSuperclass();
+		}
+
+		if (null == found) {
+			throw new ServletException("The interface \"" + interfaceName
+					+ "\" named by an init parameter is not implemented by the servlet \"" + this.getServletName() + "\".");
+		}
+		return found;
+	}
+
+	/**
+	 * Factory which creates the cache holding the responses of
+	 * {@link CachedResponse} methods.
+	 * 
+	 * @param maximumSize
+	 * @param maximumBytes
+	 * @return
+	 */
+	protected ResponseCache createResponseCache(final int maximumSize, final long maximumBytes) {
+		return new ResponseCache(maximumSize, maximumBytes);
+	}
+
+	/**
+	 * The response cache which may be inspected for statistics, or null if
+	 * caching is disabled.
+	 * 
+	 * @return
+	 */
+	public ResponseCache getResponseCache() {
+		return this.getRpcServiceMethodInvoker().getResponseCache();
+	}
+
+	/**
+	 * Removes all cached responses belonging to the given interface.
+	 * 
+	 * @param interfacee
+	 */
+	protected void invalidateCachedResponses(final Class interfacee) {
+		final ResponseCache responseCache = this.getResponseCache();
+		if (null != responseCache) {
+			responseCache.invalidate(interfacee);
+		}
+	}
+
+	/**
+	 * Removes all cached responses of the named method belonging to the given
+	 * interface.
+	 * 
+	 * @param interfacee
+	 * @param methodName
+	 */
+	protected void invalidateCachedResponses(final Class interfacee, final String methodName) {
+		final ResponseCache responseCache = this.getResponseCache();
+		if (null != responseCache) {
+			responseCache.invalidate(interfacee, methodName);
+		}
+	}
+
+	/**
+	 * Stops any invocation and batch threads.
+	 */
+	@Override
+	public void destroy() {
+		final JavaRpcServiceMethodInvoker invoker = this.getRpcServiceMethodInvoker();
+		final ExecutorService batchExecutorService = invoker.getBatchExecutorService();
+		if (null != batchExecutorService) {
+			batchExecutorService.shutdownNow();
+		}
+		final ExecutorService executorService = invoker.getInvocationExecutorService();
+		if (null != executorService) {
+			executorService.shutdownNow();
+		}
+		super.destroy();
+	}
+
+	/**
+	 * Factory which creates the bounded executor that runs service methods.
+	 * Tasks submitted when all threads are busy and the queue is full are
+	 * rejected.
+	 * 
+	 * @param threads
+	 * @param queueSize
+	 * @return
+	 */
+	protected ExecutorService createInvocationExecutorService(final int threads, final int queueSize) {
+		final BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<Runnable>(queueSize)
+				: new SynchronousQueue<Runnable>();
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, this.createThreadFactory("-invoker-"));
+	}
+
+	/**
+	 * Factory which creates the executor that runs the invocations of a batch
+	 * in parallel. Its queue is unbounded as the number of invocations waiting
+	 * is already limited by the maximum batch size, while refusing a single
+	 * invocation is left to the invocation executor and concurrency limits.
+	 * 
+	 * @param threads
+	 * @return
+	 */
+	protected ExecutorService createBatchExecutorService(final int threads) {
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), this
+				.createThreadFactory("-batch-"));
+	}
+
+	/**
+	 * Creates a factory of daemon threads named after this servlet.
+	 * 
+	 * @param infix
+	 * @return
+	 */
+	protected ThreadFactory createThreadFactory(final String infix) {
+		final String name = this.getServletName();
+
+		return new ThreadFactory() {
+			int count = 0;
+
+			public synchronized Thread newThread(final Runnable runnable) {
+				this.count++;
+				final Thread thread = new Thread(runnable, name + infix + this.count);
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Convenience method that fetches the named init parameter and then
+	 * converts it into a number, returning the default if the parameter is
+	 * absent.
+	 * 
+	 * @param name
+	 * @param defaultValue
+	 * @return
+	 * @throws ServletException
+	 */
+	protected int getPositiveNumberInitParameter(final String name, final int defaultValue) throws ServletException {
+		int number = defaultValue;
+
+		final String value = this.getInitParameter(name);
+		if (false == Tester.isNullOrEmpty(value)) {
+			try {
+				number = Integer.parseInt(value.trim());
+			} catch (final NumberFormatException badNumber) {
+				number = -1;
+			}
+			if (number < 0) {
+				throw new ServletException("The init parameter \"" + name + "\" with a value of \"" + value
+						+ "\" doesnt contain a positive number, from the servlet \"" + this.getServletName() + "\".");
+			}
+		}
+
+		return number;
+	}
+
 	/**
 	 * Handles GET requests.
 	 */
@@ -69,67 +472,368 @@ public class JavaRpcServiceServlet extends HttpServlet {
 	public void doPost(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
 		try {
 			this.doPost0(request, response);
+		} catch (final RejectedExecutionException busy) {
+			this.reportServiceUnavailable(request, response);
 		} catch (final Throwable caught) {
 			response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, caught.getMessage());
 			response.flushBuffer();
 		}
 	}
 
+	/**
+	 * Refuses a request because all invocation threads are busy.
+	 */
+	protected void reportServiceUnavailable(final HttpServletRequest request, final HttpServletResponse response)
+			throws ServletException, IOException {
+		response.setHeader(Constants.RETRY_AFTER_HEADER, String.valueOf(Constants.RETRY_AFTER_SECONDS));
+		response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+	}
+
 	protected void doPost0(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
-		final String serializedRequest = consumePostData(request);
-		final String output = this.invoke(serializedRequest.toString());
+		if (false == ContentEncoding.isSupported(request.getHeader(Constants.CONTENT_ENCODING_HEADER))) {
+			response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+		} else {
+			if (this.isCompressResponses()) {
+				response.addHeader(Constants.VARY_HEADER, Constants.ACCEPT_ENCODING_HEADER);
+			}
+
+			if (this.isBinaryRequest(request)) {
+				this.doPostBinary(request, response);
+			} else {
+				this.doPostText(request, response);
+			}
+		}
+	}
+
+	/**
+	 * Tests if the request was encoded using the binary serialization format,
+	 * which is selected by sending the
+	 * {@link BinaryServerObjectOutputStream#CONTENT_TYPE} content type.
+	 * 
+	 * @param request
+	 * @return
+	 */
+	protected boolean isBinaryRequest(final HttpServletRequest request) {
+		final String contentType = request.getContentType();
+		return null != contentType && contentType.startsWith(BinaryServerObjectOutputStream.CONTENT_TYPE);
+	}
+
+	protected void doPostBinary(final HttpServletRequest request, final HttpServletResponse response) throws ServletException,
+			IOException {
+		final byte[] serializedRequest = consumeBinaryPostData(request);
 
 		response.setStatus(HttpServletResponse.SC_OK);
-		response.getWriter().print(output);
+		response.setContentType(BinaryServerObjectOutputStream.CONTENT_TYPE);
+
+		final String contentEncoding = this.selectContentEncoding(request);
+		if (null == contentEncoding) {
+			this.invoke(serializedRequest, response.getOutputStream());
+		} else {
+			final OutputStream output = this.createCompressingOutputStream(response, contentEncoding);
+			this.invoke(serializedRequest, output);
+			output.close();
+		}
 		response.flushBuffer();
 	}
 
+	protected void doPostText(final HttpServletRequest request, final HttpServletResponse response) throws ServletException,
+			IOException {
+		final CharSequence serializedRequest = this.isConsumePostDataOverridden() ? this.consumePostData(request) : this
+				.consumePostDataChars(request);
+
+		response.setStatus(HttpServletResponse.SC_OK);
+
+		final String contentEncoding = this.selectContentEncoding(request);
+		if (null == contentEncoding) {
+			this.invokeText(serializedRequest, response.getWriter());
+		} else {
+			final String characterEncoding = response.getCharacterEncoding();
+			final Writer writer = new OutputStreamWriter(this.createCompressingOutputStream(response, contentEncoding),
+					null == characterEncoding ? Constants.DEFAULT_CHARACTER_ENCODING : characterEncoding);
+			this.invokeText(serializedRequest, writer);
+			writer.close();
+		}
+		response.flushBuffer();
+	}
+
+	/**
+	 * Invokes the service method for a text request, going through
+	 * {@link #invoke(String)} if a sub class overrides it.
+	 * 
+	 * @param serializedRequest
+	 * @param writer
+	 * @throws IOException
+	 */
+	protected void invokeText(final CharSequence serializedRequest, final Writer writer) throws IOException {
+		if (this.isInvokeTextOverridden()) {
+			writer.write(this.invoke(serializedRequest.toString()));
+		} else {
+			this.invoke(serializedRequest, writer);
+		}
+	}
+
 	/**
-	 * Helper which consumes all of the post data from the given request and
-	 * returns a string.
+	 * Tests if a sub class declares the given method.
+	 * 
+	 * @param methodName
+	 * @param parameterTypes
+	 * @return
+	 */
+	protected boolean isOverridden(final String methodName, final Class[] parameterTypes) {
+		boolean overridden = false;
+
+		Class type = this.getClass();
+		while (JavaRpcServiceServlet.class != type) {
+			try {
+				type.getDeclaredMethod(methodName, parameterTypes);
+				overridden = true;
+				break;
+			} catch (final NoSuchMethodException notDeclared) {
+				type = type.getSuperclass();
+			}
+		}
+		return overridden;
+	}
+
+	/**
+	 * When true a sub class overrides {@link #consumePostData(HttpServletRequest)}
+	 * which is then used to read text requests.
+	 */
+	private boolean consumePostDataOverridden;
+
+	protected boolean isConsumePostDataOverridden() {
+		return this.consumePostDataOverridden;
+	}
+
+	protected void setConsumePostDataOverridden(final boolean consumePostDataOverridden) {
+		this.consumePostDataOverridden = consumePostDataOverridden;
+	}
+
+	/**
+	 * When true a sub class overrides {@link #invoke(String)} which is then
+	 * used to invoke text requests, building the response as a String.
+	 */
+	private boolean invokeTextOverridden;
+
+	protected boolean isInvokeTextOverridden() {
+		return this.invokeTextOverridden;
+	}
+
+	protected void setInvokeTextOverridden(final boolean invokeTextOverridden) {
+		this.invokeTextOverridden = invokeTextOverridden;
+	}
+
+	/**
+	 * Selects the encoding used to compress the response.
+	 * 
+	 * @param request
+	 * @return {@link ContentEncoding#GZIP}, {@link ContentEncoding#DEFLATE} or
+	 *         null if the response should not be compressed.
+	 */
+	protected String selectContentEncoding(final HttpServletRequest request) {
+		return this.isCompressResponses() ? ContentEncoding.select(request.getHeader(Constants.ACCEPT_ENCODING_HEADER)) : null;
+	}
+
+	/**
+	 * Creates a stream that compresses everything written once the
+	 * {@link #compressionThreshold} is exceeded, adding the Content-Encoding
+	 * header at that moment. Closing the stream does not close the response.
+	 * 
+	 * @param response
+	 * @param contentEncoding
+	 * @return
+	 * @throws IOException
+	 */
+	protected OutputStream createCompressingOutputStream(final HttpServletResponse response, final String contentEncoding)
+			throws IOException {
+		return new CompressingOutputStream(response.getOutputStream(), contentEncoding, this.getCompressionThreshold()) {
+			protected void compressing(final String contentEncoding) {
+				response.setHeader(Constants.CONTENT_ENCODING_HEADER, contentEncoding);
+			}
+		};
+	}
+
+	/**
+	 * Helper which consumes all of the post data from the given request. The
+	 * characters are read straight into a single array which is presized
+	 * using the Content-Length, as the request never holds more characters
+	 * than bytes. The array is returned wrapped rather than copied into a
+	 * String.
 	 * 
 	 * @param request
-	 * @return The posted data as a String
+	 * @return The posted data
 	 * @throws IOException
 	 */
-	protected String consumePostData(final HttpServletRequest request) throws IOException {
+	protected CharSequence consumePostDataChars(final HttpServletRequest request) throws IOException {
 		Checker.notNull("parameter:request", request);
 
-		final StringBuffer buf = new StringBuffer();
-		final char[] chars = new char[1024];
-		BufferedReader reader = null;
+		Reader reader = null;
 
 		try {
-			reader = request.getReader();
+			final String contentEncoding = request.getHeader(Constants.CONTENT_ENCODING_HEADER);
+			final boolean identity = ContentEncoding.isIdentity(contentEncoding);
+			int maximumLength = Integer.MAX_VALUE;
+			if (identity) {
+				reader = request.getReader();
+			} else {
+				final String characterEncoding = request.getCharacterEncoding();
+				reader = new InputStreamReader(ContentEncoding.decode(contentEncoding, request.getInputStream()),
+						null == characterEncoding ? Constants.DEFAULT_CHARACTER_ENCODING : characterEncoding);
+				maximumLength = this.getMaximumInflatedRequestLength();
+			}
+
+			final int contentLength = request.getContentLength();
+			char[] chars = new char[identity && contentLength > 0 ? Math.min(contentLength, Constants.MAXIMUM_PRESIZED_REQUEST_LENGTH)
+					: Constants.REQUEST_BUFFER_SIZE];
+			int count = 0;
 
 			while (true) {
-				final int readCount = reader.read(chars);
+				// buffer is full, check for the end before growing...
+				if (count == chars.length) {
+					final int c = reader.read();
+					if (-1 == c) {
+						break;
+					}
+					final char[] grown = new char[chars.length * 2];
+					System.arraycopy(chars, 0, grown, 0, count);
+					chars = grown;
+					chars[count] = (char) c;
+					count++;
+				}
+
+				final int readCount = reader.read(chars, count, chars.length - count);
 				if (-1 == readCount) {
 					break;
 				}
-				buf.append(chars, 0, readCount);
+				count = count + readCount;
+				if (count > maximumLength) {
+					this.throwInflatedRequestTooLong();
+				}
 			}
 
-			return buf.toString();
+			return CharBuffer.wrap(chars, 0, count);
 		} finally {
 			InputOutput.closeIfNecessary(reader);
 		}
+	}
+
+	/**
+	 * Helper which consumes all of the post data from the given request as a
+	 * String. Sub classes that override this method are still called, but the
+	 * request is then copied into a String.
+	 * 
+	 * @param request
+	 * @return The posted data
+	 * @throws IOException
+	 * @deprecated Override {@link #consumePostDataChars(HttpServletRequest)}
+	 *             instead, which does not copy the request.
+	 */
+	@Deprecated
+	protected String consumePostData(final HttpServletRequest request) throws IOException {
+		return this.consumePostDataChars(request).toString();
+	}
+
+	/**
+	 * Helper which consumes all of the binary post data from the given request.
+	 * 
+	 * @param request
+	 * @return The posted data
+	 * @throws IOException
+	 */
+	protected byte[] consumeBinaryPostData(final HttpServletRequest request) throws IOException {
+		Checker.notNull("parameter:request", request);
+
+		final String contentEncoding = request.getHeader(Constants.CONTENT_ENCODING_HEADER);
+		final boolean identity = ContentEncoding.isIdentity(contentEncoding);
+		final int maximumLength = identity ? Integer.MAX_VALUE : this.getMaximumInflatedRequestLength();
+
+		final int contentLength = request.getContentLength();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(identity && contentLength > 0 ? Math.min(contentLength,
+				Constants.MAXIMUM_PRESIZED_REQUEST_LENGTH) : 1024);
+		final byte[] buffer = new byte[1024];
+		InputStream input = null;
 
+		try {
+			input = ContentEncoding.decode(contentEncoding, request.getInputStream());
+
+			while (true) {
+				final int readCount = input.read(buffer);
+				if (-1 == readCount) {
+					break;
+				}
+				bytes.write(buffer, 0, readCount);
+				if (bytes.size() > maximumLength) {
+					this.throwInflatedRequestTooLong();
+				}
+			}
+
+			return bytes.toByteArray();
+		} finally {
+			InputOutput.closeIfNecessary(input);
+		}
+	}
+
+	protected void throwInflatedRequestTooLong() throws IOException {
+		throw new IOException("The decompressed request is longer than " + this.getMaximumInflatedRequestLength() + " bytes.");
 	}
 
 	/**
 	 * Invokes the service method taking care of both deserializing and
-	 * serializing of objects.
+	 * serializing of objects. Sub classes that override this method are still
+	 * called for text requests, but the response is then built as a String
+	 * rather than written to the response as it is serialized.
 	 * 
 	 * @param stream
 	 * @return
+	 * @deprecated Override {@link #invoke(CharSequence, Writer)} instead.
 	 */
+	@Deprecated
 	protected String invoke(final String stream) {
-		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		final JavaRpcServiceMethodInvoker invoker = this.getRpcServiceMethodInvoker();
 		final String output = invoker.invoke(stream, this);
 		return output;
 	}
 
+	/**
+	 * Invokes the service method writing the serialized result directly to the
+	 * given writer.
+	 * 
+	 * @param stream
+	 * @param writer
+	 * @throws IOException
+	 */
+	protected void invoke(final CharSequence stream, final Writer writer) throws IOException {
+		final JavaRpcServiceMethodInvoker invoker = this.getRpcServiceMethodInvoker();
+		invoker.invoke(stream, this, writer);
+	}
+
+	/**
+	 * Invokes the service method reading and writing the binary serialization
+	 * format.
+	 * 
+	 * @param stream
+	 * @param output
+	 * @throws IOException
+	 */
+	protected void invoke(final byte[] stream, final OutputStream output) throws IOException {
+		final JavaRpcServiceMethodInvoker invoker = this.getRpcServiceMethodInvoker();
+		invoker.invoke(stream, this, output);
+	}
+
+	/**
+	 * The invoker shared by all requests. Invokers are threadsafe and hold the
+	 * serialization factory, which means readers and writers are resolved once
+	 * rather than once per request.
+	 */
+	private JavaRpcServiceMethodInvoker rpcServiceMethodInvoker;
+
+	protected synchronized JavaRpcServiceMethodInvoker getRpcServiceMethodInvoker() {
+		if (null == this.rpcServiceMethodInvoker) {
+			this.rpcServiceMethodInvoker = this.createRpcServiceMethodInvoker();
+		}
+		return this.rpcServiceMethodInvoker;
+	}
+
 	/**
 	 * Factory method which creates a {@link JavaRpcServiceMethodInvoker}
 	 * 
@@ -138,4 +842,47 @@ public class JavaRpcServiceServlet extends HttpServlet {
 	protected JavaRpcServiceMethodInvoker createRpcServiceMethodInvoker() {
 		return new JavaRpcServiceMethodInvoker();
 	}
+
+	/**
+	 * When true responses are compressed if the client accepts gzip or
+	 * deflate.
+	 */
+	private boolean compressResponses = true;
+
+	public boolean isCompressResponses() {
+		return this.compressResponses;
+	}
+
+	public void setCompressResponses(final boolean compressResponses) {
+		this.compressResponses = compressResponses;
+	}
+
+	/**
+	 * Responses that are this many bytes or shorter are never compressed.
+	 */
+	private int compressionThreshold = Constants.COMPRESSION_THRESHOLD;
+
+	public int getCompressionThreshold() {
+		return this.compressionThreshold;
+	}
+
+	public void setCompressionThreshold(final int compressionThreshold) {
+		Checker.greaterThanOrEqual("parameter:compressionThreshold", 0, compressionThreshold);
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	/**
+	 * Compressed requests that decompress to more than this many bytes are
+	 * rejected, guarding against a small request that inflates enormously.
+	 */
+	private int maximumInflatedRequestLength = Constants.MAXIMUM_INFLATED_REQUEST_LENGTH;
+
+	public int getMaximumInflatedRequestLength() {
+		return this.maximumInflatedRequestLength;
+	}
+
+	public void setMaximumInflatedRequestLength(final int maximumInflatedRequestLength) {
+		Checker.greaterThan("parameter:maximumInflatedRequestLength", 0, maximumInflatedRequestLength);
+		this.maximumInflatedRequestLength = maximumInflatedRequestLength;
+	}
 }
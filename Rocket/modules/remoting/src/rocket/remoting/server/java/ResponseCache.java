@@ -0,0 +1,323 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.server.java;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import rocket.util.client.Checker;
+
+/**
+ * A bounded cache of serialized responses. Entries expire once their time to
+ * live passes, and least recently used entries are evicted whenever either
+ * the number of entries or the number of bytes held by keys and responses
+ * exceeds its limit. A response that alone exceeds the byte limit is never
+ * cached.
+ * 
+ * Keys are built by {@link JavaRpcServiceMethodInvoker} from the interface,
+ * method and a digest of the request, which means their size does not depend
+ * upon the size of the request.
+ * 
+ * Each interface has a generation which advances whenever its responses are
+ * invalidated. The invoker reads the generation before executing a method and
+ * passes it to {@link #put(String, String, Class, String, long, long)}, which
+ * drops the response if an invalidation happened in the meantime, rather than
+ * serving a stale response for its entire time to live.
+ * 
+ * Counts of hits, misses, evictions and expirations are kept so the
+ * effectiveness of the cache may be monitored.
+ * 
+ * Instances are threadsafe.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class ResponseCache {
+
+	public ResponseCache(final int maximumSize, final long maximumBytes) {
+		super();
+
+		Checker.greaterThan("parameter:maximumSize", 0, maximumSize);
+		Checker.greaterThan("parameter:maximumBytes", 0, maximumBytes);
+
+		this.maximumSize = maximumSize;
+		this.maximumBytes = maximumBytes;
+		this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+	}
+
+	/**
+	 * Fetches the response for the given key if one is cached and has not
+	 * expired.
+	 * 
+	 * @param key
+	 * @return The response or null
+	 */
+	public synchronized String get(final String key) {
+		String response = null;
+
+		final CacheEntry entry = this.entries.get(key);
+		if (null == entry) {
+			this.misses++;
+		} else {
+			if (entry.expires <= this.currentTime()) {
+				this.remove(key);
+				this.expirations++;
+				this.misses++;
+			} else {
+				response = entry.response;
+				this.hits++;
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Adds a response, evicting the least recently used responses until both
+	 * limits are satisfied.
+	 * 
+	 * @param key
+	 * @param response
+	 * @param interfacee
+	 * @param methodName
+	 * @param timeToLive
+	 */
+	public synchronized void put(final String key, final String response, final Class interfacee, final String methodName,
+			final long timeToLive) {
+		this.put(key, response, interfacee, methodName, timeToLive, this.getGeneration(interfacee));
+	}
+
+	/**
+	 * Adds a response produced while the interface was at the given
+	 * generation. The response is dropped if the interface has since been
+	 * invalidated.
+	 * 
+	 * @param key
+	 * @param response
+	 * @param interfacee
+	 * @param methodName
+	 * @param timeToLive
+	 * @param generation
+	 *            The value of {@link #getGeneration(Class)} read before the
+	 *            method executed.
+	 */
+	public synchronized void put(final String key, final String response, final Class interfacee, final String methodName,
+			final long timeToLive, final long generation) {
+		Checker.notNull("parameter:key", key);
+		Checker.notNull("parameter:response", response);
+		Checker.notNull("parameter:interface", interfacee);
+		Checker.notEmpty("parameter:methodName", methodName);
+		Checker.greaterThan("parameter:timeToLive", 0, timeToLive);
+
+		final long bytes = this.getBytes(key, response);
+		if (bytes <= this.maximumBytes && generation == this.getGeneration(interfacee)) {
+			this.remove(key);
+			this.entries.put(key, new CacheEntry(response, interfacee, methodName, this.currentTime() + timeToLive, bytes));
+			this.bytes = this.bytes + bytes;
+
+			final Iterator<CacheEntry> eldest = this.entries.values().iterator();
+			while (this.entries.size() > this.maximumSize || this.bytes > this.maximumBytes) {
+				this.bytes = this.bytes - eldest.next().bytes;
+				eldest.remove();
+				this.evictions++;
+			}
+		}
+	}
+
+	/**
+	 * The number of bytes occupied by the characters of an entry.
+	 */
+	protected long getBytes(final String key, final String response) {
+		return 2L * (key.length() + response.length());
+	}
+
+	protected void remove(final String key) {
+		final CacheEntry removed = this.entries.remove(key);
+		if (null != removed) {
+			this.bytes = this.bytes - removed.bytes;
+		}
+	}
+
+	/**
+	 * Removes all responses belonging to the given interface.
+	 * 
+	 * @param interfacee
+	 */
+	public synchronized void invalidate(final Class interfacee) {
+		Checker.notNull("parameter:interface", interfacee);
+		this.advanceGeneration(interfacee);
+
+		final Iterator<CacheEntry> iterator = this.entries.values().iterator();
+		while (iterator.hasNext()) {
+			final CacheEntry entry = iterator.next();
+			if (entry.interfacee == interfacee) {
+				this.bytes = this.bytes - entry.bytes;
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes all responses of any method with the given name belonging to
+	 * the given interface.
+	 * 
+	 * @param interfacee
+	 * @param methodName
+	 */
+	public synchronized void invalidate(final Class interfacee, final String methodName) {
+		Checker.notNull("parameter:interface", interfacee);
+		Checker.notEmpty("parameter:methodName", methodName);
+		this.advanceGeneration(interfacee);
+
+		final Iterator<CacheEntry> iterator = this.entries.values().iterator();
+		while (iterator.hasNext()) {
+			final CacheEntry entry = iterator.next();
+			if (entry.interfacee == interfacee && entry.methodName.equals(methodName)) {
+				this.bytes = this.bytes - entry.bytes;
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes every response.
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+		this.bytes = 0;
+		this.clears++;
+	}
+
+	/**
+	 * Returns a value that changes whenever responses of the given interface
+	 * are invalidated or the cache is cleared.
+	 * 
+	 * @param interfacee
+	 * @return
+	 */
+	public synchronized long getGeneration(final Class interfacee) {
+		final Long generation = this.generations.get(interfacee);
+		return this.clears + (null == generation ? 0 : generation.longValue());
+	}
+
+	protected void advanceGeneration(final Class interfacee) {
+		final Long generation = this.generations.get(interfacee);
+		this.generations.put(interfacee, new Long(null == generation ? 1 : generation.longValue() + 1));
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+
+	public int getMaximumSize() {
+		return this.maximumSize;
+	}
+
+	public long getMaximumBytes() {
+		return this.maximumBytes;
+	}
+
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	public synchronized long getExpirations() {
+		return this.expirations;
+	}
+
+	/**
+	 * Sub classes may override this to control the passage of time.
+	 * 
+	 * @return
+	 */
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+
+	private final int maximumSize;
+
+	private final long maximumBytes;
+
+	/**
+	 * Entries in least recently used order.
+	 */
+	private final LinkedHashMap<String, CacheEntry> entries;
+
+	/**
+	 * The total bytes of all entries.
+	 */
+	private long bytes;
+
+	/**
+	 * The number of invalidations of each interface.
+	 */
+	private final Map<Class, Long> generations = new HashMap<Class, Long>();
+
+	/**
+	 * The number of times the entire cache was cleared.
+	 */
+	private long clears;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	private long expirations;
+
+	/**
+	 * A single cached response.
+	 */
+	static class CacheEntry {
+		CacheEntry(final String response, final Class interfacee, final String methodName, final long expires, final long bytes) {
+			super();
+
+			this.response = response;
+			this.interfacee = interfacee;
+			this.methodName = methodName;
+			this.expires = expires;
+			this.bytes = bytes;
+		}
+
+		final String response;
+
+		final Class interfacee;
+
+		final String methodName;
+
+		final long expires;
+
+		final long bytes;
+	}
+
+	public synchronized String toString() {
+		return super.toString() + ", maximumSize: " + maximumSize + ", maximumBytes: " + maximumBytes + ", bytes: " + bytes
+				+ ", hits: " + hits + ", misses: " + misses + ", evictions: " + evictions + ", expirations: " + expirations;
+	}
+}
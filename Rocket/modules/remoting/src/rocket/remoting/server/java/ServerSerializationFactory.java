@@ -15,15 +15,26 @@
  */
 package rocket.remoting.server.java;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import rocket.serialization.client.ObjectInputStream;
 import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.BinaryServerObjectInputStream;
+import rocket.serialization.server.BinaryServerObjectOutputStream;
+import rocket.serialization.server.ObjectReaderRegistry;
+import rocket.serialization.server.ObjectWriterRegistry;
+import rocket.serialization.server.SerializationListener;
+import rocket.serialization.server.SerializationStatistics;
 import rocket.serialization.server.ServerObjectInputStream;
 import rocket.serialization.server.ServerObjectOutputStream;
 import rocket.serialization.server.ServerObjectReader;
 import rocket.serialization.server.ServerObjectWriter;
+import rocket.serialization.server.StreamingServerObjectOutputStream;
+import rocket.serialization.server.StringDictionary;
+import rocket.serialization.server.TypeResolver;
 import rocket.serialization.server.reader.BooleanArrayReader;
 import rocket.serialization.server.reader.BooleanReader;
 import rocket.serialization.server.reader.ByteArrayReader;
@@ -73,6 +84,7 @@ import rocket.serialization.server.writer.ShortWriter;
 import rocket.serialization.server.writer.ThrowableWriter;
 import rocket.serialization.server.writer.TreeMapWriter;
 import rocket.serialization.server.writer.TreeSetWriter;
+import rocket.util.client.Checker;
 
 /**
  * Factory method which provides the capability to customise how incoming and
@@ -97,12 +109,108 @@ public class ServerSerializationFactory {
 	 * @param stream
 	 * @return
 	 */
-	public ObjectInputStream createObjectInputStream(final String stream) {
+	public ObjectInputStream createObjectInputStream(final CharSequence stream) {
 		final ServerObjectInputStream inputStream = new ServerObjectInputStream(stream);
-		inputStream.setObjectReaders(this.createObjectReaders());
+		inputStream.setObjectReaderRegistry(this.getObjectReaderRegistry());
+		inputStream.setSerializationListener(this.getSerializationListener());
+		inputStream.setIterative(this.isIterative());
 		return inputStream;
 	}
 
+	/**
+	 * Factory method which creates an ObjectInputStream which reads the binary
+	 * format written by a {@link BinaryServerObjectOutputStream}.
+	 * 
+	 * @param bytes
+	 * @return
+	 */
+	public ObjectInputStream createBinaryObjectInputStream(final byte[] bytes) {
+		final BinaryServerObjectInputStream inputStream = new BinaryServerObjectInputStream(bytes);
+		inputStream.setObjectReaderRegistry(this.getObjectReaderRegistry());
+		inputStream.setStringDictionary(this.getStringDictionary());
+		inputStream.setSerializationListener(this.getSerializationListener());
+		inputStream.setIterative(this.isIterative());
+		inputStream.setVersioned(this.isVersionedFields());
+		return inputStream;
+	}
+
+	/**
+	 * Returns an input stream ready to read the given stream, reusing an idle
+	 * pooled stream when one is available. Streams returned by this method
+	 * should be given back via
+	 * {@link #releaseObjectInputStream(ObjectInputStream)}.
+	 * 
+	 * @param stream
+	 * @return
+	 */
+	public ObjectInputStream acquireObjectInputStream(final CharSequence stream) {
+		final StreamPool pool = this.getInputStreamPool();
+		ServerObjectInputStream inputStream = (ServerObjectInputStream) pool.acquire();
+		if (null == inputStream) {
+			inputStream = (ServerObjectInputStream) this.createObjectInputStream(stream);
+		} else {
+			inputStream.reset(stream);
+		}
+		return inputStream;
+	}
+
+	/**
+	 * Returns a stream previously acquired via
+	 * {@link #acquireObjectInputStream(CharSequence)}.
+	 * 
+	 * @param inputStream
+	 */
+	public void releaseObjectInputStream(final ObjectInputStream inputStream) {
+		((ServerObjectInputStream) inputStream).reset();
+		this.getInputStreamPool().release(inputStream);
+	}
+
+	private StreamPool inputStreamPool = new StreamPool();
+
+	StreamPool getInputStreamPool() {
+		return this.inputStreamPool;
+	}
+
+	/**
+	 * The registry shared by all input streams created by this factory. It is
+	 * built from {@link #createObjectReaders()} upon first use.
+	 */
+	private ObjectReaderRegistry objectReaderRegistry;
+
+	protected synchronized ObjectReaderRegistry getObjectReaderRegistry() {
+		if (null == this.objectReaderRegistry) {
+			this.objectReaderRegistry = this.createObjectReaderRegistry();
+		}
+		return this.objectReaderRegistry;
+	}
+
+	protected ObjectReaderRegistry createObjectReaderRegistry() {
+		return new ObjectReaderRegistry(this.createObjectReaders(), this.getTypeResolver());
+	}
+
+	/**
+	 * The resolver shared by the readers of this factory and the invoker that
+	 * resolves service interfaces and parameter types. Allow and deny lists
+	 * should be added before the first request is served.
+	 */
+	private TypeResolver typeResolver;
+
+	public synchronized TypeResolver getTypeResolver() {
+		if (null == this.typeResolver) {
+			this.typeResolver = this.createTypeResolver();
+		}
+		return this.typeResolver;
+	}
+
+	public synchronized void setTypeResolver(final TypeResolver typeResolver) {
+		Checker.notNull("parameter:typeResolver", typeResolver);
+		this.typeResolver = typeResolver;
+	}
+
+	protected TypeResolver createTypeResolver() {
+		return new TypeResolver();
+	}
+
 	/**
 	 * Factory method which creates a list containing all ObjectReaders.
 	 * 
@@ -192,10 +300,130 @@ public class ServerSerializationFactory {
 	 */
 	public ObjectOutputStream createObjectOutputStream() {
 		final ServerObjectOutputStream outputStream = new ServerObjectOutputStream();
-		outputStream.setObjectWriters(this.createObjectWriters());
+		outputStream.setObjectWriterRegistry(this.getObjectWriterRegistry());
+		outputStream.setParallelExecutor(this.getParallelExecutor());
+		outputStream.setSerializationListener(this.getSerializationListener());
+		outputStream.setIterative(this.isIterative());
+		return outputStream;
+	}
+
+	/**
+	 * Factory method which creates a ObjectOutputStream which writes the
+	 * compact binary format directly to the given output. The stream must be
+	 * flushed once all objects have been written.
+	 * 
+	 * @param output
+	 * @return
+	 */
+	public BinaryServerObjectOutputStream createBinaryObjectOutputStream(final OutputStream output) {
+		final BinaryServerObjectOutputStream outputStream = new BinaryServerObjectOutputStream(output);
+		outputStream.setObjectWriterRegistry(this.getObjectWriterRegistry());
+		outputStream.setStringDictionary(this.getStringDictionary());
+		outputStream.setSerializationListener(this.getSerializationListener());
+		outputStream.setIterative(this.isIterative());
+		outputStream.setVersioned(this.isVersionedFields());
+		return outputStream;
+	}
+
+	/**
+	 * Returns an output stream reusing an idle pooled stream when one is
+	 * available. Streams returned by this method should be given back via
+	 * {@link #releaseObjectOutputStream(ObjectOutputStream)}.
+	 * 
+	 * @return
+	 */
+	public ObjectOutputStream acquireObjectOutputStream() {
+		final StreamPool pool = this.getOutputStreamPool();
+		ObjectOutputStream outputStream = (ObjectOutputStream) pool.acquire();
+		if (null == outputStream) {
+			outputStream = this.createObjectOutputStream();
+		}
+		return outputStream;
+	}
+
+	/**
+	 * Returns a stream previously acquired via
+	 * {@link #acquireObjectOutputStream()}.
+	 * 
+	 * @param outputStream
+	 */
+	public void releaseObjectOutputStream(final ObjectOutputStream outputStream) {
+		((ServerObjectOutputStream) outputStream).reset();
+		this.getOutputStreamPool().release(outputStream);
+	}
+
+	private StreamPool outputStreamPool = new StreamPool();
+
+	StreamPool getOutputStreamPool() {
+		return this.outputStreamPool;
+	}
+
+	/**
+	 * Factory method which creates a {@link StreamingServerObjectOutputStream}
+	 * which writes directly to a Writer rather than building a String.
+	 * 
+	 * @return
+	 */
+	public StreamingServerObjectOutputStream createStreamingObjectOutputStream() {
+		final StreamingServerObjectOutputStream outputStream = new StreamingServerObjectOutputStream();
+		outputStream.setObjectWriterRegistry(this.getObjectWriterRegistry());
+		outputStream.setParallelExecutor(this.getParallelExecutor());
+		outputStream.setSerializationListener(this.getSerializationListener());
+		outputStream.setIterative(this.isIterative());
+		outputStream.setStreamingThreshold(this.getStreamingThreshold());
+		return outputStream;
+	}
+
+	/**
+	 * Returns a streaming output stream reusing an idle pooled stream when one
+	 * is available. Streams returned by this method should be given back via
+	 * {@link #releaseStreamingObjectOutputStream(StreamingServerObjectOutputStream)}.
+	 * 
+	 * @return
+	 */
+	public StreamingServerObjectOutputStream acquireStreamingObjectOutputStream() {
+		final StreamPool pool = this.getStreamingOutputStreamPool();
+		StreamingServerObjectOutputStream outputStream = (StreamingServerObjectOutputStream) pool.acquire();
+		if (null == outputStream) {
+			outputStream = this.createStreamingObjectOutputStream();
+		}
 		return outputStream;
 	}
 
+	/**
+	 * Returns a stream previously acquired via
+	 * {@link #acquireStreamingObjectOutputStream()}.
+	 * 
+	 * @param outputStream
+	 */
+	public void releaseStreamingObjectOutputStream(final StreamingServerObjectOutputStream outputStream) {
+		outputStream.reset();
+		this.getStreamingOutputStreamPool().release(outputStream);
+	}
+
+	private StreamPool streamingOutputStreamPool = new StreamPool();
+
+	StreamPool getStreamingOutputStreamPool() {
+		return this.streamingOutputStreamPool;
+	}
+
+	/**
+	 * The registry shared by all output streams created by this factory. It is
+	 * built from {@link #createObjectWriters()} upon first use.
+	 */
+	private ObjectWriterRegistry objectWriterRegistry;
+
+	protected synchronized ObjectWriterRegistry getObjectWriterRegistry() {
+		if (null == this.objectWriterRegistry) {
+			this.objectWriterRegistry = this.createObjectWriterRegistry();
+		}
+		return this.objectWriterRegistry;
+	}
+
+	protected ObjectWriterRegistry createObjectWriterRegistry() {
+		return new ObjectWriterRegistry(this.createObjectWriters());
+	}
+
 	/**
 	 * Factory method which creates a list containing all ObjectWriters.
 	 * 
@@ -276,4 +504,98 @@ public class ServerSerializationFactory {
 		writers.add(DoubleArrayWriter.instance);
 		writers.add(CharArrayWriter.instance);
 	}
+
+	/**
+	 * An optional dictionary of well known strings shared with binary peers,
+	 * typically built using {@link StringDictionary#forInterfaces(Class[])}.
+	 * Browser clients do not know the dictionary so it is never applied to the
+	 * text streams.
+	 */
+	private StringDictionary stringDictionary;
+
+	public StringDictionary getStringDictionary() {
+		return this.stringDictionary;
+	}
+
+	public void setStringDictionary(final StringDictionary stringDictionary) {
+		this.stringDictionary = stringDictionary;
+	}
+
+	/**
+	 * When set large lists and maps within responses are written in parallel
+	 * using this executor. The default of null writes everything on the
+	 * request thread.
+	 */
+	private ExecutorService parallelExecutor;
+
+	public ExecutorService getParallelExecutor() {
+		return this.parallelExecutor;
+	}
+
+	public void setParallelExecutor(final ExecutorService parallelExecutor) {
+		this.parallelExecutor = parallelExecutor;
+	}
+
+	/**
+	 * An optional listener given to every stream this factory creates, such
+	 * as a {@link SerializationStatistics} registered with JMX. The default of
+	 * null means streams do no measuring at all. The listener must be set
+	 * before any streams are created and pooled.
+	 */
+	private SerializationListener serializationListener;
+
+	public SerializationListener getSerializationListener() {
+		return this.serializationListener;
+	}
+
+	public void setSerializationListener(final SerializationListener serializationListener) {
+		this.serializationListener = serializationListener;
+	}
+
+	/**
+	 * Responses whose values exceed this many chars are written by streaming
+	 * output streams in two passes, rather than being buffered in full. By
+	 * default every response is buffered.
+	 */
+	private int streamingThreshold = Integer.MAX_VALUE;
+
+	public int getStreamingThreshold() {
+		return this.streamingThreshold;
+	}
+
+	public void setStreamingThreshold(final int streamingThreshold) {
+		Checker.greaterThanOrEqual("parameter:streamingThreshold", 0, streamingThreshold);
+		this.streamingThreshold = streamingThreshold;
+	}
+
+	/**
+	 * When true all streams walk nested reflectively serialized objects using
+	 * an explicit stack, allowing deep graphs such as long linked lists to be
+	 * serialized without a large thread stack. The format is unchanged.
+	 */
+	private boolean iterative;
+
+	public boolean isIterative() {
+		return this.iterative;
+	}
+
+	public void setIterative(final boolean iterative) {
+		this.iterative = iterative;
+	}
+
+	/**
+	 * When true binary streams write and expect the field layout of each
+	 * reflectively serialized type, so binary peers whose classes have gained
+	 * or lost fields may continue to exchange objects. Browser clients do not
+	 * understand layouts so it is never applied to the text streams.
+	 */
+	private boolean versionedFields;
+
+	public boolean isVersionedFields() {
+		return this.versionedFields;
+	}
+
+	public void setVersionedFields(final boolean versionedFields) {
+		this.versionedFields = versionedFields;
+	}
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.server.java;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import rocket.util.client.Checker;
+
+/**
+ * A resolved service method ready to be invoked upon any instance of a
+ * particular service provider class. Instances are built once by
+ * {@link JavaRpcServiceMethodInvoker} and cached in its dispatch table, which
+ * means no class or method lookups happen when a request is handled.
+ * 
+ * This implementation invokes the method using reflection, sub classes may
+ * use a faster mechanism.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class ServiceMethod {
+
+	public ServiceMethod(final Class serviceProviderType, final Method method) {
+		super();
+
+		this.setServiceProviderType(serviceProviderType);
+		this.setMethod(method);
+		this.setTimeToLive(this.findTimeToLive(serviceProviderType, method));
+
+		// skip the access checks performed by each Method.invoke
+		method.setAccessible(true);
+	}
+
+	/**
+	 * Invokes this method upon the given provider.
+	 * 
+	 * @param serviceProvider
+	 * @param parameters
+	 * @return The value returned by the method
+	 * @throws InvocationTargetException
+	 *             wraps any exception thrown by the method itself.
+	 * @throws IllegalAccessException
+	 */
+	public Object invoke(final Object serviceProvider, final Object[] parameters) throws InvocationTargetException,
+			IllegalAccessException {
+		return this.getMethod().invoke(serviceProvider, parameters);
+	}
+
+	/**
+	 * Looks for a {@link CachedResponse} upon the provider's implementation of
+	 * the method and then the interface method itself.
+	 * 
+	 * @param serviceProviderType
+	 * @param method
+	 * @return The time to live or zero if responses are not cached.
+	 */
+	protected long findTimeToLive(final Class serviceProviderType, final Method method) {
+		CachedResponse cachedResponse = null;
+		try {
+			final Method implementation = serviceProviderType.getMethod(method.getName(), method.getParameterTypes());
+			cachedResponse = implementation.getAnnotation(CachedResponse.class);
+		} catch (final NoSuchMethodException notPublic) {
+			// ignore and check the interface method
+		}
+		if (null == cachedResponse) {
+			cachedResponse = method.getAnnotation(CachedResponse.class);
+		}
+		return null == cachedResponse ? 0 : cachedResponse.timeToLive();
+	}
+
+	/**
+	 * Tests if the given exception is one of those declared by this method,
+	 * in which case it is returned to the client as is.
+	 * 
+	 * @param throwable
+	 * @return
+	 */
+	public boolean isDeclaredException(final Throwable throwable) {
+		final Class type = throwable.getClass();
+		final Class[] exceptionTypes = this.getExceptionTypes();
+
+		boolean declared = false;
+		for (int i = 0; i < exceptionTypes.length; i++) {
+			if (type.equals(exceptionTypes[i])) {
+				declared = true;
+				break;
+			}
+		}
+		return declared;
+	}
+
+	/**
+	 * The class of the service provider this method was resolved for.
+	 */
+	private Class serviceProviderType;
+
+	public Class getServiceProviderType() {
+		Checker.notNull("field:serviceProviderType", serviceProviderType);
+		return this.serviceProviderType;
+	}
+
+	protected void setServiceProviderType(final Class serviceProviderType) {
+		Checker.notNull("parameter:serviceProviderType", serviceProviderType);
+		this.serviceProviderType = serviceProviderType;
+	}
+
+	/**
+	 * The interface method.
+	 */
+	private Method method;
+
+	public Method getMethod() {
+		Checker.notNull("field:method", method);
+		return this.method;
+	}
+
+	protected void setMethod(final Method method) {
+		Checker.notNull("parameter:method", method);
+		this.method = method;
+		this.exceptionTypes = method.getExceptionTypes();
+
+		final Class[] parameterTypes = method.getParameterTypes();
+		this.parameterCount = parameterTypes.length;
+
+		final StringBuilder signature = new StringBuilder();
+		signature.append(method.getName());
+		signature.append('(');
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0) {
+				signature.append(',');
+			}
+			signature.append(parameterTypes[i].getName());
+		}
+		signature.append(')');
+		this.signature = signature.toString();
+	}
+
+	/**
+	 * The number of parameters taken by the method.
+	 */
+	private int parameterCount;
+
+	public int getParameterCount() {
+		return this.parameterCount;
+	}
+
+	/**
+	 * The method name followed by its parameter types,
+	 * name(type1,type2...)
+	 */
+	private String signature;
+
+	public String getSignature() {
+		return this.signature;
+	}
+
+	/**
+	 * A copy of the exceptions declared by the method, taken once as
+	 * {@link Method#getExceptionTypes()} copies its array each time.
+	 */
+	private Class[] exceptionTypes;
+
+	protected Class[] getExceptionTypes() {
+		return this.exceptionTypes;
+	}
+
+	/**
+	 * The number of milliseconds responses to this method may be cached, zero
+	 * if they should not be cached.
+	 */
+	private long timeToLive;
+
+	public long getTimeToLive() {
+		return this.timeToLive;
+	}
+
+	public boolean isCacheable() {
+		return this.timeToLive > 0;
+	}
+
+	protected void setTimeToLive(final long timeToLive) {
+		Checker.greaterThanOrEqual("parameter:timeToLive", 0, timeToLive);
+		this.timeToLive = timeToLive;
+	}
+
+	public String toString() {
+		return super.toString() + ", method: " + method + ", timeToLive: " + timeToLive;
+	}
+}
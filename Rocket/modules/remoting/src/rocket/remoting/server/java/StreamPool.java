@@ -0,0 +1,100 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.server.java;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a bounded number of idle streams shared by all threads. A stream that
+ * is acquired is removed from the pool until it is released, which means a
+ * nested call on the same thread (for example a service method that itself
+ * serializes) simply receives another stream.
+ * 
+ * Streams are only referenced by the pool that holds them, so unlike a
+ * ThreadLocal pool nothing is left behind on container threads once the
+ * servlet is destroyed.
+ * 
+ * @author Miroslav Pokorny
+ */
+class StreamPool {
+
+	/**
+	 * The default number of idle streams that are kept.
+	 */
+	static final int MAXIMUM_SIZE = 16;
+
+	StreamPool() {
+		this(MAXIMUM_SIZE);
+	}
+
+	StreamPool(final int maximumSize) {
+		super();
+
+		this.maximumSize = maximumSize;
+	}
+
+	final Queue<Object> streams = new ConcurrentLinkedQueue<Object>();
+
+	/**
+	 * The number of idle streams, tracked separately as the size of the queue
+	 * is not a constant time operation.
+	 */
+	final AtomicInteger size = new AtomicInteger();
+
+	final int maximumSize;
+
+	/**
+	 * Removes and returns an idle stream.
+	 * 
+	 * @return The stream or null if none is available.
+	 */
+	Object acquire() {
+		final Object stream = this.streams.poll();
+		if (null != stream) {
+			this.size.decrementAndGet();
+		}
+		return stream;
+	}
+
+	/**
+	 * Adds a stream that is no longer used and has already been reset to the
+	 * pool, unless the pool is full in which case the stream is discarded.
+	 * 
+	 * @param stream
+	 * @return True if the stream was pooled.
+	 */
+	boolean release(final Object stream) {
+		boolean released = false;
+
+		if (this.size.incrementAndGet() <= this.maximumSize) {
+			this.streams.offer(stream);
+			released = true;
+		} else {
+			this.size.decrementAndGet();
+		}
+		return released;
+	}
+
+	/**
+	 * Discards all idle streams.
+	 */
+	void clear() {
+		while (null != this.acquire()) {
+		}
+	}
+}
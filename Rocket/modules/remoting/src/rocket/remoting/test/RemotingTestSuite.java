@@ -18,7 +18,11 @@ package rocket.remoting.test;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import rocket.remoting.test.java.rpcserviceclient.client.JavaRpcServiceClientGwtTestCase;
+import rocket.remoting.test.java.server.CompressingOutputStreamTestCase;
+import rocket.remoting.test.java.server.ContentEncodingTestCase;
 import rocket.remoting.test.java.server.JavaRpcServiceMethodInvokerTestCase;
+import rocket.remoting.test.java.server.ResponseCacheTestCase;
+import rocket.remoting.test.java.server.ServerSerializationFactoryTestCase;
 import rocket.remoting.test.json.rpc.client.JsonRpcGwtTestCase;
 
 /**
@@ -38,5 +42,9 @@ public class RemotingTestSuite {
 		suite.addTestSuite(JsonRpcGwtTestCase.class);
 		suite.addTestSuite(JavaRpcServiceClientGwtTestCase.class);
 		suite.addTestSuite(JavaRpcServiceMethodInvokerTestCase.class);
+		suite.addTestSuite(ServerSerializationFactoryTestCase.class);
+		suite.addTestSuite(ContentEncodingTestCase.class);
+		suite.addTestSuite(CompressingOutputStreamTestCase.class);
+		suite.addTestSuite(ResponseCacheTestCase.class);
 	}
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.test.java.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+import rocket.remoting.server.java.CompressingOutputStream;
+import rocket.remoting.server.java.ContentEncoding;
+
+public class CompressingOutputStreamTestCase extends TestCase {
+
+	final static int THRESHOLD = 16;
+
+	public void testBelowThresholdIsNotCompressed() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final TestCompressingOutputStream output = new TestCompressingOutputStream(bytes);
+		output.write(this.createBytes(THRESHOLD));
+		assertEquals("nothing should be written before closing", 0, bytes.size());
+
+		output.close();
+		assertFalse(output.isCompressed());
+		assertNull(output.contentEncoding);
+		assertEquals(THRESHOLD, bytes.size());
+	}
+
+	public void testAboveThresholdIsCompressed() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final TestCompressingOutputStream output = new TestCompressingOutputStream(bytes);
+		final byte[] written = this.createBytes(1000);
+		output.write(written, 0, THRESHOLD);
+		output.write(written[THRESHOLD]);
+		assertTrue(output.isCompressed());
+		assertEquals(ContentEncoding.GZIP, output.contentEncoding);
+
+		output.write(written, THRESHOLD + 1, written.length - THRESHOLD - 1);
+		output.close();
+		assertTrue("compressed length " + bytes.size(), bytes.size() < written.length);
+
+		final InputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		for (int i = 0; i < written.length; i++) {
+			assertEquals(written[i], (byte) input.read());
+		}
+		assertEquals(-1, input.read());
+	}
+
+	public void testZeroThresholdCompressesEverything() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final CompressingOutputStream output = new CompressingOutputStream(bytes, ContentEncoding.DEFLATE, 0);
+		output.write(1);
+		output.close();
+		assertTrue(output.isCompressed());
+	}
+
+	public void testWriteAfterCloseFails() throws IOException {
+		final CompressingOutputStream output = new CompressingOutputStream(new ByteArrayOutputStream(), ContentEncoding.GZIP, THRESHOLD);
+		output.close();
+		try {
+			output.write(1);
+			fail("An IOException should have been thrown when writing to a closed stream.");
+		} catch (final IOException expected) {
+
+		}
+	}
+
+	protected byte[] createBytes(final int length) {
+		final byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) ('a' + i % 8);
+		}
+		return bytes;
+	}
+
+	static class TestCompressingOutputStream extends CompressingOutputStream {
+		TestCompressingOutputStream(final ByteArrayOutputStream bytes) {
+			super(bytes, ContentEncoding.GZIP, THRESHOLD);
+		}
+
+		protected void compressing(final String contentEncoding) {
+			assertNull("compressing should only be called once", this.contentEncoding);
+			this.contentEncoding = contentEncoding;
+		}
+
+		String contentEncoding;
+	}
+}
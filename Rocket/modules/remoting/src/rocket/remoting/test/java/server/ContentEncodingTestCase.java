@@ -0,0 +1,113 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.test.java.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import junit.framework.TestCase;
+import rocket.remoting.server.java.ContentEncoding;
+
+public class ContentEncodingTestCase extends TestCase {
+
+	public void testSelectNothingAccepted() {
+		assertNull(ContentEncoding.select(null));
+		assertNull(ContentEncoding.select(""));
+		assertNull(ContentEncoding.select("identity"));
+		assertNull(ContentEncoding.select("br"));
+	}
+
+	public void testSelectPrefersGzip() {
+		assertEquals(ContentEncoding.GZIP, ContentEncoding.select("gzip"));
+		assertEquals(ContentEncoding.GZIP, ContentEncoding.select("deflate, gzip"));
+		assertEquals(ContentEncoding.GZIP, ContentEncoding.select("x-gzip"));
+		assertEquals(ContentEncoding.GZIP, ContentEncoding.select("GZIP;q=0.5, deflate;q=0.5"));
+	}
+
+	public void testSelectDeflate() {
+		assertEquals(ContentEncoding.DEFLATE, ContentEncoding.select("deflate"));
+		assertEquals(ContentEncoding.DEFLATE, ContentEncoding.select("gzip;q=0.5, deflate"));
+		assertEquals(ContentEncoding.DEFLATE, ContentEncoding.select("gzip;q=0, deflate;q=0.1"));
+	}
+
+	public void testSelectZeroQualityIsNotAcceptable() {
+		assertNull(ContentEncoding.select("gzip;q=0"));
+		assertNull(ContentEncoding.select("gzip;q=0.0, deflate;q=0"));
+		assertNull(ContentEncoding.select("*;q=0"));
+		assertNull(ContentEncoding.select("gzip;q=invalid"));
+	}
+
+	public void testSelectAny() {
+		assertEquals(ContentEncoding.GZIP, ContentEncoding.select("*"));
+		assertEquals(ContentEncoding.DEFLATE, ContentEncoding.select("gzip;q=0, *"));
+	}
+
+	public void testIsSupported() {
+		assertTrue(ContentEncoding.isSupported(null));
+		assertTrue(ContentEncoding.isSupported(""));
+		assertTrue(ContentEncoding.isSupported("identity"));
+		assertTrue(ContentEncoding.isSupported("gzip"));
+		assertTrue(ContentEncoding.isSupported("x-gzip"));
+		assertTrue(ContentEncoding.isSupported(" Deflate "));
+		assertFalse(ContentEncoding.isSupported("br"));
+	}
+
+	public void testGzipRoundTrip() throws IOException {
+		this.roundTrip(ContentEncoding.GZIP);
+	}
+
+	public void testDeflateRoundTrip() throws IOException {
+		this.roundTrip(ContentEncoding.DEFLATE);
+	}
+
+	public void testDecodeIdentity() throws IOException {
+		final InputStream input = new ByteArrayInputStream(new byte[0]);
+		assertSame(input, ContentEncoding.decode(null, input));
+		assertSame(input, ContentEncoding.decode("identity", input));
+	}
+
+	public void testDecodeUnsupported() {
+		try {
+			ContentEncoding.decode("br", new ByteArrayInputStream(new byte[0]));
+			fail("An IOException should have been thrown for an unsupported encoding.");
+		} catch (final IOException expected) {
+
+		}
+	}
+
+	protected void roundTrip(final String contentEncoding) throws IOException {
+		final byte[] text = "[1,\"apple\",\"banana\",\"carrot\",2,-1,3]".getBytes("UTF-8");
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DeflaterOutputStream output = ContentEncoding.encode(contentEncoding, bytes);
+		output.write(text);
+		output.close();
+
+		final InputStream input = ContentEncoding.decode(contentEncoding, new ByteArrayInputStream(bytes.toByteArray()));
+		final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		while (true) {
+			final int b = input.read();
+			if (-1 == b) {
+				break;
+			}
+			decoded.write(b);
+		}
+		assertEquals(new String(text, "UTF-8"), new String(decoded.toByteArray(), "UTF-8"));
+	}
+}
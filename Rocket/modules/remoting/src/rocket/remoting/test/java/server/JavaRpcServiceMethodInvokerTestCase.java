@@ -15,14 +15,33 @@
  */
 package rocket.remoting.test.java.server;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.nio.CharBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
+import rocket.remoting.client.JavaRpcConstants;
+import rocket.remoting.client.JavaRpcService;
 import rocket.remoting.client.RpcException;
+import rocket.remoting.server.java.CachedResponse;
 import rocket.remoting.server.java.JavaRpcServiceMethodInvoker;
+import rocket.remoting.server.java.ResponseCache;
 import rocket.remoting.server.java.ServerSerializationFactory;
 import rocket.serialization.client.ObjectInputStream;
 import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.BinaryServerObjectOutputStream;
 
 public class JavaRpcServiceMethodInvokerTestCase extends TestCase {
 
@@ -93,6 +112,65 @@ public class JavaRpcServiceMethodInvokerTestCase extends TestCase {
 		assertEquals("apple", result);
 	}
 
+	public void testInvokeMethodWritingToWriter() throws Exception {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(ServiceInterface.class.getName());
+		outputStream.writeObject("method");
+		outputStream.writeInt(1);
+		outputStream.writeObject("apple".getClass().getName());
+		outputStream.writeObject("apple");
+
+		final String input = outputStream.getText();
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		final StringWriter writer = new StringWriter();
+		invoker.invoke(input, new ConcreteServiceInterface(), writer);
+
+		assertEquals(invoker.invoke(input, new ConcreteServiceInterface()), writer.toString());
+	}
+
+	public void testInvokeMethodReadingCharSequence() throws Exception {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(ServiceInterface.class.getName());
+		outputStream.writeObject("method");
+		outputStream.writeInt(1);
+		outputStream.writeObject("apple".getClass().getName());
+		outputStream.writeObject("apple");
+
+		final String input = outputStream.getText();
+		final char[] chars = new char[input.length() + 10];
+		input.getChars(0, input.length(), chars, 0);
+
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		final StringWriter writer = new StringWriter();
+		invoker.invoke(CharBuffer.wrap(chars, 0, input.length()), new ConcreteServiceInterface(), writer);
+
+		assertEquals(invoker.invoke(input, new ConcreteServiceInterface()), writer.toString());
+	}
+
+	public void testInvokeMethodUsingBinaryFormat() throws Exception {
+		final ServerSerializationFactory serializationFactory = new ServerSerializationFactory();
+		final ByteArrayOutputStream request = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream outputStream = serializationFactory.createBinaryObjectOutputStream(request);
+		outputStream.writeObject(ServiceInterface.class.getName());
+		outputStream.writeObject("method");
+		outputStream.writeInt(1);
+		outputStream.writeObject("apple".getClass().getName());
+		outputStream.writeObject("apple");
+		outputStream.flush();
+
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		final ByteArrayOutputStream response = new ByteArrayOutputStream();
+		invoker.invoke(request.toByteArray(), new ConcreteServiceInterface(), response);
+
+		// deserialize the response and check its correct...
+		final ObjectInputStream objectInputStream = serializationFactory.createBinaryObjectInputStream(response.toByteArray());
+		final boolean exception = objectInputStream.readBoolean();
+		assertFalse(exception);
+
+		final Object result = objectInputStream.readObject();
+		assertEquals("apple", result);
+	}
+
 	public void testInvokedMethodWhichThrowsDeclaredException() {
 		final ObjectOutputStream outputStream = this.createObjectOutputStream();
 		outputStream.writeObject(ServiceInterface.class.getName());
@@ -131,6 +209,619 @@ public class JavaRpcServiceMethodInvokerTestCase extends TestCase {
 		assertTrue("" + result, result instanceof RpcException);
 	}
 
+	public void testMethodNotDeclaredByInterface() {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(ServiceInterface.class.getName());
+		outputStream.writeObject("notDeclaredByInterface");
+		outputStream.writeInt(0);
+
+		final String input = outputStream.getText();
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		try {
+			invoker.invoke(input, new ConcreteServiceInterface());
+			fail("An exception should have been thrown because the method is not declared by the requested interface.");
+		} catch (final RpcException expected) {
+		}
+	}
+
+	public void testInvokeMethodTwiceUsesDispatchTable() {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(ServiceInterface.class.getName());
+		outputStream.writeObject("method");
+		outputStream.writeInt(1);
+		outputStream.writeObject("apple".getClass().getName());
+		outputStream.writeObject("apple");
+
+		final String input = outputStream.getText();
+		final CountingRpcServiceMethodInvoker invoker = new CountingRpcServiceMethodInvoker();
+		final String response = invoker.invoke(input, new ConcreteServiceInterface());
+		assertEquals(1, invoker.lookups);
+
+		assertEquals(response, invoker.invoke(input, new ConcreteServiceInterface()));
+		assertEquals(1, invoker.lookups);
+	}
+
+	public void testPreparedServiceProviderNeedsNoLookups() {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(PreparedService.class.getName());
+		outputStream.writeObject("echo");
+		outputStream.writeInt(1);
+		outputStream.writeObject("apple".getClass().getName());
+		outputStream.writeObject("apple");
+
+		final String input = outputStream.getText();
+		final CountingRpcServiceMethodInvoker invoker = new CountingRpcServiceMethodInvoker();
+		invoker.prepare(new ConcretePreparedService());
+
+		final String response = invoker.invoke(input, new ConcretePreparedService());
+		assertEquals(0, invoker.lookups);
+
+		final ObjectInputStream objectInputStream = this.createObjectInputStream(response);
+		assertFalse(objectInputStream.readBoolean());
+		assertEquals("apple", objectInputStream.readObject());
+	}
+
+	public void testInvokeMethodUsingGeneratedInvoker() {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(ServiceInterface.class.getName());
+		outputStream.writeObject("method");
+		outputStream.writeInt(1);
+		outputStream.writeObject("apple".getClass().getName());
+		outputStream.writeObject("apple");
+
+		final String input = outputStream.getText();
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		invoker.setGeneratedInvokers(true);
+		final String response = invoker.invoke(input, new ConcreteServiceInterface());
+
+		final ObjectInputStream objectInputStream = this.createObjectInputStream(response);
+		assertFalse(objectInputStream.readBoolean());
+		assertEquals("apple", objectInputStream.readObject());
+	}
+
+	public void testGeneratedInvokerWhichThrowsDeclaredException() {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(ServiceInterface.class.getName());
+		outputStream.writeObject("throwsDeclaredException");
+		outputStream.writeInt(0);
+
+		final String input = outputStream.getText();
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		invoker.setGeneratedInvokers(true);
+		final String response = invoker.invoke(input, new ConcreteServiceInterface());
+
+		final ObjectInputStream objectInputStream = this.createObjectInputStream(response);
+		assertTrue(objectInputStream.readBoolean());
+
+		final Object result = objectInputStream.readObject();
+		assertTrue("" + result, result instanceof DeclaredException);
+	}
+
+	public void testInvokeBatch() {
+		final String input = this.createBatch(3);
+
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		final String response = invoker.invoke(input, new ConcreteServiceInterface());
+		this.checkBatchResponse(response, 3);
+	}
+
+	public void testInvokeBatchInParallel() {
+		final String input = this.createBatch(5);
+
+		final ExecutorService executorService = Executors.newFixedThreadPool(3);
+		try {
+			final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+			invoker.setBatchExecutorService(executorService);
+			final String response = invoker.invoke(input, new ConcreteServiceInterface());
+			this.checkBatchResponse(response, 5);
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	public void testBatchExecutorMustDifferFromInvocationExecutor() {
+		final ExecutorService executorService = Executors.newFixedThreadPool(1);
+		try {
+			final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+			invoker.setInvocationExecutorService(executorService);
+			try {
+				invoker.setBatchExecutorService(executorService);
+				fail("An exception should have been thrown because batch tasks would wait upon their own pool.");
+			} catch (final IllegalArgumentException expected) {
+			}
+
+			final JavaRpcServiceMethodInvoker other = this.createRpcServiceMethodInvoker();
+			other.setBatchExecutorService(executorService);
+			try {
+				other.setInvocationExecutorService(executorService);
+				fail("An exception should have been thrown because batch tasks would wait upon their own pool.");
+			} catch (final IllegalArgumentException expected) {
+			}
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	public void testBatchRefusesOnlyLimitedInvocation() throws Exception {
+		this.checkBatchRefusesOnlyLimitedInvocation(null);
+	}
+
+	public void testParallelBatchRefusesOnlyLimitedInvocation() throws Exception {
+		final ExecutorService executorService = Executors.newFixedThreadPool(2);
+		try {
+			this.checkBatchRefusesOnlyLimitedInvocation(executorService);
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	void checkBatchRefusesOnlyLimitedInvocation(final ExecutorService executorService) throws Exception {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(JavaRpcConstants.BATCH);
+		outputStream.writeBoolean(true);
+		outputStream.writeObject(ServiceInterface.class.getName());
+		outputStream.writeObject("method");
+		outputStream.writeInt(1);
+		outputStream.writeObject(String.class.getName());
+		outputStream.writeObject("apple");
+		outputStream.writeBoolean(true);
+		outputStream.writeObject(SlowService.class.getName());
+		outputStream.writeObject("sleep");
+		outputStream.writeInt(1);
+		outputStream.writeObject(Integer.class.getName());
+		outputStream.writeObject(new Integer(0));
+		outputStream.writeBoolean(false);
+
+		final LimitedRpcServiceMethodInvoker invoker = new LimitedRpcServiceMethodInvoker();
+		invoker.setBatchExecutorService(executorService);
+		invoker.setConcurrencyLimit(SlowService.class, 1);
+
+		// pretend another thread is executing a SlowService method.
+		final Semaphore concurrencyLimit = invoker.getConcurrencyLimit(SlowService.class);
+		concurrencyLimit.acquire();
+		String response = null;
+		try {
+			response = invoker.invoke(outputStream.getText(), new ConcreteSlowServiceInterface());
+		} finally {
+			concurrencyLimit.release();
+		}
+
+		final ObjectInputStream objectInputStream = this.createObjectInputStream(response);
+		assertEquals(2, objectInputStream.readInt());
+		assertFalse(objectInputStream.readBoolean());
+		assertEquals("apple", objectInputStream.readObject());
+		assertTrue(objectInputStream.readBoolean());
+		final Object result = objectInputStream.readObject();
+		assertTrue("" + result, result instanceof RpcException);
+	}
+
+	public void testInvokeEmptyBatch() {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(JavaRpcConstants.BATCH);
+		outputStream.writeBoolean(false);
+
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		final String response = invoker.invoke(outputStream.getText(), new ConcreteServiceInterface());
+
+		final ObjectInputStream objectInputStream = this.createObjectInputStream(response);
+		assertEquals(0, objectInputStream.readInt());
+	}
+
+	public void testBatchTooLarge() {
+		final String input = this.createBatch(3);
+
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		invoker.setMaximumBatchSize(4);
+		try {
+			invoker.invoke(input, new ConcreteServiceInterface());
+			fail("An exception should have been thrown because the batch contains too many invocations.");
+		} catch (final RpcException expected) {
+		}
+	}
+
+	public void testInvokeMethodUsingInvocationExecutor() {
+		final ExecutorService executorService = Executors.newFixedThreadPool(1);
+		try {
+			final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+			invoker.setInvocationExecutorService(executorService);
+			invoker.setInvocationTimeout(10000);
+
+			final String response = invoker.invoke(this.createSleepRequest(0), new ConcreteSlowService());
+			final ObjectInputStream objectInputStream = this.createObjectInputStream(response);
+			assertFalse(objectInputStream.readBoolean());
+			assertEquals(new Integer(0), objectInputStream.readObject());
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	public void testInvokedMethodWhichThrowsDeclaredExceptionUsingInvocationExecutor() {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(ServiceInterface.class.getName());
+		outputStream.writeObject("throwsDeclaredException");
+		outputStream.writeInt(0);
+
+		final ExecutorService executorService = Executors.newFixedThreadPool(1);
+		try {
+			final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+			invoker.setInvocationExecutorService(executorService);
+
+			final String response = invoker.invoke(outputStream.getText(), new ConcreteServiceInterface());
+			final ObjectInputStream objectInputStream = this.createObjectInputStream(response);
+			assertTrue(objectInputStream.readBoolean());
+
+			final Object result = objectInputStream.readObject();
+			assertTrue("" + result, result instanceof DeclaredException);
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	public void testInvocationTimesOut() throws Exception {
+		final ExecutorService executorService = Executors.newFixedThreadPool(1);
+		try {
+			final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+			invoker.setInvocationExecutorService(executorService);
+			invoker.setInvocationTimeout(50);
+
+			final String response = invoker.invoke(this.createSleepRequest(10000), new ConcreteSlowService());
+			final ObjectInputStream objectInputStream = this.createObjectInputStream(response);
+			assertTrue(objectInputStream.readBoolean());
+
+			final Object result = objectInputStream.readObject();
+			assertTrue("" + result, result instanceof RpcException);
+
+			// the timed out method should have been interrupted, freeing the only pool thread.
+			final Future<String> next = executorService.submit(new Callable<String>() {
+				public String call() {
+					return "next";
+				}
+			});
+			assertEquals("next", next.get(5, TimeUnit.SECONDS));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	public void testInvocationRejectedWhenExecutorSaturated() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final ExecutorService executorService = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>());
+		try {
+			executorService.submit(new Runnable() {
+				public void run() {
+					started.countDown();
+					try {
+						release.await();
+					} catch (final InterruptedException ignored) {
+					}
+				}
+			});
+			started.await();
+
+			final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+			invoker.setInvocationExecutorService(executorService);
+			try {
+				invoker.invoke(this.createSleepRequest(0), new ConcreteSlowService());
+				fail("A RejectedExecutionException should have been thrown because the executor is busy.");
+			} catch (final RejectedExecutionException expected) {
+			}
+		} finally {
+			release.countDown();
+			executorService.shutdown();
+		}
+	}
+
+	public void testConcurrencyLimitReleasedAfterInvocation() {
+		final LimitedRpcServiceMethodInvoker invoker = new LimitedRpcServiceMethodInvoker();
+		invoker.setMaximumConcurrentInvocations(1);
+
+		invoker.invoke(this.createSleepRequest(0), new ConcreteSlowService());
+		invoker.invoke(this.createSleepRequest(0), new ConcreteSlowService());
+
+		assertEquals(1, invoker.getConcurrencyLimit(SlowService.class).availablePermits());
+	}
+
+	public void testConcurrencyLimitReached() throws Exception {
+		final LimitedRpcServiceMethodInvoker invoker = new LimitedRpcServiceMethodInvoker();
+		invoker.setMaximumConcurrentInvocations(1);
+		invoker.setConcurrencyLimitWait(10);
+
+		// pretend another thread is executing a method.
+		final Semaphore concurrencyLimit = invoker.getConcurrencyLimit(SlowService.class);
+		concurrencyLimit.acquire();
+		try {
+			invoker.invoke(this.createSleepRequest(0), new ConcreteSlowService());
+			fail("A RejectedExecutionException should have been thrown because the interface is at its limit.");
+		} catch (final RejectedExecutionException expected) {
+		}
+		concurrencyLimit.release();
+
+		invoker.invoke(this.createSleepRequest(0), new ConcreteSlowService());
+	}
+
+	public void testConcurrencyLimitsFixedOnceInvoked() {
+		final LimitedRpcServiceMethodInvoker invoker = new LimitedRpcServiceMethodInvoker();
+		invoker.setMaximumConcurrentInvocations(1);
+		invoker.invoke(this.createSleepRequest(0), new ConcreteSlowService());
+
+		try {
+			invoker.setMaximumConcurrentInvocations(2);
+			fail("An IllegalStateException should have been thrown because limits are fixed.");
+		} catch (final IllegalStateException expected) {
+		}
+		try {
+			invoker.setConcurrencyLimit(SlowService.class, 2);
+			fail("An IllegalStateException should have been thrown because limits are fixed.");
+		} catch (final IllegalStateException expected) {
+		}
+	}
+
+	public void testConcurrencyLimitsFixedOncePrepared() {
+		final LimitedRpcServiceMethodInvoker invoker = new LimitedRpcServiceMethodInvoker();
+		invoker.prepare(new ConcreteSlowService());
+
+		try {
+			invoker.setConcurrencyLimit(SlowService.class, 1);
+			fail("An IllegalStateException should have been thrown because limits are fixed.");
+		} catch (final IllegalStateException expected) {
+		}
+	}
+
+	public void testInterruptedWhileWaitingForConcurrencyLimit() throws Exception {
+		final LimitedRpcServiceMethodInvoker invoker = new LimitedRpcServiceMethodInvoker();
+		invoker.setMaximumConcurrentInvocations(1);
+		invoker.setConcurrencyLimitWait(60000);
+
+		final Semaphore concurrencyLimit = invoker.getConcurrencyLimit(SlowService.class);
+		concurrencyLimit.acquire();
+		Thread.currentThread().interrupt();
+		try {
+			invoker.invoke(this.createSleepRequest(0), new ConcreteSlowService());
+			fail("An RpcException should have been thrown because the thread was interrupted.");
+		} catch (final RpcException expected) {
+			assertTrue(Thread.interrupted());
+		} finally {
+			Thread.interrupted();
+			concurrencyLimit.release();
+		}
+	}
+
+	public void testConcurrencyLimitOnlyAppliesToItsInterface() throws Exception {
+		final LimitedRpcServiceMethodInvoker invoker = new LimitedRpcServiceMethodInvoker();
+		invoker.setConcurrencyLimit(SlowService.class, 1);
+		assertNull(invoker.getConcurrencyLimit(ServiceInterface.class));
+
+		final Semaphore concurrencyLimit = invoker.getConcurrencyLimit(SlowService.class);
+		concurrencyLimit.acquire();
+
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(ServiceInterface.class.getName());
+		outputStream.writeObject("method");
+		outputStream.writeInt(1);
+		outputStream.writeObject("apple".getClass().getName());
+		outputStream.writeObject("apple");
+
+		final String response = invoker.invoke(outputStream.getText(), new ConcreteServiceInterface());
+		final ObjectInputStream objectInputStream = this.createObjectInputStream(response);
+		assertFalse(objectInputStream.readBoolean());
+		assertEquals("apple", objectInputStream.readObject());
+
+		try {
+			invoker.invoke(this.createSleepRequest(0), new ConcreteSlowService());
+			fail("A RejectedExecutionException should have been thrown because the interface is at its limit.");
+		} catch (final RejectedExecutionException expected) {
+		}
+	}
+
+	public void testCachedResponse() throws Exception {
+		final String input = this.createCountRequest("apple");
+
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		invoker.setResponseCache(new ResponseCache(10, Long.MAX_VALUE));
+		final ConcreteCountingService serviceProvider = new ConcreteCountingService();
+		final String response = invoker.invoke(input, serviceProvider);
+
+		final StringWriter writer = new StringWriter();
+		invoker.invoke(CharBuffer.wrap(input), serviceProvider, writer);
+		assertEquals(response, writer.toString());
+		assertEquals(response, invoker.invoke(input, serviceProvider));
+		assertEquals(1, serviceProvider.count);
+
+		final ResponseCache responseCache = invoker.getResponseCache();
+		assertEquals(1, responseCache.getMisses());
+		assertEquals(2, responseCache.getHits());
+
+		// a different parameter is a different request
+		invoker.invoke(this.createCountRequest("banana"), serviceProvider);
+		assertEquals(2, serviceProvider.count);
+
+		responseCache.invalidate(CountingService.class, "count");
+		invoker.invoke(input, serviceProvider);
+		assertEquals(3, serviceProvider.count);
+	}
+
+	public void testInvalidationDuringExecutionIsNotLost() {
+		final String input = this.createCountRequest("apple");
+
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		final ResponseCache responseCache = new ResponseCache(10, Long.MAX_VALUE);
+		invoker.setResponseCache(responseCache);
+		final ConcreteCountingService serviceProvider = new ConcreteCountingService();
+		serviceProvider.invalidatedDuringCount = responseCache;
+
+		invoker.invoke(input, serviceProvider);
+		assertEquals(0, responseCache.size());
+
+		serviceProvider.invalidatedDuringCount = null;
+		invoker.invoke(input, serviceProvider);
+		assertEquals(2, serviceProvider.count);
+		assertEquals(1, responseCache.size());
+	}
+
+	public void testUncachedMethodIsNotCached() {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(CountingService.class.getName());
+		outputStream.writeObject("uncached");
+		outputStream.writeInt(0);
+		final String input = outputStream.getText();
+
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		invoker.setResponseCache(new ResponseCache(10, Long.MAX_VALUE));
+		final ConcreteCountingService serviceProvider = new ConcreteCountingService();
+		invoker.invoke(input, serviceProvider);
+		invoker.invoke(input, serviceProvider);
+
+		assertEquals(2, serviceProvider.count);
+		assertEquals(0, invoker.getResponseCache().size());
+		assertEquals(0, invoker.getResponseCache().getMisses());
+	}
+
+	public void testCachingDisabled() {
+		final String input = this.createCountRequest("apple");
+
+		final JavaRpcServiceMethodInvoker invoker = this.createRpcServiceMethodInvoker();
+		assertNull("caching is disabled by default", invoker.getResponseCache());
+		final ConcreteCountingService serviceProvider = new ConcreteCountingService();
+		invoker.invoke(input, serviceProvider);
+		invoker.invoke(input, serviceProvider);
+
+		assertEquals(2, serviceProvider.count);
+	}
+
+	String createCountRequest(final String string) {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(CountingService.class.getName());
+		outputStream.writeObject("count");
+		outputStream.writeInt(1);
+		outputStream.writeObject(String.class.getName());
+		outputStream.writeObject(string);
+		return outputStream.getText();
+	}
+
+	static public interface CountingService {
+		String count(String string);
+
+		String uncached();
+	}
+
+	static public class ConcreteCountingService implements CountingService {
+		int count = 0;
+
+		/**
+		 * When set the cached responses of this service are invalidated while
+		 * count executes.
+		 */
+		ResponseCache invalidatedDuringCount;
+
+		@CachedResponse(timeToLive = 60000)
+		public String count(final String string) {
+			this.count++;
+			if (null != this.invalidatedDuringCount) {
+				this.invalidatedDuringCount.invalidate(CountingService.class);
+			}
+			return string;
+		}
+
+		public String uncached() {
+			this.count++;
+			return "uncached";
+		}
+	}
+
+	/**
+	 * Exposes the concurrency limits.
+	 */
+	static class LimitedRpcServiceMethodInvoker extends JavaRpcServiceMethodInvoker {
+		protected Semaphore getConcurrencyLimit(final Class interfacee) {
+			return super.getConcurrencyLimit(interfacee);
+		}
+	}
+
+	String createSleepRequest(final int millis) {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(SlowService.class.getName());
+		outputStream.writeObject("sleep");
+		outputStream.writeInt(1);
+		outputStream.writeObject(Integer.class.getName());
+		outputStream.writeObject(new Integer(millis));
+		return outputStream.getText();
+	}
+
+	static public interface SlowService {
+		Integer sleep(Integer millis) throws InterruptedException;
+	}
+
+	static public class ConcreteSlowService implements SlowService {
+		public Integer sleep(final Integer millis) throws InterruptedException {
+			Thread.sleep(millis.intValue());
+			return millis;
+		}
+	}
+
+	/**
+	 * Creates a batch holding the given number of pairs of calls to method
+	 * and throwsDeclaredException.
+	 */
+	String createBatch(final int pairs) {
+		final ObjectOutputStream outputStream = this.createObjectOutputStream();
+		outputStream.writeObject(JavaRpcConstants.BATCH);
+
+		for (int i = 0; i < pairs; i++) {
+			outputStream.writeBoolean(true);
+			outputStream.writeObject(ServiceInterface.class.getName());
+			outputStream.writeObject("method");
+			outputStream.writeInt(1);
+			outputStream.writeObject("apple".getClass().getName());
+			outputStream.writeObject("apple");
+
+			outputStream.writeBoolean(true);
+			outputStream.writeObject(ServiceInterface.class.getName());
+			outputStream.writeObject("throwsDeclaredException");
+			outputStream.writeInt(0);
+		}
+		outputStream.writeBoolean(false);
+
+		return outputStream.getText();
+	}
+
+	void checkBatchResponse(final String response, final int pairs) {
+		final ObjectInputStream objectInputStream = this.createObjectInputStream(response);
+		assertEquals(pairs * 2, objectInputStream.readInt());
+
+		for (int i = 0; i < pairs; i++) {
+			assertFalse(objectInputStream.readBoolean());
+			assertEquals("apple", objectInputStream.readObject());
+
+			assertTrue(objectInputStream.readBoolean());
+			final Object result = objectInputStream.readObject();
+			assertTrue("" + result, result instanceof DeclaredException);
+		}
+	}
+
+	/**
+	 * Counts the number of times a method is looked up rather than being
+	 * found in the dispatch table.
+	 */
+	static class CountingRpcServiceMethodInvoker extends JavaRpcServiceMethodInvoker {
+		int lookups = 0;
+
+		protected Method getMethod(final Class interfacee, final String methodName, final String[] parameterTypeNames) {
+			this.lookups++;
+			return super.getMethod(interfacee, methodName, parameterTypeNames);
+		}
+	}
+
+	static public interface PreparedService extends JavaRpcService {
+		String echo(String string);
+	}
+
+	static public class ConcretePreparedService implements PreparedService {
+		public String echo(final String string) {
+			return string;
+		}
+	}
+
 	static public interface ServiceInterface {
 		String method(String string);
 
@@ -139,6 +830,13 @@ public class JavaRpcServiceMethodInvokerTestCase extends TestCase {
 		void throwsUndeclaredException();
 	}
 
+	static public class ConcreteSlowServiceInterface extends ConcreteServiceInterface implements SlowService {
+		public Integer sleep(final Integer millis) throws InterruptedException {
+			Thread.sleep(millis.intValue());
+			return millis;
+		}
+	}
+
 	static public class ConcreteServiceInterface implements ServiceInterface {
 		public String method(final String string) {
 			assertEquals("apple", string);
@@ -152,6 +850,9 @@ public class JavaRpcServiceMethodInvokerTestCase extends TestCase {
 		public void throwsUndeclaredException() {
 			throw new UndeclaredException();
 		}
+
+		public void notDeclaredByInterface() {
+		}
 	}
 
 	static public class DeclaredException extends Exception implements Serializable {
@@ -0,0 +1,178 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.test.java.server;
+
+import junit.framework.TestCase;
+import rocket.remoting.server.java.ResponseCache;
+
+public class ResponseCacheTestCase extends TestCase {
+
+	public void testGetMissing() {
+		final ResponseCache cache = this.createResponseCache(10);
+		assertNull(cache.get("request"));
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	public void testPutThenGet() {
+		final ResponseCache cache = this.createResponseCache(10);
+		cache.put("request", "response", String.class, "method", 1000);
+
+		assertEquals("response", cache.get("request"));
+		assertEquals("response", cache.get("request"));
+		assertEquals(2, cache.getHits());
+		assertEquals(0, cache.getMisses());
+	}
+
+	public void testExpired() {
+		final TimedResponseCache cache = this.createResponseCache(10);
+		cache.put("request", "response", String.class, "method", 1000);
+
+		cache.time = 999;
+		assertEquals("response", cache.get("request"));
+
+		cache.time = 1000;
+		assertNull(cache.get("request"));
+		assertEquals(1, cache.getExpirations());
+		assertEquals(0, cache.size());
+	}
+
+	public void testLeastRecentlyUsedEvicted() {
+		final ResponseCache cache = this.createResponseCache(2);
+		cache.put("first", "1", String.class, "method", 1000);
+		cache.put("second", "2", String.class, "method", 1000);
+
+		// touch first so second becomes the least recently used.
+		assertEquals("1", cache.get("first"));
+		cache.put("third", "3", String.class, "method", 1000);
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertEquals("1", cache.get("first"));
+		assertNull(cache.get("second"));
+		assertEquals("3", cache.get("third"));
+	}
+
+	public void testInvalidateInterface() {
+		final ResponseCache cache = this.createResponseCache(10);
+		cache.put("first", "1", String.class, "method", 1000);
+		cache.put("second", "2", Integer.class, "method", 1000);
+
+		cache.invalidate(String.class);
+		assertNull(cache.get("first"));
+		assertEquals("2", cache.get("second"));
+	}
+
+	public void testInvalidateMethod() {
+		final ResponseCache cache = this.createResponseCache(10);
+		cache.put("first", "1", String.class, "method", 1000);
+		cache.put("second", "2", String.class, "otherMethod", 1000);
+
+		cache.invalidate(String.class, "method");
+		assertNull(cache.get("first"));
+		assertEquals("2", cache.get("second"));
+	}
+
+	public void testPutAfterInvalidateIsDropped() {
+		final ResponseCache cache = this.createResponseCache(10);
+		final long generation = cache.getGeneration(String.class);
+
+		cache.invalidate(String.class, "method");
+		cache.put("request", "response", String.class, "method", 1000, generation);
+		assertNull(cache.get("request"));
+
+		cache.put("request", "response", String.class, "method", 1000, cache.getGeneration(String.class));
+		assertEquals("response", cache.get("request"));
+	}
+
+	public void testPutAfterClearIsDropped() {
+		final ResponseCache cache = this.createResponseCache(10);
+		final long generation = cache.getGeneration(String.class);
+
+		cache.clear();
+		cache.put("request", "response", String.class, "method", 1000, generation);
+		assertEquals(0, cache.size());
+	}
+
+	public void testPutAfterInvalidatingAnotherInterfaceIsKept() {
+		final ResponseCache cache = this.createResponseCache(10);
+		final long generation = cache.getGeneration(String.class);
+
+		cache.invalidate(Integer.class);
+		cache.put("request", "response", String.class, "method", 1000, generation);
+		assertEquals("response", cache.get("request"));
+	}
+
+	public void testClear() {
+		final ResponseCache cache = this.createResponseCache(10);
+		cache.put("first", "1", String.class, "method", 1000);
+		cache.clear();
+
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytes());
+		assertNull(cache.get("first"));
+	}
+
+	public void testBytesBudgetEvicts() {
+		final ResponseCache cache = new TimedResponseCache(10, 2 * (5 + 5) * 2);
+		cache.put("first", "11111", String.class, "method", 1000);
+		cache.put("other", "22222", String.class, "method", 1000);
+		assertEquals(2, cache.size());
+
+		cache.put("third", "33333", String.class, "method", 1000);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.get("first"));
+		assertTrue(cache.getBytes() <= cache.getMaximumBytes());
+	}
+
+	public void testResponseLargerThanBudgetNotCached() {
+		final ResponseCache cache = new TimedResponseCache(10, 8);
+		cache.put("request", "a response larger than the budget", String.class, "method", 1000);
+
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytes());
+		assertNull(cache.get("request"));
+	}
+
+	public void testInvalidateReleasesBytes() {
+		final ResponseCache cache = this.createResponseCache(10);
+		cache.put("first", "1", String.class, "method", 1000);
+		assertTrue(cache.getBytes() > 0);
+
+		cache.invalidate(String.class);
+		assertEquals(0, cache.getBytes());
+	}
+
+	TimedResponseCache createResponseCache(final int maximumSize) {
+		return new TimedResponseCache(maximumSize, Long.MAX_VALUE);
+	}
+
+	/**
+	 * A cache whose clock is controlled by the test.
+	 */
+	static class TimedResponseCache extends ResponseCache {
+		TimedResponseCache(final int maximumSize, final long maximumBytes) {
+			super(maximumSize, maximumBytes);
+		}
+
+		long time = 0;
+
+		protected long currentTime() {
+			return this.time;
+		}
+	}
+}
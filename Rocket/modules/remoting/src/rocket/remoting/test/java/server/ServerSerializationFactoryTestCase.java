@@ -0,0 +1,104 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.remoting.test.java.server;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import rocket.remoting.server.java.ServerSerializationFactory;
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.BinaryServerObjectOutputStream;
+import rocket.serialization.server.StringDictionary;
+
+public class ServerSerializationFactoryTestCase extends TestCase {
+
+	public void testReleasedOutputStreamIsReused() {
+		final ServerSerializationFactory factory = new ServerSerializationFactory();
+
+		final ObjectOutputStream first = factory.acquireObjectOutputStream();
+		first.writeObject("apple");
+		factory.releaseObjectOutputStream(first);
+
+		final ObjectOutputStream second = factory.acquireObjectOutputStream();
+		assertSame(first, second);
+		assertEquals("[0,]", second.getText());
+		factory.releaseObjectOutputStream(second);
+	}
+
+	public void testNestedOutputStreamIsNotShared() {
+		final ServerSerializationFactory factory = new ServerSerializationFactory();
+
+		final ObjectOutputStream outer = factory.acquireObjectOutputStream();
+		final ObjectOutputStream inner = factory.acquireObjectOutputStream();
+		assertNotSame(outer, inner);
+
+		factory.releaseObjectOutputStream(inner);
+		factory.releaseObjectOutputStream(outer);
+		assertSame(inner, factory.acquireObjectOutputStream());
+		assertSame(outer, factory.acquireObjectOutputStream());
+	}
+
+	public void testReleasedInputStreamIsReused() {
+		final ServerSerializationFactory factory = new ServerSerializationFactory();
+
+		final ObjectInputStream first = factory.acquireObjectInputStream("[1,\"apple\",2]");
+		assertEquals("apple", first.readObject());
+		factory.releaseObjectInputStream(first);
+
+		final ObjectInputStream second = factory.acquireObjectInputStream("[1,\"banana\",2]");
+		assertSame(first, second);
+		assertEquals("banana", second.readObject());
+		factory.releaseObjectInputStream(second);
+	}
+
+	public void testIdleStreamsAreSharedBetweenThreads() throws Exception {
+		final ServerSerializationFactory factory = new ServerSerializationFactory();
+
+		final ObjectOutputStream first = factory.acquireObjectOutputStream();
+		first.writeObject("apple");
+		factory.releaseObjectOutputStream(first);
+
+		final ObjectOutputStream[] other = new ObjectOutputStream[1];
+		final Thread thread = new Thread() {
+			public void run() {
+				other[0] = factory.acquireObjectOutputStream();
+			}
+		};
+		thread.start();
+		thread.join();
+
+		assertSame(first, other[0]);
+		assertEquals("[0,]", other[0].getText());
+	}
+
+	public void testBinaryStreamsUseStringDictionary() {
+		final ServerSerializationFactory factory = new ServerSerializationFactory();
+		factory.setStringDictionary(new StringDictionary(Arrays.asList(new String[] { "apple" })));
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream outputStream = factory.createBinaryObjectOutputStream(bytes);
+		outputStream.writeObject("apple");
+		outputStream.flush();
+
+		// the dictionary size and fingerprint followed by only the dictionary reference...
+		assertEquals(1 + 4 + 1, bytes.size());
+
+		final ObjectInputStream inputStream = factory.createBinaryObjectInputStream(bytes.toByteArray());
+		assertEquals("apple", inputStream.readObject());
+	}
+}
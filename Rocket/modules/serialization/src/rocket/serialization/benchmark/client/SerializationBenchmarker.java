@@ -15,7 +15,6 @@
  */
 package rocket.serialization.benchmark.client;
 
-import java.util.ArrayList;
 import java.util.Date;
 
 import rocket.event.client.MouseClickEvent;
@@ -66,16 +65,6 @@ public class SerializationBenchmarker implements EntryPoint {
 
 	final static String DESERIALIZATION = "deserialization";
 
-	final static String COLOUR = "Blue";
-
-	final static boolean SHINY = true;
-
-	final static int WEIGHT = 123;
-
-	final static boolean LEGLESS = true;
-
-	final static int EYECOUNT = 4567;
-
 	public void onModuleLoad() {
 		com.google.gwt.core.client.GWT.setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
 			public void onUncaughtException(final Throwable caught) {
@@ -433,40 +422,6 @@ public class SerializationBenchmarker implements EntryPoint {
 	}
 
 	static Tree createTree(final int elementCount) {
-		final Tree tree = new Tree();
-		tree.tree = tree;
-
-		final Apple apple = new Apple();
-		apple.colour = COLOUR;
-		tree.apple = apple;
-
-		final Banana banana = new Banana();
-		banana.weight = WEIGHT;
-		tree.banana = banana;
-
-		final SuperBanana superBanana = new SuperBanana();
-		superBanana.weight = WEIGHT;
-		superBanana.shiny = SHINY;
-		tree.superBanana = superBanana;
-
-		superBanana.pests = new ArrayList();
-
-		for (int i = 0; i < elementCount; i++) {
-			Pest pest = null;
-
-			if ((i & 1) == 0) {
-				final Worm worm = new Worm();
-				worm.legless = LEGLESS;
-				worm.text = "" + i;
-				pest = worm;
-			} else {
-				final Fly fly = new Fly();
-				fly.eyeCount = EYECOUNT + i;
-				pest = fly;
-			}
-			superBanana.pests.add(pest);
-		}
-
-		return tree;
+		return TreeFactory.createTree(elementCount);
 	}
 }
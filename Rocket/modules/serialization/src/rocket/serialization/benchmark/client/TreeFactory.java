@@ -0,0 +1,125 @@
+package rocket.serialization.benchmark.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the Tree/Fruit/Pest graph that is used by all the serialization
+ * benchmarks.
+ */
+public class TreeFactory {
+
+	final static String COLOUR = "Blue";
+
+	final static boolean SHINY = true;
+
+	final static int WEIGHT = 123;
+
+	final static boolean LEGLESS = true;
+
+	final static int EYECOUNT = 4567;
+
+	/**
+	 * Creates a new tree whose super banana holds the given number of pests.
+	 * 
+	 * @param elementCount
+	 * @return A new tree
+	 */
+	static public Tree createTree(final int elementCount) {
+		final Tree tree = new Tree();
+		tree.tree = tree;
+
+		final Apple apple = new Apple();
+		apple.colour = COLOUR;
+		tree.apple = apple;
+
+		final Banana banana = new Banana();
+		banana.weight = WEIGHT;
+		tree.banana = banana;
+
+		final SuperBanana superBanana = new SuperBanana();
+		superBanana.weight = WEIGHT;
+		superBanana.shiny = SHINY;
+		tree.superBanana = superBanana;
+
+		superBanana.pests = new ArrayList();
+
+		for (int i = 0; i < elementCount; i++) {
+			Pest pest = null;
+
+			if ((i & 1) == 0) {
+				final Worm worm = new Worm();
+				worm.legless = LEGLESS;
+				worm.text = "" + i;
+				pest = worm;
+			} else {
+				final Fly fly = new Fly();
+				fly.eyeCount = EYECOUNT + i;
+				pest = fly;
+			}
+			superBanana.pests.add(pest);
+		}
+
+		return tree;
+	}
+
+	/**
+	 * Creates a tree whose pests are all worms with long text, most of which
+	 * is unique with every fourth worm repeating an earlier text.
+	 * 
+	 * @param elementCount
+	 * @return A new tree
+	 */
+	static public Tree createStringHeavyTree(final int elementCount) {
+		final Tree tree = createTree(0);
+		final List pests = ((SuperBanana) tree.superBanana).pests;
+
+		for (int i = 0; i < elementCount; i++) {
+			final Worm worm = new Worm();
+			worm.legless = LEGLESS;
+			worm.text = "The quick brown worm \"" + ((i & 3) == 3 ? i & 15 : i) + "\" crawled over the lazy apple.";
+			pests.add(worm);
+		}
+
+		return tree;
+	}
+
+	/**
+	 * Creates a tree whose pests are all flies, which contain only numbers.
+	 * 
+	 * @param elementCount
+	 * @return A new tree
+	 */
+	static public Tree createNumericTree(final int elementCount) {
+		final Tree tree = createTree(0);
+		final List pests = ((SuperBanana) tree.superBanana).pests;
+
+		for (int i = 0; i < elementCount; i++) {
+			final Fly fly = new Fly();
+			fly.eyeCount = EYECOUNT * i;
+			pests.add(fly);
+		}
+
+		return tree;
+	}
+
+	/**
+	 * Creates a tree whose pests list mostly holds references to a small
+	 * number of shared pests along with the tree itself, which means most
+	 * elements are written as back references.
+	 * 
+	 * @param elementCount
+	 * @return A new tree
+	 */
+	static public Tree createCyclicTree(final int elementCount) {
+		final Tree tree = createTree(Math.max(1, elementCount / 8));
+		final List pests = ((SuperBanana) tree.superBanana).pests;
+		final int shared = pests.size();
+
+		for (int i = shared; i < elementCount; i++) {
+			pests.add((i & 7) == 0 ? (Object) tree : pests.get(i % shared));
+		}
+
+		return tree;
+	}
+}
@@ -0,0 +1,112 @@
+package rocket.serialization.benchmark.server;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import rocket.serialization.benchmark.client.Tree;
+import rocket.serialization.benchmark.client.TreeFactory;
+import rocket.serialization.server.FieldPlan;
+import rocket.serialization.server.ReflectionHelper;
+import rocket.serialization.server.ServerObjectInputStream;
+import rocket.serialization.server.ServerObjectOutputStream;
+import rocket.serialization.server.ServerObjectReader;
+import rocket.serialization.server.ServerObjectWriter;
+import rocket.serialization.server.reader.ListReader;
+import rocket.serialization.server.reader.ReflectiveReader;
+import rocket.serialization.server.writer.ListWriter;
+import rocket.serialization.server.writer.ReflectiveWriter;
+
+/**
+ * A simple command line benchmark that compares serializing and deserializing
+ * the Tree/Fruit/Pest graph with cached {@link FieldPlan field plans} against
+ * rediscovering all fields with reflection for every object.
+ * 
+ * Usage: FieldPlanBenchmarker [elementCount] [iterations]
+ */
+public class FieldPlanBenchmarker {
+
+	final static String CACHED = "Cached";
+
+	final static String UNCACHED = "Uncached";
+
+	public static void main(final String[] arguments) {
+		final int elementCount = arguments.length > 0 ? Integer.parseInt(arguments[0]) : 1000;
+		final int iterations = arguments.length > 1 ? Integer.parseInt(arguments[1]) : 200;
+
+		final FieldPlanBenchmarker benchmarker = new FieldPlanBenchmarker();
+		final Tree tree = TreeFactory.createTree(elementCount);
+
+		// warm up both paths before taking any timings...
+		benchmarker.run(tree, new CachedWriter(), new CachedReader(), iterations);
+		benchmarker.run(tree, new UncachedWriter(), new UncachedReader(), iterations);
+
+		final long uncached = benchmarker.run(tree, new UncachedWriter(), new UncachedReader(), iterations);
+		benchmarker.log(UNCACHED, "Time taken " + uncached + " (ms) for " + iterations + " iterations of " + elementCount + " elements.");
+
+		final long cached = benchmarker.run(tree, new CachedWriter(), new CachedReader(), iterations);
+		benchmarker.log(CACHED, "Time taken " + cached + " (ms) for " + iterations + " iterations of " + elementCount + " elements.");
+
+		benchmarker.log("", "Speedup " + (cached == 0 ? "n/a" : "" + ((float) uncached / cached)) + "x");
+	}
+
+	/**
+	 * Serializes and then deserializes the given tree the given number of
+	 * times.
+	 * 
+	 * @return The number of milliseconds taken.
+	 */
+	long run(final Tree tree, final ServerObjectWriter writer, final ServerObjectReader reader, final int iterations) {
+		final List<ServerObjectWriter> writers = new ArrayList<ServerObjectWriter>();
+		writers.add(ListWriter.instance);
+		writers.add(writer);
+
+		final List<ServerObjectReader> readers = new ArrayList<ServerObjectReader>();
+		readers.add(ListReader.instance);
+		readers.add(reader);
+
+		final long startedAt = System.currentTimeMillis();
+
+		for (int i = 0; i < iterations; i++) {
+			final ServerObjectOutputStream output = new ServerObjectOutputStream();
+			output.setObjectWriters(writers);
+			output.writeObject(tree);
+			final String text = output.getText();
+
+			final ServerObjectInputStream input = new ServerObjectInputStream(text);
+			input.setObjectReaders(readers);
+			final Object object = input.readObject();
+			if (false == object instanceof Tree) {
+				throw new IllegalStateException("Deserialized object is not a Tree: " + object);
+			}
+		}
+
+		return System.currentTimeMillis() - startedAt;
+	}
+
+	void log(final String system, final String message) {
+		System.out.println(system + " " + new Date() + " " + message);
+	}
+
+	static class CachedWriter extends ReflectiveWriter {
+	}
+
+	static class CachedReader extends ReflectiveReader {
+	}
+
+	/**
+	 * Rebuilds the field plan for every object, which mimics what happened
+	 * before field plans were cached.
+	 */
+	static class UncachedWriter extends ReflectiveWriter {
+		protected FieldPlan getFieldPlan(final Class classs) {
+			return ReflectionHelper.buildFieldPlan(classs);
+		}
+	}
+
+	static class UncachedReader extends ReflectiveReader {
+		protected FieldPlan getFieldPlan(final Class classs) {
+			return ReflectionHelper.buildFieldPlan(classs);
+		}
+	}
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.benchmark.server;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import rocket.remoting.server.java.ServerSerializationFactory;
+import rocket.serialization.benchmark.client.Tree;
+import rocket.serialization.benchmark.client.TreeFactory;
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.server.BinaryServerObjectOutputStream;
+import rocket.serialization.server.ServerObjectOutputStream;
+
+/**
+ * A command line benchmark of the server RPC hot path. It writes and reads
+ * several shapes of the Tree/Fruit/Pest graph at several sizes through a
+ * {@link ServerSerializationFactory}, using both the text and binary formats.
+ * 
+ * For each combination a single tab separated line is printed holding the
+ * throughput, the median and 99th percentile time of a single operation and
+ * the bytes allocated per operation. Allocation is measured using the
+ * com.sun.management.ThreadMXBean extension when the JVM provides it, and is
+ * otherwise reported as -1. The output is meant to be archived by a CI build
+ * so regressions may be spotted, eg via the ant target
+ * <code>benchmark-serialization</code>.
+ * 
+ * Usage: ServerSerializationBenchmarker [iterations] [warmupIterations]
+ * [elementCounts]
+ * 
+ * where elementCounts is a comma separated list, eg 10,1000,10000
+ */
+public class ServerSerializationBenchmarker {
+
+	final static String STRINGS = "strings";
+
+	final static String NUMBERS = "numbers";
+
+	final static String MIXED = "mixed";
+
+	final static String CYCLIC = "cyclic";
+
+	final static String[] SHAPES = { MIXED, STRINGS, NUMBERS, CYCLIC };
+
+	final static String TEXT = "text";
+
+	final static String BINARY = "binary";
+
+	final static String WRITE = "write";
+
+	final static String READ = "read";
+
+	public static void main(final String[] arguments) {
+		final int iterations = arguments.length > 0 ? Integer.parseInt(arguments[0]) : 200;
+		final int warmupIterations = arguments.length > 1 ? Integer.parseInt(arguments[1]) : 100;
+		final int[] elementCounts = parseElementCounts(arguments.length > 2 ? arguments[2] : "10,1000,10000");
+
+		final ServerSerializationBenchmarker benchmarker = new ServerSerializationBenchmarker();
+		benchmarker.setIterations(iterations);
+		benchmarker.setWarmupIterations(warmupIterations);
+		benchmarker.run(elementCounts);
+	}
+
+	static int[] parseElementCounts(final String list) {
+		final String[] tokens = list.split(",");
+		final int[] counts = new int[tokens.length];
+		for (int i = 0; i < tokens.length; i++) {
+			counts[i] = Integer.parseInt(tokens[i].trim());
+		}
+		return counts;
+	}
+
+	public ServerSerializationBenchmarker() {
+		super();
+
+		this.setSerializationFactory(new ServerSerializationFactory());
+	}
+
+	void run(final int[] elementCounts) {
+		System.out.println("shape\telements\tformat\toperation\tops/s\tp50(us)\tp99(us)\tbytes/op\tsize");
+
+		for (int s = 0; s < SHAPES.length; s++) {
+			final String shape = SHAPES[s];
+			for (int e = 0; e < elementCounts.length; e++) {
+				final int elementCount = elementCounts[e];
+				final Tree tree = this.createTree(shape, elementCount);
+
+				this.runText(shape, elementCount, tree);
+				this.runBinary(shape, elementCount, tree);
+			}
+		}
+	}
+
+	Tree createTree(final String shape, final int elementCount) {
+		Tree tree = null;
+		while (true) {
+			if (STRINGS.equals(shape)) {
+				tree = TreeFactory.createStringHeavyTree(elementCount);
+				break;
+			}
+			if (NUMBERS.equals(shape)) {
+				tree = TreeFactory.createNumericTree(elementCount);
+				break;
+			}
+			if (CYCLIC.equals(shape)) {
+				tree = TreeFactory.createCyclicTree(elementCount);
+				break;
+			}
+			tree = TreeFactory.createTree(elementCount);
+			break;
+		}
+		return tree;
+	}
+
+	void runText(final String shape, final int elementCount, final Tree tree) {
+		final ServerSerializationFactory factory = this.getSerializationFactory();
+
+		final Operation write = new Operation() {
+			Object run() {
+				final ServerObjectOutputStream output = (ServerObjectOutputStream) factory.createObjectOutputStream();
+				output.writeObject(tree);
+				return output.getText();
+			}
+		};
+		final String text = (String) write.run();
+		this.measure(shape, elementCount, TEXT, WRITE, write, text.length());
+
+		final Operation read = new Operation() {
+			Object run() {
+				final ObjectInputStream input = factory.createObjectInputStream(text);
+				return input.readObject();
+			}
+		};
+		this.verify(read.run());
+		this.measure(shape, elementCount, TEXT, READ, read, text.length());
+	}
+
+	void runBinary(final String shape, final int elementCount, final Tree tree) {
+		final ServerSerializationFactory factory = this.getSerializationFactory();
+
+		final Operation write = new Operation() {
+			Object run() {
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				final BinaryServerObjectOutputStream output = factory.createBinaryObjectOutputStream(bytes);
+				output.writeObject(tree);
+				output.flush();
+				return bytes.toByteArray();
+			}
+		};
+		final byte[] bytes = (byte[]) write.run();
+		this.measure(shape, elementCount, BINARY, WRITE, write, bytes.length);
+
+		final Operation read = new Operation() {
+			Object run() {
+				final ObjectInputStream input = factory.createBinaryObjectInputStream(bytes);
+				return input.readObject();
+			}
+		};
+		this.verify(read.run());
+		this.measure(shape, elementCount, BINARY, READ, read, bytes.length);
+	}
+
+	void verify(final Object object) {
+		if (false == object instanceof Tree) {
+			throw new IllegalStateException("Deserialized object is not a Tree: " + object);
+		}
+	}
+
+	/**
+	 * Runs the operation for the warmup iterations and then the measured
+	 * iterations, printing a single line of results.
+	 */
+	void measure(final String shape, final int elementCount, final String format, final String operationName,
+			final Operation operation, final int size) {
+		for (int i = 0; i < this.getWarmupIterations(); i++) {
+			operation.run();
+		}
+
+		final int iterations = this.getIterations();
+		final long[] times = new long[iterations];
+
+		final long allocatedBefore = this.getAllocatedBytes();
+		final long startedAt = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			final long start = System.nanoTime();
+			operation.run();
+			times[i] = System.nanoTime() - start;
+		}
+		final long total = System.nanoTime() - startedAt;
+		final long allocatedAfter = this.getAllocatedBytes();
+
+		Arrays.sort(times);
+		final double opsPerSecond = iterations * 1000000000.0 / Math.max(1, total);
+		final long bytesPerOperation = -1 == allocatedBefore ? -1 : (allocatedAfter - allocatedBefore) / iterations;
+
+		System.out.println(shape + '\t' + elementCount + '\t' + format + '\t' + operationName + '\t' + Math.round(opsPerSecond)
+				+ '\t' + this.percentile(times, 50) / 1000 + '\t' + this.percentile(times, 99) / 1000 + '\t' + bytesPerOperation + '\t'
+				+ size);
+	}
+
+	long percentile(final long[] sortedTimes, final int percentile) {
+		final int index = (int) Math.ceil(sortedTimes.length * percentile / 100.0) - 1;
+		return sortedTimes[Math.max(0, Math.min(sortedTimes.length - 1, index))];
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far or -1
+	 * if the JVM cannot report this.
+	 */
+	long getAllocatedBytes() {
+		long allocated = -1;
+		final Method method = this.getAllocatedBytesMethod();
+		if (null != method) {
+			try {
+				allocated = ((Long) method.invoke(this.threadMXBean, new Object[] { new Long(Thread.currentThread().getId()) }))
+						.longValue();
+			} catch (final Exception ignored) {
+				this.allocatedBytesMethod = null;
+			}
+		}
+		return allocated;
+	}
+
+	Method getAllocatedBytesMethod() {
+		if (false == this.allocatedBytesMethodChecked) {
+			this.allocatedBytesMethodChecked = true;
+			try {
+				final Class type = Class.forName("com.sun.management.ThreadMXBean");
+				if (type.isInstance(this.threadMXBean)) {
+					this.allocatedBytesMethod = type.getMethod("getThreadAllocatedBytes", new Class[] { Long.TYPE });
+				}
+			} catch (final Exception ignored) {
+				// not available on this jvm...
+			}
+		}
+		return this.allocatedBytesMethod;
+	}
+
+	private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+	private Method allocatedBytesMethod;
+
+	private boolean allocatedBytesMethodChecked;
+
+	private ServerSerializationFactory serializationFactory;
+
+	ServerSerializationFactory getSerializationFactory() {
+		return this.serializationFactory;
+	}
+
+	void setSerializationFactory(final ServerSerializationFactory serializationFactory) {
+		this.serializationFactory = serializationFactory;
+	}
+
+	private int iterations;
+
+	int getIterations() {
+		return this.iterations;
+	}
+
+	void setIterations(final int iterations) {
+		this.iterations = iterations;
+	}
+
+	private int warmupIterations;
+
+	int getWarmupIterations() {
+		return this.warmupIterations;
+	}
+
+	void setWarmupIterations(final int warmupIterations) {
+		this.warmupIterations = warmupIterations;
+	}
+
+	/**
+	 * A single operation that is timed.
+	 */
+	static abstract class Operation {
+		abstract Object run();
+	}
+}
@@ -67,7 +67,7 @@ abstract public class ClientObjectOutputStream extends ObjectOutputStreamImpl {
 		 }-*/;
 
 	native protected String escape(final String unescaped)/*-{
-			return unescaped.replace( /"/g, '\\"' );
+			return unescaped.replace( /\\/g, '\\\\' ).replace( /"/g, '\\"' );
 		}-*/;
 
 	native protected int findStringReference(final String string)/*-{	
@@ -63,10 +63,19 @@ abstract public class ObjectInputStreamImpl implements ObjectInputStream {
 	}
 
 	public Object readObject() {
+		return this.readObject(this.readInt());
+	}
+
+	/**
+	 * Returns the object identified by a reference that has already been read.
+	 * 
+	 * @param reference
+	 * @return
+	 */
+	protected Object readObject(final int reference) {
 		Object object = null;
 
 		while (true) {
-			final int reference = this.readInt();
 			// empty string is used to encode null..
 			if (this.isNull(reference)) {
 				break;
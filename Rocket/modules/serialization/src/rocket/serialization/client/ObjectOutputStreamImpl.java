@@ -35,6 +35,15 @@ abstract public class ObjectOutputStreamImpl implements ObjectOutputStream {
 			reference = this.addString(string);
 		}
 
+		this.writeReference(reference);
+	}
+
+	/**
+	 * Writes a reference to a string or previously written object.
+	 * 
+	 * @param reference
+	 */
+	protected void writeReference(final int reference) {
 		this.writeInt(reference);
 	}
 
@@ -83,7 +92,7 @@ abstract public class ObjectOutputStreamImpl implements ObjectOutputStream {
 			// check object cache...
 			final int reference = this.findReference(object);
 			if (0 != reference) {
-				this.writeInt(reference);
+				this.writeReference(reference);
 				break;
 			}
 
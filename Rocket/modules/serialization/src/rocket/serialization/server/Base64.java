@@ -0,0 +1,124 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import rocket.serialization.client.SerializationException;
+
+/**
+ * Encodes and decodes byte arrays written as a base 64 block by
+ * {@link ServerObjectOutputStream#writeByteArray(byte[])}. Unlike
+ * {@link rocket.util.server.Base64Encoder} no line breaks are added, so the
+ * encoded form never contains a separator.
+ * 
+ * @author Miroslav Pokorny
+ */
+class Base64 {
+
+	final static char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+	final static char PADDING = '=';
+
+	/**
+	 * Maps a character back to its six bit value, or -1 for characters not in
+	 * the alphabet.
+	 */
+	final static byte[] VALUES = buildValues();
+
+	static byte[] buildValues() {
+		final byte[] values = new byte[128];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = -1;
+		}
+		for (int i = 0; i < ALPHABET.length; i++) {
+			values[ALPHABET[i]] = (byte) i;
+		}
+		return values;
+	}
+
+	/**
+	 * Appends the base 64 form of the given bytes to the given buffer.
+	 * 
+	 * @param bytes
+	 * @param buf
+	 */
+	static void encode(final byte[] bytes, final StringBuffer buf) {
+		final char[] alphabet = ALPHABET;
+		final int length = bytes.length;
+		final int whole = length - length % 3;
+
+		int i = 0;
+		while (i < whole) {
+			final int bits = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+			buf.append(alphabet[bits >>> 18]);
+			buf.append(alphabet[(bits >>> 12) & 0x3F]);
+			buf.append(alphabet[(bits >>> 6) & 0x3F]);
+			buf.append(alphabet[bits & 0x3F]);
+			i = i + 3;
+		}
+
+		final int remaining = length - whole;
+		if (remaining > 0) {
+			int bits = (bytes[i] & 0xFF) << 16;
+			if (remaining == 2) {
+				bits = bits | (bytes[i + 1] & 0xFF) << 8;
+			}
+			buf.append(alphabet[bits >>> 18]);
+			buf.append(alphabet[(bits >>> 12) & 0x3F]);
+			buf.append(remaining == 2 ? alphabet[(bits >>> 6) & 0x3F] : PADDING);
+			buf.append(PADDING);
+		}
+	}
+
+	/**
+	 * Decodes the given base 64 text which must hold exactly byteCount bytes.
+	 * 
+	 * @param chars
+	 * @param byteCount
+	 * @return
+	 */
+	static byte[] decode(final CharSequence chars, final int byteCount) {
+		final int length = chars.length();
+		if (length != (byteCount + 2) / 3 * 4) {
+			throw new SerializationException("Base64 block of " + length + " chars does not hold " + byteCount + " bytes.");
+		}
+
+		final byte[] bytes = new byte[byteCount];
+		int j = 0;
+		for (int i = 0; i < length; i = i + 4) {
+			final int bits = value(chars, i) << 18 | value(chars, i + 1) << 12 | value(chars, i + 2) << 6 | value(chars, i + 3);
+			bytes[j++] = (byte) (bits >> 16);
+			if (j < byteCount) {
+				bytes[j++] = (byte) (bits >> 8);
+			}
+			if (j < byteCount) {
+				bytes[j++] = (byte) bits;
+			}
+		}
+		return bytes;
+	}
+
+	static int value(final CharSequence chars, final int index) {
+		final char c = chars.charAt(index);
+		int value = 0;
+		if (c != PADDING) {
+			value = c < VALUES.length ? VALUES[c] : -1;
+			if (-1 == value) {
+				throw new SerializationException("Invalid base64 char '" + c + "' at " + index);
+			}
+		}
+		return value;
+	}
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rocket.serialization.client.SerializationException;
+import rocket.util.client.Checker;
+
+/**
+ * Reads the binary encoding produced by a
+ * {@link BinaryServerObjectOutputStream}. Strings are read inline the first
+ * time their reference is encountered.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class BinaryServerObjectInputStream extends ServerObjectInputStream {
+
+	public BinaryServerObjectInputStream(final byte[] bytes) {
+		this(bytes, 0, bytes.length);
+	}
+
+	public BinaryServerObjectInputStream(final byte[] bytes, final int offset, final int length) {
+		super();
+
+		this.setStringList(this.createStringList());
+		this.prepare(bytes, offset, length);
+	}
+
+	protected void prepare(final byte[] bytes, final int offset, final int length) {
+		Checker.notNull("parameter:bytes", bytes);
+		Checker.between("parameter:offset", offset, 0, bytes.length + 1);
+		Checker.between("parameter:length", length, 0, bytes.length - offset + 1);
+
+		this.bytes = bytes;
+		this.position = offset;
+		this.end = offset + length;
+
+		this.readDictionaryFingerprint();
+	}
+
+	/**
+	 * Sets the dictionary and immediately verifies the stream was written
+	 * using the same dictionary, which means it must be set before anything
+	 * is read.
+	 */
+	public void setStringDictionary(final StringDictionary stringDictionary) {
+		super.setStringDictionary(stringDictionary);
+
+		if (null != this.bytes) {
+			this.readDictionaryFingerprint();
+		}
+	}
+
+	/**
+	 * Reads the dictionary size and fingerprint written by
+	 * {@link BinaryServerObjectOutputStream} and fails if they do not match
+	 * this stream's dictionary.
+	 */
+	protected void readDictionaryFingerprint() {
+		final StringDictionary dictionary = this.getStringDictionary();
+		if (null != dictionary) {
+			final int size = this.readVarint();
+			final int fingerprint = this.readFixedInt();
+			if (size != dictionary.getSize() || fingerprint != dictionary.getFingerprint()) {
+				throw new SerializationException("The stream was written using a different string dictionary, size: " + size
+						+ ", fingerprint: " + fingerprint + ", expected size: " + dictionary.getSize() + ", fingerprint: "
+						+ dictionary.getFingerprint());
+			}
+		}
+	}
+
+	/**
+	 * Resets this stream and then prepares to read the given bytes.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 */
+	public void reset(final byte[] bytes, final int offset, final int length) {
+		this.reset();
+		this.prepare(bytes, offset, length);
+	}
+
+	public void reset() {
+		super.reset();
+
+		this.getStringList().clear();
+		this.bytes = null;
+	}
+
+	public void reset(final CharSequence stream) {
+		throw new UnsupportedOperationException("Binary streams cannot read text, use reset(byte[],int,int)");
+	}
+
+	protected long getReadPosition() {
+		return this.position;
+	}
+
+	/**
+	 * The bytes being read.
+	 */
+	private byte[] bytes;
+
+	/**
+	 * The index of the next byte.
+	 */
+	private int position;
+
+	/**
+	 * The index after the last readable byte.
+	 */
+	private int end;
+
+	public boolean readBoolean() {
+		return this.readRawByte() != 0;
+	}
+
+	public byte readByte() {
+		return (byte) this.readRawByte();
+	}
+
+	public short readShort() {
+		return (short) this.readInt();
+	}
+
+	public int readInt() {
+		final int value = this.readVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public long readLong() {
+		long value = 0;
+		int shift = 0;
+		while (true) {
+			final int b = this.readRawByte();
+			value = value | ((long) (b & 0x7F) << shift);
+			if ((b & 0x80) == 0) {
+				break;
+			}
+			shift = shift + 7;
+			if (shift >= 64) {
+				this.throwMalformedVarint();
+			}
+		}
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public float readFloat() {
+		return Float.intBitsToFloat(this.readFixedInt());
+	}
+
+	public double readDouble() {
+		final long hi = this.readFixedInt();
+		final long lo = this.readFixedInt();
+		return Double.longBitsToDouble((hi << 32) | (lo & 0xffffffffL));
+	}
+
+	public char readChar() {
+		return (char) this.readVarint();
+	}
+
+	public boolean[] readBooleanArray(final int count) {
+		this.checkArrayCount(count);
+
+		final boolean[] array = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = this.readRawByte() != 0;
+		}
+		return array;
+	}
+
+	public byte[] readByteArray(final int count) {
+		this.checkArrayCount(count);
+		if (count > this.end - this.position) {
+			this.throwEndOfStream();
+		}
+
+		final byte[] array = new byte[count];
+		System.arraycopy(this.bytes, this.position, array, 0, count);
+		this.position = this.position + count;
+		return array;
+	}
+
+	public short[] readShortArray(final int count) {
+		this.checkArrayCount(count);
+
+		final short[] array = new short[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = (short) this.readInt();
+		}
+		return array;
+	}
+
+	public int[] readIntArray(final int count) {
+		this.checkArrayCount(count);
+
+		final int[] array = new int[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = this.readInt();
+		}
+		return array;
+	}
+
+	public long[] readLongArray(final int count) {
+		this.checkArrayCount(count);
+
+		final long[] array = new long[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = this.readLong();
+		}
+		return array;
+	}
+
+	public float[] readFloatArray(final int count) {
+		this.checkArrayCount(count);
+
+		final float[] array = new float[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = Float.intBitsToFloat(this.readFixedInt());
+		}
+		return array;
+	}
+
+	public double[] readDoubleArray(final int count) {
+		this.checkArrayCount(count);
+
+		final double[] array = new double[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = this.readDouble();
+		}
+		return array;
+	}
+
+	public char[] readCharArray(final int count) {
+		this.checkArrayCount(count);
+
+		final char[] array = new char[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = (char) this.readVarint();
+		}
+		return array;
+	}
+
+	protected int readVarint() {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			final int b = this.readRawByte();
+			value = value | ((b & 0x7F) << shift);
+			if ((b & 0x80) == 0) {
+				break;
+			}
+			shift = shift + 7;
+			if (shift >= 35) {
+				this.throwMalformedVarint();
+			}
+		}
+		return value;
+	}
+
+	protected int readFixedInt() {
+		final int b0 = this.readRawByte();
+		final int b1 = this.readRawByte();
+		final int b2 = this.readRawByte();
+		final int b3 = this.readRawByte();
+		return (b0 << 24) | (b1 << 16) | (b2 << 8) | b3;
+	}
+
+	protected int readRawByte() {
+		if (this.position >= this.end) {
+			this.throwEndOfStream();
+		}
+		return this.bytes[this.position++] & 0xFF;
+	}
+
+	protected void throwEndOfStream() {
+		throw new SerializationException("Attempt to read beyond the end of the stream.");
+	}
+
+	protected void throwMalformedVarint() {
+		throw new SerializationException("Malformed varint at " + this.position + " within stream.");
+	}
+
+	/**
+	 * Returns the string for the given reference. If the reference is the next
+	 * unused reference the string immediately follows in the stream.
+	 */
+	protected String getString(final int reference) {
+		final List<String> strings = this.getStringList();
+		final int index = reference - this.getFirstStringReference();
+
+		String string = null;
+		while (true) {
+			final StringDictionary dictionary = this.getStringDictionary();
+			if (null != dictionary && dictionary.isDictionaryReference(reference)) {
+				string = dictionary.getString(reference);
+				break;
+			}
+			if (index >= 0 && index < strings.size()) {
+				string = strings.get(index);
+				break;
+			}
+			if (index != strings.size()) {
+				this.throwInvalidStringReference(reference);
+			}
+			string = this.readCharacters();
+			strings.add(string);
+			break;
+		}
+		return string;
+	}
+
+	protected String readCharacters() {
+		final int byteCount = this.readVarint();
+		if (byteCount < 0 || byteCount > this.end - this.position) {
+			throw new SerializationException("String length " + byteCount + " exceeds the end of the stream.");
+		}
+		final int end = this.position + byteCount;
+
+		final byte[] bytes = this.bytes;
+		final char[] chars = new char[byteCount];
+		int charCount = 0;
+		int i = this.position;
+		while (i < end) {
+			final int b = bytes[i++] & 0xFF;
+			if (b < 0x80) {
+				chars[charCount++] = (char) b;
+				continue;
+			}
+			if ((b & 0xE0) == 0xC0 && i < end) {
+				chars[charCount++] = (char) (((b & 0x1F) << 6) | (bytes[i++] & 0x3F));
+				continue;
+			}
+			if ((b & 0xF0) == 0xE0 && i + 1 < end) {
+				chars[charCount++] = (char) (((b & 0x0F) << 12) | ((bytes[i] & 0x3F) << 6) | (bytes[i + 1] & 0x3F));
+				i = i + 2;
+				continue;
+			}
+			throw new SerializationException("Malformed string at " + (i - 1) + " within stream.");
+		}
+		this.position = end;
+		return new String(chars, 0, charCount);
+	}
+
+	/**
+	 * All strings read so far, indexed by reference minus the first string
+	 * reference.
+	 */
+	private List<String> stringList;
+
+	protected List<String> getStringList() {
+		Checker.notNull("field:stringList", stringList);
+		return this.stringList;
+	}
+
+	protected void setStringList(final List<String> stringList) {
+		Checker.notNull("parameter:stringList", stringList);
+		this.stringList = stringList;
+	}
+
+	protected List<String> createStringList() {
+		return new ArrayList<String>();
+	}
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import rocket.serialization.client.SerializationException;
+import rocket.util.client.Checker;
+
+/**
+ * A {@link ServerObjectOutputStream} which writes a compact binary encoding
+ * rather than text. It is intended for server to server calls where the
+ * receiver is a {@link BinaryServerObjectInputStream}, browsers continue to use
+ * the text format.
+ * 
+ * <ul>
+ * <li>booleans and bytes are written as a single byte</li>
+ * <li>shorts, ints and references are written as zig-zag varints</li>
+ * <li>chars are written as unsigned varints</li>
+ * <li>longs are written as a single zig-zag varint rather than two ints</li>
+ * <li>floats and doubles are written as their big endian IEEE bits</li>
+ * <li>strings are written inline the first time they are referenced, as a
+ * varint length followed by UTF-8 bytes. Each char is encoded separately (like
+ * {@link java.io.DataOutput#writeUTF(String)}) so any String round trips.</li>
+ * </ul>
+ * 
+ * Because there is no string table values are written in a single pass
+ * directly to the given {@link OutputStream} via a small buffer.
+ * 
+ * When a {@link StringDictionary} is set the stream begins with the dictionary
+ * size as a varint followed by its fingerprint as a big endian int, streams
+ * without a dictionary have no header.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class BinaryServerObjectOutputStream extends ServerObjectOutputStream {
+
+	/**
+	 * The content type used to select this format when negotiating.
+	 */
+	public final static String CONTENT_TYPE = "application/x-rocket-serialization-binary";
+
+	final static int BUFFER_SIZE = 8192;
+
+	public BinaryServerObjectOutputStream(final OutputStream output) {
+		super();
+
+		this.setOutput(output);
+		this.setBuffer(new byte[BUFFER_SIZE]);
+	}
+
+	public void writeBoolean(final boolean booleanValue) {
+		this.writeRawByte(booleanValue ? 1 : 0);
+	}
+
+	public void writeByte(final byte byteValue) {
+		this.writeRawByte(byteValue);
+	}
+
+	public void writeShort(final short shortValue) {
+		this.writeInt(shortValue);
+	}
+
+	public void writeInt(final int intValue) {
+		this.writeVarint((intValue << 1) ^ (intValue >> 31));
+	}
+
+	public void writeLong(final long longValue) {
+		long value = (longValue << 1) ^ (longValue >> 63);
+		while ((value & ~0x7FL) != 0) {
+			this.writeRawByte(((int) value & 0x7F) | 0x80);
+			value = value >>> 7;
+		}
+		this.writeRawByte((int) value);
+	}
+
+	public void writeFloat(final float floatValue) {
+		this.writeFixedInt(Float.floatToIntBits(floatValue));
+	}
+
+	public void writeDouble(final double doubleValue) {
+		final long bits = Double.doubleToLongBits(doubleValue);
+		this.writeFixedInt((int) (bits >>> 32));
+		this.writeFixedInt((int) bits);
+	}
+
+	public void writeChar(final char charValue) {
+		this.writeVarint(charValue);
+	}
+
+	public void writeBooleanArray(final boolean[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			this.writeRawByte(array[i] ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Byte arrays are always written as a count followed by the raw bytes, the
+	 * base 64 option does not apply to the binary format.
+	 */
+	public void writeByteArray(final byte[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+
+		final byte[] buffer = this.buffer;
+		int i = 0;
+		while (i < count) {
+			if (this.count == buffer.length) {
+				this.flushBuffer();
+			}
+			final int copy = Math.min(count - i, buffer.length - this.count);
+			System.arraycopy(array, i, buffer, this.count, copy);
+			this.count = this.count + copy;
+			i = i + copy;
+		}
+	}
+
+	public void writeShortArray(final short[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			this.writeInt(array[i]);
+		}
+	}
+
+	public void writeIntArray(final int[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			this.writeInt(array[i]);
+		}
+	}
+
+	public void writeLongArray(final long[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			this.writeLong(array[i]);
+		}
+	}
+
+	public void writeFloatArray(final float[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			this.writeFixedInt(Float.floatToIntBits(array[i]));
+		}
+	}
+
+	public void writeDoubleArray(final double[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			final long bits = Double.doubleToLongBits(array[i]);
+			this.writeFixedInt((int) (bits >>> 32));
+			this.writeFixedInt((int) bits);
+		}
+	}
+
+	public void writeCharArray(final char[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			this.writeVarint(array[i]);
+		}
+	}
+
+	/**
+	 * Segments are merged as text, which means binary output is always written
+	 * on the calling thread.
+	 */
+	public boolean isParallel(final int elementCount) {
+		return false;
+	}
+
+	/**
+	 * Writes the string reference, and if this is the first time the string
+	 * has been written its characters immediately follow.
+	 */
+	protected void writeString(final String string, final SerializationListener listener) {
+		int reference = this.findStringReference(string);
+		if (null != listener) {
+			listener.stringWritten(0 != reference);
+		}
+		if (0 != reference) {
+			this.writeInt(reference);
+		} else {
+			reference = this.addString(string);
+			this.writeInt(reference);
+			this.writeCharacters(string);
+		}
+	}
+
+	protected void writeCharacters(final String string) {
+		final int length = string.length();
+
+		int byteCount = 0;
+		for (int i = 0; i < length; i++) {
+			final char c = string.charAt(i);
+			byteCount += c != 0 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+		}
+		this.writeVarint(byteCount);
+
+		for (int i = 0; i < length; i++) {
+			final char c = string.charAt(i);
+			if (c != 0 && c < 0x80) {
+				this.writeRawByte(c);
+				continue;
+			}
+			if (c < 0x800) {
+				this.writeRawByte(0xC0 | (c >> 6));
+				this.writeRawByte(0x80 | (c & 0x3F));
+				continue;
+			}
+			this.writeRawByte(0xE0 | (c >> 12));
+			this.writeRawByte(0x80 | ((c >> 6) & 0x3F));
+			this.writeRawByte(0x80 | (c & 0x3F));
+		}
+	}
+
+	protected void writeVarint(final int unsigned) {
+		int value = unsigned;
+		while ((value & ~0x7F) != 0) {
+			this.writeRawByte((value & 0x7F) | 0x80);
+			value = value >>> 7;
+		}
+		this.writeRawByte(value);
+	}
+
+	protected void writeFixedInt(final int value) {
+		this.writeRawByte(value >>> 24);
+		this.writeRawByte(value >>> 16);
+		this.writeRawByte(value >>> 8);
+		this.writeRawByte(value);
+	}
+
+	protected void writeRawByte(final int value) {
+		final byte[] buffer = this.buffer;
+		if (this.count == buffer.length) {
+			this.flushBuffer();
+		}
+		buffer[this.count++] = (byte) value;
+	}
+
+	/**
+	 * Writes any buffered bytes to the underlying output and then flushes it.
+	 */
+	public void flush() {
+		this.flushBuffer();
+		try {
+			this.getOutput().flush();
+		} catch (final IOException caught) {
+			throw new SerializationException("Unable to flush output", caught);
+		}
+	}
+
+	protected void flushBuffer() {
+		try {
+			this.getOutput().write(this.buffer, 0, this.count);
+			this.flushedLength = this.flushedLength + this.count;
+			this.count = 0;
+		} catch (final IOException caught) {
+			throw new SerializationException("Unable to write output", caught);
+		}
+	}
+
+	/**
+	 * Sets the dictionary and immediately writes its size and fingerprint,
+	 * which means it must be set before anything else is written.
+	 */
+	public void setStringDictionary(final StringDictionary stringDictionary) {
+		if (0 != this.count || 0 != this.flushedLength) {
+			Checker.fail("field:stringDictionary", "The string dictionary must be set before anything is written.");
+		}
+		super.setStringDictionary(stringDictionary);
+		this.writeDictionaryFingerprint();
+	}
+
+	protected void writeDictionaryFingerprint() {
+		final StringDictionary dictionary = this.getStringDictionary();
+		if (null != dictionary) {
+			this.writeVarint(dictionary.getSize());
+			this.writeFixedInt(dictionary.getFingerprint());
+		}
+	}
+
+	/**
+	 * The binary format has no textual representation, use {@link #flush()}
+	 * to complete writing to the output.
+	 */
+	public String getText() {
+		throw new UnsupportedOperationException("The binary format has no text form, use flush()");
+	}
+
+	/**
+	 * Clears the string and object tables along with any unflushed bytes. The
+	 * output remains the same and the dictionary header, if any, is written
+	 * again for the next stream.
+	 */
+	public void reset() {
+		super.reset();
+
+		this.count = 0;
+		this.flushedLength = 0;
+		this.writeDictionaryFingerprint();
+	}
+
+	/**
+	 * The destination of all bytes.
+	 */
+	private OutputStream output;
+
+	protected OutputStream getOutput() {
+		Checker.notNull("field:output", output);
+		return this.output;
+	}
+
+	public void setOutput(final OutputStream output) {
+		Checker.notNull("parameter:output", output);
+		this.output = output;
+	}
+
+	/**
+	 * Bytes waiting to be written to the output.
+	 */
+	private byte[] buffer;
+
+	protected void setBuffer(final byte[] buffer) {
+		Checker.notNull("parameter:buffer", buffer);
+		this.buffer = buffer;
+	}
+
+	/**
+	 * The number of bytes within the buffer.
+	 */
+	private int count;
+
+	/**
+	 * The number of bytes already flushed to the output.
+	 */
+	private long flushedLength;
+
+	protected long getWrittenLength() {
+		return this.flushedLength + this.count;
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import net.sf.cglib.core.AbstractClassGenerator;
+import net.sf.cglib.core.ClassEmitter;
+import net.sf.cglib.core.CodeEmitter;
+import net.sf.cglib.core.Constants;
+import net.sf.cglib.core.EmitUtils;
+import net.sf.cglib.core.Local;
+import net.sf.cglib.core.ReflectUtils;
+import net.sf.cglib.core.Signature;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Type;
+
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.client.ObjectOutputStream;
+
+/**
+ * A {@link FieldSerializerFactory} that uses CGLIB to generate a class for each
+ * plan which reads and writes fields directly using getfield/putfield, calling
+ * the primitive methods on the object streams without any boxing. This is the
+ * server equivalent of the field reading and writing code that the
+ * {@link rocket.serialization.rebind.SerializationFactoryGenerator} produces
+ * for the client.
+ *
+ * Generated classes live in the same package and class loader as the class
+ * being serialized, which means private fields cannot be reached. Any plan that
+ * contains a private field, a field whose type is not visible or belongs to a
+ * java.* class falls back to a {@link ReflectiveFieldSerializer}.
+ *
+ * To activate call
+ * <code>ReflectionHelper.setFieldSerializerFactory( new CgLibFieldSerializerFactory() );</code>
+ *
+ * @author Miroslav Pokorny
+ */
+public class CgLibFieldSerializerFactory implements FieldSerializerFactory {
+
+	public CgLibFieldSerializerFactory() {
+		super();
+	}
+
+	public FieldSerializer createFieldSerializer(final FieldPlan plan) {
+		FieldSerializer serializer = null;
+
+		if (this.canGenerate(plan)) {
+			try {
+				serializer = this.generateFieldSerializer(plan);
+			} catch (final RuntimeException generationFailed) {
+				// fall back to reflection below...
+			}
+		}
+		if (null == serializer) {
+			serializer = this.createReflectiveFieldSerializer(plan);
+		}
+		return serializer;
+	}
+
+	/**
+	 * Tests if a generated class will be able to access all the fields of the
+	 * given plan.
+	 *
+	 * @param plan
+	 * @return
+	 */
+	protected boolean canGenerate(final FieldPlan plan) {
+		boolean generate = false;
+
+		while (true) {
+			final Class type = plan.getType();
+			final ClassLoader classLoader = type.getClassLoader();
+			if (null == classLoader) {
+				break;
+			}
+			final String packageName = this.getPackageName(type);
+			if (packageName.startsWith("java.")) {
+				break;
+			}
+
+			final Field[] fields = plan.getFields();
+			int i = 0;
+			while (i < fields.length) {
+				final Field field = fields[i];
+				if (Modifier.isPrivate(field.getModifiers())) {
+					break;
+				}
+				if (false == this.isVisible(field.getType(), packageName, classLoader)) {
+					break;
+				}
+				i++;
+			}
+			generate = i == fields.length;
+			break;
+		}
+
+		return generate;
+	}
+
+	/**
+	 * Tests if the given field type may be referenced by a class in the given
+	 * package and class loader.
+	 */
+	protected boolean isVisible(final Class fieldType, final String packageName, final ClassLoader classLoader) {
+		Class type = fieldType;
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+
+		boolean visible = true;
+		if (false == type.isPrimitive() && false == Modifier.isPublic(type.getModifiers())) {
+			visible = packageName.equals(this.getPackageName(type)) && classLoader == type.getClassLoader();
+		}
+		return visible;
+	}
+
+	protected String getPackageName(final Class type) {
+		final String name = type.getName();
+		final int dot = name.lastIndexOf('.');
+		return -1 == dot ? "" : name.substring(0, dot);
+	}
+
+	protected FieldSerializer generateFieldSerializer(final FieldPlan plan) {
+		return (FieldSerializer) new Generator(plan).create();
+	}
+
+	protected FieldSerializer createReflectiveFieldSerializer(final FieldPlan plan) {
+		return new ReflectiveFieldSerializer(plan);
+	}
+
+	static final Type FIELD_SERIALIZER = Type.getType(FieldSerializer.class);
+
+	static final Type OBJECT_OUTPUT_STREAM = Type.getType(ObjectOutputStream.class);
+
+	static final Type OBJECT_INPUT_STREAM = Type.getType(ObjectInputStream.class);
+
+	static final Signature WRITE_FIELDS = new Signature("writeFields", Type.VOID_TYPE, new Type[] { Constants.TYPE_OBJECT,
+			OBJECT_OUTPUT_STREAM });
+
+	static final Signature READ_FIELDS = new Signature("readFields", Type.VOID_TYPE, new Type[] { Constants.TYPE_OBJECT,
+			OBJECT_INPUT_STREAM });
+
+	/**
+	 * The names of the write methods on ObjectOutputStream and read methods on
+	 * ObjectInputStream indexed by {@link FieldPlan} type tag.
+	 */
+	static final String[] WRITE_METHODS = { "writeObject", "writeBoolean", "writeByte", "writeShort", "writeInt", "writeLong",
+			"writeFloat", "writeDouble", "writeChar" };
+
+	static final String[] READ_METHODS = { "readObject", "readBoolean", "readByte", "readShort", "readInt", "readLong", "readFloat",
+			"readDouble", "readChar" };
+
+	static final Type[] STREAM_TYPES = { Constants.TYPE_OBJECT, Type.BOOLEAN_TYPE, Type.BYTE_TYPE, Type.SHORT_TYPE, Type.INT_TYPE,
+			Type.LONG_TYPE, Type.FLOAT_TYPE, Type.DOUBLE_TYPE, Type.CHAR_TYPE };
+
+	/**
+	 * Generates a single FieldSerializer class for a plan.
+	 */
+	static class Generator extends AbstractClassGenerator {
+
+		static final Source SOURCE = new Source(CgLibFieldSerializerFactory.class.getName());
+
+		Generator(final FieldPlan plan) {
+			super(SOURCE);
+
+			this.plan = plan;
+
+			final Class type = plan.getType();
+			this.setNamePrefix(type.getName());
+			this.setClassLoader(type.getClassLoader());
+		}
+
+		final FieldPlan plan;
+
+		Object create() {
+			return super.create(this.plan.getType().getName());
+		}
+
+		protected ClassLoader getDefaultClassLoader() {
+			return this.plan.getType().getClassLoader();
+		}
+
+		protected Object firstInstance(final Class type) throws Exception {
+			return ReflectUtils.newInstance(type);
+		}
+
+		protected Object nextInstance(final Object instance) throws Exception {
+			return instance;
+		}
+
+		public void generateClass(final ClassVisitor visitor) throws Exception {
+			final ClassEmitter emitter = new ClassEmitter(visitor);
+			emitter.begin_class(Constants.ACC_PUBLIC, this.getClassName(), Constants.TYPE_OBJECT, new Type[] { FIELD_SERIALIZER },
+					Constants.SOURCE_FILE);
+			EmitUtils.null_constructor(emitter);
+
+			this.generateWriteFields(emitter);
+			this.generateReadFields(emitter);
+
+			emitter.end_class();
+		}
+
+		void generateWriteFields(final ClassEmitter classEmitter) {
+			final Type owner = Type.getType(this.plan.getType());
+			final CodeEmitter emitter = classEmitter.begin_method(Constants.ACC_PUBLIC, WRITE_FIELDS, null, null);
+
+			final Local instance = emitter.make_local(owner);
+			emitter.load_arg(0);
+			emitter.checkcast(owner);
+			emitter.store_local(instance);
+
+			final Field[] fields = this.plan.getFields();
+			final int[] fieldTypes = this.plan.getFieldTypes();
+			for (int i = 0; i < fields.length; i++) {
+				final Field field = fields[i];
+				final int fieldType = fieldTypes[i];
+
+				// objectOutputStream.writeXXX( instance.field );
+				emitter.load_arg(1);
+				emitter.load_local(instance);
+				emitter.getfield(owner, field.getName(), Type.getType(field.getType()));
+				emitter.invoke_interface(OBJECT_OUTPUT_STREAM, new Signature(WRITE_METHODS[fieldType], Type.VOID_TYPE,
+						new Type[] { STREAM_TYPES[fieldType] }));
+			}
+
+			emitter.return_value();
+			emitter.end_method();
+		}
+
+		void generateReadFields(final ClassEmitter classEmitter) {
+			final Type owner = Type.getType(this.plan.getType());
+			final CodeEmitter emitter = classEmitter.begin_method(Constants.ACC_PUBLIC, READ_FIELDS, null, null);
+
+			final Local instance = emitter.make_local(owner);
+			emitter.load_arg(0);
+			emitter.checkcast(owner);
+			emitter.store_local(instance);
+
+			final Field[] fields = this.plan.getFields();
+			final int[] fieldTypes = this.plan.getFieldTypes();
+			for (int i = 0; i < fields.length; i++) {
+				final Field field = fields[i];
+				final int fieldType = fieldTypes[i];
+				final Type type = Type.getType(field.getType());
+
+				// instance.field = (Type) objectInputStream.readXXX();
+				emitter.load_local(instance);
+				emitter.load_arg(1);
+				emitter.invoke_interface(OBJECT_INPUT_STREAM, new Signature(READ_METHODS[fieldType], STREAM_TYPES[fieldType],
+						Constants.TYPES_EMPTY));
+				if (FieldPlan.OBJECT == fieldType) {
+					emitter.checkcast(type);
+				}
+				emitter.putfield(owner, field.getName(), type);
+			}
+
+			emitter.return_value();
+			emitter.end_method();
+		}
+	}
+}
@@ -0,0 +1,541 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import rocket.serialization.client.SerializationException;
+import rocket.util.client.Checker;
+
+/**
+ * A cursor that walks over the comma separated values of a serialized stream,
+ * parsing each value in place. Unlike splitting the stream into a String[] no
+ * intermediate strings are created for numbers or booleans.
+ * 
+ * Decimals that are short enough to be converted exactly are also parsed in
+ * place, anything else such as exponents, NaN or Infinity falls back to
+ * {@link Double#parseDouble(String)}.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class CharSequenceCursor {
+
+	/**
+	 * Powers of ten that are exactly representable as a double.
+	 */
+	final static double[] DOUBLE_POWERS = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * Powers of ten that are exactly representable as a float.
+	 */
+	final static float[] FLOAT_POWERS = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
+	/**
+	 * The maximum number of digits that always fit within the mantissa of a
+	 * double
+	 */
+	final static int DOUBLE_DIGITS = 15;
+
+	/**
+	 * The maximum number of digits that always fit within the mantissa of a
+	 * float
+	 */
+	final static int FLOAT_DIGITS = 7;
+
+	/**
+	 * The character within the string table that introduces an escaped
+	 * character.
+	 */
+	final static char ESCAPE = '\\';
+
+	public CharSequenceCursor(final CharSequence chars, final int position, final int end) {
+		super();
+
+		this.setChars(chars);
+		this.setEnd(end);
+		this.setPosition(position);
+	}
+
+	/**
+	 * The characters being parsed.
+	 */
+	private CharSequence chars;
+
+	protected CharSequence getChars() {
+		Checker.notNull("field:chars", chars);
+		return this.chars;
+	}
+
+	protected void setChars(final CharSequence chars) {
+		Checker.notNull("parameter:chars", chars);
+		this.chars = chars;
+	}
+
+	/**
+	 * The index of the next character to be consumed.
+	 */
+	private int position;
+
+	public int getPosition() {
+		return this.position;
+	}
+
+	public void setPosition(final int position) {
+		Checker.between("parameter:position", position, 0, this.end + 1);
+		this.position = position;
+	}
+
+	/**
+	 * The index after the last character that may be consumed.
+	 */
+	private int end;
+
+	public int getEnd() {
+		return this.end;
+	}
+
+	protected void setEnd(final int end) {
+		Checker.between("parameter:end", end, 0, this.getChars().length() + 1);
+		this.end = end;
+	}
+
+	public boolean hasMoreValues() {
+		return this.position < this.end;
+	}
+
+	public boolean readBoolean() {
+		boolean value = false;
+
+		while (true) {
+			if (this.consumeIfMatches("true")) {
+				value = true;
+				break;
+			}
+			if (this.consumeIfMatches("false")) {
+				break;
+			}
+			this.throwInvalidValue("boolean", this.position);
+		}
+
+		this.consumeSeparator();
+		return value;
+	}
+
+	protected boolean consumeIfMatches(final String token) {
+		final CharSequence chars = this.getChars();
+		final int position = this.position;
+		final int length = token.length();
+
+		boolean matched = position + length <= this.end;
+		if (matched) {
+			for (int i = 0; i < length; i++) {
+				if (chars.charAt(position + i) != token.charAt(i)) {
+					matched = false;
+					break;
+				}
+			}
+		}
+		if (matched) {
+			this.position = position + length;
+		}
+		return matched;
+	}
+
+	public int readInt() {
+		final CharSequence chars = this.getChars();
+		final int start = this.position;
+		final int end = this.end;
+		if (start >= end) {
+			this.throwEndOfStream();
+		}
+
+		int i = start;
+		final boolean negative = chars.charAt(i) == '-';
+		if (negative) {
+			i++;
+		}
+
+		final int firstDigit = i;
+		long value = 0;
+		while (i < end) {
+			final char c = chars.charAt(i);
+			if (c < '0' || c > '9') {
+				break;
+			}
+			value = value * 10 + (c - '0');
+			if (value > 0x80000000L) {
+				this.throwInvalidValue("int", start);
+			}
+			i++;
+		}
+		if (i == firstDigit) {
+			this.throwInvalidValue("int", start);
+		}
+		if (negative) {
+			value = -value;
+		}
+		if (value > Integer.MAX_VALUE) {
+			this.throwInvalidValue("int", start);
+		}
+
+		this.position = i;
+		this.consumeSeparator();
+		return (int) value;
+	}
+
+	public float readFloat() {
+		return (float) this.readDecimal(true);
+	}
+
+	public double readDouble() {
+		return this.readDecimal(false);
+	}
+
+	/**
+	 * Parses a decimal in place if it has few enough digits to be exactly
+	 * converted otherwise defers to the JDK.
+	 * 
+	 * @param single
+	 *            When true the value is parsed as a float.
+	 * @return
+	 */
+	protected double readDecimal(final boolean single) {
+		final CharSequence chars = this.getChars();
+		final int start = this.position;
+		final int end = this.end;
+		if (start >= end) {
+			this.throwEndOfStream();
+		}
+
+		int i = start;
+		final boolean negative = chars.charAt(i) == '-';
+		if (negative) {
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean fraction = false;
+
+		while (i < end) {
+			final char c = chars.charAt(i);
+			if (c == '.' && false == fraction) {
+				fraction = true;
+				i++;
+				continue;
+			}
+			if (c < '0' || c > '9') {
+				break;
+			}
+			if (digits < DOUBLE_DIGITS + 1) {
+				mantissa = mantissa * 10 + (c - '0');
+			}
+			digits++;
+			if (fraction) {
+				fractionDigits++;
+			}
+			i++;
+		}
+
+		double value = 0;
+		final boolean terminated = i == end || chars.charAt(i) == ',';
+		if (terminated && digits > 0 && single && digits <= FLOAT_DIGITS && fractionDigits < FLOAT_POWERS.length) {
+			final float floatValue = mantissa / FLOAT_POWERS[fractionDigits];
+			value = negative ? -floatValue : floatValue;
+			this.position = i;
+		} else {
+			if (terminated && digits > 0 && false == single && digits <= DOUBLE_DIGITS && fractionDigits < DOUBLE_POWERS.length) {
+				final double doubleValue = mantissa / DOUBLE_POWERS[fractionDigits];
+				value = negative ? -doubleValue : doubleValue;
+				this.position = i;
+			} else {
+				value = this.parseDecimal(start, single);
+			}
+		}
+
+		this.consumeSeparator();
+		return value;
+	}
+
+	/**
+	 * Slow path that extracts the value into a String and parses it using the
+	 * JDK.
+	 * 
+	 * @param start
+	 * @param single
+	 * @return
+	 */
+	protected double parseDecimal(final int start, final boolean single) {
+		final String token = this.readToken();
+		try {
+			return single ? Float.parseFloat(token) : Double.parseDouble(token);
+		} catch (final NumberFormatException invalid) {
+			this.throwInvalidValue(single ? "float" : "double", start);
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns all characters up to but excluding the next separator without
+	 * consuming the separator.
+	 * 
+	 * @return
+	 */
+	protected String readToken() {
+		final CharSequence chars = this.getChars();
+		final int start = this.position;
+		final int end = this.end;
+
+		int i = start;
+		while (i < end) {
+			if (chars.charAt(i) == ',') {
+				break;
+			}
+			i++;
+		}
+		this.position = i;
+		return chars.subSequence(start, i).toString();
+	}
+
+	/**
+	 * Moves past a quoted string without decoding it, returning the position
+	 * of its opening quote so it may be read later using
+	 * {@link #readString(int)}.
+	 * 
+	 * @return
+	 */
+	public int skipString() {
+		final CharSequence chars = this.getChars();
+		final int end = this.end;
+		final int start = this.position;
+		int j = start;
+
+		// consume leading double quote...
+		if (j >= end || chars.charAt(j) != '"') {
+			this.throwInvalidValue("string", j);
+		}
+		j++;
+
+		while (true) {
+			if (j >= end) {
+				this.throwEndOfStream();
+			}
+			final char c = chars.charAt(j);
+			j++;
+			if (c == '"') {
+				break;
+			}
+			// the escaped char is never a closing quote...
+			if (c == ESCAPE) {
+				j++;
+			}
+		}
+
+		this.position = j;
+		this.consumeSeparator();
+		return start;
+	}
+
+	/**
+	 * Reads the quoted string starting at the given position, leaving the
+	 * position of this cursor unchanged.
+	 * 
+	 * @param position
+	 * @return
+	 */
+	public String readString(final int position) {
+		final int saved = this.position;
+		try {
+			this.setPosition(position);
+			return this.readString();
+		} finally {
+			this.position = saved;
+		}
+	}
+
+	/**
+	 * Reads a quoted string as found within the string table. Strings without
+	 * any escaped characters are copied in a single step.
+	 * 
+	 * @return
+	 */
+	public String readString() {
+		final CharSequence chars = this.getChars();
+		final int end = this.end;
+		int j = this.position;
+
+		// consume leading double quote...
+		if (j >= end || chars.charAt(j) != '"') {
+			this.throwInvalidValue("string", j);
+		}
+		j++;
+
+		// fast path find the closing quote when no escaped chars are present.
+		final int first = j;
+		while (j < end) {
+			final char c = chars.charAt(j);
+			if (c == '"' || c == ESCAPE) {
+				break;
+			}
+			j++;
+		}
+		if (j == end) {
+			this.throwEndOfStream();
+		}
+
+		String string = null;
+		if (chars.charAt(j) == '"') {
+			string = chars.subSequence(first, j).toString();
+			j++;
+		} else {
+			final StringBuffer buf = new StringBuffer();
+			buf.append(chars.subSequence(first, j));
+
+			while (true) {
+				// consume a char within the quoted string...
+				if (j >= end) {
+					this.throwEndOfStream();
+				}
+				final char c = chars.charAt(j);
+				j++;
+
+				// check if closing quote...
+				if (c == '"') {
+					break;
+				}
+
+				// not a backslash add literally...
+				if (c != ESCAPE) {
+					buf.append(c);
+					continue;
+				}
+
+				// handle escaped char...
+				if (j >= end) {
+					this.throwEndOfStream();
+				}
+				final char d = chars.charAt(j);
+				j++;
+
+				if (d == 'u') {
+					buf.append(this.readUnicodeEscape(j));
+					j = j + 4;
+					continue;
+				}
+				final char unescaped = CharSequenceCursor.unescape(d);
+				if (0 != unescaped || d == '\0') {
+					buf.append(unescaped);
+					continue;
+				}
+				throw new SerializationException("Unknown escaped char '" + d + "'.");
+			}
+			string = buf.toString();
+		}
+
+		this.position = j;
+		this.consumeSeparator();
+		return string;
+	}
+
+	/**
+	 * Returns the character represented by a single character escape sequence
+	 * or 0 if the character is not a known escape. Characters such as a raw tab
+	 * or newline that follow the escape character represent themselves.
+	 * 
+	 * @param c
+	 * @return
+	 */
+	static char unescape(final char c) {
+		char unescaped = 0;
+		switch (c) {
+		case 'b':
+			unescaped = '\b';
+			break;
+		case 'f':
+			unescaped = '\f';
+			break;
+		case 'n':
+			unescaped = '\n';
+			break;
+		case 'r':
+			unescaped = '\r';
+			break;
+		case 't':
+			unescaped = '\t';
+			break;
+		case '"':
+		case '\\':
+		case '/':
+		case '\'':
+		case '\b':
+		case '\f':
+		case '\n':
+		case '\r':
+		case '\t':
+			unescaped = c;
+			break;
+		}
+		return unescaped;
+	}
+
+	/**
+	 * Reads the four hex digits that follow a backslash u escape sequence.
+	 * 
+	 * @param start
+	 * @return
+	 */
+	protected char readUnicodeEscape(final int start) {
+		final CharSequence chars = this.getChars();
+		if (start + 4 > this.end) {
+			this.throwEndOfStream();
+		}
+
+		int value = 0;
+		for (int i = start; i < start + 4; i++) {
+			final int digit = Character.digit(chars.charAt(i), 16);
+			if (-1 == digit) {
+				this.throwInvalidValue("unicode escape", start);
+			}
+			value = (value << 4) | digit;
+		}
+		return (char) value;
+	}
+
+	/**
+	 * Consumes the comma that follows a value, unless the end has been reached.
+	 */
+	protected void consumeSeparator() {
+		final int position = this.position;
+		if (position < this.end) {
+			if (this.getChars().charAt(position) != ',') {
+				this.throwInvalidValue("separator", position);
+			}
+			this.position = position + 1;
+		}
+	}
+
+	protected void throwEndOfStream() {
+		throw new SerializationException("Attempt to read beyond the end of the stream.");
+	}
+
+	protected void throwInvalidValue(final String type, final int position) {
+		throw new SerializationException("Invalid " + type + " at " + position + " within stream.");
+	}
+
+	public String toString() {
+		return super.toString() + ", position: " + position + ", end: " + end;
+	}
+}
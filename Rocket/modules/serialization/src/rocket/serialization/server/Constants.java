@@ -24,4 +24,9 @@ class Constants {
 	final static String MESSAGE_FIELD = "detailMessage";
 	final static String CAUSE_FIELD = "cause";
 	final static String STACK_TRACE_FIELD = "stackTrace";
+
+	/**
+	 * The same black list file that is read when generating client serializers.
+	 */
+	final static String BLACKLIST_FILENAME = "rocket-Serialization.txt";
 }
\ No newline at end of file
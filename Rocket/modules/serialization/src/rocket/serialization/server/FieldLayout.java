@@ -0,0 +1,257 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.client.SerializationException;
+import rocket.util.client.Checker;
+
+/**
+ * Describes all the serializable fields of a class including those of its super
+ * types, in the order they are written by
+ * {@link rocket.serialization.server.writer.ReflectiveWriter}.
+ * 
+ * A layout is identified by a schema hash of the name and type tag of each
+ * field. When streams are {@link ServerObjectOutputStream#isVersioned()
+ * versioned} the layout of each type is written once per stream so a reader
+ * whose classes have gained or lost fields may still read the values. A
+ * reader whose local layout has the same schema hash simply reads fields in
+ * order using the fast path.
+ * 
+ * Layouts that are read from a stream may contain null fields, these are
+ * fields the writer knew about but the reader does not and their values are
+ * skipped.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class FieldLayout {
+
+	/**
+	 * Builds the local layout for the given class by concatenating the fields
+	 * of each plan from the class up to but excluding java.lang.Object.
+	 * 
+	 * @param classs
+	 * @return
+	 */
+	static FieldLayout build(final Class classs) {
+		final List<Field> fields = new ArrayList<Field>();
+		final List<Integer> fieldTypes = new ArrayList<Integer>();
+
+		Class current = classs;
+		while (null != current) {
+			final FieldPlan plan = ReflectionHelper.getFieldPlan(current);
+			final Field[] planFields = plan.getFields();
+			final int[] planFieldTypes = plan.getFieldTypes();
+			for (int i = 0; i < planFields.length; i++) {
+				fields.add(planFields[i]);
+				fieldTypes.add(new Integer(planFieldTypes[i]));
+			}
+			current = plan.getSuperType();
+		}
+
+		final int count = fields.size();
+		final String[] names = new String[count];
+		final int[] types = new int[count];
+		for (int i = 0; i < count; i++) {
+			names[i] = fields.get(i).getName();
+			types[i] = fieldTypes.get(i).intValue();
+		}
+
+		return new FieldLayout(fields.toArray(new Field[count]), names, types);
+	}
+
+	/**
+	 * Reads a layout written by {@link #write(ObjectOutputStream)} and matches
+	 * each field by name and type tag against the given local layout. When the
+	 * schema hashes are the same the local layout is returned.
+	 * 
+	 * @param local
+	 * @param objectInputStream
+	 * @return
+	 */
+	static public FieldLayout read(final FieldLayout local, final ObjectInputStream objectInputStream) {
+		final int schemaHash = objectInputStream.readInt();
+		final int count = objectInputStream.readInt();
+		if (count < 0) {
+			throw new SerializationException("Invalid field count " + count + " within layout.");
+		}
+
+		final String[] names = new String[count];
+		final int[] fieldTypes = new int[count];
+		for (int i = 0; i < count; i++) {
+			names[i] = (String) objectInputStream.readObject();
+			fieldTypes[i] = objectInputStream.readByte();
+		}
+
+		FieldLayout layout = local;
+		if (schemaHash != local.getSchemaHash() || false == local.sameAs(names, fieldTypes)) {
+			layout = new FieldLayout(local.match(names, fieldTypes), names, fieldTypes);
+		}
+		return layout;
+	}
+
+	static int computeSchemaHash(final String[] names, final int[] fieldTypes) {
+		int hash = names.length;
+		for (int i = 0; i < names.length; i++) {
+			hash = hash * 31 + names[i].hashCode();
+			hash = hash * 31 + fieldTypes[i];
+		}
+		return hash;
+	}
+
+	FieldLayout(final Field[] fields, final String[] names, final int[] fieldTypes) {
+		super();
+
+		this.setFields(fields);
+		this.setNames(names);
+		this.setFieldTypes(fieldTypes);
+		this.setSchemaHash(FieldLayout.computeSchemaHash(names, fieldTypes));
+	}
+
+	/**
+	 * Writes the schema hash followed by the name and type tag of each field.
+	 * 
+	 * @param objectOutputStream
+	 */
+	public void write(final ObjectOutputStream objectOutputStream) {
+		final String[] names = this.getNames();
+		final int[] fieldTypes = this.getFieldTypes();
+		final int count = names.length;
+
+		objectOutputStream.writeInt(this.getSchemaHash());
+		objectOutputStream.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			objectOutputStream.writeObject(names[i]);
+			objectOutputStream.writeByte((byte) fieldTypes[i]);
+		}
+	}
+
+	/**
+	 * Tests if this layout has exactly the given fields, guarding against
+	 * schema hash collisions.
+	 */
+	boolean sameAs(final String[] names, final int[] fieldTypes) {
+		boolean same = false;
+
+		final String[] localNames = this.getNames();
+		final int[] localFieldTypes = this.getFieldTypes();
+		if (localNames.length == names.length) {
+			int i = 0;
+			while (i < names.length) {
+				if (false == localNames[i].equals(names[i]) || localFieldTypes[i] != fieldTypes[i]) {
+					break;
+				}
+				i++;
+			}
+			same = i == names.length;
+		}
+
+		return same;
+	}
+
+	/**
+	 * Finds the local field for each of the given remote fields, leaving null
+	 * for those that are unknown or whose type tag has changed. Shadowed fields
+	 * with the same name are matched in order.
+	 */
+	Field[] match(final String[] names, final int[] fieldTypes) {
+		final Field[] localFields = this.getFields();
+		final String[] localNames = this.getNames();
+		final int[] localFieldTypes = this.getFieldTypes();
+		final boolean[] matched = new boolean[localFields.length];
+
+		final Field[] fields = new Field[names.length];
+		for (int i = 0; i < names.length; i++) {
+			for (int j = 0; j < localFields.length; j++) {
+				if (false == matched[j] && localNames[j].equals(names[i]) && localFieldTypes[j] == fieldTypes[i]) {
+					fields[i] = localFields[j];
+					matched[j] = true;
+					break;
+				}
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * The fields in the order their values appear, a null entry marks a value
+	 * that should be skipped.
+	 */
+	private Field[] fields;
+
+	public Field[] getFields() {
+		Checker.notNull("field:fields", fields);
+		return this.fields;
+	}
+
+	protected void setFields(final Field[] fields) {
+		Checker.notNull("parameter:fields", fields);
+		this.fields = fields;
+	}
+
+	public int getFieldCount() {
+		return this.getFields().length;
+	}
+
+	/**
+	 * The name of each field.
+	 */
+	private String[] names;
+
+	protected String[] getNames() {
+		Checker.notNull("field:names", names);
+		return this.names;
+	}
+
+	protected void setNames(final String[] names) {
+		Checker.notNull("parameter:names", names);
+		this.names = names;
+	}
+
+	/**
+	 * The {@link FieldPlan} type tag of each field.
+	 */
+	private int[] fieldTypes;
+
+	public int[] getFieldTypes() {
+		Checker.notNull("field:fieldTypes", fieldTypes);
+		return this.fieldTypes;
+	}
+
+	protected void setFieldTypes(final int[] fieldTypes) {
+		Checker.notNull("parameter:fieldTypes", fieldTypes);
+		this.fieldTypes = fieldTypes;
+	}
+
+	private int schemaHash;
+
+	public int getSchemaHash() {
+		return this.schemaHash;
+	}
+
+	protected void setSchemaHash(final int schemaHash) {
+		this.schemaHash = schemaHash;
+	}
+
+	public String toString() {
+		return super.toString() + ", schemaHash: " + schemaHash + ", fieldCount: " + (null == fields ? 0 : fields.length);
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.lang.reflect.Field;
+
+import rocket.util.client.Checker;
+
+/**
+ * A precomputed description of all the serializable fields declared by a
+ * single class. Plans are built once by
+ * {@link ReflectionHelper#getFieldPlan(Class)} and then shared by all readers
+ * and writers, which means no reflective discovery happens when an instance is
+ * actually serialized.
+ *
+ * Each field is accompanied by a type tag so that primitive fields may be
+ * dispatched using a switch rather than a chain of Class.equals tests. The
+ * actual reading and writing is delegated to a {@link FieldSerializer} created
+ * by the active {@link FieldSerializerFactory}.
+ *
+ * @author Miroslav Pokorny
+ */
+public class FieldPlan {
+
+	public final static int OBJECT = 0;
+
+	public final static int BOOLEAN = 1;
+
+	public final static int BYTE = 2;
+
+	public final static int SHORT = 3;
+
+	public final static int INT = 4;
+
+	public final static int LONG = 5;
+
+	public final static int FLOAT = 6;
+
+	public final static int DOUBLE = 7;
+
+	public final static int CHAR = 8;
+
+	/**
+	 * Returns the type tag for the given field type.
+	 *
+	 * @param fieldType
+	 * @return One of the type tag constants declared by this class.
+	 */
+	static public int getFieldType(final Class fieldType) {
+		int type = OBJECT;
+
+		while (true) {
+			if (false == fieldType.isPrimitive()) {
+				break;
+			}
+			if (fieldType.equals(Boolean.TYPE)) {
+				type = BOOLEAN;
+				break;
+			}
+			if (fieldType.equals(Byte.TYPE)) {
+				type = BYTE;
+				break;
+			}
+			if (fieldType.equals(Short.TYPE)) {
+				type = SHORT;
+				break;
+			}
+			if (fieldType.equals(Integer.TYPE)) {
+				type = INT;
+				break;
+			}
+			if (fieldType.equals(Long.TYPE)) {
+				type = LONG;
+				break;
+			}
+			if (fieldType.equals(Float.TYPE)) {
+				type = FLOAT;
+				break;
+			}
+			if (fieldType.equals(Double.TYPE)) {
+				type = DOUBLE;
+				break;
+			}
+			if (fieldType.equals(Character.TYPE)) {
+				type = CHAR;
+				break;
+			}
+			break;
+		}
+
+		return type;
+	}
+
+	public FieldPlan(final Class type, final Field[] fields, final Class superType) {
+		super();
+
+		this.setType(type);
+		this.setFields(fields);
+		this.setFieldTypes(this.buildFieldTypes(fields));
+		this.setSuperType(superType);
+	}
+
+	protected int[] buildFieldTypes(final Field[] fields) {
+		final int count = fields.length;
+		final int[] fieldTypes = new int[count];
+		for (int i = 0; i < count; i++) {
+			fieldTypes[i] = FieldPlan.getFieldType(fields[i].getType());
+		}
+		return fieldTypes;
+	}
+
+	/**
+	 * The class that declares all the fields within this plan.
+	 */
+	private Class type;
+
+	public Class getType() {
+		Checker.notNull("field:type", type);
+		return this.type;
+	}
+
+	protected void setType(final Class type) {
+		Checker.notNull("parameter:type", type);
+		this.type = type;
+	}
+
+	/**
+	 * All serializable fields sorted in alphabetical order. Each field has
+	 * already been made accessible.
+	 */
+	private Field[] fields;
+
+	public Field[] getFields() {
+		Checker.notNull("field:fields", fields);
+		return this.fields;
+	}
+
+	protected void setFields(final Field[] fields) {
+		Checker.notNull("parameter:fields", fields);
+		this.fields = fields;
+	}
+
+	public int getFieldCount() {
+		return this.getFields().length;
+	}
+
+	/**
+	 * The type tag for each field, in the same order as {@link #fields}
+	 */
+	private int[] fieldTypes;
+
+	public int[] getFieldTypes() {
+		Checker.notNull("field:fieldTypes", fieldTypes);
+		return this.fieldTypes;
+	}
+
+	protected void setFieldTypes(final int[] fieldTypes) {
+		Checker.notNull("parameter:fieldTypes", fieldTypes);
+		this.fieldTypes = fieldTypes;
+	}
+
+	/**
+	 * The super type whose fields must also be visited, or null if the super
+	 * type is java.lang.Object.
+	 */
+	private Class superType;
+
+	public Class getSuperType() {
+		return this.superType;
+	}
+
+	protected void setSuperType(final Class superType) {
+		this.superType = superType;
+	}
+
+	/**
+	 * The serializer which actually reads and writes the fields in this plan.
+	 */
+	private FieldSerializer fieldSerializer;
+
+	public FieldSerializer getFieldSerializer() {
+		Checker.notNull("field:fieldSerializer", fieldSerializer);
+		return this.fieldSerializer;
+	}
+
+	public void setFieldSerializer(final FieldSerializer fieldSerializer) {
+		Checker.notNull("parameter:fieldSerializer", fieldSerializer);
+		this.fieldSerializer = fieldSerializer;
+	}
+
+	public String toString() {
+		return super.toString() + ", type: " + type + ", fieldCount: " + (null == fields ? 0 : fields.length);
+	}
+}
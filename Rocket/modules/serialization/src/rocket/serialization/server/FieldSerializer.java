@@ -0,0 +1,32 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.client.ObjectOutputStream;
+
+/**
+ * A FieldSerializer reads and writes all the fields declared by a single class,
+ * in the order given by its {@link FieldPlan}. Fields belonging to super types
+ * are not touched.
+ * 
+ * @author Miroslav Pokorny
+ */
+public interface FieldSerializer {
+	void writeFields(Object object, ObjectOutputStream objectOutputStream) throws IllegalAccessException;
+
+	void readFields(Object object, ObjectInputStream objectInputStream) throws IllegalAccessException;
+}
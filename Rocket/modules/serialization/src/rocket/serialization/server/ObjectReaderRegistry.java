@@ -0,0 +1,165 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import rocket.util.client.Checker;
+
+/**
+ * Holds an ordered list of {@link ServerObjectReader readers} along with a
+ * {@link TypeResolver} and the reader that was selected for each class. This
+ * means both Class.forName and the {@link ServerObjectReader#canRead(Class)}
+ * scan happen only once per type.
+ * 
+ * A registry is safe for concurrent use and is typically built once by a
+ * factory and then shared by all input streams.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class ObjectReaderRegistry {
+
+	public ObjectReaderRegistry(final List<ServerObjectReader> objectReaders) {
+		this(objectReaders, new TypeResolver());
+	}
+
+	public ObjectReaderRegistry(final List<ServerObjectReader> objectReaders, final TypeResolver typeResolver) {
+		super();
+
+		this.setObjectReaders(objectReaders);
+		this.setTypeResolver(typeResolver);
+		this.setResolvedReaders(this.createResolvedReaders());
+	}
+
+	/**
+	 * Resolves a type name into a Class, caching the result.
+	 * 
+	 * @param typeName
+	 * @return The class
+	 */
+	public Class getType(final String typeName) {
+		return this.getTypeResolver().getType(typeName);
+	}
+
+	/**
+	 * Creates a new instance of the named type using its cached no argument
+	 * constructor.
+	 * 
+	 * @param typeName
+	 * @return
+	 */
+	public Object newInstance(final String typeName) {
+		final TypeResolver resolver = this.getTypeResolver();
+		return resolver.newInstance(resolver.getType(typeName));
+	}
+
+	/**
+	 * Resolves type names and creates new instances.
+	 */
+	private TypeResolver typeResolver;
+
+	public TypeResolver getTypeResolver() {
+		Checker.notNull("field:typeResolver", typeResolver);
+		return this.typeResolver;
+	}
+
+	protected void setTypeResolver(final TypeResolver typeResolver) {
+		Checker.notNull("parameter:typeResolver", typeResolver);
+		this.typeResolver = typeResolver;
+	}
+
+	/**
+	 * Returns the reader responsible for the given type.
+	 * 
+	 * @param type
+	 * @return The reader or null if none was found.
+	 */
+	public ServerObjectReader getObjectReader(final Class type) {
+		final ConcurrentMap<Class, ServerObjectReader> resolvedReaders = this.getResolvedReaders();
+
+		ServerObjectReader reader = resolvedReaders.get(type);
+		if (null == reader) {
+			reader = this.findObjectReader(type);
+			if (null != reader) {
+				resolvedReaders.put(type, reader);
+			}
+		}
+		return reader;
+	}
+
+	/**
+	 * Scans all readers for the first that is able to read the given type.
+	 * 
+	 * @param type
+	 * @return The reader or null if none was found.
+	 */
+	protected ServerObjectReader findObjectReader(final Class type) {
+		ServerObjectReader found = null;
+
+		final Iterator<ServerObjectReader> readers = this.getObjectReaders().iterator();
+		while (readers.hasNext()) {
+			final ServerObjectReader reader = readers.next();
+			if (reader.canRead(type)) {
+				found = reader;
+				break;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * The readers in the order that they should be tested.
+	 */
+	private List<ServerObjectReader> objectReaders;
+
+	public List<ServerObjectReader> getObjectReaders() {
+		Checker.notNull("field:objectReaders", objectReaders);
+		return this.objectReaders;
+	}
+
+	protected void setObjectReaders(final List<ServerObjectReader> objectReaders) {
+		Checker.notNull("parameter:objectReaders", objectReaders);
+		this.objectReaders = new ArrayList<ServerObjectReader>(objectReaders);
+	}
+
+	/**
+	 * A cache of class to the reader that was found for it.
+	 */
+	private ConcurrentMap<Class, ServerObjectReader> resolvedReaders;
+
+	protected ConcurrentMap<Class, ServerObjectReader> getResolvedReaders() {
+		Checker.notNull("field:resolvedReaders", resolvedReaders);
+		return this.resolvedReaders;
+	}
+
+	protected void setResolvedReaders(final ConcurrentMap<Class, ServerObjectReader> resolvedReaders) {
+		Checker.notNull("parameter:resolvedReaders", resolvedReaders);
+		this.resolvedReaders = resolvedReaders;
+	}
+
+	protected ConcurrentMap<Class, ServerObjectReader> createResolvedReaders() {
+		return new ConcurrentHashMap<Class, ServerObjectReader>();
+	}
+
+	public String toString() {
+		return super.toString() + ", objectReaders: " + objectReaders;
+	}
+}
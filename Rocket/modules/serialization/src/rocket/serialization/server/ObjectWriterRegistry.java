@@ -0,0 +1,129 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import rocket.util.client.Checker;
+
+/**
+ * Holds an ordered list of {@link ServerObjectWriter writers} along with a
+ * cache of the writer that was selected for each concrete class. The first
+ * object of a type is matched by asking each writer in turn via
+ * {@link ServerObjectWriter#canWrite(Object)}, after which all other objects of
+ * the same type are dispatched using a single map lookup.
+ * 
+ * Writers must only use the class of the given object when deciding whether or
+ * not they can write it, which is true of all the writers that ship with
+ * Rocket.
+ * 
+ * A registry is safe for concurrent use and is typically built once by a
+ * factory and then shared by all output streams.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class ObjectWriterRegistry {
+
+	public ObjectWriterRegistry(final List<ServerObjectWriter> objectWriters) {
+		super();
+
+		this.setObjectWriters(objectWriters);
+		this.setResolvedWriters(this.createResolvedWriters());
+	}
+
+	/**
+	 * Returns the writer responsible for the given object.
+	 * 
+	 * @param object
+	 * @return The writer or null if none was found.
+	 */
+	public ServerObjectWriter getObjectWriter(final Object object) {
+		final Class type = object.getClass();
+		final ConcurrentMap<Class, ServerObjectWriter> resolvedWriters = this.getResolvedWriters();
+
+		ServerObjectWriter writer = resolvedWriters.get(type);
+		if (null == writer) {
+			writer = this.findObjectWriter(object);
+			if (null != writer) {
+				resolvedWriters.put(type, writer);
+			}
+		}
+		return writer;
+	}
+
+	/**
+	 * Scans all writers for the first that is able to write the given object.
+	 * 
+	 * @param object
+	 * @return The writer or null if none was found.
+	 */
+	protected ServerObjectWriter findObjectWriter(final Object object) {
+		ServerObjectWriter found = null;
+
+		final Iterator<ServerObjectWriter> writers = this.getObjectWriters().iterator();
+		while (writers.hasNext()) {
+			final ServerObjectWriter writer = writers.next();
+			if (writer.canWrite(object)) {
+				found = writer;
+				break;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * The writers in the order that they should be tested.
+	 */
+	private List<ServerObjectWriter> objectWriters;
+
+	public List<ServerObjectWriter> getObjectWriters() {
+		Checker.notNull("field:objectWriters", objectWriters);
+		return this.objectWriters;
+	}
+
+	protected void setObjectWriters(final List<ServerObjectWriter> objectWriters) {
+		Checker.notNull("parameter:objectWriters", objectWriters);
+		this.objectWriters = new ArrayList<ServerObjectWriter>(objectWriters);
+	}
+
+	/**
+	 * A cache of concrete class to the writer that was found for it.
+	 */
+	private ConcurrentMap<Class, ServerObjectWriter> resolvedWriters;
+
+	protected ConcurrentMap<Class, ServerObjectWriter> getResolvedWriters() {
+		Checker.notNull("field:resolvedWriters", resolvedWriters);
+		return this.resolvedWriters;
+	}
+
+	protected void setResolvedWriters(final ConcurrentMap<Class, ServerObjectWriter> resolvedWriters) {
+		Checker.notNull("parameter:resolvedWriters", resolvedWriters);
+		this.resolvedWriters = resolvedWriters;
+	}
+
+	protected ConcurrentMap<Class, ServerObjectWriter> createResolvedWriters() {
+		return new ConcurrentHashMap<Class, ServerObjectWriter>();
+	}
+
+	public String toString() {
+		return super.toString() + ", objectWriters: " + objectWriters;
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import rocket.util.client.Checker;
+
+/**
+ * An insertion ordered table that gives each entry an index, which the output
+ * streams turn into an object or string reference. Entries are kept in an
+ * array in the order they were added and found using an open addressing hash
+ * of int slots, so unlike a Map no entry or boxed Integer is created for each
+ * object or string that is written.
+ * 
+ * Tables that compare by identity are used for objects while tables that
+ * compare using equals are used for strings.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class ReferenceTable {
+
+	final static int INITIAL_CAPACITY = 16;
+
+	public ReferenceTable(final boolean identity) {
+		this(identity, INITIAL_CAPACITY);
+	}
+
+	public ReferenceTable(final boolean identity, final int capacity) {
+		super();
+
+		Checker.greaterThan("parameter:capacity", 0, capacity);
+
+		this.identity = identity;
+
+		int slotCount = INITIAL_CAPACITY;
+		while (slotCount < capacity * 2) {
+			slotCount = slotCount * 2;
+		}
+		this.entries = new Object[slotCount / 2];
+		this.slots = new int[slotCount];
+	}
+
+	/**
+	 * When true entries are compared using ==, otherwise equals is used.
+	 */
+	private final boolean identity;
+
+	/**
+	 * All entries in the order they were added.
+	 */
+	private Object[] entries;
+
+	/**
+	 * The hash table, each slot holds the index of an entry plus one, with 0
+	 * marking an empty slot. The number of slots is always a power of two and
+	 * at least twice the number of entries.
+	 */
+	private int[] slots;
+
+	private int size;
+
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the entry with the given index.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public Object get(final int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Index " + index + " is not between 0 and " + this.size);
+		}
+		return this.entries[index];
+	}
+
+	/**
+	 * Finds the index of the given entry.
+	 * 
+	 * @param entry
+	 * @return The index or -1 if the entry is not present.
+	 */
+	public int indexOf(final Object entry) {
+		final Object[] entries = this.entries;
+		final int[] slots = this.slots;
+		final int mask = slots.length - 1;
+		final boolean identity = this.identity;
+
+		int index = -1;
+		int slot = this.hash(entry) & mask;
+		while (true) {
+			final int value = slots[slot];
+			if (0 == value) {
+				break;
+			}
+			final Object existing = entries[value - 1];
+			if (existing == entry || (false == identity && existing.equals(entry))) {
+				index = value - 1;
+				break;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return index;
+	}
+
+	/**
+	 * Adds an entry which must not already be present.
+	 * 
+	 * @param entry
+	 * @return The index of the new entry.
+	 */
+	public int add(final Object entry) {
+		Checker.notNull("parameter:entry", entry);
+
+		final int index = this.size;
+		if (index * 2 >= this.slots.length) {
+			this.grow();
+		}
+		this.entries[index] = entry;
+		this.insert(entry, index);
+		this.size = index + 1;
+		return index;
+	}
+
+	protected void insert(final Object entry, final int index) {
+		final int[] slots = this.slots;
+		final int mask = slots.length - 1;
+
+		int slot = this.hash(entry) & mask;
+		while (0 != slots[slot]) {
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = index + 1;
+	}
+
+	/**
+	 * Doubles the number of slots and entries, rehashing all entries.
+	 */
+	protected void grow() {
+		final int slotCount = this.slots.length * 2;
+		final Object[] entries = new Object[slotCount / 2];
+		System.arraycopy(this.entries, 0, entries, 0, this.size);
+		this.entries = entries;
+		this.slots = new int[slotCount];
+
+		for (int i = 0; i < this.size; i++) {
+			this.insert(entries[i], i);
+		}
+	}
+
+	protected int hash(final Object entry) {
+		final int hash = this.identity ? System.identityHashCode(entry) : entry.hashCode();
+
+		// spread the high bits as only the low bits select a slot...
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Returns the number of entries this table can hold without growing.
+	 * 
+	 * @return
+	 */
+	public int getCapacity() {
+		return this.slots.length / 2;
+	}
+
+	/**
+	 * Removes all entries keeping the arrays for reuse.
+	 */
+	public void clear() {
+		Arrays.fill(this.entries, 0, this.size, null);
+		Arrays.fill(this.slots, 0);
+		this.size = 0;
+	}
+
+	/**
+	 * Returns an iterator that visits all entries in the order they were
+	 * added.
+	 * 
+	 * @return
+	 */
+	public Iterator<Object> iterator() {
+		return new Iterator<Object>() {
+			int index = 0;
+
+			public boolean hasNext() {
+				return this.index < ReferenceTable.this.size;
+			}
+
+			public Object next() {
+				if (false == this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				final Object entry = ReferenceTable.this.entries[this.index];
+				this.index++;
+				return entry;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	public String toString() {
+		return super.toString() + ", identity: " + identity + ", size: " + size;
+	}
+}
@@ -20,8 +20,11 @@ import java.lang.reflect.Modifier;
 import java.util.Comparator;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import rocket.serialization.client.SerializationException;
+import rocket.util.client.Checker;
 
 public class ReflectionHelper {
 
@@ -72,6 +75,100 @@ public class ReflectionHelper {
 		return serializableFields;
 	}
 
+	/**
+	 * The factory used to create the {@link FieldSerializer} for each new
+	 * {@link FieldPlan}.
+	 */
+	static private FieldSerializerFactory fieldSerializerFactory = ReflectiveFieldSerializerFactory.instance;
+
+	static public FieldSerializerFactory getFieldSerializerFactory() {
+		return fieldSerializerFactory;
+	}
+
+	/**
+	 * Replaces the active {@link FieldSerializerFactory}, discarding all cached
+	 * plans so they are rebuilt with serializers from the new factory.
+	 * 
+	 * @param fieldSerializerFactory
+	 */
+	static public void setFieldSerializerFactory(final FieldSerializerFactory fieldSerializerFactory) {
+		Checker.notNull("parameter:fieldSerializerFactory", fieldSerializerFactory);
+		ReflectionHelper.fieldSerializerFactory = fieldSerializerFactory;
+		fieldPlans.clear();
+	}
+
+	/**
+	 * A cache of field plans, keyed by the class that declares the fields.
+	 */
+	static private final ConcurrentMap<Class, FieldPlan> fieldPlans = new ConcurrentHashMap<Class, FieldPlan>();
+
+	/**
+	 * Retrieves the cached {@link FieldPlan} for the given class, building and
+	 * caching it the first time the class is seen.
+	 * 
+	 * @param classs
+	 * @return The plan for the fields declared by the given class.
+	 */
+	static public FieldPlan getFieldPlan(final Class classs) {
+		FieldPlan plan = fieldPlans.get(classs);
+		if (null == plan) {
+			plan = buildFieldPlan(classs);
+
+			// another thread may have beaten us, if so use its plan.
+			final FieldPlan existing = fieldPlans.putIfAbsent(classs, plan);
+			if (null != existing) {
+				plan = existing;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * A cache of field layouts, keyed by the concrete class being serialized.
+	 */
+	static private final ConcurrentMap<Class, FieldLayout> fieldLayouts = new ConcurrentHashMap<Class, FieldLayout>();
+
+	/**
+	 * Retrieves the cached {@link FieldLayout} holding all the serializable
+	 * fields of the given class and its super types.
+	 * 
+	 * @param classs
+	 * @return
+	 */
+	static public FieldLayout getFieldLayout(final Class classs) {
+		FieldLayout layout = fieldLayouts.get(classs);
+		if (null == layout) {
+			layout = FieldLayout.build(classs);
+
+			final FieldLayout existing = fieldLayouts.putIfAbsent(classs, layout);
+			if (null != existing) {
+				layout = existing;
+			}
+		}
+		return layout;
+	}
+
+	/**
+	 * Builds a new {@link FieldPlan} for the given class without consulting
+	 * the cache.
+	 * 
+	 * @param classs
+	 * @return A new plan
+	 */
+	static public FieldPlan buildFieldPlan(final Class classs) {
+		final Set<Field> serializableFields = buildSerializableFields(null, classs);
+		final Field[] fields = serializableFields.toArray(new Field[serializableFields.size()]);
+
+		Class superType = classs.getSuperclass();
+		if (null != superType && superType.equals(Object.class)) {
+			superType = null;
+		}
+
+		final FieldPlan plan = new FieldPlan(classs, fields, superType);
+		plan.setFieldSerializer(getFieldSerializerFactory().createFieldSerializer(plan));
+		return plan;
+	}
+
 	static public Field getThrowableMessageField() {
 		return getThrowableField(Constants.MESSAGE_FIELD);
 	}
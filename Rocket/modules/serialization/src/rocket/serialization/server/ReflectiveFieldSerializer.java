@@ -0,0 +1,206 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.lang.reflect.Field;
+
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.client.ObjectOutputStream;
+import rocket.util.client.Checker;
+
+/**
+ * A FieldSerializer that uses {@link java.lang.reflect.Field} to get and set
+ * field values, using the primitive accessors for primitive fields.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class ReflectiveFieldSerializer implements FieldSerializer {
+
+	public ReflectiveFieldSerializer(final FieldPlan plan) {
+		super();
+
+		this.setFieldPlan(plan);
+	}
+
+	public void writeFields(final Object object, final ObjectOutputStream objectOutputStream) throws IllegalAccessException {
+		final FieldPlan plan = this.getFieldPlan();
+		final Field[] fields = plan.getFields();
+		final int[] fieldTypes = plan.getFieldTypes();
+		final int fieldCount = fields.length;
+
+		// serialize fields in alphabetical order
+		for (int i = 0; i < fieldCount; i++) {
+			ReflectiveFieldSerializer.writeField(object, fields[i], fieldTypes[i], objectOutputStream);
+		}
+	}
+
+	/**
+	 * Writes a single field using the accessor that matches its type tag.
+	 * 
+	 * @param object
+	 * @param field
+	 * @param fieldType
+	 *            One of the {@link FieldPlan} type tags
+	 * @param objectOutputStream
+	 * @throws IllegalAccessException
+	 */
+	static public void writeField(final Object object, final Field field, final int fieldType,
+			final ObjectOutputStream objectOutputStream) throws IllegalAccessException {
+		switch (fieldType) {
+		case FieldPlan.BOOLEAN:
+			objectOutputStream.writeBoolean(field.getBoolean(object));
+			break;
+		case FieldPlan.BYTE:
+			objectOutputStream.writeByte(field.getByte(object));
+			break;
+		case FieldPlan.SHORT:
+			objectOutputStream.writeShort(field.getShort(object));
+			break;
+		case FieldPlan.INT:
+			objectOutputStream.writeInt(field.getInt(object));
+			break;
+		case FieldPlan.LONG:
+			objectOutputStream.writeLong(field.getLong(object));
+			break;
+		case FieldPlan.FLOAT:
+			objectOutputStream.writeFloat(field.getFloat(object));
+			break;
+		case FieldPlan.DOUBLE:
+			objectOutputStream.writeDouble(field.getDouble(object));
+			break;
+		case FieldPlan.CHAR:
+			objectOutputStream.writeChar(field.getChar(object));
+			break;
+		default:
+			objectOutputStream.writeObject(field.get(object));
+			break;
+		}
+	}
+
+	public void readFields(final Object object, final ObjectInputStream objectInputStream) throws IllegalAccessException {
+		final FieldPlan plan = this.getFieldPlan();
+		final Field[] fields = plan.getFields();
+		final int[] fieldTypes = plan.getFieldTypes();
+		final int fieldCount = fields.length;
+
+		// fields are read in alphabetical order
+		for (int i = 0; i < fieldCount; i++) {
+			ReflectiveFieldSerializer.readField(object, fields[i], fieldTypes[i], objectInputStream);
+		}
+	}
+
+	/**
+	 * Reads a single field using the accessor that matches its type tag.
+	 * 
+	 * @param object
+	 * @param field
+	 * @param fieldType
+	 *            One of the {@link FieldPlan} type tags
+	 * @param objectInputStream
+	 * @throws IllegalAccessException
+	 */
+	static public void readField(final Object object, final Field field, final int fieldType, final ObjectInputStream objectInputStream)
+			throws IllegalAccessException {
+		switch (fieldType) {
+		case FieldPlan.BOOLEAN:
+			field.setBoolean(object, objectInputStream.readBoolean());
+			break;
+		case FieldPlan.BYTE:
+			field.setByte(object, objectInputStream.readByte());
+			break;
+		case FieldPlan.SHORT:
+			field.setShort(object, objectInputStream.readShort());
+			break;
+		case FieldPlan.INT:
+			field.setInt(object, objectInputStream.readInt());
+			break;
+		case FieldPlan.LONG:
+			field.setLong(object, objectInputStream.readLong());
+			break;
+		case FieldPlan.FLOAT:
+			field.setFloat(object, objectInputStream.readFloat());
+			break;
+		case FieldPlan.DOUBLE:
+			field.setDouble(object, objectInputStream.readDouble());
+			break;
+		case FieldPlan.CHAR:
+			field.setChar(object, objectInputStream.readChar());
+			break;
+		default:
+			field.set(object, objectInputStream.readObject());
+			break;
+		}
+	}
+
+	/**
+	 * Reads and discards the value of a field that no longer exists or whose
+	 * type has changed.
+	 * 
+	 * @param fieldType
+	 *            One of the {@link FieldPlan} type tags
+	 * @param objectInputStream
+	 */
+	static public void skipField(final int fieldType, final ObjectInputStream objectInputStream) {
+		switch (fieldType) {
+		case FieldPlan.BOOLEAN:
+			objectInputStream.readBoolean();
+			break;
+		case FieldPlan.BYTE:
+			objectInputStream.readByte();
+			break;
+		case FieldPlan.SHORT:
+			objectInputStream.readShort();
+			break;
+		case FieldPlan.INT:
+			objectInputStream.readInt();
+			break;
+		case FieldPlan.LONG:
+			objectInputStream.readLong();
+			break;
+		case FieldPlan.FLOAT:
+			objectInputStream.readFloat();
+			break;
+		case FieldPlan.DOUBLE:
+			objectInputStream.readDouble();
+			break;
+		case FieldPlan.CHAR:
+			objectInputStream.readChar();
+			break;
+		default:
+			objectInputStream.readObject();
+			break;
+		}
+	}
+
+	/**
+	 * The plan containing the fields that are read or written.
+	 */
+	private FieldPlan fieldPlan;
+
+	protected FieldPlan getFieldPlan() {
+		Checker.notNull("field:fieldPlan", fieldPlan);
+		return this.fieldPlan;
+	}
+
+	protected void setFieldPlan(final FieldPlan fieldPlan) {
+		Checker.notNull("parameter:fieldPlan", fieldPlan);
+		this.fieldPlan = fieldPlan;
+	}
+
+	public String toString() {
+		return super.toString() + ", fieldPlan: " + fieldPlan;
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import rocket.serialization.client.ObjectOutputStream;
+
+/**
+ * Writes some values to an {@link ObjectOutputStream}. Implementations must
+ * write exactly the same sequence of values each time
+ * {@link #write(ObjectOutputStream)} is invoked as a
+ * {@link StreamingServerObjectOutputStream} calls it twice for responses
+ * larger than its streaming threshold.
+ * 
+ * @author Miroslav Pokorny
+ */
+public interface ReplayableOutput {
+	void write(ObjectOutputStream objectOutputStream);
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+/**
+ * Writes a chunk of elements on behalf of a parent
+ * {@link ServerObjectOutputStream} using its own string and object tables. The
+ * position and value of every reference is recorded so that the segment can be
+ * merged into the parent with references renumbered to match what the parent
+ * would have written itself.
+ * 
+ * @author Miroslav Pokorny
+ */
+class SegmentObjectOutputStream extends ServerObjectOutputStream {
+
+	SegmentObjectOutputStream(final ServerObjectOutputStream parent) {
+		super();
+
+		this.setObjectWriterRegistry(parent.getObjectWriterRegistry());
+		this.setStringDictionary(parent.getStringDictionary());
+		this.setBase64ByteArrays(parent.isBase64ByteArrays());
+		this.setSerializationListener(parent.getSerializationListener());
+		this.setIterative(parent.isIterative());
+		this.setVersioned(parent.isVersioned());
+	}
+
+	/**
+	 * Writes each element of the given chunk.
+	 * 
+	 * @param elements
+	 * @param start
+	 * @param end
+	 */
+	void write(final Object[] elements, final int start, final int end) {
+		for (int i = start; i < end; i++) {
+			this.writeObject(elements[i]);
+		}
+	}
+
+	protected void writeReference(final int reference) {
+		final StringBuffer buf = this.prepareValue();
+
+		int count = this.referenceCount;
+		if (count == this.referenceOffsets.length) {
+			this.referenceOffsets = this.grow(this.referenceOffsets);
+			this.references = this.grow(this.references);
+		}
+		this.referenceOffsets[count] = buf.length();
+		this.references[count] = reference;
+		this.referenceCount = count + 1;
+
+		buf.append(reference);
+	}
+
+	int[] grow(final int[] array) {
+		final int[] grown = new int[array.length * 2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	/**
+	 * The offset within the values of each reference.
+	 */
+	int[] referenceOffsets = new int[64];
+
+	/**
+	 * The local value of each reference
+	 */
+	int[] references = new int[64];
+
+	int referenceCount;
+}
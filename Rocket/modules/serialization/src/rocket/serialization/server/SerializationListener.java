@@ -0,0 +1,86 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+/**
+ * A listener that is notified as server streams read and write objects. Streams
+ * without a listener, the default, do no timing or counting at all.
+ * 
+ * Lengths are measured in the units of the stream, chars for the text streams
+ * and bytes for the binary streams. Both lengths and times include any objects
+ * nested within the object being reported.
+ * 
+ * Implementations must be safe for concurrent use as a single listener is
+ * typically shared by all streams.
+ * 
+ * @author Miroslav Pokorny
+ */
+public interface SerializationListener {
+
+	/**
+	 * Reports a new object that was written.
+	 * 
+	 * @param type
+	 *            The class of the object.
+	 * @param writer
+	 *            The writer that wrote the object.
+	 * @param length
+	 *            The length of the written object.
+	 * @param nanos
+	 *            The time spent in the writer.
+	 */
+	void objectWritten(Class type, ServerObjectWriter writer, long length, long nanos);
+
+	/**
+	 * Reports a new object that was read.
+	 * 
+	 * @param type
+	 *            The class of the object.
+	 * @param reader
+	 *            The reader that read the object.
+	 * @param length
+	 *            The length of the object within the stream.
+	 * @param nanos
+	 *            The time spent in the reader.
+	 */
+	void objectRead(Class type, ServerObjectReader reader, long length, long nanos);
+
+	/**
+	 * Reports each string that was written.
+	 * 
+	 * @param hit
+	 *            True if the string was already in the string table or
+	 *            dictionary.
+	 */
+	void stringWritten(boolean hit);
+
+	/**
+	 * Reports the size of the tables of an output stream that is about to be
+	 * reset.
+	 * 
+	 * @param stringTableSize
+	 * @param objectTableSize
+	 */
+	void outputCompleted(int stringTableSize, int objectTableSize);
+
+	/**
+	 * Reports the size of the object table of an input stream that is about to
+	 * be reset.
+	 * 
+	 * @param objectTableSize
+	 */
+	void inputCompleted(int objectTableSize);
+}
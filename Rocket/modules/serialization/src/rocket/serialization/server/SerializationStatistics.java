@@ -0,0 +1,288 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rocket.util.client.Checker;
+
+/**
+ * A {@link SerializationListener} which accumulates counters per type along
+ * with string and object table statistics. It is also a standard MBean, which
+ * means it may be registered with JMX, for example:
+ * 
+ * <pre>
+ * final SerializationStatistics statistics = new SerializationStatistics();
+ * serializationFactory.setSerializationListener(statistics);
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, new ObjectName(&quot;rocket:type=SerializationStatistics&quot;));
+ * </pre>
+ * 
+ * @author Miroslav Pokorny
+ */
+public class SerializationStatistics implements SerializationListener, SerializationStatisticsMBean {
+
+	public SerializationStatistics() {
+		super();
+	}
+
+	public void objectWritten(final Class type, final ServerObjectWriter writer, final long length, final long nanos) {
+		final TypeStatistics statistics = this.getTypeStatistics(type);
+		statistics.written.incrementAndGet();
+		statistics.writtenLength.addAndGet(length);
+		statistics.writeNanos.addAndGet(nanos);
+		this.objectsWritten.incrementAndGet();
+	}
+
+	public void objectRead(final Class type, final ServerObjectReader reader, final long length, final long nanos) {
+		final TypeStatistics statistics = this.getTypeStatistics(type);
+		statistics.read.incrementAndGet();
+		statistics.readLength.addAndGet(length);
+		statistics.readNanos.addAndGet(nanos);
+		this.objectsRead.incrementAndGet();
+	}
+
+	public void stringWritten(final boolean hit) {
+		this.stringsWritten.incrementAndGet();
+		if (hit) {
+			this.stringHits.incrementAndGet();
+		}
+	}
+
+	public void outputCompleted(final int stringTableSize, final int objectTableSize) {
+		this.outputStreamCount.incrementAndGet();
+		this.totalStringTableSize.addAndGet(stringTableSize);
+		this.totalOutputObjectTableSize.addAndGet(objectTableSize);
+		this.updateLargest(this.largestOutputObjectTableSize, objectTableSize);
+	}
+
+	public void inputCompleted(final int objectTableSize) {
+		this.inputStreamCount.incrementAndGet();
+		this.totalInputObjectTableSize.addAndGet(objectTableSize);
+		this.updateLargest(this.largestInputObjectTableSize, objectTableSize);
+	}
+
+	protected void updateLargest(final AtomicInteger largest, final int size) {
+		while (true) {
+			final int current = largest.get();
+			if (size <= current || largest.compareAndSet(current, size)) {
+				break;
+			}
+		}
+	}
+
+	private final AtomicLong objectsWritten = new AtomicLong();
+
+	public long getObjectsWritten() {
+		return this.objectsWritten.get();
+	}
+
+	private final AtomicLong objectsRead = new AtomicLong();
+
+	public long getObjectsRead() {
+		return this.objectsRead.get();
+	}
+
+	private final AtomicLong stringsWritten = new AtomicLong();
+
+	public long getStringsWritten() {
+		return this.stringsWritten.get();
+	}
+
+	private final AtomicLong stringHits = new AtomicLong();
+
+	public double getStringTableHitRate() {
+		return this.divide(this.stringHits.get(), this.stringsWritten.get());
+	}
+
+	private final AtomicLong outputStreamCount = new AtomicLong();
+
+	public long getOutputStreamCount() {
+		return this.outputStreamCount.get();
+	}
+
+	private final AtomicLong totalStringTableSize = new AtomicLong();
+
+	public double getAverageStringTableSize() {
+		return this.divide(this.totalStringTableSize.get(), this.outputStreamCount.get());
+	}
+
+	private final AtomicLong totalOutputObjectTableSize = new AtomicLong();
+
+	public double getAverageOutputObjectTableSize() {
+		return this.divide(this.totalOutputObjectTableSize.get(), this.outputStreamCount.get());
+	}
+
+	private final AtomicInteger largestOutputObjectTableSize = new AtomicInteger();
+
+	public int getLargestOutputObjectTableSize() {
+		return this.largestOutputObjectTableSize.get();
+	}
+
+	private final AtomicLong inputStreamCount = new AtomicLong();
+
+	public long getInputStreamCount() {
+		return this.inputStreamCount.get();
+	}
+
+	private final AtomicLong totalInputObjectTableSize = new AtomicLong();
+
+	public double getAverageInputObjectTableSize() {
+		return this.divide(this.totalInputObjectTableSize.get(), this.inputStreamCount.get());
+	}
+
+	private final AtomicInteger largestInputObjectTableSize = new AtomicInteger();
+
+	public int getLargestInputObjectTableSize() {
+		return this.largestInputObjectTableSize.get();
+	}
+
+	protected double divide(final long value, final long count) {
+		return 0 == count ? 0 : (double) value / count;
+	}
+
+	/**
+	 * Returns the statistics for the given type, creating them if necessary.
+	 * 
+	 * @param type
+	 * @return
+	 */
+	public TypeStatistics getTypeStatistics(final Class type) {
+		Checker.notNull("parameter:type", type);
+
+		final ConcurrentMap<Class, TypeStatistics> types = this.types;
+		TypeStatistics statistics = types.get(type);
+		if (null == statistics) {
+			statistics = new TypeStatistics(type);
+			final TypeStatistics existing = types.putIfAbsent(type, statistics);
+			if (null != existing) {
+				statistics = existing;
+			}
+		}
+		return statistics;
+	}
+
+	public String[] getTypeSummaries() {
+		final List<TypeStatistics> types = new ArrayList<TypeStatistics>(this.types.values());
+		Collections.sort(types, new Comparator<TypeStatistics>() {
+			public int compare(final TypeStatistics statistics, final TypeStatistics otherStatistics) {
+				final long nanos = statistics.getTotalNanos();
+				final long otherNanos = otherStatistics.getTotalNanos();
+				return nanos > otherNanos ? -1 : nanos == otherNanos ? 0 : 1;
+			}
+		});
+
+		final String[] summaries = new String[types.size()];
+		int i = 0;
+		final Iterator<TypeStatistics> iterator = types.iterator();
+		while (iterator.hasNext()) {
+			summaries[i] = iterator.next().toString();
+			i++;
+		}
+		return summaries;
+	}
+
+	/**
+	 * Statistics for each type, keyed by class.
+	 */
+	private final ConcurrentMap<Class, TypeStatistics> types = new ConcurrentHashMap<Class, TypeStatistics>();
+
+	public void reset() {
+		this.types.clear();
+		this.objectsWritten.set(0);
+		this.objectsRead.set(0);
+		this.stringsWritten.set(0);
+		this.stringHits.set(0);
+		this.outputStreamCount.set(0);
+		this.totalStringTableSize.set(0);
+		this.totalOutputObjectTableSize.set(0);
+		this.largestOutputObjectTableSize.set(0);
+		this.inputStreamCount.set(0);
+		this.totalInputObjectTableSize.set(0);
+		this.largestInputObjectTableSize.set(0);
+	}
+
+	/**
+	 * The counters for a single type.
+	 */
+	static public class TypeStatistics {
+
+		TypeStatistics(final Class type) {
+			super();
+
+			this.type = type;
+		}
+
+		final Class type;
+
+		public Class getType() {
+			return this.type;
+		}
+
+		final AtomicLong written = new AtomicLong();
+
+		public long getWritten() {
+			return this.written.get();
+		}
+
+		final AtomicLong writtenLength = new AtomicLong();
+
+		public long getWrittenLength() {
+			return this.writtenLength.get();
+		}
+
+		final AtomicLong writeNanos = new AtomicLong();
+
+		public long getWriteNanos() {
+			return this.writeNanos.get();
+		}
+
+		final AtomicLong read = new AtomicLong();
+
+		public long getRead() {
+			return this.read.get();
+		}
+
+		final AtomicLong readLength = new AtomicLong();
+
+		public long getReadLength() {
+			return this.readLength.get();
+		}
+
+		final AtomicLong readNanos = new AtomicLong();
+
+		public long getReadNanos() {
+			return this.readNanos.get();
+		}
+
+		long getTotalNanos() {
+			return this.writeNanos.get() + this.readNanos.get();
+		}
+
+		public String toString() {
+			return this.type.getName() + " written: " + this.getWritten() + ", writtenLength: " + this.getWrittenLength()
+					+ ", writeMillis: " + this.getWriteNanos() / 1000000 + ", read: " + this.getRead() + ", readLength: "
+					+ this.getReadLength() + ", readMillis: " + this.getReadNanos() / 1000000;
+		}
+	}
+}
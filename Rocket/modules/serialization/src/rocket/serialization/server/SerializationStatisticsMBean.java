@@ -0,0 +1,58 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+/**
+ * The management interface of {@link SerializationStatistics}.
+ * 
+ * @author Miroslav Pokorny
+ */
+public interface SerializationStatisticsMBean {
+
+	long getObjectsWritten();
+
+	long getObjectsRead();
+
+	long getStringsWritten();
+
+	/**
+	 * The fraction of written strings that were already in the string table
+	 * or dictionary.
+	 */
+	double getStringTableHitRate();
+
+	long getOutputStreamCount();
+
+	double getAverageStringTableSize();
+
+	double getAverageOutputObjectTableSize();
+
+	int getLargestOutputObjectTableSize();
+
+	long getInputStreamCount();
+
+	double getAverageInputObjectTableSize();
+
+	int getLargestInputObjectTableSize();
+
+	/**
+	 * One line per type that was written or read, sorted by the total time
+	 * spent writing and reading that type.
+	 */
+	String[] getTypeSummaries();
+
+	void reset();
+}
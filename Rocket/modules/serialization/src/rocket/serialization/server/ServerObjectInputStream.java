@@ -16,8 +16,8 @@
 package rocket.serialization.server;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -25,35 +25,87 @@ import rocket.serialization.client.Constants;
 import rocket.serialization.client.ObjectInputStreamImpl;
 import rocket.serialization.client.SerializationException;
 import rocket.util.client.Checker;
-import rocket.util.client.Utilities;
 
 public class ServerObjectInputStream extends ObjectInputStreamImpl {
 
-	public ServerObjectInputStream(final String stream) {
+	public ServerObjectInputStream(final CharSequence stream) {
+		this();
+
+		this.prepare(stream);
+	}
+
+	/**
+	 * Creates a stream that reads strings written using the given dictionary.
+	 * 
+	 * @param stream
+	 * @param stringDictionary
+	 */
+	public ServerObjectInputStream(final CharSequence stream, final StringDictionary stringDictionary) {
+		this();
+
+		this.setStringDictionary(stringDictionary);
+		this.prepare(stream);
+	}
+
+	/**
+	 * Constructor for sub classes that do not read a text stream.
+	 */
+	protected ServerObjectInputStream() {
 		super();
 
 		this.setObjects(this.createObjects());
+	}
+
+	/**
+	 * Clears all strings, objects and the current position so this stream may
+	 * be reused, after which {@link #reset(CharSequence)} must be called.
+	 */
+	public void reset() {
+		final Object[] objects = this.getObjects();
+		final SerializationListener listener = this.getSerializationListener();
+		if (null != listener) {
+			listener.inputCompleted(this.objectCount);
+		}
+		if (objects.length > ServerObjectOutputStream.RETAINED_TABLE_SIZE) {
+			this.setObjects(this.createObjects());
+		} else {
+			Arrays.fill(objects, 0, this.objectCount, null);
+		}
+		this.objectCount = 0;
+		this.strings = null;
+		this.stringPositions = null;
+		this.cursor = null;
+		this.fieldLayouts.clear();
+	}
+
+	/**
+	 * Resets this stream and then prepares to read the given stream.
+	 * 
+	 * @param stream
+	 */
+	public void reset(final CharSequence stream) {
+		this.reset();
 		this.prepare(stream);
 	}
 
 	@Override
 	public boolean readBoolean() {
-		return this.nextValue().equals("true");
+		return this.getCursor().readBoolean();
 	}
 
 	@Override
 	public byte readByte() {
-		return Byte.parseByte(this.nextValue());
+		return (byte) this.getCursor().readInt();
 	}
 
 	@Override
 	public short readShort() {
-		return Short.parseShort(this.nextValue());
+		return (short) this.getCursor().readInt();
 	}
 
 	@Override
 	public int readInt() {
-		return Integer.parseInt(this.nextValue());
+		return this.getCursor().readInt();
 	}
 
 	@Override
@@ -61,22 +113,140 @@ public class ServerObjectInputStream extends ObjectInputStreamImpl {
 		final long hi = this.readInt();
 		final long lo = this.readInt();
 
-		return (hi << 32) | (lo & 0xffffffff);
+		return (hi << 32) | (lo & 0xffffffffL);
 	}
 
 	@Override
 	public float readFloat() {
-		return Float.parseFloat(this.nextValue());
+		return this.getCursor().readFloat();
 	}
 
 	@Override
 	public double readDouble() {
-		return Double.parseDouble(this.nextValue());
+		return this.getCursor().readDouble();
 	}
 
 	@Override
 	public char readChar() {
-		return (char) Integer.parseInt(this.nextValue());
+		return (char) this.getCursor().readInt();
+	}
+
+	/**
+	 * Reads count booleans that were written by
+	 * {@link ServerObjectOutputStream#writeBooleanArray(boolean[])} after the
+	 * count itself has been read.
+	 * 
+	 * @param count
+	 * @return
+	 */
+	public boolean[] readBooleanArray(final int count) {
+		this.checkArrayCount(count);
+
+		final CharSequenceCursor cursor = this.getCursor();
+		final boolean[] array = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = cursor.readBoolean();
+		}
+		return array;
+	}
+
+	/**
+	 * Reads the bytes that follow a count written by
+	 * {@link ServerObjectOutputStream#writeByteArray(byte[])}. A negative count
+	 * indicates the bytes were written as a single base 64 value.
+	 * 
+	 * @param count
+	 * @return
+	 */
+	public byte[] readByteArray(final int count) {
+		byte[] array = null;
+
+		if (count < 0) {
+			final CharSequenceCursor cursor = this.getCursor();
+			array = Base64.decode(cursor.readToken(), -1 - count);
+			cursor.consumeSeparator();
+		} else {
+			final CharSequenceCursor cursor = this.getCursor();
+			array = new byte[count];
+			for (int i = 0; i < count; i++) {
+				array[i] = (byte) cursor.readInt();
+			}
+		}
+		return array;
+	}
+
+	public short[] readShortArray(final int count) {
+		this.checkArrayCount(count);
+
+		final CharSequenceCursor cursor = this.getCursor();
+		final short[] array = new short[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = (short) cursor.readInt();
+		}
+		return array;
+	}
+
+	public int[] readIntArray(final int count) {
+		this.checkArrayCount(count);
+
+		final CharSequenceCursor cursor = this.getCursor();
+		final int[] array = new int[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = cursor.readInt();
+		}
+		return array;
+	}
+
+	public long[] readLongArray(final int count) {
+		this.checkArrayCount(count);
+
+		final CharSequenceCursor cursor = this.getCursor();
+		final long[] array = new long[count];
+		for (int i = 0; i < count; i++) {
+			final long hi = cursor.readInt();
+			final long lo = cursor.readInt();
+			array[i] = (hi << 32) | (lo & 0xffffffffL);
+		}
+		return array;
+	}
+
+	public float[] readFloatArray(final int count) {
+		this.checkArrayCount(count);
+
+		final CharSequenceCursor cursor = this.getCursor();
+		final float[] array = new float[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = cursor.readFloat();
+		}
+		return array;
+	}
+
+	public double[] readDoubleArray(final int count) {
+		this.checkArrayCount(count);
+
+		final CharSequenceCursor cursor = this.getCursor();
+		final double[] array = new double[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = cursor.readDouble();
+		}
+		return array;
+	}
+
+	public char[] readCharArray(final int count) {
+		this.checkArrayCount(count);
+
+		final CharSequenceCursor cursor = this.getCursor();
+		final char[] array = new char[count];
+		for (int i = 0; i < count; i++) {
+			array[i] = (char) cursor.readInt();
+		}
+		return array;
+	}
+
+	protected void checkArrayCount(final int count) {
+		if (count < 0) {
+			throw new SerializationException("Invalid array element count " + count);
+		}
 	}
 
 	protected int readReference() {
@@ -84,250 +254,421 @@ public class ServerObjectInputStream extends ObjectInputStreamImpl {
 	}
 
 	/**
-	 * A cache of all the string values that have been scene...
+	 * The position of the opening quote of each entry within the string table,
+	 * indexed by reference minus the first string reference.
 	 */
-	private Map<Integer, String> strings;
+	private int[] stringPositions;
 
-	protected Map<Integer, String> getStrings() {
-		return this.strings;
+	protected int[] getStringPositions() {
+		Checker.notNull("field:stringPositions", stringPositions);
+		return this.stringPositions;
 	}
 
-	protected void setStrings(final Map<Integer, String> strings) {
-		this.strings = strings;
+	protected void setStringPositions(final int[] stringPositions) {
+		Checker.notNull("parameter:stringPositions", stringPositions);
+		this.stringPositions = stringPositions;
+	}
+
+	/**
+	 * Strings from the string table which have been decoded, entries remain
+	 * null until a string is first referenced.
+	 */
+	private String[] strings;
+
+	protected String[] getStrings() {
+		Checker.notNull("field:strings", strings);
+		return this.strings;
 	}
 
-	protected Map<Integer, String> createStrings() {
-		return new HashMap<Integer, String>();
+	protected void setStrings(final String[] strings) {
+		Checker.notNull("parameter:strings", strings);
+		this.strings = strings;
 	}
 
 	protected String getString(final int reference) {
-		final String string = this.getStrings().get(reference);
-		if (null == string) {
-			throwInvalidStringReference(reference);
+		final StringDictionary dictionary = this.getStringDictionary();
+		String string = null;
+		if (null != dictionary && dictionary.isDictionaryReference(reference)) {
+			string = dictionary.getString(reference);
+		} else {
+			final String[] strings = this.getStrings();
+			final int index = reference - this.getFirstStringReference();
+			if (index < 0 || index >= strings.length) {
+				throwInvalidStringReference(reference);
+			}
+			string = strings[index];
+
+			// first use, decode the string in place...
+			if (null == string) {
+				string = this.getCursor().readString(this.getStringPositions()[index]);
+				strings[index] = string;
+			}
 		}
 		return string;
 	}
 
 	/**
-	 * key: Objects value2: reference
+	 * Returns the reference of the first string within the string table, which
+	 * follows any dictionary references.
+	 * 
+	 * @return
+	 */
+	protected int getFirstStringReference() {
+		final StringDictionary dictionary = this.getStringDictionary();
+		return Constants.STRING_BIAS + (null == dictionary ? 0 : dictionary.getSize());
+	}
+
+	/**
+	 * An optional dictionary which must be identical to the one used by the
+	 * writer, which is only ever another server.
+	 */
+	private StringDictionary stringDictionary;
+
+	public StringDictionary getStringDictionary() {
+		return this.stringDictionary;
+	}
+
+	/**
+	 * Sets the dictionary, which must happen before the stream is prepared.
+	 * 
+	 * @param stringDictionary
+	 */
+	public void setStringDictionary(final StringDictionary stringDictionary) {
+		this.stringDictionary = stringDictionary;
+	}
+
+	/**
+	 * An optional listener which is told about every object that is read. When
+	 * absent nothing is timed or measured.
 	 */
-	private Map<Integer, Object> objects;
+	private SerializationListener serializationListener;
 
-	protected Map<Integer, Object> getObjects() {
+	public SerializationListener getSerializationListener() {
+		return this.serializationListener;
+	}
+
+	public void setSerializationListener(final SerializationListener serializationListener) {
+		this.serializationListener = serializationListener;
+	}
+
+	/**
+	 * When true readers that support it, such as
+	 * {@link rocket.serialization.server.reader.ReflectiveReader}, walk nested
+	 * objects using an explicit stack so deep graphs do not overflow the
+	 * thread stack. The values read are the same either way.
+	 */
+	private boolean iterative;
+
+	public boolean isIterative() {
+		return this.iterative;
+	}
+
+	public void setIterative(final boolean iterative) {
+		this.iterative = iterative;
+	}
+
+	/**
+	 * When true readers that support it, such as
+	 * {@link rocket.serialization.server.reader.ReflectiveReader}, expect the
+	 * {@link FieldLayout} of each type to appear before the fields of its first
+	 * instance and use it to match fields by name and type rather than
+	 * position.
+	 */
+	private boolean versioned;
+
+	public boolean isVersioned() {
+		return this.versioned;
+	}
+
+	public void setVersioned(final boolean versioned) {
+		this.versioned = versioned;
+	}
+
+	/**
+	 * The layouts already read from this stream keyed by type name.
+	 */
+	private Map<String, FieldLayout> fieldLayouts = new HashMap<String, FieldLayout>();
+
+	/**
+	 * Retrieves the layout previously read for the given type, or null if the
+	 * layout has not yet been read.
+	 * 
+	 * @param typeName
+	 * @return
+	 */
+	public FieldLayout getFieldLayout(final String typeName) {
+		return this.fieldLayouts.get(typeName);
+	}
+
+	public void addFieldLayout(final String typeName, final FieldLayout fieldLayout) {
+		Checker.notEmpty("parameter:typeName", typeName);
+		Checker.notNull("parameter:fieldLayout", fieldLayout);
+
+		this.fieldLayouts.put(typeName, fieldLayout);
+	}
+
+	/**
+	 * Returns the position of the next value within the stream, which is used
+	 * to measure the length of each object reported to a
+	 * {@link SerializationListener}.
+	 * 
+	 * @return
+	 */
+	protected long getReadPosition() {
+		return this.getCursor().getPosition();
+	}
+
+	/**
+	 * All objects read so far, the object with a reference of -1 is at index
+	 * 0, -2 at 1 and so on.
+	 */
+	private Object[] objects;
+
+	protected Object[] getObjects() {
+		Checker.notNull("field:objects", objects);
 		return this.objects;
 	}
 
-	protected void setObjects(final Map<Integer, Object> objects) {
+	protected void setObjects(final Object[] objects) {
+		Checker.notNull("parameter:objects", objects);
 		this.objects = objects;
 	}
 
-	protected Map<Integer, Object> createObjects() {
-		return new HashMap<Integer, Object>();
+	protected Object[] createObjects() {
+		return new Object[16];
+	}
+
+	/**
+	 * The number of objects within {@link #objects}
+	 */
+	private int objectCount;
+
+	protected int getObjectCount() {
+		return this.objectCount;
 	}
 
 	protected int addObject(final Object object) {
-		final Map<Integer, Object> objects = this.getObjects();
-		final int reference = -(objects.size() + 1);
-		objects.put(new Integer(reference), object);
+		Object[] objects = this.getObjects();
+		final int index = this.objectCount;
+		if (index == objects.length) {
+			final Object[] grown = new Object[index * 2];
+			System.arraycopy(objects, 0, grown, 0, index);
+			this.setObjects(grown);
+			objects = grown;
+		}
+		objects[index] = object;
+		this.objectCount = index + 1;
 
-		return reference;
+		return -1 - index;
 	}
 
 	protected void replaceObject(final int reference, final Object object) {
-		final Map objects = this.getObjects();
-		objects.put(reference, object);
+		final int index = -1 - reference;
+		if (index < 0 || index >= this.objectCount) {
+			this.throwInvalidObjectReference(reference);
+		}
+		this.getObjects()[index] = object;
 	}
 
 	protected Object getObject(final int reference) {
-		final Map objects = this.getObjects();
-		Object object = objects.get(reference);
+		final int index = -1 - reference;
+		Object object = null;
+		if (index >= 0 && index < this.objectCount) {
+			object = this.getObjects()[index];
+		}
 		if (null == object) {
 			this.throwInvalidObjectReference(reference);
 		}
 		return object;
 	}
 
-	// build string table...
-	// build a different array of values.
 	protected void prepare(final String stream) {
-		Checker.notEmpty("parameter:stream", stream);
+		this.prepare((CharSequence) stream);
+	}
+
+	// build string table...
+	// position a cursor at the start of the values.
+	protected void prepare(final CharSequence stream) {
+		Checker.notNull("parameter:stream", stream);
 
-		if (false == stream.startsWith("[") && false == stream.endsWith("]")) {
+		final int length = stream.length();
+		if (length < 2 || stream.charAt(0) != '[' || stream.charAt(length - 1) != ']') {
 			throw new SerializationException("Stream is not valid json.");
 		}
 
-		this.prepare0(stream.substring(1, stream.length() - 1));
+		this.prepare0(new CharSequenceCursor(stream, 1, length - 1));
 	}
 
-	protected void prepare0(final String stream) {
-		final int comma = stream.indexOf(',');
-		final String countString = stream.substring(0, comma);
-		int count = Integer.parseInt(countString);
-		if (count < 0) {
+	protected void prepare0(final CharSequenceCursor cursor) {
+		final int count = cursor.readInt();
+
+		// every string needs at least its two quotes...
+		if (count < 0 || count > cursor.getEnd() - cursor.getPosition()) {
 			throw new SerializationException("String table count is invalid, count: " + count);
 		}
 
-		// extract strings and add them to the string table...
-		final Map<Integer, String> strings = this.createStrings();
-		int j = comma + 1;
+		// record where each string starts, decoding happens on first use...
+		final int[] positions = new int[count];
 		for (int i = 0; i < count; i++) {
-			final StringBuffer buf = new StringBuffer();
-
-			// consume leading double quote...
-			final char first = stream.charAt(j);
-			j++;
-			Checker.equals("must be start of quoted string", '\"', first);
-
-			while (true) {
-				// consume a char within the quoted string...
-				final char c = stream.charAt(j);
-				j++;
-
-				// check if closing quote...
-				if (c == '"') {
-					break;
-				}
-
-				// not a backslash add literally...
-				if (c != '\'') {
-					buf.append(c);
-					continue;
-				}
-
-				// handle escaped char...
-				final char d = stream.charAt(j);
-				j++;
-
-				if (d == '\0') {
-					buf.append('\0');
-					continue;
-				}
-				if (d == '\t') {
-					buf.append('\t');
-					continue;
-				}
-				if (d == '\n') {
-					buf.append('\n');
-					continue;
-				}
-				if (d == '\r') {
-					buf.append('\r');
-					continue;
-				}
-				if (d == '\\') {
-					buf.append('\\');
-					continue;
-				}
-				if (d == '"') {
-					buf.append('"');
-					continue;
-				}
-				if (d == 'u') {
-					final String codeString = stream.substring(j, j + 4);
-					final int code = Integer.parseInt(codeString);
-					buf.append((char) code);
-
-					// consume trailing semi colon
-					final char semiColon = stream.charAt(j);
-					if (semiColon != ';') {
-						throw new SerializationException("Stream is corrupted, expected semiColon got \"" + semiColon + "\".");
-					}
-					j++;
-					continue;
-				}
-				throw new SerializationException("Unknown escaped char '" + d + "'.");
-			}
-
-			// add string to table...
-			final Integer reference = new Integer(i + Constants.STRING_BIAS);
-			strings.put(reference, buf.toString());
-
-			// consume the trailing comma
-			// if( i > 0 ){
-			// consume comma...
-			final char comma2 = stream.charAt(j);
-			j++;
-			Checker.equals("Unable to find separating comma", ',', comma2);
-			// }
+			positions[i] = cursor.skipString();
 		}
-		this.setStrings(strings);
+		this.setStringPositions(positions);
+		this.setStrings(new String[count]);
 
-		// j has pointer to start of values...
-		final String[] values = Utilities.split(stream.substring(j), ",", true);
-		this.setValues(values);
+		// cursor is now positioned at the start of values...
+		this.setCursor(cursor);
 	}
 
-	private String[] values;
-
-	protected String[] getValues() {
-		Checker.notNull("field:values", values);
-		return this.values;
-	}
+	/**
+	 * The cursor which parses values in place.
+	 */
+	private CharSequenceCursor cursor;
 
-	protected void setValues(final String[] values) {
-		Checker.notNull("parameter:values", values);
-		this.values = values;
+	protected CharSequenceCursor getCursor() {
+		Checker.notNull("field:cursor", cursor);
+		return this.cursor;
 	}
 
-	private int valueIndex;
-
-	protected int getValueIndex() {
-		return this.valueIndex;
+	protected void setCursor(final CharSequenceCursor cursor) {
+		Checker.notNull("parameter:cursor", cursor);
+		this.cursor = cursor;
 	}
 
-	protected void setValueIndex(final int valueIndex) {
-		this.valueIndex = valueIndex;
+	protected Object readNewObject0(final String typeName) {
+		return this.readNewObject0(typeName, this.getObjectReader(typeName), this.getSerializationListener());
 	}
 
-	protected String nextValue() {
-		final int valueIndex = this.getValueIndex();
-		final String value = this.getValues()[valueIndex];
-		this.setValueIndex(valueIndex + 1);
-		return value;
+	protected ServerObjectReader getObjectReader(final String typeName) {
+		final Class classs = this.getType(typeName);
+		final ServerObjectReader reader = this.getObjectReaderRegistry().getObjectReader(classs);
+		if (null == reader) {
+			this.throwUnableToDeserialize(typeName);
+		}
+		return reader;
 	}
 
-	protected Object readNewObject0(final String typeName) {
+	/**
+	 * Reads the next object unless it is a new object that would be read by
+	 * the given reader. In that case only the new instance is created and
+	 * added to the object table, {@link #isFieldsDeferred()} becomes true and
+	 * the caller must read the fields of the instance itself. This allows a
+	 * reader to walk a deep graph using its own stack rather than recursing.
+	 * 
+	 * @param deferTo
+	 * @return The object or new instance
+	 */
+	public Object readObjectDeferringFields(final ServerObjectReader deferTo) {
 		Object object = null;
+		boolean deferred = false;
+
+		while (true) {
+			final int reference = this.readInt();
+			if (false == this.isNewObject(reference)) {
+				object = this.readObject(reference);
+				break;
+			}
 
-		boolean read = false;
-
-		Class classs = this.getType(typeName);
-		final Iterator readers = this.getObjectReaders().iterator();
-		while (readers.hasNext()) {
-			final ServerObjectReader reader = (ServerObjectReader) readers.next();
-			if (reader.canRead(classs)) {
-				read = true;
-				object = reader.newInstance(typeName, this);
-				this.addObject(object);
-				reader.read(object, this);
+			final String typeName = this.getString(this.readInt());
+			final ServerObjectReader reader = this.getObjectReader(typeName);
+			if (reader != deferTo) {
+				object = this.readNewObject0(typeName, reader, this.getSerializationListener());
 				break;
 			}
+
+			object = reader.newInstance(typeName, this);
+			this.addObject(object);
+			deferred = true;
+			break;
 		}
-		if (false == read) {
-			this.throwUnableToDeserialize(typeName);
+
+		this.fieldsDeferred = deferred;
+		return object;
+	}
+
+	/**
+	 * True when the last {@link #readObjectDeferringFields(ServerObjectReader)}
+	 * returned a new instance whose fields have not been read.
+	 */
+	private boolean fieldsDeferred;
+
+	public boolean isFieldsDeferred() {
+		return this.fieldsDeferred;
+	}
+
+	protected Object readNewObject0(final String typeName, final ServerObjectReader reader) {
+		final Object object = reader.newInstance(typeName, this);
+		this.addObject(object);
+		reader.read(object, this);
+		return object;
+	}
+
+	/**
+	 * Reads a new object, timing and measuring the read if a listener is
+	 * present.
+	 * 
+	 * @param typeName
+	 * @param reader
+	 * @param listener
+	 *            May be null
+	 * @return
+	 */
+	protected Object readNewObject0(final String typeName, final ServerObjectReader reader, final SerializationListener listener) {
+		if (null == listener) {
+			return this.readNewObject0(typeName, reader);
 		}
 
+		final long position = this.getReadPosition();
+		final long start = System.nanoTime();
+		final Object object = this.readNewObject0(typeName, reader);
+		final long nanos = System.nanoTime() - start;
+		listener.objectRead(object.getClass(), reader, this.getReadPosition() - position, nanos);
 		return object;
 	}
 
 	protected Class getType(final String typeName) {
-		try {
-			return Class.forName(typeName);
-		} catch (final ClassNotFoundException classNotFound) {
-			throw new SerializationException("Unable to instantiate " + typeName, classNotFound);
-		}
+		return this.getObjectReaderRegistry().getType(typeName);
 	}
 
-	private List<ServerObjectReader> objectReaders;
+	/**
+	 * Creates a new instance of the named type using the cached constructor
+	 * held by the {@link TypeResolver} of this stream.
+	 * 
+	 * @param typeName
+	 * @return
+	 */
+	public Object newInstance(final String typeName) {
+		return this.getObjectReaderRegistry().newInstance(typeName);
+	}
 
 	protected List<ServerObjectReader> getObjectReaders() {
-		Checker.notNull("field:objectReaders", objectReaders);
-		return this.objectReaders;
+		return this.getObjectReaderRegistry().getObjectReaders();
 	}
 
+	/**
+	 * Wraps the given readers in a new {@link ObjectReaderRegistry}. Prefer
+	 * {@link #setObjectReaderRegistry(ObjectReaderRegistry)} with a shared
+	 * registry so types and readers are only resolved once.
+	 * 
+	 * @param objectReaders
+	 */
 	public void setObjectReaders(final List<ServerObjectReader> objectReaders) {
-		Checker.notNull("parameter:objectReaders", objectReaders);
-		this.objectReaders = objectReaders;
+		this.setObjectReaderRegistry(new ObjectReaderRegistry(objectReaders));
+	}
+
+	/**
+	 * The registry used to resolve types and find the reader for each new
+	 * object.
+	 */
+	private ObjectReaderRegistry objectReaderRegistry;
+
+	protected ObjectReaderRegistry getObjectReaderRegistry() {
+		Checker.notNull("field:objectReaderRegistry", objectReaderRegistry);
+		return this.objectReaderRegistry;
+	}
+
+	public void setObjectReaderRegistry(final ObjectReaderRegistry objectReaderRegistry) {
+		Checker.notNull("parameter:objectReaderRegistry", objectReaderRegistry);
+		this.objectReaderRegistry = objectReaderRegistry;
 	}
 
 	protected List<ServerObjectReader> createObjectReaders() {
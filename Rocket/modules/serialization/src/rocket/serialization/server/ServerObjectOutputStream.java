@@ -16,10 +16,14 @@
 package rocket.serialization.server;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import rocket.serialization.client.Constants;
 import rocket.serialization.client.ObjectOutputStream;
@@ -36,68 +40,101 @@ public class ServerObjectOutputStream extends ObjectOutputStreamImpl implements
 		this.setObjectTable(this.createObjectTable());
 	}
 
+	/**
+	 * Clears all written values, strings and objects so this stream may be
+	 * reused. Tables and buffers that grew beyond
+	 * {@link #RETAINED_CAPACITY} are discarded rather than cleared so a
+	 * single large response does not pin memory.
+	 */
+	public void reset() {
+		final SerializationListener listener = this.getSerializationListener();
+		if (null != listener) {
+			listener.outputCompleted(this.getStringTable().size(), this.getObjectTable().size());
+		}
+
+		final StringBuffer values = this.getValues();
+		if (values.capacity() > RETAINED_CAPACITY) {
+			this.setValues(this.createValues());
+		} else {
+			values.setLength(0);
+		}
+
+		final ReferenceTable stringTable = this.getStringTable();
+		if (stringTable.getCapacity() > RETAINED_TABLE_SIZE) {
+			this.setStringTable(this.createStringTable());
+		} else {
+			stringTable.clear();
+		}
+
+		final ReferenceTable objectTable = this.getObjectTable();
+		if (objectTable.getCapacity() > RETAINED_TABLE_SIZE) {
+			this.setObjectTable(this.createObjectTable());
+		} else {
+			objectTable.clear();
+		}
+
+		this.clearFieldLayouts();
+	}
+
+	/**
+	 * The largest values buffer capacity that will be kept by {@link #reset()}
+	 */
+	final static int RETAINED_CAPACITY = 64 * 1024;
+
+	/**
+	 * The largest table size that will be cleared rather than discarded by
+	 * {@link #reset()}
+	 */
+	final static int RETAINED_TABLE_SIZE = 1024;
+
 	protected void addObject(Object object) {
 		Checker.notNull("parameter:object", object);
 
-		final Map<Object, Integer> objects = this.getObjectTable();
-		final int reference = (-1 - objects.size());
-		objects.put(object, new Integer(reference));
+		this.getObjectTable().add(object);
 	}
 
 	protected int findReference(final Object object) {
-		final Integer integer = (Integer) this.getObjectTable().get(object);
-		return integer == null ? 0 : integer.intValue();
+		final int index = this.getObjectTable().indexOf(object);
+		return -1 == index ? 0 : -1 - index;
 	}
 
 	/**
-	 * A map that uses the identity of an object as the key and with the object
-	 * as the value. key: Objects value2: reference
+	 * A table that uses the identity of each object written, the reference of
+	 * an object is derived from its index within the table.
 	 */
-	private Map objectTable;
+	private ReferenceTable objectTable;
 
-	protected Map getObjectTable() {
+	protected ReferenceTable getObjectTable() {
 		Checker.notNull("field:objectTable", objectTable);
 		return this.objectTable;
 	}
 
-	protected void setObjectTable(final Map objectTable) {
+	protected void setObjectTable(final ReferenceTable objectTable) {
 		Checker.notNull("parameter:objectTable", objectTable);
 		this.objectTable = objectTable;
 	}
 
-	protected Map<Object, Integer> createObjectTable() {
-		return new java.util.IdentityHashMap<Object, Integer>();
+	protected ReferenceTable createObjectTable() {
+		return new ReferenceTable(true);
 	}
 
 	public void writeBoolean(final boolean booleanValue) {
-		final StringBuffer buf = this.getValues();
-		if (buf.length() > 0) {
-			buf.append(',');
-		}
+		final StringBuffer buf = this.prepareValue();
 		buf.append(booleanValue);
 	}
 
 	public void writeByte(final byte byteValue) {
-		final StringBuffer buf = this.getValues();
-		if (buf.length() > 0) {
-			buf.append(',');
-		}
+		final StringBuffer buf = this.prepareValue();
 		buf.append(byteValue);
 	}
 
 	public void writeShort(final short shortValue) {
-		final StringBuffer buf = this.getValues();
-		if (buf.length() > 0) {
-			buf.append(',');
-		}
+		final StringBuffer buf = this.prepareValue();
 		buf.append(shortValue);
 	}
 
 	public void writeInt(final int intValue) {
-		final StringBuffer buf = this.getValues();
-		if (buf.length() > 0) {
-			buf.append(',');
-		}
+		final StringBuffer buf = this.prepareValue();
 		buf.append(intValue);
 	}
 
@@ -109,48 +146,476 @@ public class ServerObjectOutputStream extends ObjectOutputStreamImpl implements
 	}
 
 	public void writeFloat(final float floatValue) {
-		final StringBuffer buf = this.getValues();
-		if (buf.length() > 0) {
-			buf.append(',');
-		}
+		final StringBuffer buf = this.prepareValue();
 		buf.append(floatValue);
 	}
 
 	public void writeDouble(final double doubleValue) {
-		final StringBuffer buf = this.getValues();
-		if (buf.length() > 0) {
-			buf.append(',');
-		}
+		final StringBuffer buf = this.prepareValue();
 		buf.append(doubleValue);
 	}
 
 	public void writeChar(final char charValue) {
-		final StringBuffer buf = this.getValues();
-		if (buf.length() > 0) {
+		final StringBuffer buf = this.prepareValue();
+		buf.append((int) charValue);
+	}
+
+	/**
+	 * Array elements are appended in blocks of this many values, with
+	 * {@link #prepareValue()} only being called at the start of each block.
+	 */
+	final static int ARRAY_BLOCK_MASK = 1024 - 1;
+
+	/**
+	 * Writes the element count followed by all the elements of the given
+	 * array. The output is identical to calling {@link #writeInt(int)} and
+	 * then {@link #writeBoolean(boolean)} for each element.
+	 * 
+	 * @param array
+	 */
+	public void writeBooleanArray(final boolean[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+
+		StringBuffer buf = null;
+		for (int i = 0; i < count; i++) {
+			if (0 == (i & ARRAY_BLOCK_MASK)) {
+				buf = this.prepareValue();
+			} else {
+				buf.append(',');
+			}
+			buf.append(array[i]);
+		}
+	}
+
+	/**
+	 * Writes the element count followed by all the elements of the given
+	 * array. If {@link #base64ByteArrays} is true and the array is not empty
+	 * the bytes are written as a single base 64 value preceded by a negative
+	 * count, which only a {@link ServerObjectInputStream} understands.
+	 * 
+	 * @param array
+	 */
+	public void writeByteArray(final byte[] array) {
+		final int count = array.length;
+		if (this.isBase64ByteArrays() && count > 0) {
+			this.writeInt(-1 - count);
+			Base64.encode(array, this.prepareValue());
+		} else {
+			this.writeInt(count);
+
+			StringBuffer buf = null;
+			for (int i = 0; i < count; i++) {
+				if (0 == (i & ARRAY_BLOCK_MASK)) {
+					buf = this.prepareValue();
+				} else {
+					buf.append(',');
+				}
+				buf.append(array[i]);
+			}
+		}
+	}
+
+	public void writeShortArray(final short[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+
+		StringBuffer buf = null;
+		for (int i = 0; i < count; i++) {
+			if (0 == (i & ARRAY_BLOCK_MASK)) {
+				buf = this.prepareValue();
+			} else {
+				buf.append(',');
+			}
+			buf.append(array[i]);
+		}
+	}
+
+	public void writeIntArray(final int[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+
+		StringBuffer buf = null;
+		for (int i = 0; i < count; i++) {
+			if (0 == (i & ARRAY_BLOCK_MASK)) {
+				buf = this.prepareValue();
+			} else {
+				buf.append(',');
+			}
+			buf.append(array[i]);
+		}
+	}
+
+	public void writeLongArray(final long[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+
+		StringBuffer buf = null;
+		for (int i = 0; i < count; i++) {
+			if (0 == (i & ARRAY_BLOCK_MASK)) {
+				buf = this.prepareValue();
+			} else {
+				buf.append(',');
+			}
+			final long value = array[i];
+			buf.append((int) (value >> 32));
 			buf.append(',');
+			buf.append((int) value);
 		}
-		buf.append((int) charValue);
+	}
+
+	public void writeFloatArray(final float[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+
+		StringBuffer buf = null;
+		for (int i = 0; i < count; i++) {
+			if (0 == (i & ARRAY_BLOCK_MASK)) {
+				buf = this.prepareValue();
+			} else {
+				buf.append(',');
+			}
+			buf.append(array[i]);
+		}
+	}
+
+	public void writeDoubleArray(final double[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+
+		StringBuffer buf = null;
+		for (int i = 0; i < count; i++) {
+			if (0 == (i & ARRAY_BLOCK_MASK)) {
+				buf = this.prepareValue();
+			} else {
+				buf.append(',');
+			}
+			buf.append(array[i]);
+		}
+	}
+
+	public void writeCharArray(final char[] array) {
+		final int count = array.length;
+		this.writeInt(count);
+
+		StringBuffer buf = null;
+		for (int i = 0; i < count; i++) {
+			if (0 == (i & ARRAY_BLOCK_MASK)) {
+				buf = this.prepareValue();
+			} else {
+				buf.append(',');
+			}
+			buf.append((int) array[i]);
+		}
+	}
+
+	/**
+	 * Tests if a collection with the given number of elements should be
+	 * written using {@link #writeObjects(Object[])}.
+	 * 
+	 * @param elementCount
+	 * @return
+	 */
+	public boolean isParallel(final int elementCount) {
+		return null != this.getParallelExecutor() && elementCount >= this.getParallelThreshold() && false == this.isVersioned();
+	}
+
+	/**
+	 * Writes each of the given objects, producing exactly the same output as
+	 * calling {@link #writeObject(Object)} for each. The elements are split
+	 * into chunks of {@link #parallelChunkSize} and each chunk is written by a
+	 * {@link SegmentObjectOutputStream} on the {@link #parallelExecutor}. The
+	 * segments are then merged in order, renumbering their string and object
+	 * references. A segment that wrote an object that this stream had already
+	 * written cannot be merged and its chunk is written again here.
+	 * 
+	 * @param objects
+	 */
+	public void writeObjects(final Object[] objects) {
+		Checker.notNull("parameter:objects", objects);
+
+		final ExecutorService executor = this.getParallelExecutor();
+		final int count = objects.length;
+		final int chunkSize = this.getParallelChunkSize();
+
+		final List<Future<SegmentObjectOutputStream>> segments = new ArrayList<Future<SegmentObjectOutputStream>>();
+		for (int start = 0; start < count; start = start + chunkSize) {
+			final int first = start;
+			final int end = Math.min(count, start + chunkSize);
+			final ServerObjectOutputStream parent = this;
+
+			segments.add(executor.submit(new Callable<SegmentObjectOutputStream>() {
+				public SegmentObjectOutputStream call() {
+					final SegmentObjectOutputStream segment = new SegmentObjectOutputStream(parent);
+					segment.write(objects, first, end);
+					return segment;
+				}
+			}));
+		}
+
+		int start = 0;
+		final Iterator<Future<SegmentObjectOutputStream>> iterator = segments.iterator();
+		while (iterator.hasNext()) {
+			final SegmentObjectOutputStream segment = this.waitFor(iterator.next());
+			if (this.canMerge(segment)) {
+				this.merge(segment);
+			} else {
+				final int end = Math.min(count, start + chunkSize);
+				for (int i = start; i < end; i++) {
+					this.writeObject(objects[i]);
+				}
+			}
+			start = start + chunkSize;
+		}
+	}
+
+	protected SegmentObjectOutputStream waitFor(final Future<SegmentObjectOutputStream> segment) {
+		try {
+			return segment.get();
+		} catch (final InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+			throw new SerializationException("Interrupted while waiting for a segment", interrupted);
+		} catch (final ExecutionException failed) {
+			final Throwable cause = failed.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new SerializationException("Unable to write segment", cause);
+		}
+	}
+
+	/**
+	 * A segment may only be merged if none of the objects it wrote have
+	 * already been written by this stream, otherwise it would contain a copy
+	 * where this stream would have written a reference.
+	 * 
+	 * @param segment
+	 * @return
+	 */
+	protected boolean canMerge(final SegmentObjectOutputStream segment) {
+		boolean merge = true;
+
+		final Iterator<Object> objects = segment.getObjectTable().iterator();
+		while (objects.hasNext()) {
+			if (0 != this.findReference(objects.next())) {
+				merge = false;
+				break;
+			}
+		}
+		return merge;
+	}
+
+	protected void merge(final SegmentObjectOutputStream segment) {
+		// map local string references to references within this stream...
+		final int firstStringReference = segment.getFirstStringReference();
+		final int[] strings = new int[segment.getStringCount()];
+		final Iterator stringIterator = segment.processedStrings();
+		int i = 0;
+		while (stringIterator.hasNext()) {
+			final String string = (String) stringIterator.next();
+			int reference = this.findStringReference(string);
+			if (0 == reference) {
+				reference = this.addString(string);
+			}
+			strings[i] = reference;
+			i++;
+		}
+
+		// local object references are simply shifted by the objects already written
+		final int objectBase = this.getObjectTable().size();
+		final Iterator<Object> objects = segment.getObjectTable().iterator();
+		while (objects.hasNext()) {
+			this.addObject(objects.next());
+		}
+
+		// copy values replacing references...
+		final StringBuffer values = segment.getValues();
+		final StringBuffer buf = this.prepareValue();
+		final int[] offsets = segment.referenceOffsets;
+		final int[] references = segment.references;
+		final int referenceCount = segment.referenceCount;
+		int copied = 0;
+		for (int r = 0; r < referenceCount; r++) {
+			final int offset = offsets[r];
+			buf.append(values, copied, offset);
+
+			int reference = references[r];
+			if (reference < 0) {
+				reference = reference - objectBase;
+			} else {
+				if (reference >= firstStringReference) {
+					reference = strings[reference - firstStringReference];
+				}
+			}
+			buf.append(reference);
+
+			int end = offset + 1;
+			final int length = values.length();
+			while (end < length && values.charAt(end) != ',') {
+				end++;
+			}
+			copied = end;
+		}
+		buf.append(values, copied, values.length());
 	}
 
 	/**
-	 * key: String value2: reference# Strings are not added to the object
-	 * cache...Any ObjectInputStream must know whether it is reading a String or
-	 * Object and use the reference for the appropriate cache.
+	 * The executor used to write large collections in parallel. When null, the
+	 * default, collections are always written on the calling thread.
 	 */
-	private Map stringTable;
+	private ExecutorService parallelExecutor;
+
+	public ExecutorService getParallelExecutor() {
+		return this.parallelExecutor;
+	}
+
+	public void setParallelExecutor(final ExecutorService parallelExecutor) {
+		this.parallelExecutor = parallelExecutor;
+	}
 
-	protected Map getStringTable() {
+	/**
+	 * The smallest element count that is written in parallel.
+	 */
+	private int parallelThreshold = 4096;
+
+	public int getParallelThreshold() {
+		return this.parallelThreshold;
+	}
+
+	public void setParallelThreshold(final int parallelThreshold) {
+		Checker.greaterThan("parameter:parallelThreshold", 0, parallelThreshold);
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * The number of elements written by each segment.
+	 */
+	private int parallelChunkSize = 1024;
+
+	public int getParallelChunkSize() {
+		return this.parallelChunkSize;
+	}
+
+	public void setParallelChunkSize(final int parallelChunkSize) {
+		Checker.greaterThan("parameter:parallelChunkSize", 0, parallelChunkSize);
+		this.parallelChunkSize = parallelChunkSize;
+	}
+
+	/**
+	 * When true writers that support it, such as
+	 * {@link rocket.serialization.server.writer.ReflectiveWriter}, walk nested
+	 * objects using an explicit stack so deep graphs do not overflow the
+	 * thread stack. The values written are the same either way.
+	 */
+	private boolean iterative;
+
+	public boolean isIterative() {
+		return this.iterative;
+	}
+
+	public void setIterative(final boolean iterative) {
+		this.iterative = iterative;
+	}
+
+	/**
+	 * When true writers that support it, such as
+	 * {@link rocket.serialization.server.writer.ReflectiveWriter}, write the
+	 * {@link FieldLayout} of each type the first time it is written, so that a
+	 * reader whose classes have gained or lost fields may still read the
+	 * stream. Only server readers understand versioned streams, and parallel
+	 * writing is disabled as segments cannot share layouts.
+	 */
+	private boolean versioned;
+
+	public boolean isVersioned() {
+		return this.versioned;
+	}
+
+	public void setVersioned(final boolean versioned) {
+		this.versioned = versioned;
+	}
+
+	/**
+	 * The types whose field layout has already been written to this stream.
+	 */
+	private Set<Class> fieldLayouts = new HashSet<Class>();
+
+	/**
+	 * Records that the layout of the given type is about to be written.
+	 * 
+	 * @param type
+	 * @return true if this is the first time the type has been seen and its
+	 *         layout must be written.
+	 */
+	public boolean addFieldLayout(final Class type) {
+		Checker.notNull("parameter:type", type);
+		return this.fieldLayouts.add(type);
+	}
+
+	protected void clearFieldLayouts() {
+		this.fieldLayouts.clear();
+	}
+
+	/**
+	 * When true non empty byte arrays are written as a single base 64 encoded
+	 * value. Browser clients cannot read this form so it defaults to false.
+	 */
+	private boolean base64ByteArrays;
+
+	public boolean isBase64ByteArrays() {
+		return this.base64ByteArrays;
+	}
+
+	public void setBase64ByteArrays(final boolean base64ByteArrays) {
+		this.base64ByteArrays = base64ByteArrays;
+	}
+
+	/**
+	 * All strings in the order they were first written. Strings are not added
+	 * to the object cache...Any ObjectInputStream must know whether it is
+	 * reading a String or Object and use the reference for the appropriate
+	 * cache.
+	 */
+	private ReferenceTable stringTable;
+
+	protected ReferenceTable getStringTable() {
 		Checker.notNull("field:stringTable", stringTable);
 		return this.stringTable;
 	}
 
-	protected void setStringTable(final Map stringTable) {
+	protected void setStringTable(final ReferenceTable stringTable) {
 		Checker.notNull("parameter:stringTable", stringTable);
 		this.stringTable = stringTable;
 	}
 
-	protected Map createStringTable() {
-		return new LinkedHashMap();
+	protected ReferenceTable createStringTable() {
+		return new ReferenceTable(false);
+	}
+
+	public void writeString(final String string) {
+		this.writeString(string, this.getSerializationListener());
+	}
+
+	/**
+	 * Writes a reference to the given string, notifying the listener if one is
+	 * present whether the string was already known.
+	 * 
+	 * @param string
+	 * @param listener
+	 *            May be null
+	 */
+	protected void writeString(final String string, final SerializationListener listener) {
+		int reference = this.findStringReference(string);
+		if (null != listener) {
+			listener.stringWritten(0 != reference);
+		}
+		if (0 == reference) {
+			reference = this.addString(string);
+		}
+		this.writeReference(reference);
 	}
 
 	protected int getStringCount() {
@@ -158,23 +623,77 @@ public class ServerObjectOutputStream extends ObjectOutputStreamImpl implements
 	}
 
 	protected Iterator processedStrings() {
-		return this.getStringTable().keySet().iterator();
+		return this.getStringTable().iterator();
 	}
 
 	protected int findStringReference(final String string) {
 		int reference = 0;
-		final Integer integer = (Integer) this.getStringTable().get(string);
-		if (null != integer) {
-			reference = integer.intValue();
+
+		final StringDictionary dictionary = this.getStringDictionary();
+		if (null != dictionary) {
+			reference = dictionary.getReference(string);
+		}
+		if (0 == reference) {
+			final int index = this.getStringTable().indexOf(string);
+			if (-1 != index) {
+				reference = index + this.getFirstStringReference();
+			}
 		}
 		return reference;
 	}
 
 	protected int addString(final String string) {
-		final Map strings = this.getStringTable();
-		final int reference = strings.size() + Constants.STRING_BIAS;
-		strings.put(string, new Integer(reference));
-		return reference;
+		return this.getStringTable().add(string) + this.getFirstStringReference();
+	}
+
+	/**
+	 * Returns the reference given to the first string added to the string
+	 * table, which follows any dictionary references.
+	 * 
+	 * @return
+	 */
+	protected int getFirstStringReference() {
+		final StringDictionary dictionary = this.getStringDictionary();
+		return Constants.STRING_BIAS + (null == dictionary ? 0 : dictionary.getSize());
+	}
+
+	/**
+	 * An optional dictionary of strings known to the reader, which are written
+	 * as references and never added to the string table. Only server peers
+	 * know a dictionary, browser clients do not.
+	 */
+	private StringDictionary stringDictionary;
+
+	public StringDictionary getStringDictionary() {
+		return this.stringDictionary;
+	}
+
+	public void setStringDictionary(final StringDictionary stringDictionary) {
+		this.stringDictionary = stringDictionary;
+	}
+
+	/**
+	 * An optional listener which is told about every object and string that is
+	 * written. When absent nothing is timed or measured.
+	 */
+	private SerializationListener serializationListener;
+
+	public SerializationListener getSerializationListener() {
+		return this.serializationListener;
+	}
+
+	public void setSerializationListener(final SerializationListener serializationListener) {
+		this.serializationListener = serializationListener;
+	}
+
+	/**
+	 * Returns the number of chars written so far, which is used to measure the
+	 * length of each object reported to a {@link SerializationListener}.
+	 * 
+	 * @return
+	 */
+	protected long getWrittenLength() {
+		return this.getValues().length();
 	}
 
 	/**
@@ -194,6 +713,20 @@ public class ServerObjectOutputStream extends ObjectOutputStreamImpl implements
 		return new StringBuffer();
 	}
 
+	/**
+	 * Returns the buffer that the next value should be appended to, after
+	 * adding a separating comma if necessary.
+	 * 
+	 * @return The values buffer
+	 */
+	protected StringBuffer prepareValue() {
+		final StringBuffer buf = this.getValues();
+		if (buf.length() > 0) {
+			buf.append(',');
+		}
+		return buf;
+	}
+
 	protected String getValuesText() {
 		return this.getValues().toString();
 	}
@@ -210,10 +743,9 @@ public class ServerObjectOutputStream extends ObjectOutputStreamImpl implements
 		// string table (comma separated)
 		final Iterator stringIterator = this.processedStrings();
 		while (stringIterator.hasNext()) {
-			String string = (String) stringIterator.next();
-			string = this.escape(string);
+			final String string = (String) stringIterator.next();
 			text.append('"');
-			text.append(string);
+			this.escape(string, text);
 			text.append("\",");
 		}
 
@@ -229,77 +761,138 @@ public class ServerObjectOutputStream extends ObjectOutputStreamImpl implements
 		this.writeString((String) string);
 	}
 
+	/**
+	 * Returns the escaped form of the given string suitable for placement
+	 * within double quotes in the string table. Strings that contain nothing
+	 * to escape, which is most of them, are returned as is.
+	 * 
+	 * @param string
+	 * @return
+	 */
 	protected String escape(final String string) {
 		Checker.notNull("parameter:string", string);
 
-		final StringBuffer buf = new StringBuffer();
+		String escaped = string;
+		if (-1 != ServerObjectOutputStream.indexOfEscapedChar(string, 0)) {
+			final StringBuffer buf = new StringBuffer(string.length() + 16);
+			this.escape(string, buf);
+			escaped = buf.toString();
+		}
+		return escaped;
+	}
+
+	/**
+	 * Appends the escaped form of the given string to the given buffer.
+	 * Contiguous runs of characters that do not require escaping are appended
+	 * in a single step.
+	 * 
+	 * @param string
+	 * @param buf
+	 */
+	protected void escape(final String string, final StringBuffer buf) {
 		final int length = string.length();
-		for (int i = 0; i < length; i++) {
-			final char c = string.charAt(i);
-			if (c == '\"') {
-				buf.append("\\\"");
-				continue;
-			}
-			if (c == '\\') {
-				buf.append("\\\\");
-				continue;
-			}
-			if (c >= ' ') {
-				buf.append(c);
-				continue;
-			}
-			if (c == '\0' && c < 0x100) {
-				buf.append("\\\0");
-				continue;
-			}
-			if (c == '\b') {
-				buf.append("\\\b");
-				continue;
-			}
-			if (c == '\f') {
-				buf.append("\\\f");
-				continue;
-			}
-			if (c == '\t') {
-				buf.append("\\\t");
-				continue;
-			}
-			if (c == '\n') {
-				buf.append("\\\n");
-				continue;
+		int start = 0;
+		while (true) {
+			final int i = ServerObjectOutputStream.indexOfEscapedChar(string, start);
+			if (-1 == i) {
+				buf.append(string, start, length);
+				break;
 			}
-			if (c == '\r') {
-				buf.append("\\\r");
-				continue;
+			buf.append(string, start, i);
+			buf.append(ServerObjectOutputStream.getEscapeSequence(string.charAt(i)));
+			start = i + 1;
+		}
+	}
+
+	/**
+	 * Returns the index of the first character at or after start that must be
+	 * escaped or -1 if none exist.
+	 * 
+	 * @param string
+	 * @param start
+	 * @return
+	 */
+	static int indexOfEscapedChar(final String string, final int start) {
+		final int length = string.length();
+		int i = start;
+		while (i < length) {
+			final char c = string.charAt(i);
+			if (c < ' ' || c == '"' || c == '\\' || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR) {
+				return i;
 			}
+			i++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Javascript treats these characters as line terminators, which are not
+	 * allowed within a string literal.
+	 */
+	final static char LINE_SEPARATOR = 0x2028;
+
+	final static char PARAGRAPH_SEPARATOR = 0x2029;
+
+	/**
+	 * Escape sequences for all control characters, indexed by character.
+	 */
+	final static String[] CONTROL_ESCAPES = buildControlEscapes();
 
-			final int j = c;
+	static String[] buildControlEscapes() {
+		final String[] escapes = new String[' '];
+		for (int i = 0; i < escapes.length; i++) {
+			escapes[i] = ServerObjectOutputStream.unicodeEscape((char) i);
+		}
+		escapes['\b'] = "\\b";
+		escapes['\f'] = "\\f";
+		escapes['\n'] = "\\n";
+		escapes['\r'] = "\\r";
+		escapes['\t'] = "\\t";
+		return escapes;
+	}
 
-			final String hex = Integer.toHexString((int) c);
-			if (j < 0x10) {
-				buf.append("\\x0");
-				buf.append(hex);
-				buf.append(';');
-				continue;
+	/**
+	 * Returns the escape sequence for a character that was found by
+	 * {@link #indexOfEscapedChar(String, int)}. The sequences are those of a
+	 * javascript string literal, which means the client is able to eval the
+	 * string table and {@link CharSequenceCursor#readString()} understands them
+	 * all.
+	 * 
+	 * @param c
+	 * @return
+	 */
+	static String getEscapeSequence(final char c) {
+		String escaped = null;
+		while (true) {
+			if (c < ' ') {
+				escaped = CONTROL_ESCAPES[c];
+				break;
 			}
-			if (j < 0x100) {
-				buf.append("\\x");
-				buf.append(hex);
-				buf.append(';');
-				continue;
+			if (c == '"') {
+				escaped = "\\\"";
+				break;
 			}
-			if (j < 0x1000) {
-				buf.append("\\u0");
-				buf.append(hex);
-				buf.append(';');
-				continue;
+			if (c == '\\') {
+				escaped = "\\\\";
+				break;
 			}
-			buf.append("\\u");
-			buf.append(j);
-			buf.append(';');
-
+			escaped = ServerObjectOutputStream.unicodeEscape(c);
+			break;
 		}
-		return buf.toString();
+		return escaped;
+	}
+
+	final static String HEX_DIGITS = "0123456789abcdef";
+
+	static String unicodeEscape(final char c) {
+		final char[] chars = new char[6];
+		chars[0] = '\\';
+		chars[1] = 'u';
+		chars[2] = HEX_DIGITS.charAt((c >> 12) & 0xF);
+		chars[3] = HEX_DIGITS.charAt((c >> 8) & 0xF);
+		chars[4] = HEX_DIGITS.charAt((c >> 4) & 0xF);
+		chars[5] = HEX_DIGITS.charAt(c & 0xF);
+		return new String(chars);
 	}
 
 	protected boolean isString(final Object object) {
@@ -307,18 +900,77 @@ public class ServerObjectOutputStream extends ObjectOutputStreamImpl implements
 	}
 
 	protected void writeNewObject(final Object object) {
-		boolean written = false;
-		final Iterator writers = this.getObjectWriters().iterator();
-		while (writers.hasNext()) {
-			final ServerObjectWriter writer = (ServerObjectWriter) writers.next();
-			if (writer.canWrite(object)) {
-				writer.write(object, this);
-				written = true;
+		this.writeNewObject(object, this.getObjectWriter(object), this.getSerializationListener());
+	}
+
+	protected ServerObjectWriter getObjectWriter(final Object object) {
+		final ServerObjectWriter writer = this.getObjectWriterRegistry().getObjectWriter(object);
+		if (null == writer) {
+			throwUnableToSerialize(object);
+		}
+		return writer;
+	}
+
+	/**
+	 * Writes the given object unless it is a new object that would be written
+	 * by the given writer. In that case only the new object header is written
+	 * and the object is added to the object table, leaving the caller to write
+	 * the rest of the object itself. This allows a writer to walk a deep graph
+	 * using its own stack rather than recursing, while producing exactly the
+	 * same values.
+	 * 
+	 * @param object
+	 * @param deferTo
+	 * @return True if the caller must write the rest of the object.
+	 */
+	public boolean writeObjectDeferringFields(final Object object, final ServerObjectWriter deferTo) {
+		boolean deferred = false;
+
+		while (true) {
+			if (null == object || this.isString(object)) {
+				this.writeObject(object);
 				break;
 			}
+
+			final int reference = this.findReference(object);
+			if (0 != reference) {
+				this.writeReference(reference);
+				break;
+			}
+
+			final ServerObjectWriter writer = this.getObjectWriter(object);
+			this.addObject(object);
+			this.writeNewObjectHeader();
+
+			if (writer != deferTo) {
+				this.writeNewObject(object, writer, this.getSerializationListener());
+				break;
+			}
+			deferred = true;
+			break;
 		}
-		if (false == written) {
-			throwUnableToSerialize(object);
+
+		return deferred;
+	}
+
+	/**
+	 * Writes the given object using the given writer, timing and measuring the
+	 * write if a listener is present.
+	 * 
+	 * @param object
+	 * @param writer
+	 * @param listener
+	 *            May be null
+	 */
+	protected void writeNewObject(final Object object, final ServerObjectWriter writer, final SerializationListener listener) {
+		if (null == listener) {
+			writer.write(object, this);
+		} else {
+			final long length = this.getWrittenLength();
+			final long start = System.nanoTime();
+			writer.write(object, this);
+			final long nanos = System.nanoTime() - start;
+			listener.objectWritten(object.getClass(), writer, this.getWrittenLength() - length, nanos);
 		}
 	}
 
@@ -326,16 +978,34 @@ public class ServerObjectOutputStream extends ObjectOutputStreamImpl implements
 		throw new SerializationException("Unable to serialize " + object.getClass().getName());
 	}
 
-	private List<ServerObjectWriter> objectWriters;
-
 	protected List<ServerObjectWriter> getObjectWriters() {
-		Checker.notNull("field:objectWriters", objectWriters);
-		return this.objectWriters;
+		return this.getObjectWriterRegistry().getObjectWriters();
 	}
 
+	/**
+	 * Wraps the given writers in a new {@link ObjectWriterRegistry}. Prefer
+	 * {@link #setObjectWriterRegistry(ObjectWriterRegistry)} with a shared
+	 * registry so writers are only resolved once per type.
+	 * 
+	 * @param objectWriters
+	 */
 	public void setObjectWriters(final List<ServerObjectWriter> objectWriters) {
-		Checker.notNull("parameter:objectWriters", objectWriters);
-		this.objectWriters = objectWriters;
+		this.setObjectWriterRegistry(new ObjectWriterRegistry(objectWriters));
+	}
+
+	/**
+	 * The registry used to find the writer for each new object.
+	 */
+	private ObjectWriterRegistry objectWriterRegistry;
+
+	protected ObjectWriterRegistry getObjectWriterRegistry() {
+		Checker.notNull("field:objectWriterRegistry", objectWriterRegistry);
+		return this.objectWriterRegistry;
+	}
+
+	public void setObjectWriterRegistry(final ObjectWriterRegistry objectWriterRegistry) {
+		Checker.notNull("parameter:objectWriterRegistry", objectWriterRegistry);
+		this.objectWriterRegistry = objectWriterRegistry;
 	}
 
 	protected List<ServerObjectWriter> createObjectWriters() {
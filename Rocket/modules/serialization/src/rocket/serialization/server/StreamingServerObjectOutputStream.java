@@ -0,0 +1,451 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import rocket.serialization.client.SerializationException;
+import rocket.util.client.Checker;
+
+/**
+ * A {@link ServerObjectOutputStream} which writes its output to a
+ * {@link Writer} rather than building a String.
+ * 
+ * The given {@link ReplayableOutput} is first written once with all values
+ * buffered, after which the string table and the buffered values are written.
+ * This single pass is always used for responses whose values stay below
+ * {@link #getStreamingThreshold()}, which by default is never passed.
+ * 
+ * Once the buffered values pass the streaming threshold they are thrown away
+ * and the remainder of the first pass only records strings, as the string
+ * table must appear before any values. The output is then written a second
+ * time, with values going to a small buffer which is flushed to the writer
+ * whenever it exceeds {@link #getFlushThreshold()}. Memory use is then
+ * bounded by the string table rather than the size of the response, at the
+ * cost of serializing the response twice. The object graph written by the
+ * {@link ReplayableOutput} must not change between the two passes, otherwise
+ * the values will not match the string table and object references.
+ * 
+ * {@link #getText()} should not be used with this stream, use
+ * {@link #writeTo(ReplayableOutput, Writer)} instead.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class StreamingServerObjectOutputStream extends ServerObjectOutputStream {
+
+	public StreamingServerObjectOutputStream() {
+		super();
+
+		this.setFlushThreshold(DEFAULT_FLUSH_THRESHOLD);
+		this.setStreamingThreshold(DEFAULT_STREAMING_THRESHOLD);
+	}
+
+	final static int DEFAULT_FLUSH_THRESHOLD = 8192;
+
+	final static int DEFAULT_STREAMING_THRESHOLD = Integer.MAX_VALUE;
+
+	/**
+	 * Writes the output to the given stream using the given character encoding.
+	 * The stream is flushed but not closed.
+	 * 
+	 * @param output
+	 * @param outputStream
+	 * @param encoding
+	 * @throws IOException
+	 */
+	public void writeTo(final ReplayableOutput output, final OutputStream outputStream, final String encoding) throws IOException {
+		Checker.notNull("parameter:outputStream", outputStream);
+		Checker.notEmpty("parameter:encoding", encoding);
+
+		final Writer writer = new OutputStreamWriter(outputStream, encoding);
+		this.writeTo(output, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes the output to the given writer. The writer is not flushed or
+	 * closed.
+	 * 
+	 * @param output
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writeTo(final ReplayableOutput output, final Writer writer) throws IOException {
+		Checker.notNull("parameter:output", output);
+		Checker.notNull("parameter:writer", writer);
+
+		try {
+			// first pass: gather all strings, buffering values until the streaming threshold is passed...
+			this.setWriter(null);
+			this.setStreaming(false);
+			output.write(this);
+
+			this.writeStringTable(writer);
+
+			if (this.isStreaming()) {
+				// second pass: objects must be referenced exactly as before...
+				this.setObjectTable(this.createObjectTable());
+				this.clearFieldLayouts();
+				this.getValues().setLength(0);
+				this.setValueWritten(false);
+				this.setFlushedLength(0);
+				this.setWriter(writer);
+
+				output.write(this);
+			} else {
+				this.setWriter(writer);
+				this.reportBufferedObjects();
+			}
+			this.flushValues();
+
+			writer.write(']');
+		} catch (final SerializationException caught) {
+			final Throwable cause = caught.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw caught;
+		} finally {
+			this.setWriter(null);
+		}
+	}
+
+	public void reset() {
+		super.reset();
+
+		this.setWriter(null);
+		this.setValueWritten(false);
+		this.setFlushedLength(0);
+		this.setStreaming(false);
+		this.getBufferedObjects().clear();
+
+		final char[] chars = this.chars;
+		if (null != chars && chars.length > RETAINED_CAPACITY) {
+			this.chars = null;
+		}
+	}
+
+	/**
+	 * Strings are only reported to a listener during the first pass, when the
+	 * string table is being built.
+	 */
+	protected void writeString(final String string, final SerializationListener listener) {
+		super.writeString(string, null == this.getWriter() ? listener : null);
+	}
+
+	/**
+	 * Objects written during the first pass are held back and only reported
+	 * once it is known that no second pass follows. Objects completed after
+	 * the streaming threshold has been passed are reported during the second
+	 * pass instead, so that no object is counted twice.
+	 */
+	protected void writeNewObject(final Object object, final ServerObjectWriter writer, final SerializationListener listener) {
+		SerializationListener reported = listener;
+		if (null != listener && null == this.getWriter()) {
+			reported = this.getObjectBuffer();
+		}
+		super.writeNewObject(object, writer, reported);
+	}
+
+	/**
+	 * Reports all objects held back during a first pass that was not followed
+	 * by a second pass.
+	 */
+	protected void reportBufferedObjects() {
+		final SerializationListener listener = this.getSerializationListener();
+		final List bufferedObjects = this.getBufferedObjects();
+
+		if (null != listener) {
+			final Iterator iterator = bufferedObjects.iterator();
+			while (iterator.hasNext()) {
+				final BufferedObject bufferedObject = (BufferedObject) iterator.next();
+				listener.objectWritten(bufferedObject.type, bufferedObject.writer, bufferedObject.length, bufferedObject.nanos);
+			}
+		}
+		bufferedObjects.clear();
+	}
+
+	/**
+	 * Objects reported during the first pass, while values are still being
+	 * buffered.
+	 */
+	private List bufferedObjects = new ArrayList();
+
+	protected List getBufferedObjects() {
+		return this.bufferedObjects;
+	}
+
+	/**
+	 * Records the objects completed during the first pass until the streaming
+	 * threshold is passed. Only objects are reported to this listener.
+	 */
+	private SerializationListener objectBuffer = new SerializationListener() {
+		public void objectWritten(final Class type, final ServerObjectWriter writer, final long length, final long nanos) {
+			if (false == StreamingServerObjectOutputStream.this.isStreaming()) {
+				StreamingServerObjectOutputStream.this.getBufferedObjects().add(new BufferedObject(type, writer, length, nanos));
+			}
+		}
+
+		public void objectRead(final Class type, final ServerObjectReader reader, final long length, final long nanos) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void stringWritten(final boolean hit) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void outputCompleted(final int stringTableSize, final int objectTableSize) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void inputCompleted(final int objectTableSize) {
+			throw new UnsupportedOperationException();
+		}
+	};
+
+	protected SerializationListener getObjectBuffer() {
+		return this.objectBuffer;
+	}
+
+	/**
+	 * A single object reported during the first pass.
+	 */
+	static class BufferedObject {
+		BufferedObject(final Class type, final ServerObjectWriter writer, final long length, final long nanos) {
+			super();
+
+			this.type = type;
+			this.writer = writer;
+			this.length = length;
+			this.nanos = nanos;
+		}
+
+		final Class type;
+
+		final ServerObjectWriter writer;
+
+		final long length;
+
+		final long nanos;
+	}
+
+	protected long getWrittenLength() {
+		return this.getFlushedLength() + this.getValues().length();
+	}
+
+	/**
+	 * The number of chars already flushed to the writer during the second
+	 * pass.
+	 */
+	private long flushedLength;
+
+	protected long getFlushedLength() {
+		return this.flushedLength;
+	}
+
+	protected void setFlushedLength(final long flushedLength) {
+		this.flushedLength = flushedLength;
+	}
+
+	protected void writeStringTable(final Writer writer) throws IOException {
+		writer.write('[');
+
+		// size ... comma
+		writer.write(String.valueOf(this.getStringCount()));
+		writer.write(',');
+
+		// string table (comma separated)
+		final Iterator stringIterator = this.processedStrings();
+		while (stringIterator.hasNext()) {
+			final String string = (String) stringIterator.next();
+			writer.write('"');
+			this.escape(string, writer);
+			writer.write("\",");
+		}
+	}
+
+	/**
+	 * Writes the escaped form of the given string to the given writer, writing
+	 * contiguous runs of characters that do not require escaping in a single
+	 * step.
+	 * 
+	 * @param string
+	 * @param writer
+	 * @throws IOException
+	 */
+	protected void escape(final String string, final Writer writer) throws IOException {
+		final int length = string.length();
+		int start = 0;
+		while (true) {
+			final int i = ServerObjectOutputStream.indexOfEscapedChar(string, start);
+			if (-1 == i) {
+				writer.write(string, start, length - start);
+				break;
+			}
+			writer.write(string, start, i - start);
+			writer.write(ServerObjectOutputStream.getEscapeSequence(string.charAt(i)));
+			start = i + 1;
+		}
+	}
+
+	protected StringBuffer prepareValue() {
+		final StringBuffer buf = this.getValues();
+
+		while (true) {
+			if (null == this.getWriter()) {
+				if (false == this.isStreaming() && buf.length() >= this.getStreamingThreshold()) {
+					this.setStreaming(true);
+					this.getBufferedObjects().clear();
+				}
+
+				// once streaming the first pass simply discards values...
+				if (this.isStreaming()) {
+					buf.setLength(0);
+					break;
+				}
+			} else {
+				if (buf.length() >= this.getFlushThreshold()) {
+					this.flushValues();
+				}
+			}
+			if (this.isValueWritten()) {
+				buf.append(',');
+			}
+			this.setValueWritten(true);
+			break;
+		}
+
+		return buf;
+	}
+
+	/**
+	 * Copies any buffered values to the writer, a slice at a time so the
+	 * values are never copied in full.
+	 */
+	protected void flushValues() {
+		final StringBuffer buf = this.getValues();
+		final int length = buf.length();
+
+		char[] chars = this.chars;
+		if (null == chars) {
+			chars = new char[FLUSH_SLICE_SIZE];
+			this.chars = chars;
+		}
+
+		try {
+			final Writer writer = this.getWriter();
+			int start = 0;
+			while (start < length) {
+				final int end = Math.min(length, start + chars.length);
+				buf.getChars(start, end, chars, 0);
+				writer.write(chars, 0, end - start);
+				start = end;
+			}
+			this.setFlushedLength(this.flushedLength + length);
+		} catch (final IOException caught) {
+			throw new SerializationException("Unable to write values", caught);
+		}
+		buf.setLength(0);
+	}
+
+	/**
+	 * The size of the scratch array used when copying buffered values to the
+	 * writer.
+	 */
+	final static int FLUSH_SLICE_SIZE = 8192;
+
+	/**
+	 * A scratch array used when copying buffered values to the writer.
+	 */
+	private char[] chars;
+
+	/**
+	 * The writer that receives values during the second pass, or null during
+	 * the first pass.
+	 */
+	private Writer writer;
+
+	protected Writer getWriter() {
+		return this.writer;
+	}
+
+	protected void setWriter(final Writer writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * When true at least one value has been written and the next value must be
+	 * preceeded by a comma.
+	 */
+	private boolean valueWritten;
+
+	protected boolean isValueWritten() {
+		return this.valueWritten;
+	}
+
+	protected void setValueWritten(final boolean valueWritten) {
+		this.valueWritten = valueWritten;
+	}
+
+	/**
+	 * The number of buffered characters that triggers a flush to the writer.
+	 */
+	private int flushThreshold;
+
+	public int getFlushThreshold() {
+		return this.flushThreshold;
+	}
+
+	public void setFlushThreshold(final int flushThreshold) {
+		Checker.greaterThan("parameter:flushThreshold", 0, flushThreshold);
+		this.flushThreshold = flushThreshold;
+	}
+
+	/**
+	 * The number of buffered value characters after which the first pass
+	 * discards values and a second pass is used to write them.
+	 */
+	private int streamingThreshold;
+
+	public int getStreamingThreshold() {
+		return this.streamingThreshold;
+	}
+
+	public void setStreamingThreshold(final int streamingThreshold) {
+		Checker.greaterThanOrEqual("parameter:streamingThreshold", 0, streamingThreshold);
+		this.streamingThreshold = streamingThreshold;
+	}
+
+	/**
+	 * When true the first pass has passed the streaming threshold and a
+	 * second pass is required.
+	 */
+	private boolean streaming;
+
+	protected boolean isStreaming() {
+		return this.streaming;
+	}
+
+	protected void setStreaming(final boolean streaming) {
+		this.streaming = streaming;
+	}
+}
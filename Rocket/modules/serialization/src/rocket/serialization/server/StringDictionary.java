@@ -0,0 +1,220 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import rocket.serialization.client.Constants;
+import rocket.serialization.client.SerializationException;
+import rocket.util.client.Checker;
+
+/**
+ * An immutable list of well known strings, such as service interface, method
+ * and type names, that both ends of a connection agree upon before any stream
+ * is written. Dictionary strings occupy the first string references, starting
+ * at {@link Constants#STRING_BIAS}, and are never written to a stream's string
+ * table. Strings that are not in the dictionary are given references that
+ * follow the dictionary.
+ * 
+ * A dictionary is safe for concurrent use and is typically shared by all
+ * streams. Both the writer and the reader must be given an identical
+ * dictionary, one way to guarantee this is to build it from the same service
+ * interfaces using {@link #forInterfaces(Class[])}. Binary streams begin with
+ * the dictionary size and {@link #getFingerprint() fingerprint} so a reader
+ * rejects a stream written with a different dictionary.
+ * 
+ * Dictionaries are only meant for server to server connections using the
+ * binary streams. The client side GWT streams have no dictionary support, so
+ * a dictionary must never be used with text streams read or written by a
+ * browser.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class StringDictionary {
+
+	/**
+	 * Builds a dictionary containing the name of each interface along with the
+	 * name, parameter types, return type and declared exceptions of each of its
+	 * methods. The strings are sorted so the same interfaces always produce the
+	 * same dictionary.
+	 * 
+	 * @param interfaces
+	 * @return
+	 */
+	static public StringDictionary forInterfaces(final Class[] interfaces) {
+		Checker.notNull("parameter:interfaces", interfaces);
+
+		final SortedSet<String> strings = new TreeSet<String>();
+		for (int i = 0; i < interfaces.length; i++) {
+			final Class interfacee = interfaces[i];
+			strings.add(interfacee.getName());
+
+			final Method[] methods = interfacee.getMethods();
+			for (int j = 0; j < methods.length; j++) {
+				final Method method = methods[j];
+				strings.add(method.getName());
+				StringDictionary.addTypeNames(method.getParameterTypes(), strings);
+				StringDictionary.addTypeNames(new Class[] { method.getReturnType() }, strings);
+				StringDictionary.addTypeNames(method.getExceptionTypes(), strings);
+			}
+		}
+		return new StringDictionary(new ArrayList<String>(strings));
+	}
+
+	static void addTypeNames(final Class[] types, final SortedSet<String> strings) {
+		for (int i = 0; i < types.length; i++) {
+			final Class type = types[i];
+			if (false == type.isPrimitive()) {
+				strings.add(type.getName());
+			}
+		}
+	}
+
+	public StringDictionary(final List<String> strings) {
+		super();
+
+		Checker.notNull("parameter:strings", strings);
+
+		final int count = strings.size();
+		final String[] array = new String[count];
+		final Map<String, Integer> references = new HashMap<String, Integer>(count * 2);
+		for (int i = 0; i < count; i++) {
+			final String string = strings.get(i);
+			Checker.notNull("parameter:strings[" + i + "]", string);
+
+			if (references.containsKey(string)) {
+				throw new SerializationException("Duplicate dictionary string \"" + string + "\".");
+			}
+			array[i] = string;
+			references.put(string, new Integer(i + Constants.STRING_BIAS));
+		}
+
+		this.setStrings(array);
+		this.setReferences(references);
+		this.setFingerprint(this.computeFingerprint(array));
+	}
+
+	/**
+	 * Combines the hash codes of all strings in order. {@link String#hashCode()}
+	 * is fully specified so peers running on different JVMs agree.
+	 * 
+	 * @param strings
+	 * @return
+	 */
+	protected int computeFingerprint(final String[] strings) {
+		int fingerprint = strings.length;
+		for (int i = 0; i < strings.length; i++) {
+			fingerprint = fingerprint * 31 + strings[i].hashCode();
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Returns the reference for the given string or 0 if it is not part of
+	 * this dictionary.
+	 * 
+	 * @param string
+	 * @return
+	 */
+	public int getReference(final String string) {
+		final Integer reference = this.getReferences().get(string);
+		return null == reference ? 0 : reference.intValue();
+	}
+
+	/**
+	 * Tests if the given string reference belongs to this dictionary.
+	 * 
+	 * @param reference
+	 * @return
+	 */
+	public boolean isDictionaryReference(final int reference) {
+		final int index = reference - Constants.STRING_BIAS;
+		return index >= 0 && index < this.strings.length;
+	}
+
+	/**
+	 * Returns the string for a reference that belongs to this dictionary.
+	 * 
+	 * @param reference
+	 * @return
+	 */
+	public String getString(final int reference) {
+		return this.getStrings()[reference - Constants.STRING_BIAS];
+	}
+
+	/**
+	 * The number of string references used by this dictionary.
+	 * 
+	 * @return
+	 */
+	public int getSize() {
+		return this.getStrings().length;
+	}
+
+	/**
+	 * A hash of all strings in order, which along with the size identifies
+	 * this dictionary.
+	 */
+	private int fingerprint;
+
+	public int getFingerprint() {
+		return this.fingerprint;
+	}
+
+	protected void setFingerprint(final int fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * All strings indexed by reference minus {@link Constants#STRING_BIAS}
+	 */
+	private String[] strings;
+
+	protected String[] getStrings() {
+		Checker.notNull("field:strings", strings);
+		return this.strings;
+	}
+
+	protected void setStrings(final String[] strings) {
+		Checker.notNull("parameter:strings", strings);
+		this.strings = strings;
+	}
+
+	/**
+	 * A lookup of string to reference.
+	 */
+	private Map<String, Integer> references;
+
+	protected Map<String, Integer> getReferences() {
+		Checker.notNull("field:references", references);
+		return this.references;
+	}
+
+	protected void setReferences(final Map<String, Integer> references) {
+		Checker.notNull("parameter:references", references);
+		this.references = references;
+	}
+
+	public String toString() {
+		return super.toString() + ", size: " + (null == strings ? 0 : strings.length);
+	}
+}
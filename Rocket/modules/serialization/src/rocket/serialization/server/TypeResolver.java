@@ -0,0 +1,470 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import rocket.serialization.client.SerializationException;
+import rocket.util.client.Checker;
+import rocket.util.client.Tester;
+import rocket.util.server.InputOutput;
+
+/**
+ * Resolves type names that arrive within request payloads into classes and
+ * creates new instances of those classes.
+ * 
+ * Resolved classes are kept in a bounded concurrent cache so Class.forName,
+ * and the class loader lock it takes, is only paid once per type. No arbitrary
+ * class is ever loaded from a payload if an allow list is present, and any type
+ * matching a deny list is always rejected. Both lists hold patterns in the same
+ * form as the <code>rocket-Serialization.txt</code> black lists used when
+ * generating client serializers, that is either a fully qualified class name
+ * or a package prefix ending with a wildcard, eg <code>java.util.*</code>.
+ * 
+ * New instances are created using a cached no argument constructor, which may
+ * be private.
+ * 
+ * A resolver is safe for concurrent use, although patterns should be added
+ * before it is shared.
+ * 
+ * @author Miroslav Pokorny
+ */
+public class TypeResolver {
+
+	/**
+	 * The default number of classes that may be cached.
+	 */
+	static final int MAXIMUM_SIZE = 4096;
+
+	public TypeResolver() {
+		super();
+
+		this.setClassLoader(TypeResolver.class.getClassLoader());
+		this.setMaximumSize(MAXIMUM_SIZE);
+		this.setTypes(this.createTypes());
+		this.setConstructors(this.createConstructors());
+		this.setAllowed(this.createPatterns());
+		this.setDenied(this.createPatterns());
+	}
+
+	/**
+	 * Resolves a type name into a Class, caching the result.
+	 * 
+	 * @param typeName
+	 * @return The class
+	 * @throws SerializationException
+	 *             if the type is not allowed or cannot be found.
+	 */
+	public Class getType(final String typeName) {
+		final ConcurrentMap<String, Class> types = this.getTypes();
+
+		Class type = types.get(typeName);
+		if (null == type) {
+			if (false == this.isAllowed(typeName)) {
+				this.throwNotAllowed(typeName);
+			}
+			type = this.loadType(typeName);
+
+			// once full simply stop caching, the type has already been checked.
+			if (types.size() < this.getMaximumSize()) {
+				types.put(typeName, type);
+			}
+		}
+		return type;
+	}
+
+	protected Class loadType(final String typeName) {
+		try {
+			return Class.forName(typeName, false, this.getClassLoader());
+		} catch (final ClassNotFoundException classNotFound) {
+			throw new SerializationException("Unable to find class \"" + typeName + "\".", classNotFound);
+		} catch (final LinkageError error) {
+			throw new SerializationException("Unable to load class \"" + typeName + "\".", error);
+		}
+	}
+
+	protected void throwNotAllowed(final String typeName) {
+		throw new SerializationException("The type \"" + typeName + "\" is not allowed.");
+	}
+
+	/**
+	 * Tests if the given type name passes both the allow and deny lists. Array
+	 * type names are tested using their component type, and arrays of
+	 * primitives are always allowed.
+	 * 
+	 * @param typeName
+	 * @return
+	 * @throws SerializationException
+	 *             if the type name is a malformed array descriptor
+	 */
+	public boolean isAllowed(final String typeName) {
+		boolean allowed = false;
+
+		while (true) {
+			String name = typeName;
+			if (name.startsWith("[")) {
+				this.checkArrayDescriptor(name);
+
+				final int start = name.lastIndexOf('[') + 1;
+				if (name.charAt(start) != 'L') {
+					allowed = true;
+					break;
+				}
+				name = name.substring(start + 1, name.length() - 1);
+			}
+
+			if (this.matches(this.getDenied(), name)) {
+				break;
+			}
+			final List<String> allow = this.getAllowed();
+			allowed = allow.isEmpty() || this.matches(allow, name);
+			break;
+		}
+
+		return allowed;
+	}
+
+	/**
+	 * Checks that the given array type name is either a primitive descriptor
+	 * such as [[I or a class descriptor of the form [Lname;
+	 * 
+	 * @param typeName
+	 */
+	protected void checkArrayDescriptor(final String typeName) {
+		final int start = typeName.lastIndexOf('[') + 1;
+		final int length = typeName.length();
+
+		boolean valid = false;
+		if (start < length) {
+			final char c = typeName.charAt(start);
+			if ('L' == c) {
+				valid = length - start > 2 && typeName.charAt(length - 1) == ';';
+			} else {
+				valid = length - start == 1 && "ZBCSIJFD".indexOf(c) != -1;
+			}
+		}
+
+		if (false == valid) {
+			throw new SerializationException("The array type \"" + typeName + "\" is malformed.");
+		}
+	}
+
+	protected boolean matches(final List<String> patterns, final String typeName) {
+		boolean matched = false;
+
+		final Iterator<String> iterator = patterns.iterator();
+		while (iterator.hasNext()) {
+			final String pattern = iterator.next();
+			if (pattern.endsWith("*") ? typeName.startsWith(pattern.substring(0, pattern.length() - 1)) : typeName.equals(pattern)) {
+				matched = true;
+				break;
+			}
+		}
+
+		return matched;
+	}
+
+	/**
+	 * Adds a pattern to the allow list. Once the allow list holds at least one
+	 * pattern only types that match a pattern may be resolved.
+	 * 
+	 * @param pattern
+	 */
+	public void allow(final String pattern) {
+		this.checkPattern(pattern);
+		this.getAllowed().add(pattern);
+		this.getTypes().clear();
+	}
+
+	/**
+	 * Allows the given interfaces along with every type that appears within the
+	 * signatures of their methods.
+	 * 
+	 * Only the declared types are allowed. Sub types that appear at runtime
+	 * are still refused, for example an ArrayList passed to a List parameter,
+	 * or any type held in a field of a parameter, and must be allowed
+	 * separately using {@link #allow(String)}.
+	 * 
+	 * @param interfaces
+	 */
+	public void allowInterfaces(final Class[] interfaces) {
+		Checker.notNull("parameter:interfaces", interfaces);
+
+		for (int i = 0; i < interfaces.length; i++) {
+			final Class interfacee = interfaces[i];
+			this.allowType(interfacee);
+
+			final Method[] methods = interfacee.getMethods();
+			for (int j = 0; j < methods.length; j++) {
+				final Method method = methods[j];
+				this.allowType(method.getReturnType());
+				this.allowTypes(method.getParameterTypes());
+				this.allowTypes(method.getExceptionTypes());
+			}
+		}
+	}
+
+	protected void allowTypes(final Class[] types) {
+		for (int i = 0; i < types.length; i++) {
+			this.allowType(types[i]);
+		}
+	}
+
+	protected void allowType(final Class type) {
+		Class componentType = type;
+		while (componentType.isArray()) {
+			componentType = componentType.getComponentType();
+		}
+		if (false == componentType.isPrimitive()) {
+			final String name = componentType.getName();
+			if (false == this.getAllowed().contains(name)) {
+				this.allow(name);
+			}
+		}
+	}
+
+	/**
+	 * Adds a pattern to the deny list. Types matching any deny pattern are
+	 * never resolved.
+	 * 
+	 * @param pattern
+	 */
+	public void deny(final String pattern) {
+		this.checkPattern(pattern);
+		this.getDenied().add(pattern);
+		this.getTypes().clear();
+	}
+
+	/**
+	 * Adds the patterns within the <code>rocket-Serialization.txt</code>
+	 * file belonging to each of the given packages to the deny list. Packages
+	 * without a file are ignored.
+	 * 
+	 * @param packageNames
+	 */
+	public void denyPackageLists(final String[] packageNames) {
+		Checker.notNull("parameter:packageNames", packageNames);
+
+		for (int i = 0; i < packageNames.length; i++) {
+			final String resourceName = packageNames[i].replace('.', '/') + '/' + Constants.BLACKLIST_FILENAME;
+			final InputStream inputStream = this.getClassLoader().getResourceAsStream(resourceName);
+			if (null != inputStream) {
+				final Iterator<String> patterns = this.readPatterns(inputStream).iterator();
+				while (patterns.hasNext()) {
+					this.deny(patterns.next());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a pattern per line skipping blank and comment lines. The stream is
+	 * always closed.
+	 * 
+	 * @param inputStream
+	 * @return
+	 */
+	protected List<String> readPatterns(final InputStream inputStream) {
+		final List<String> patterns = new ArrayList<String>();
+		try {
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+			while (true) {
+				final String line = reader.readLine();
+				if (null == line) {
+					break;
+				}
+				final String pattern = line.trim();
+				if (Tester.isNullOrEmpty(pattern) || pattern.startsWith("#")) {
+					continue;
+				}
+				patterns.add(pattern);
+			}
+		} catch (final IOException caught) {
+			throw new SerializationException("Unable to read patterns, message: " + caught.getMessage(), caught);
+		} finally {
+			InputOutput.closeIfNecessary(inputStream);
+		}
+		return patterns;
+	}
+
+	protected void checkPattern(final String pattern) {
+		Checker.notEmpty("parameter:pattern", pattern);
+
+		final int wildcard = pattern.indexOf('*');
+		if (-1 != wildcard && wildcard != pattern.length() - 1) {
+			throw new IllegalArgumentException("The pattern \"" + pattern + "\" may only contain a single trailing wildcard '*'.");
+		}
+	}
+
+	/**
+	 * Creates a new instance of the given class using its no argument
+	 * constructor, which is cached.
+	 * 
+	 * @param type
+	 * @return The new instance
+	 */
+	public Object newInstance(final Class type) {
+		try {
+			return this.getConstructor(type).newInstance((Object[]) null);
+		} catch (final InstantiationException abstractClass) {
+			throw new SerializationException("Unable to instantiate \"" + type.getName() + "\".", abstractClass);
+		} catch (final IllegalAccessException illegalAccess) {
+			throw new SerializationException("Unable to instantiate \"" + type.getName() + "\".", illegalAccess);
+		} catch (final InvocationTargetException invocationTarget) {
+			throw new SerializationException("Unable to instantiate \"" + type.getName() + "\".", invocationTarget.getCause());
+		}
+	}
+
+	protected Constructor getConstructor(final Class type) {
+		final ConcurrentMap<Class, Constructor> constructors = this.getConstructors();
+
+		Constructor constructor = constructors.get(type);
+		if (null == constructor) {
+			try {
+				constructor = type.getDeclaredConstructor((Class[]) null);
+				constructor.setAccessible(true);
+			} catch (final NoSuchMethodException noDefaultConstructor) {
+				throw new SerializationException("Unable to instantiate \"" + type.getName() + "\" as it has no default constructor.",
+						noDefaultConstructor);
+			}
+			if (constructors.size() < this.getMaximumSize()) {
+				constructors.put(type, constructor);
+			}
+		}
+		return constructor;
+	}
+
+	/**
+	 * The class loader used to load types.
+	 */
+	private ClassLoader classLoader;
+
+	public ClassLoader getClassLoader() {
+		Checker.notNull("field:classLoader", classLoader);
+		return this.classLoader;
+	}
+
+	public void setClassLoader(final ClassLoader classLoader) {
+		Checker.notNull("parameter:classLoader", classLoader);
+		this.classLoader = classLoader;
+		if (null != this.types) {
+			this.types.clear();
+		}
+	}
+
+	/**
+	 * The maximum number of classes and constructors that are cached.
+	 */
+	private int maximumSize;
+
+	public int getMaximumSize() {
+		return this.maximumSize;
+	}
+
+	public void setMaximumSize(final int maximumSize) {
+		Checker.greaterThan("parameter:maximumSize", 0, maximumSize);
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * A cache of type names to their Class.
+	 */
+	private ConcurrentMap<String, Class> types;
+
+	protected ConcurrentMap<String, Class> getTypes() {
+		Checker.notNull("field:types", types);
+		return this.types;
+	}
+
+	protected void setTypes(final ConcurrentMap<String, Class> types) {
+		Checker.notNull("parameter:types", types);
+		this.types = types;
+	}
+
+	protected ConcurrentMap<String, Class> createTypes() {
+		return new ConcurrentHashMap<String, Class>();
+	}
+
+	/**
+	 * A cache of classes to their no argument constructor.
+	 */
+	private ConcurrentMap<Class, Constructor> constructors;
+
+	protected ConcurrentMap<Class, Constructor> getConstructors() {
+		Checker.notNull("field:constructors", constructors);
+		return this.constructors;
+	}
+
+	protected void setConstructors(final ConcurrentMap<Class, Constructor> constructors) {
+		Checker.notNull("parameter:constructors", constructors);
+		this.constructors = constructors;
+	}
+
+	protected ConcurrentMap<Class, Constructor> createConstructors() {
+		return new ConcurrentHashMap<Class, Constructor>();
+	}
+
+	/**
+	 * Patterns for the types that may be resolved. When empty all types that
+	 * are not denied may be resolved.
+	 */
+	private List<String> allowed;
+
+	protected List<String> getAllowed() {
+		Checker.notNull("field:allowed", allowed);
+		return this.allowed;
+	}
+
+	protected void setAllowed(final List<String> allowed) {
+		Checker.notNull("parameter:allowed", allowed);
+		this.allowed = allowed;
+	}
+
+	/**
+	 * Patterns for the types that may never be resolved.
+	 */
+	private List<String> denied;
+
+	protected List<String> getDenied() {
+		Checker.notNull("field:denied", denied);
+		return this.denied;
+	}
+
+	protected void setDenied(final List<String> denied) {
+		Checker.notNull("parameter:denied", denied);
+		this.denied = denied;
+	}
+
+	protected List<String> createPatterns() {
+		return new CopyOnWriteArrayList<String>();
+	}
+
+	public String toString() {
+		return super.toString() + ", allowed: " + allowed + ", denied: " + denied;
+	}
+}
@@ -15,6 +15,8 @@
  */
 package rocket.serialization.server.reader;
 
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.server.ServerObjectInputStream;
 import rocket.serialization.server.ServerObjectReader;
 
 /**
@@ -32,4 +34,18 @@ public class DoubleArrayReader extends rocket.serialization.client.reader.Double
 	public boolean canRead(Class classs) {
 		return classs.equals(double[].class);
 	}
+
+	/**
+	 * Server streams read the entire array in a single step.
+	 */
+	public Object newInstance(final String typeName, final ObjectInputStream objectInputStream) {
+		Object array = null;
+		if (objectInputStream instanceof ServerObjectInputStream) {
+			final int elementCount = objectInputStream.readInt();
+			array = ((ServerObjectInputStream) objectInputStream).readDoubleArray(elementCount);
+		} else {
+			array = super.newInstance(typeName, objectInputStream);
+		}
+		return array;
+	}
 }
@@ -17,13 +17,18 @@ package rocket.serialization.server.reader;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 import rocket.serialization.client.ObjectInputStream;
 import rocket.serialization.client.SerializationException;
+import rocket.serialization.server.FieldLayout;
+import rocket.serialization.server.FieldPlan;
 import rocket.serialization.server.ReflectionHelper;
+import rocket.serialization.server.ReflectiveFieldSerializer;
+import rocket.serialization.server.ServerObjectInputStream;
 import rocket.serialization.server.ServerObjectReader;
+import rocket.serialization.server.TypeResolver;
 
 /**
  * A reader for uses reflection to set fields upon a new instance.
@@ -44,82 +49,216 @@ public class ReflectiveReader implements ServerObjectReader {
 		return Serializable.class.isAssignableFrom(classs);
 	}
 
+	/**
+	 * Server streams resolve and create the instance using their
+	 * {@link TypeResolver}, which caches both the class and its constructor and
+	 * enforces any allow and deny lists.
+	 */
 	public Object newInstance(final String name, final ObjectInputStream objectInputStream) {
-		try {
-			final Class classs = Class.forName(name);
-			return classs.newInstance();
-		} catch (final ClassNotFoundException classNotFound) {
-			throw new SerializationException("Unable to find class \"" + name + "\".", classNotFound);
-		} catch (final InstantiationException noDefaultConstructor) {
-			throw new SerializationException("Unable to instantiate \"" + name + "\".", noDefaultConstructor);
-		} catch (final IllegalAccessException illegalAccessException) {
-			throw new SerializationException("Unable to instantiate \"" + name + "\".", illegalAccessException);
+		Object instance = null;
+		if (objectInputStream instanceof ServerObjectInputStream) {
+			instance = ((ServerObjectInputStream) objectInputStream).newInstance(name);
+		} else {
+			final TypeResolver resolver = ReflectiveReader.typeResolver;
+			instance = resolver.newInstance(resolver.getType(name));
 		}
+		return instance;
 	}
 
+	/**
+	 * The resolver used when reading from a stream that is not a
+	 * {@link ServerObjectInputStream}.
+	 */
+	static private final TypeResolver typeResolver = new TypeResolver();
+
 	public void read(final Object instance, final ObjectInputStream objectInputStream) {
-		this.readFields(instance, instance.getClass(), objectInputStream);
+		if (this.isIterative(objectInputStream)) {
+			this.readIteratively(instance, (ServerObjectInputStream) objectInputStream);
+		} else {
+			final Class classs = instance.getClass();
+			final FieldLayout layout = this.readFieldLayout(classs, objectInputStream);
+
+			// same layout as the writer, read fields in order...
+			if (layout == this.getFieldLayout(classs)) {
+				this.readFields(instance, classs, objectInputStream);
+			} else {
+				this.readFields(instance, layout, objectInputStream);
+			}
+		}
 	}
 
-	protected void readFields(final Object object, final Class classs, final ObjectInputStream objectInputStream) {
+	protected boolean isVersioned(final ObjectInputStream objectInputStream) {
+		return objectInputStream instanceof ServerObjectInputStream && ((ServerObjectInputStream) objectInputStream).isVersioned();
+	}
+
+	/**
+	 * Returns the layout of the fields that follow for an instance of the given
+	 * class. For versioned streams the layout written by the writer is read the
+	 * first time the type is encountered and matched against the local layout,
+	 * if both are the same the local layout is returned.
+	 * 
+	 * @param classs
+	 * @param objectInputStream
+	 * @return
+	 */
+	protected FieldLayout readFieldLayout(final Class classs, final ObjectInputStream objectInputStream) {
+		final FieldLayout local = this.getFieldLayout(classs);
+		FieldLayout layout = local;
+
+		if (this.isVersioned(objectInputStream)) {
+			final ServerObjectInputStream serverObjectInputStream = (ServerObjectInputStream) objectInputStream;
+			final String typeName = classs.getName();
+			layout = serverObjectInputStream.getFieldLayout(typeName);
+			if (null == layout) {
+				layout = FieldLayout.read(local, objectInputStream);
+				serverObjectInputStream.addFieldLayout(typeName, layout);
+			}
+		}
+		return layout;
+	}
+
+	/**
+	 * Reads fields in the order given by a layout that was written by a
+	 * different version of the class, skipping any values that have no
+	 * matching field.
+	 * 
+	 * @param object
+	 * @param layout
+	 * @param objectInputStream
+	 */
+	protected void readFields(final Object object, final FieldLayout layout, final ObjectInputStream objectInputStream) {
 		try {
-			this.readFields0(object, classs, objectInputStream);
+			final Field[] fields = layout.getFields();
+			final int[] fieldTypes = layout.getFieldTypes();
+			final int fieldCount = fields.length;
+
+			for (int i = 0; i < fieldCount; i++) {
+				final Field field = fields[i];
+				if (null == field) {
+					ReflectiveFieldSerializer.skipField(fieldTypes[i], objectInputStream);
+				} else {
+					ReflectiveFieldSerializer.readField(object, field, fieldTypes[i], objectInputStream);
+				}
+			}
 		} catch (final IllegalAccessException illegalAccessException) {
 			throw new SerializationException(illegalAccessException);
 		}
 	}
 
-	protected void readFields0(final Object object, final Class classs, final ObjectInputStream objectInputStream)
-			throws IllegalAccessException {
-		final Set<Field> serializableFields = ReflectionHelper.buildSerializableFields(object, classs);
+	protected boolean isIterative(final ObjectInputStream objectInputStream) {
+		return objectInputStream instanceof ServerObjectInputStream && ((ServerObjectInputStream) objectInputStream).isIterative();
+	}
 
-		// serialize fields in alphabetical order
-		final Iterator<Field> iterator = serializableFields.iterator();
-		while (iterator.hasNext()) {
-			final Field field = iterator.next();
-			field.setAccessible(true);
+	/**
+	 * Reads the fields of the given instance along with any new objects this
+	 * reader is also responsible for, keeping a frame for each partially read
+	 * object on an explicit stack rather than recursing.
+	 * 
+	 * @param root
+	 * @param objectInputStream
+	 */
+	protected void readIteratively(final Object root, final ServerObjectInputStream objectInputStream) {
+		try {
+			final List<Frame> stack = new ArrayList<Frame>();
+			stack.add(new Frame(root, this.readFieldLayout(root.getClass(), objectInputStream)));
 
-			final Class fieldType = field.getType();
+			while (false == stack.isEmpty()) {
+				final Frame frame = stack.get(stack.size() - 1);
+				final FieldLayout layout = frame.layout;
 
-			if (fieldType.equals(Boolean.TYPE)) {
-				field.setBoolean(object, objectInputStream.readBoolean());
-				continue;
-			}
-			if (fieldType.equals(Byte.TYPE)) {
-				field.setByte(object, objectInputStream.readByte());
-				continue;
-			}
-			if (fieldType.equals(Short.TYPE)) {
-				field.setShort(object, objectInputStream.readShort());
-				continue;
-			}
-			if (fieldType.equals(Integer.TYPE)) {
-				field.setInt(object, objectInputStream.readInt());
-				continue;
-			}
-			if (fieldType.equals(Long.TYPE)) {
-				field.setLong(object, objectInputStream.readLong());
-				continue;
-			}
-			if (fieldType.equals(Float.TYPE)) {
-				field.setFloat(object, objectInputStream.readFloat());
-				continue;
-			}
-			if (fieldType.equals(Double.TYPE)) {
-				field.setDouble(object, objectInputStream.readDouble());
-				continue;
-			}
-			if (fieldType.equals(Character.TYPE)) {
-				field.setChar(object, objectInputStream.readChar());
-				continue;
+				// all fields including those of super types read...
+				if (frame.index == layout.getFieldCount()) {
+					stack.remove(stack.size() - 1);
+					continue;
+				}
+
+				final int i = frame.index;
+				frame.index++;
+
+				final Field field = layout.getFields()[i];
+				final int fieldType = layout.getFieldTypes()[i];
+				if (null == field) {
+					ReflectiveFieldSerializer.skipField(fieldType, objectInputStream);
+					continue;
+				}
+				if (FieldPlan.OBJECT != fieldType) {
+					ReflectiveFieldSerializer.readField(frame.object, field, fieldType, objectInputStream);
+					continue;
+				}
+
+				final Object value = objectInputStream.readObjectDeferringFields(this);
+				field.set(frame.object, value);
+				if (objectInputStream.isFieldsDeferred()) {
+					stack.add(new Frame(value, this.readFieldLayout(value.getClass(), objectInputStream)));
+				}
 			}
-			field.set(object, objectInputStream.readObject());
+		} catch (final IllegalAccessException illegalAccessException) {
+			throw new SerializationException(illegalAccessException);
+		}
+	}
+
+	/**
+	 * A partially read object.
+	 */
+	static class Frame {
+		Frame(final Object object, final FieldLayout layout) {
+			super();
+
+			this.object = object;
+			this.layout = layout;
 		}
 
-		final Class superType = classs.getSuperclass();
-		if (false == superType.equals(Object.class)) {
+		final Object object;
+
+		/**
+		 * The fields in the order they appear in the stream, including those of
+		 * super types.
+		 */
+		final FieldLayout layout;
+
+		/**
+		 * The index of the next field within the layout.
+		 */
+		int index;
+	}
+
+	protected void readFields(final Object object, final Class classs, final ObjectInputStream objectInputStream) {
+		try {
+			this.readFields0(object, classs, objectInputStream);
+		} catch (final IllegalAccessException illegalAccessException) {
+			throw new SerializationException(illegalAccessException);
+		}
+	}
+
+	protected void readFields0(final Object object, final Class classs, final ObjectInputStream objectInputStream)
+			throws IllegalAccessException {
+		final FieldPlan plan = this.getFieldPlan(classs);
+		plan.getFieldSerializer().readFields(object, objectInputStream);
+
+		final Class superType = plan.getSuperType();
+		if (null != superType) {
 			this.readFields(object, superType, objectInputStream);
 		}
 	}
 
+	/**
+	 * Retrieves the plan describing the serializable fields of the given class.
+	 * 
+	 * @param classs
+	 * @return
+	 */
+	protected FieldPlan getFieldPlan(final Class classs) {
+		return ReflectionHelper.getFieldPlan(classs);
+	}
+
+	/**
+	 * Retrieves the local layout of all the serializable fields of the given
+	 * class and its super types.
+	 * 
+	 * @param classs
+	 * @return
+	 */
+	protected FieldLayout getFieldLayout(final Class classs) {
+		return ReflectionHelper.getFieldLayout(classs);
+	}
 }
@@ -46,6 +46,22 @@ public class ThrowableReader extends ReflectiveReader implements ServerObjectRea
 		return Throwable.class.isAssignableFrom(classs);
 	}
 
+	/**
+	 * Throwables always recurse so the fields of Throwable itself are read
+	 * specially. Causes are rarely nested deeply.
+	 */
+	protected boolean isIterative(final ObjectInputStream objectInputStream) {
+		return false;
+	}
+
+	/**
+	 * The fields of Throwable are not those found by reflection so no layout
+	 * is ever read.
+	 */
+	protected boolean isVersioned(final ObjectInputStream objectInputStream) {
+		return false;
+	}
+
 	protected void readFields(final Object object, final Class classs, final ObjectInputStream objectInputStream) {
 		if (Throwable.class.equals(classs)) {
 			this.readThrowableFields((Throwable) object, objectInputStream);
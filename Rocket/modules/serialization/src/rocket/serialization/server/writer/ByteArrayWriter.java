@@ -15,6 +15,8 @@
  */
 package rocket.serialization.server.writer;
 
+import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.ServerObjectOutputStream;
 import rocket.serialization.server.ServerObjectWriter;
 
 /**
@@ -32,4 +34,15 @@ public class ByteArrayWriter extends rocket.serialization.client.writer.ByteArra
 	public boolean canWrite(final Object object) {
 		return object instanceof byte[];
 	}
+
+	/**
+	 * Server streams write the entire array in a single step.
+	 */
+	protected void write0(final Object object, final ObjectOutputStream objectOutputStream) {
+		if (objectOutputStream instanceof ServerObjectOutputStream) {
+			((ServerObjectOutputStream) objectOutputStream).writeByteArray((byte[]) object);
+		} else {
+			super.write0(object, objectOutputStream);
+		}
+	}
 }
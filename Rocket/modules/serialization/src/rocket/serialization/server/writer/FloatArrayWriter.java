@@ -15,6 +15,8 @@
  */
 package rocket.serialization.server.writer;
 
+import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.ServerObjectOutputStream;
 import rocket.serialization.server.ServerObjectWriter;
 
 /**
@@ -32,4 +34,15 @@ public class FloatArrayWriter extends rocket.serialization.client.writer.FloatAr
 	public boolean canWrite(final Object object) {
 		return object instanceof float[];
 	}
+
+	/**
+	 * Server streams write the entire array in a single step.
+	 */
+	protected void write0(final Object object, final ObjectOutputStream objectOutputStream) {
+		if (objectOutputStream instanceof ServerObjectOutputStream) {
+			((ServerObjectOutputStream) objectOutputStream).writeFloatArray((float[]) object);
+		} else {
+			super.write0(object, objectOutputStream);
+		}
+	}
 }
\ No newline at end of file
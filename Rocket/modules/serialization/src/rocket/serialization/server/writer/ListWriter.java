@@ -16,9 +16,11 @@
 package rocket.serialization.server.writer;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.ServerObjectOutputStream;
 import rocket.serialization.server.ServerObjectWriter;
 
 /**
@@ -40,4 +42,18 @@ public class ListWriter extends rocket.serialization.client.writer.ListWriter im
 	protected void writeTypeName(final Object object, final ObjectOutputStream objectOutputStream) {
 		objectOutputStream.writeObject(ArrayList.class.getName());
 	}
+
+	/**
+	 * Large lists may be written in parallel if the stream allows it.
+	 */
+	protected void writeCollection(final Collection collection, final ObjectOutputStream objectOutputStream) {
+		final int elementCount = collection.size();
+		if (objectOutputStream instanceof ServerObjectOutputStream
+				&& ((ServerObjectOutputStream) objectOutputStream).isParallel(elementCount)) {
+			objectOutputStream.writeInt(elementCount);
+			((ServerObjectOutputStream) objectOutputStream).writeObjects(collection.toArray());
+		} else {
+			super.writeCollection(collection, objectOutputStream);
+		}
+	}
 }
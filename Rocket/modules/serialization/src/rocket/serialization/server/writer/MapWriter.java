@@ -16,9 +16,11 @@
 package rocket.serialization.server.writer;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.ServerObjectOutputStream;
 import rocket.serialization.server.ServerObjectWriter;
 
 /**
@@ -40,4 +42,28 @@ public class MapWriter extends rocket.serialization.client.writer.MapWriter impl
 	protected void writeTypeName(final Object object, final ObjectOutputStream objectOutputStream) {
 		objectOutputStream.writeObject(HashMap.class.getName());
 	}
+
+	/**
+	 * Large maps may be written in parallel if the stream allows it, with each
+	 * key immediately followed by its value.
+	 */
+	protected void writeMap(final Map map, final ObjectOutputStream objectOutputStream) {
+		final int entryCount = map.size();
+		if (objectOutputStream instanceof ServerObjectOutputStream
+				&& ((ServerObjectOutputStream) objectOutputStream).isParallel(entryCount)) {
+			final Object[] keysAndValues = new Object[entryCount * 2];
+			int i = 0;
+			final Iterator entries = map.entrySet().iterator();
+			while (entries.hasNext()) {
+				final Map.Entry entry = (Map.Entry) entries.next();
+				keysAndValues[i++] = entry.getKey();
+				keysAndValues[i++] = entry.getValue();
+			}
+
+			objectOutputStream.writeInt(entryCount);
+			((ServerObjectOutputStream) objectOutputStream).writeObjects(keysAndValues);
+		} else {
+			super.writeMap(map, objectOutputStream);
+		}
+	}
 }
@@ -17,12 +17,16 @@ package rocket.serialization.server.writer;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 import rocket.serialization.client.ObjectOutputStream;
 import rocket.serialization.client.SerializationException;
+import rocket.serialization.server.FieldLayout;
+import rocket.serialization.server.FieldPlan;
 import rocket.serialization.server.ReflectionHelper;
+import rocket.serialization.server.ReflectiveFieldSerializer;
+import rocket.serialization.server.ServerObjectOutputStream;
 import rocket.serialization.server.ServerObjectWriter;
 import rocket.util.client.Checker;
 
@@ -46,19 +50,125 @@ public class ReflectiveWriter implements ServerObjectWriter {
 
 	public void write(final Object object, final ObjectOutputStream objectOutputStream) {
 		try {
-			final Class classs = object.getClass();
-			objectOutputStream.writeObject(classs.getName());
-			this.writeFields(object, classs, objectOutputStream);
-
+			if (this.isIterative(objectOutputStream)) {
+				this.writeIteratively(object, (ServerObjectOutputStream) objectOutputStream);
+			} else {
+				final Class classs = object.getClass();
+				objectOutputStream.writeObject(classs.getName());
+				this.writeFieldLayout(classs, objectOutputStream);
+				this.writeFields(object, classs, objectOutputStream);
+			}
 		} catch (IllegalAccessException illegalAccess) {
 			throw new SerializationException(illegalAccess);
 		}
 	}
 
+	protected boolean isIterative(final ObjectOutputStream objectOutputStream) {
+		return objectOutputStream instanceof ServerObjectOutputStream && ((ServerObjectOutputStream) objectOutputStream).isIterative();
+	}
+
+	protected boolean isVersioned(final ObjectOutputStream objectOutputStream) {
+		return objectOutputStream instanceof ServerObjectOutputStream && ((ServerObjectOutputStream) objectOutputStream).isVersioned();
+	}
+
+	/**
+	 * When the stream is versioned writes the {@link FieldLayout} of the given
+	 * type if this is the first instance of that type in the stream. The field
+	 * values themselves are always written in the same order.
+	 * 
+	 * @param classs
+	 * @param objectOutputStream
+	 */
+	protected void writeFieldLayout(final Class classs, final ObjectOutputStream objectOutputStream) {
+		if (this.isVersioned(objectOutputStream) && ((ServerObjectOutputStream) objectOutputStream).addFieldLayout(classs)) {
+			this.getFieldLayout(classs).write(objectOutputStream);
+		}
+	}
+
+	/**
+	 * Writes the given object along with any new objects reachable via its
+	 * fields that this writer is also responsible for, keeping a frame for
+	 * each partially written object on an explicit stack rather than
+	 * recursing. Objects written by other writers, such as lists, are written
+	 * as usual. The values written are identical to those written by
+	 * {@link #writeFields(Object, Class, ObjectOutputStream)}.
+	 * 
+	 * @param root
+	 * @param objectOutputStream
+	 * @throws IllegalAccessException
+	 */
+	protected void writeIteratively(final Object root, final ServerObjectOutputStream objectOutputStream) throws IllegalAccessException {
+		final List<Frame> stack = new ArrayList<Frame>();
+		stack.add(this.writeHeader(root, objectOutputStream));
+
+		while (false == stack.isEmpty()) {
+			final Frame frame = stack.get(stack.size() - 1);
+			final FieldLayout layout = frame.layout;
+
+			// all fields including those of super types written...
+			if (frame.index == layout.getFieldCount()) {
+				stack.remove(stack.size() - 1);
+				continue;
+			}
+
+			final int i = frame.index;
+			frame.index++;
+
+			final Field field = layout.getFields()[i];
+			final int fieldType = layout.getFieldTypes()[i];
+			if (FieldPlan.OBJECT != fieldType) {
+				ReflectiveFieldSerializer.writeField(frame.object, field, fieldType, objectOutputStream);
+				continue;
+			}
+
+			final Object value = field.get(frame.object);
+			if (objectOutputStream.writeObjectDeferringFields(value, this)) {
+				stack.add(this.writeHeader(value, objectOutputStream));
+			}
+		}
+	}
+
+	/**
+	 * Writes the type name and if necessary the layout of a new object and
+	 * returns a frame positioned at its first field.
+	 */
+	protected Frame writeHeader(final Object object, final ObjectOutputStream objectOutputStream) {
+		final Class classs = object.getClass();
+		objectOutputStream.writeObject(classs.getName());
+		this.writeFieldLayout(classs, objectOutputStream);
+		return new Frame(object, this.getFieldLayout(classs));
+	}
+
+	/**
+	 * A partially written object.
+	 */
+	static class Frame {
+		Frame(final Object object, final FieldLayout layout) {
+			super();
+
+			this.object = object;
+			this.layout = layout;
+		}
+
+		final Object object;
+
+		/**
+		 * All the fields of the object including those of its super types.
+		 */
+		final FieldLayout layout;
+
+		/**
+		 * The index of the next field within the layout.
+		 */
+		int index;
+	}
+
 	/**
 	 * Writes all the serializable fields from the object instance for the given
 	 * class. THis method continues to call itself recursively until
-	 * java.lang.Object is reached.
+	 * java.lang.Object is reached. The fields themselves are written by the
+	 * {@link rocket.serialization.server.FieldSerializer} belonging to the
+	 * cached {@link FieldPlan} so no reflective discovery happens here.
 	 * 
 	 * @param object
 	 *            A non null instance being serialized
@@ -72,53 +182,34 @@ public class ReflectiveWriter implements ServerObjectWriter {
 		Checker.notNull("parameter:classs", classs);
 		Checker.notNull("parameter:objectOutputStream", objectOutputStream);
 
-		final Set serializableFields = ReflectionHelper.buildSerializableFields(object, classs);
-
-		// serialize fields in alphabetical order
-		final Iterator iterator = serializableFields.iterator();
-		while (iterator.hasNext()) {
-			final Field field = (Field) iterator.next();
-			final Class fieldType = field.getType();
-
-			if (fieldType.equals(Boolean.TYPE)) {
-				objectOutputStream.writeBoolean(field.getBoolean(object));
-				continue;
-			}
-			if (fieldType.equals(Byte.TYPE)) {
-				objectOutputStream.writeByte(field.getByte(object));
-				continue;
-			}
-			if (fieldType.equals(Short.TYPE)) {
-				objectOutputStream.writeShort(field.getShort(object));
-				continue;
-			}
-			if (fieldType.equals(Integer.TYPE)) {
-				objectOutputStream.writeInt(field.getInt(object));
-				continue;
-			}
-			if (fieldType.equals(Long.TYPE)) {
-				objectOutputStream.writeLong(field.getLong(object));
-				continue;
-			}
-			if (fieldType.equals(Float.TYPE)) {
-				objectOutputStream.writeFloat(field.getFloat(object));
-				continue;
-			}
-			if (fieldType.equals(Double.TYPE)) {
-				objectOutputStream.writeDouble(field.getDouble(object));
-				continue;
-			}
-			if (fieldType.equals(Character.TYPE)) {
-				objectOutputStream.writeChar(field.getChar(object));
-				continue;
-			}
-			objectOutputStream.writeObject(field.get(object));
-		}
+		final FieldPlan plan = this.getFieldPlan(classs);
+		plan.getFieldSerializer().writeFields(object, objectOutputStream);
 
 		// serialize the fields belonging to the super type...
-		final Class superType = classs.getSuperclass();
-		if (false == superType.equals(Object.class)) {
+		final Class superType = plan.getSuperType();
+		if (null != superType) {
 			this.writeFields(object, superType, objectOutputStream);
 		}
 	}
+
+	/**
+	 * Retrieves the plan describing the serializable fields of the given class.
+	 * 
+	 * @param classs
+	 * @return
+	 */
+	protected FieldPlan getFieldPlan(final Class classs) {
+		return ReflectionHelper.getFieldPlan(classs);
+	}
+
+	/**
+	 * Retrieves the layout of all the serializable fields of the given class
+	 * and its super types.
+	 * 
+	 * @param classs
+	 * @return
+	 */
+	protected FieldLayout getFieldLayout(final Class classs) {
+		return ReflectionHelper.getFieldLayout(classs);
+	}
 }
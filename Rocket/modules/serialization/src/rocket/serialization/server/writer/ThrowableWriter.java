@@ -46,6 +46,22 @@ public class ThrowableWriter extends ReflectiveWriter implements ServerObjectWri
 		return object instanceof Throwable;
 	}
 
+	/**
+	 * Throwables always recurse so the fields of Throwable itself are written
+	 * specially. Causes are rarely nested deeply.
+	 */
+	protected boolean isIterative(final ObjectOutputStream objectOutputStream) {
+		return false;
+	}
+
+	/**
+	 * The fields of Throwable are not those found by reflection so no layout
+	 * is ever written.
+	 */
+	protected boolean isVersioned(final ObjectOutputStream objectOutputStream) {
+		return false;
+	}
+
 	protected void writeFields(final Object throwable, final Class classs, final ObjectOutputStream objectOutputStream)
 			throws IllegalAccessException {
 		if (classs.equals(Throwable.class)) {
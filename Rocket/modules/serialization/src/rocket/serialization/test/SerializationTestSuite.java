@@ -64,8 +64,23 @@ import rocket.serialization.test.clientobjectoutputstream.client.ClientObjectOut
 import rocket.serialization.test.rebind.objectreaderorwriterfinder.ObjectReaderOrWriterFinderTestCase;
 import rocket.serialization.test.rebind.serializationfactorygenerator.client.SerializationFactoryGeneratorGwtTestCase;
 import rocket.serialization.test.rebind.typematcher.TypeMatcherTestCase;
+import rocket.serialization.test.server.CgLibFieldSerializerFactoryTestCase;
+import rocket.serialization.test.server.BinaryServerObjectStreamTestCase;
+import rocket.serialization.test.server.CharSequenceCursorTestCase;
+import rocket.serialization.test.server.EscapeRoundTripTestCase;
+import rocket.serialization.test.server.ObjectReaderRegistryTestCase;
+import rocket.serialization.test.server.ObjectWriterRegistryTestCase;
+import rocket.serialization.test.server.ParallelWriteTestCase;
+import rocket.serialization.test.server.SerializationStatisticsTestCase;
+import rocket.serialization.test.server.TypeResolverTestCase;
+import rocket.serialization.test.server.IterativeTraversalTestCase;
+import rocket.serialization.test.server.SchemaVersioningTestCase;
+import rocket.serialization.test.server.ReferenceTableTestCase;
+import rocket.serialization.test.server.PrimitiveArrayTestCase;
 import rocket.serialization.test.server.ServerObjectInputStreamTestCase;
 import rocket.serialization.test.server.ServerObjectOutputStreamTestCase;
+import rocket.serialization.test.server.StreamingServerObjectOutputStreamTestCase;
+import rocket.serialization.test.server.StringDictionaryTestCase;
 import rocket.serialization.test.server.reader.BooleanArrayReaderTestCase;
 import rocket.serialization.test.server.reader.BooleanReaderTestCase;
 import rocket.serialization.test.server.reader.ByteArrayReaderTestCase;
@@ -225,7 +240,22 @@ public class SerializationTestSuite {
 
 	static void addServerTests(TestSuite suite) {
 		suite.addTestSuite(ServerObjectOutputStreamTestCase.class);
+		suite.addTestSuite(StreamingServerObjectOutputStreamTestCase.class);
+		suite.addTestSuite(BinaryServerObjectStreamTestCase.class);
+		suite.addTestSuite(EscapeRoundTripTestCase.class);
+		suite.addTestSuite(PrimitiveArrayTestCase.class);
+		suite.addTestSuite(StringDictionaryTestCase.class);
+		suite.addTestSuite(ParallelWriteTestCase.class);
+		suite.addTestSuite(SerializationStatisticsTestCase.class);
+		suite.addTestSuite(TypeResolverTestCase.class);
+		suite.addTestSuite(IterativeTraversalTestCase.class);
+		suite.addTestSuite(SchemaVersioningTestCase.class);
+		suite.addTestSuite(ReferenceTableTestCase.class);
 		suite.addTestSuite(ServerObjectInputStreamTestCase.class);
+		suite.addTestSuite(CgLibFieldSerializerFactoryTestCase.class);
+		suite.addTestSuite(CharSequenceCursorTestCase.class);
+		suite.addTestSuite(ObjectWriterRegistryTestCase.class);
+		suite.addTestSuite(ObjectReaderRegistryTestCase.class);
 	}
 
 	static void addServerWriterTests(TestSuite suite) {
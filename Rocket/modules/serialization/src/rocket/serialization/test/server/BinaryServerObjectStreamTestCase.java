@@ -0,0 +1,261 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.client.SerializationException;
+import rocket.serialization.server.BinaryServerObjectInputStream;
+import rocket.serialization.server.BinaryServerObjectOutputStream;
+import rocket.serialization.server.ServerObjectReader;
+import rocket.serialization.server.ServerObjectWriter;
+import rocket.serialization.server.reader.ListReader;
+import rocket.serialization.server.reader.ReflectiveReader;
+import rocket.serialization.server.writer.ListWriter;
+import rocket.serialization.server.writer.ReflectiveWriter;
+
+public class BinaryServerObjectStreamTestCase extends ServerTestCase {
+
+	public void testIntegers() throws Exception {
+		final BinaryServerObjectOutputStream output = this.createBinaryObjectOutputStream();
+		final int[] values = { 0, 1, -1, 63, -64, 64, 127, 128, 300, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		for (int i = 0; i < values.length; i++) {
+			output.writeInt(values[i]);
+		}
+		output.writeShort(Short.MIN_VALUE);
+		output.writeShort(Short.MAX_VALUE);
+		output.writeByte(Byte.MIN_VALUE);
+		output.writeByte(Byte.MAX_VALUE);
+
+		final ObjectInputStream input = this.createBinaryObjectInputStream(output);
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], input.readInt());
+		}
+		assertEquals(Short.MIN_VALUE, input.readShort());
+		assertEquals(Short.MAX_VALUE, input.readShort());
+		assertEquals(Byte.MIN_VALUE, input.readByte());
+		assertEquals(Byte.MAX_VALUE, input.readByte());
+
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testSmallIntegersUseOneByte() throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream output = this.createBinaryObjectOutputStream(bytes);
+		output.writeInt(-64);
+		output.writeInt(63);
+		output.flush();
+
+		assertEquals(2, bytes.size());
+	}
+
+	public void testLongs() throws Exception {
+		final BinaryServerObjectOutputStream output = this.createBinaryObjectOutputStream();
+		final long[] values = { 0, 1, -1, 1L << 40, -(1L << 40), Long.MAX_VALUE, Long.MIN_VALUE };
+		for (int i = 0; i < values.length; i++) {
+			output.writeLong(values[i]);
+		}
+
+		final ObjectInputStream input = this.createBinaryObjectInputStream(output);
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], input.readLong());
+		}
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testFloatsAndDoubles() throws Exception {
+		final BinaryServerObjectOutputStream output = this.createBinaryObjectOutputStream();
+		output.writeFloat(1.25f);
+		output.writeFloat(Float.NaN);
+		output.writeFloat(Float.NEGATIVE_INFINITY);
+		output.writeDouble(-0.1);
+		output.writeDouble(Double.MIN_VALUE);
+		output.writeDouble(Double.NaN);
+
+		final ObjectInputStream input = this.createBinaryObjectInputStream(output);
+		assertEquals(1.25f, input.readFloat(), 0);
+		assertTrue(Float.isNaN(input.readFloat()));
+		assertEquals(Float.NEGATIVE_INFINITY, input.readFloat(), 0);
+		assertEquals(-0.1, input.readDouble(), 0);
+		assertEquals(Double.MIN_VALUE, input.readDouble(), 0);
+		assertTrue(Double.isNaN(input.readDouble()));
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testBooleansAndChars() throws Exception {
+		final BinaryServerObjectOutputStream output = this.createBinaryObjectOutputStream();
+		output.writeBoolean(true);
+		output.writeBoolean(false);
+		output.writeChar('a');
+		output.writeChar('\0');
+		output.writeChar('\uffff');
+
+		final ObjectInputStream input = this.createBinaryObjectInputStream(output);
+		assertTrue(input.readBoolean());
+		assertFalse(input.readBoolean());
+		assertEquals('a', input.readChar());
+		assertEquals('\0', input.readChar());
+		assertEquals('\uffff', input.readChar());
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testStrings() throws Exception {
+		final String[] values = { APPLE, "", "a\0b", "\u00e9\u4e2d\ud83d\ude00", "\ud800", "[\"',\\]", BANANA, APPLE };
+
+		final BinaryServerObjectOutputStream output = this.createBinaryObjectOutputStream();
+		for (int i = 0; i < values.length; i++) {
+			output.writeObject(values[i]);
+		}
+		output.writeObject(null);
+
+		final ObjectInputStream input = this.createBinaryObjectInputStream(output);
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], input.readObject());
+		}
+		assertNull(input.readObject());
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testRepeatedStringIsWrittenOnce() throws Exception {
+		final ByteArrayOutputStream once = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream output = this.createBinaryObjectOutputStream(once);
+		output.writeObject(CARROT);
+		output.flush();
+
+		final ByteArrayOutputStream twice = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream output2 = this.createBinaryObjectOutputStream(twice);
+		output2.writeObject(CARROT);
+		output2.writeObject(CARROT);
+		output2.flush();
+
+		assertEquals(once.size() + 1, twice.size());
+	}
+
+	public void testObjectGraph() throws Exception {
+		final ConcreteClass concreteClass = this.createConcreteClass();
+		final List<Object> list = new ArrayList<Object>();
+		list.add(APPLE);
+		list.add(concreteClass);
+		list.add(concreteClass);
+		list.add(null);
+		list.add(APPLE);
+
+		final BinaryServerObjectOutputStream output = this.createBinaryObjectOutputStream();
+		output.writeObject(list);
+		output.writeObject(list);
+		output.writeInt(123);
+
+		final ObjectInputStream input = this.createBinaryObjectInputStream(output);
+		final List<?> readList = (List<?>) input.readObject();
+		assertEquals(5, readList.size());
+		assertEquals(APPLE, readList.get(0));
+
+		final ConcreteClass readConcreteClass = (ConcreteClass) readList.get(1);
+		assertEquals(ConcreteClass.VALUE, readConcreteClass.value);
+		assertSame(readConcreteClass, readList.get(2));
+		assertNull(readList.get(3));
+		assertEquals(APPLE, readList.get(4));
+
+		assertSame(readList, input.readObject());
+		assertEquals(123, input.readInt());
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testTruncatedStreamFails() throws Exception {
+		final BinaryServerObjectOutputStream output = this.createBinaryObjectOutputStream();
+		output.writeObject(CARROT);
+		final byte[] bytes = this.getBytes(output);
+
+		final ObjectInputStream input = this.createBinaryObjectInputStream(bytes, bytes.length - 1);
+		try {
+			final Object got = input.readObject();
+			fail("An exception should have been thrown when reading a truncated string, but \"" + got + "\" was returned...");
+		} catch (final Exception expected) {
+		}
+	}
+
+	public void testHugeStringLengthFails() throws Exception {
+		// a varint holding Integer.MAX_VALUE followed by a single byte.
+		final byte[] bytes = new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a' };
+		final CharacterReadingInputStream input = new CharacterReadingInputStream(bytes);
+		try {
+			final String got = input.readCharacters();
+			fail("An exception should have been thrown for a string longer than the stream, but \"" + got + "\" was returned...");
+		} catch (final SerializationException expected) {
+		}
+	}
+
+	/**
+	 * Exposes {@link #readCharacters()} to tests.
+	 */
+	static class CharacterReadingInputStream extends BinaryServerObjectInputStream {
+		CharacterReadingInputStream(final byte[] bytes) {
+			super(bytes);
+		}
+
+		public String readCharacters() {
+			return super.readCharacters();
+		}
+	}
+
+	public void testGetTextIsUnsupported() throws Exception {
+		try {
+			final String got = this.createBinaryObjectOutputStream().getText();
+			fail("getText() should have failed, but returned \"" + got + "\"");
+		} catch (final UnsupportedOperationException expected) {
+		}
+	}
+
+	ByteArrayOutputStream bytes;
+
+	protected BinaryServerObjectOutputStream createBinaryObjectOutputStream() {
+		this.bytes = new ByteArrayOutputStream();
+		return this.createBinaryObjectOutputStream(this.bytes);
+	}
+
+	protected BinaryServerObjectOutputStream createBinaryObjectOutputStream(final ByteArrayOutputStream bytes) {
+		final List<ServerObjectWriter> writers = new ArrayList<ServerObjectWriter>();
+		writers.add(ListWriter.instance);
+		writers.add(ReflectiveWriter.instance);
+
+		final BinaryServerObjectOutputStream stream = new BinaryServerObjectOutputStream(bytes);
+		stream.setObjectWriters(writers);
+		return stream;
+	}
+
+	protected byte[] getBytes(final BinaryServerObjectOutputStream output) {
+		output.flush();
+		return this.bytes.toByteArray();
+	}
+
+	protected ObjectInputStream createBinaryObjectInputStream(final BinaryServerObjectOutputStream output) {
+		final byte[] bytes = this.getBytes(output);
+		return this.createBinaryObjectInputStream(bytes, bytes.length);
+	}
+
+	protected ObjectInputStream createBinaryObjectInputStream(final byte[] bytes, final int length) {
+		final List<ServerObjectReader> readers = new ArrayList<ServerObjectReader>();
+		readers.add(ListReader.instance);
+		readers.add(ReflectiveReader.instance);
+
+		final BinaryServerObjectInputStream stream = new BinaryServerObjectInputStream(bytes, 0, length);
+		stream.setObjectReaders(readers);
+		return stream;
+	}
+}
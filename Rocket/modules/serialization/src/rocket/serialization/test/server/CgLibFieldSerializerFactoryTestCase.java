@@ -0,0 +1,127 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.io.Serializable;
+
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.server.CgLibFieldSerializerFactory;
+import rocket.serialization.server.FieldPlan;
+import rocket.serialization.server.FieldSerializer;
+import rocket.serialization.server.ReflectionHelper;
+import rocket.serialization.server.ReflectiveFieldSerializer;
+import rocket.serialization.server.reader.IntArrayReader;
+import rocket.serialization.server.writer.IntArrayWriter;
+
+public class CgLibFieldSerializerFactoryTestCase extends ServerTestCase {
+
+	public void testGeneratedWriteFields() throws Exception {
+		final FieldSerializer serializer = this.createFieldSerializer(Fields.class);
+		assertFalse(serializer instanceof ReflectiveFieldSerializer);
+
+		final TestServerObjectOutputStream output = createObjectOutputStream();
+		serializer.writeFields(this.createFields(), output);
+
+		final TestServerObjectOutputStream expected = createObjectOutputStream();
+		new ReflectiveFieldSerializer(ReflectionHelper.buildFieldPlan(Fields.class)).writeFields(this.createFields(), expected);
+
+		assertEquals(expected.getText(), output.getText());
+	}
+
+	public void testGeneratedReadFields() throws Exception {
+		final FieldSerializer serializer = this.createFieldSerializer(Fields.class);
+
+		final TestServerObjectOutputStream output = createObjectOutputStream(IntArrayWriter.instance);
+		serializer.writeFields(this.createFields(), output);
+
+		final ObjectInputStream input = createObjectInputStream(output.getText(), IntArrayReader.instance);
+		final Fields fields = new Fields();
+		serializer.readFields(fields, input);
+
+		assertEquals(true, fields.booleanValue);
+		assertEquals(1, fields.byteValue);
+		assertEquals(2, fields.shortValue);
+		assertEquals(3, fields.intValue);
+		assertEquals(4L, fields.longValue);
+		assertEquals(5.5f, fields.floatValue, 0.1f);
+		assertEquals(6.5, fields.doubleValue, 0.1);
+		assertEquals('a', fields.charValue);
+		assertEquals(APPLE, fields.string);
+		assertEquals(ConcreteClass.VALUE, fields.concreteClass.value);
+		assertEquals(1, fields.ints.length);
+
+		verifyFurtherReadsFail(input);
+	}
+
+	public void testPrivateFieldsFallBackToReflection() throws Exception {
+		final FieldSerializer serializer = this.createFieldSerializer(PrivateField.class);
+		assertTrue(serializer instanceof ReflectiveFieldSerializer);
+	}
+
+	public void testJavaClassesFallBackToReflection() throws Exception {
+		final FieldSerializer serializer = this.createFieldSerializer(Throwable.class);
+		assertTrue(serializer instanceof ReflectiveFieldSerializer);
+	}
+
+	protected FieldSerializer createFieldSerializer(final Class type) {
+		final FieldPlan plan = ReflectionHelper.buildFieldPlan(type);
+		return new CgLibFieldSerializerFactory().createFieldSerializer(plan);
+	}
+
+	protected Fields createFields() {
+		final Fields fields = new Fields();
+		fields.booleanValue = true;
+		fields.byteValue = 1;
+		fields.shortValue = 2;
+		fields.intValue = 3;
+		fields.longValue = 4;
+		fields.floatValue = 5.5f;
+		fields.doubleValue = 6.5;
+		fields.charValue = 'a';
+		fields.string = APPLE;
+		fields.concreteClass = this.createConcreteClass();
+		fields.ints = new int[] { 7 };
+		return fields;
+	}
+
+	static public class Fields implements Serializable {
+		boolean booleanValue;
+
+		byte byteValue;
+
+		short shortValue;
+
+		int intValue;
+
+		long longValue;
+
+		float floatValue;
+
+		double doubleValue;
+
+		char charValue;
+
+		String string;
+
+		ConcreteClass concreteClass;
+
+		int[] ints;
+	}
+
+	static public class PrivateField implements Serializable {
+		private int value;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import rocket.serialization.client.SerializationException;
+import rocket.serialization.server.CharSequenceCursor;
+
+public class CharSequenceCursorTestCase extends TestCase {
+
+	public void testReadInts() {
+		final CharSequenceCursor cursor = this.createCursor("0,1,-1,2147483647,-2147483648");
+		assertEquals(0, cursor.readInt());
+		assertEquals(1, cursor.readInt());
+		assertEquals(-1, cursor.readInt());
+		assertEquals(Integer.MAX_VALUE, cursor.readInt());
+		assertEquals(Integer.MIN_VALUE, cursor.readInt());
+		assertFalse(cursor.hasMoreValues());
+	}
+
+	public void testReadIntOverflow() {
+		final CharSequenceCursor cursor = this.createCursor("2147483648");
+		try {
+			cursor.readInt();
+			fail("An exception should have been thrown because the int overflows.");
+		} catch (final SerializationException expected) {
+		}
+	}
+
+	public void testReadIntInvalid() {
+		final CharSequenceCursor cursor = this.createCursor("1.5");
+		try {
+			cursor.readInt();
+			fail("An exception should have been thrown because the value is not an int.");
+		} catch (final SerializationException expected) {
+		}
+	}
+
+	public void testReadBeyondEnd() {
+		final CharSequenceCursor cursor = this.createCursor("1");
+		cursor.readInt();
+		try {
+			cursor.readInt();
+			fail("An exception should have been thrown when reading beyond the end.");
+		} catch (final SerializationException expected) {
+		}
+	}
+
+	public void testReadBooleans() {
+		final CharSequenceCursor cursor = this.createCursor("true,false");
+		assertTrue(cursor.readBoolean());
+		assertFalse(cursor.readBoolean());
+		assertFalse(cursor.hasMoreValues());
+	}
+
+	public void testReadDoubles() {
+		final double[] values = { 0.0, -0.0, 1.0, -1.5, 0.1, 123.456, 1.0E10, 1.234E-5, Double.MAX_VALUE, Double.MIN_VALUE,
+				Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		final StringBuffer buf = new StringBuffer();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				buf.append(',');
+			}
+			buf.append(values[i]);
+		}
+
+		final CharSequenceCursor cursor = this.createCursor(buf.toString());
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(Double.doubleToLongBits(values[i]), Double.doubleToLongBits(cursor.readDouble()));
+		}
+	}
+
+	public void testReadRandomDoublesAndFloats() {
+		final Random random = new Random(0);
+		final int count = 10000;
+		final double[] doubles = new double[count];
+		final float[] floats = new float[count];
+
+		final StringBuffer buf = new StringBuffer();
+		for (int i = 0; i < count; i++) {
+			doubles[i] = Math.round(random.nextDouble() * 1000000) / 1000.0;
+			floats[i] = Math.round(random.nextFloat() * 10000) / 100.0f;
+			buf.append(doubles[i]);
+			buf.append(',');
+			buf.append(floats[i]);
+			buf.append(',');
+		}
+		buf.setLength(buf.length() - 1);
+
+		final CharSequenceCursor cursor = this.createCursor(buf.toString());
+		for (int i = 0; i < count; i++) {
+			assertEquals(doubles[i], cursor.readDouble(), 0);
+			assertEquals(floats[i], cursor.readFloat(), 0);
+		}
+	}
+
+	public void testReadStrings() {
+		final CharSequenceCursor cursor = this.createCursor("\"apple\",\"\",\"a\\\"b\",1");
+		assertEquals("apple", cursor.readString());
+		assertEquals("", cursor.readString());
+		assertEquals("a\"b", cursor.readString());
+		assertEquals(1, cursor.readInt());
+	}
+
+	public void testSkipStrings() {
+		final CharSequenceCursor cursor = this.createCursor("\"apple\",\"\",\"a\\\"b\\\\\",\"\\u0041\",1");
+		final int apple = cursor.skipString();
+		final int empty = cursor.skipString();
+		final int escaped = cursor.skipString();
+		final int unicode = cursor.skipString();
+		assertEquals(1, cursor.readInt());
+		assertFalse(cursor.hasMoreValues());
+
+		assertEquals("a\"b\\", cursor.readString(escaped));
+		assertEquals("apple", cursor.readString(apple));
+		assertEquals("A", cursor.readString(unicode));
+		assertEquals("", cursor.readString(empty));
+		assertFalse(cursor.hasMoreValues());
+	}
+
+	public void testSkipUnterminatedString() {
+		final CharSequenceCursor cursor = this.createCursor("\"apple\\\"");
+		try {
+			cursor.skipString();
+			fail("An exception should have been thrown because the string was not terminated.");
+		} catch (final SerializationException expected) {
+
+		}
+	}
+
+	CharSequenceCursor createCursor(final String values) {
+		final StringBuffer chars = new StringBuffer();
+		chars.append('[');
+		chars.append(values);
+		chars.append(']');
+		return new CharSequenceCursor(chars, 1, chars.length() - 1);
+	}
+}
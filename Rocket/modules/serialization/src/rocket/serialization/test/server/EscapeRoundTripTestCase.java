@@ -0,0 +1,131 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.io.StringWriter;
+
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.ReplayableOutput;
+import rocket.serialization.server.StreamingServerObjectOutputStream;
+
+/**
+ * Verifies that every string written by a {@link TestServerObjectOutputStream}
+ * or {@link StreamingServerObjectOutputStream} is read back unchanged by a
+ * {@link rocket.serialization.server.ServerObjectInputStream}.
+ */
+public class EscapeRoundTripTestCase extends ServerTestCase {
+
+	public void testCleanStringIsNotCopied() {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		final String input = "apple banana carrot";
+		assertSame(input, output.escape(input));
+	}
+
+	public void testEscapeControlChars() {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		assertEquals("\\u0000\\b\\t\\n\\f\\r\\u001f", output.escape("\0\b\t\n\f\r\u001f"));
+	}
+
+	public void testEscapeLineAndParagraphSeparator() {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		assertEquals("a\\u2028b\\u2029c", output.escape("a\u2028b\u2029c"));
+	}
+
+	public void testEscapeRunsAreCopied() {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		assertEquals("apple\\\"banana\\\\carrot\\n", output.escape("apple\"banana\\carrot\n"));
+	}
+
+	public void testControlChars() {
+		for (char c = 0; c < ' '; c++) {
+			this.roundTrip("" + c);
+			this.roundTrip("a" + c + "b");
+		}
+	}
+
+	public void testQuotesAndBackslashes() {
+		this.roundTrip("\"");
+		this.roundTrip("\\");
+		this.roundTrip("\\\"");
+		this.roundTrip("\\u0041");
+		this.roundTrip("\\x41;");
+		this.roundTrip("'apple'");
+		this.roundTrip("[\"apple\",1]");
+	}
+
+	public void testLatin1() {
+		this.roundTripRange(0x20, 0x100);
+	}
+
+	public void testBasicMultilingualPlane() {
+		this.roundTripRange(0x100, 0xD800);
+		this.roundTripRange(0xE000, 0x10000);
+	}
+
+	public void testSurrogates() {
+		this.roundTripRange(0xD800, 0xE000);
+		this.roundTrip("\ud83d\ude00");
+		this.roundTrip("\ude00\ud83d");
+	}
+
+	public void testEveryCharStreaming() throws Exception {
+		final String input = this.createString(0, 0x10000);
+		final ReplayableOutput output = new ReplayableOutput() {
+			public void write(final ObjectOutputStream objectOutputStream) {
+				objectOutputStream.writeObject(input);
+				objectOutputStream.writeObject(APPLE);
+			}
+		};
+
+		final StreamingServerObjectOutputStream stream = new StreamingServerObjectOutputStream();
+		final StringWriter writer = new StringWriter();
+		stream.writeTo(output, writer);
+
+		final ObjectInputStream objectInputStream = this.createObjectInputStream(writer.toString());
+		assertEquals(input, objectInputStream.readObject());
+		assertEquals(APPLE, objectInputStream.readObject());
+		this.verifyFurtherReadsFail(objectInputStream);
+	}
+
+	protected void roundTripRange(final int first, final int last) {
+		// each char alone, then all of them together.
+		for (int i = first; i < last; i++) {
+			this.roundTrip(String.valueOf((char) i));
+		}
+		this.roundTrip(this.createString(first, last));
+	}
+
+	protected String createString(final int first, final int last) {
+		final StringBuffer buf = new StringBuffer(last - first);
+		for (int i = first; i < last; i++) {
+			buf.append((char) i);
+		}
+		return buf.toString();
+	}
+
+	protected void roundTrip(final String string) {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		output.writeObject(string);
+		output.writeObject(APPLE);
+		final String text = output.getText();
+
+		final ObjectInputStream input = this.createObjectInputStream(text);
+		assertEquals(text, string, input.readObject());
+		assertEquals(text, APPLE, input.readObject());
+		this.verifyFurtherReadsFail(input);
+	}
+}
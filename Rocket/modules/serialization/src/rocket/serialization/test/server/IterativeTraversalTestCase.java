@@ -0,0 +1,176 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import rocket.serialization.server.BinaryServerObjectInputStream;
+import rocket.serialization.server.BinaryServerObjectOutputStream;
+import rocket.serialization.server.ServerObjectInputStream;
+import rocket.serialization.server.ServerObjectReader;
+import rocket.serialization.server.ServerObjectWriter;
+import rocket.serialization.server.reader.ListReader;
+import rocket.serialization.server.reader.ReflectiveReader;
+import rocket.serialization.server.writer.ListWriter;
+import rocket.serialization.server.writer.ReflectiveWriter;
+
+public class IterativeTraversalTestCase extends ServerTestCase {
+
+	final static int DEEP = 100000;
+
+	public void testSameValuesAsRecursive() {
+		final Node graph = this.createGraph();
+
+		final TestServerObjectOutputStream recursive = this.createObjectOutputStream(ListWriter.instance);
+		recursive.writeObject(graph);
+		recursive.writeObject(graph.next);
+
+		final TestServerObjectOutputStream iterative = this.createObjectOutputStream(ListWriter.instance);
+		iterative.setIterative(true);
+		iterative.writeObject(graph);
+		iterative.writeObject(graph.next);
+
+		assertEquals(recursive.getText(), iterative.getText());
+	}
+
+	public void testRoundTrip() {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream(ListWriter.instance);
+		output.setIterative(true);
+		output.writeObject(this.createGraph());
+
+		final ServerObjectInputStream input = (ServerObjectInputStream) this.createObjectInputStream(output.getText(), ListReader.instance);
+		input.setIterative(true);
+		this.verifyGraph((Node) input.readObject());
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testIterativeReadsRecursiveWrite() {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream(ListWriter.instance);
+		output.writeObject(this.createGraph());
+
+		final ServerObjectInputStream input = (ServerObjectInputStream) this.createObjectInputStream(output.getText(), ListReader.instance);
+		input.setIterative(true);
+		this.verifyGraph((Node) input.readObject());
+	}
+
+	public void testDeepLinkedList() {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		output.setIterative(true);
+		output.writeObject(this.createChain(DEEP));
+
+		final ServerObjectInputStream input = (ServerObjectInputStream) this.createObjectInputStream(output.getText());
+		input.setIterative(true);
+		this.verifyChain((Node) input.readObject(), DEEP);
+	}
+
+	public void testDeepLinkedListBinary() {
+		final List<ServerObjectWriter> writers = new ArrayList<ServerObjectWriter>();
+		writers.add(ReflectiveWriter.instance);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream output = new BinaryServerObjectOutputStream(bytes);
+		output.setObjectWriters(writers);
+		output.setIterative(true);
+		output.writeObject(this.createChain(DEEP));
+		output.flush();
+
+		final List<ServerObjectReader> readers = new ArrayList<ServerObjectReader>();
+		readers.add(ReflectiveReader.instance);
+
+		final BinaryServerObjectInputStream input = new BinaryServerObjectInputStream(bytes.toByteArray());
+		input.setObjectReaders(readers);
+		input.setIterative(true);
+		this.verifyChain((Node) input.readObject(), DEEP);
+	}
+
+	/**
+	 * Builds a small graph containing a cycle, a list holding nodes, a sub
+	 * class with super class fields and a null.
+	 */
+	protected Node createGraph() {
+		final Node root = new Node();
+		root.value = 1;
+		root.name = APPLE;
+
+		final Node second = new Node();
+		second.value = 2;
+		second.name = BANANA;
+		second.next = root;
+		root.next = second;
+
+		final List<Object> items = new ArrayList<Object>();
+		items.add(this.createChain(3));
+		items.add(second);
+		items.add(this.createConcreteSubClass());
+		items.add(null);
+		root.items = items;
+
+		return root;
+	}
+
+	protected void verifyGraph(final Node root) {
+		assertEquals(1, root.value);
+		assertEquals(APPLE, root.name);
+
+		final Node second = root.next;
+		assertEquals(2, second.value);
+		assertEquals(BANANA, second.name);
+		assertSame(root, second.next);
+		assertNull(second.items);
+
+		final List items = root.items;
+		assertEquals(4, items.size());
+		this.verifyChain((Node) items.get(0), 3);
+		assertSame(second, items.get(1));
+		final ConcreteSubClass subClass = (ConcreteSubClass) items.get(2);
+		assertEquals(ConcreteClass.VALUE, subClass.value);
+		assertEquals(ConcreteSubClass.VALUE, subClass.value2);
+		assertNull(items.get(3));
+	}
+
+	protected Node createChain(final int length) {
+		Node head = null;
+		for (int i = length - 1; i >= 0; i--) {
+			final Node node = new Node();
+			node.value = i;
+			node.next = head;
+			head = node;
+		}
+		return head;
+	}
+
+	protected void verifyChain(final Node head, final int length) {
+		Node node = head;
+		for (int i = 0; i < length; i++) {
+			assertEquals(i, node.value);
+			node = node.next;
+		}
+		assertNull(node);
+	}
+
+	static public class Node implements Serializable {
+		int value;
+
+		String name;
+
+		Node next;
+
+		List items;
+	}
+}
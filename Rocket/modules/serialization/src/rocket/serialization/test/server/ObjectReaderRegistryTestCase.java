@@ -0,0 +1,82 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rocket.serialization.client.SerializationException;
+import rocket.serialization.server.ObjectReaderRegistry;
+import rocket.serialization.server.ServerObjectReader;
+import rocket.serialization.server.reader.IntegerReader;
+import rocket.serialization.server.reader.ReflectiveReader;
+
+public class ObjectReaderRegistryTestCase extends ServerTestCase {
+
+	public void testGetType() {
+		final ObjectReaderRegistry registry = new ObjectReaderRegistry(this.createObjectReaders());
+
+		final Class type = registry.getType(CONCRETE_CLASS);
+		assertSame(ConcreteClass.class, type);
+		assertSame(type, registry.getType(CONCRETE_CLASS));
+	}
+
+	public void testGetUnknownType() {
+		final ObjectReaderRegistry registry = new ObjectReaderRegistry(this.createObjectReaders());
+		try {
+			registry.getType("unknown.Type");
+			fail("An exception should have been thrown when resolving an unknown type.");
+		} catch (final SerializationException expected) {
+
+		}
+	}
+
+	public void testGetObjectReader() {
+		final ObjectReaderRegistry registry = new ObjectReaderRegistry(this.createObjectReaders());
+
+		assertSame(IntegerReader.instance, registry.getObjectReader(Integer.class));
+		assertSame(ReflectiveReader.instance, registry.getObjectReader(ConcreteClass.class));
+	}
+
+	public void testCanReadOnlyCalledOncePerType() {
+		final CountingObjectReader reader = new CountingObjectReader();
+		final List<ServerObjectReader> readers = new ArrayList<ServerObjectReader>();
+		readers.add(reader);
+		readers.addAll(this.createObjectReaders());
+
+		final ObjectReaderRegistry registry = new ObjectReaderRegistry(readers);
+		for (int i = 0; i < 3; i++) {
+			assertSame(IntegerReader.instance, registry.getObjectReader(Integer.class));
+		}
+		assertEquals(1, reader.canReadCount);
+	}
+
+	protected List<ServerObjectReader> createObjectReaders() {
+		final List<ServerObjectReader> readers = new ArrayList<ServerObjectReader>();
+		readers.add(IntegerReader.instance);
+		readers.add(ReflectiveReader.instance);
+		return readers;
+	}
+
+	static class CountingObjectReader extends IntegerReader {
+		int canReadCount = 0;
+
+		public boolean canRead(final Class type) {
+			this.canReadCount++;
+			return false;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rocket.serialization.server.ObjectWriterRegistry;
+import rocket.serialization.server.ServerObjectWriter;
+import rocket.serialization.server.writer.IntegerWriter;
+import rocket.serialization.server.writer.ReflectiveWriter;
+
+public class ObjectWriterRegistryTestCase extends ServerTestCase {
+
+	public void testGetObjectWriter() {
+		final ObjectWriterRegistry registry = new ObjectWriterRegistry(this.createObjectWriters());
+
+		assertSame(IntegerWriter.instance, registry.getObjectWriter(new Integer(1)));
+		assertSame(ReflectiveWriter.instance, registry.getObjectWriter(this.createConcreteClass()));
+	}
+
+	public void testUnknownType() {
+		final ObjectWriterRegistry registry = new ObjectWriterRegistry(this.createObjectWriters());
+		assertNull(registry.getObjectWriter(new Object()));
+	}
+
+	public void testCanWriteOnlyCalledOncePerType() {
+		final CountingObjectWriter writer = new CountingObjectWriter();
+		final List<ServerObjectWriter> writers = new ArrayList<ServerObjectWriter>();
+		writers.add(writer);
+		writers.addAll(this.createObjectWriters());
+
+		final ObjectWriterRegistry registry = new ObjectWriterRegistry(writers);
+		for (int i = 0; i < 3; i++) {
+			assertSame(IntegerWriter.instance, registry.getObjectWriter(new Integer(i)));
+		}
+		assertEquals(1, writer.canWriteCount);
+	}
+
+	protected List<ServerObjectWriter> createObjectWriters() {
+		final List<ServerObjectWriter> writers = new ArrayList<ServerObjectWriter>();
+		writers.add(IntegerWriter.instance);
+		writers.add(ReflectiveWriter.instance);
+		return writers;
+	}
+
+	static class CountingObjectWriter extends IntegerWriter {
+		int canWriteCount = 0;
+
+		public boolean canWrite(final Object object) {
+			this.canWriteCount++;
+			return false;
+		}
+	}
+}
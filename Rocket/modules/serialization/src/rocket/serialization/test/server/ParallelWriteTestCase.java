@@ -0,0 +1,248 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.ReplayableOutput;
+import rocket.serialization.server.ServerObjectOutputStream;
+import rocket.serialization.server.ServerObjectReader;
+import rocket.serialization.server.ServerObjectWriter;
+import rocket.serialization.server.StreamingServerObjectOutputStream;
+import rocket.serialization.server.StringDictionary;
+import rocket.serialization.server.reader.ListReader;
+import rocket.serialization.server.reader.MapReader;
+import rocket.serialization.server.writer.ListWriter;
+import rocket.serialization.server.writer.MapWriter;
+
+/**
+ * Verifies that writing collections in parallel produces exactly the same
+ * output as writing them sequentially.
+ */
+public class ParallelWriteTestCase extends ServerTestCase {
+
+	final static int CHUNK_SIZE = 10;
+
+	final static int ELEMENT_COUNT = 95;
+
+	ExecutorService executor;
+
+	protected void setUp() throws Exception {
+		this.executor = Executors.newFixedThreadPool(4);
+	}
+
+	protected void tearDown() throws Exception {
+		this.executor.shutdownNow();
+	}
+
+	public void testSmallListIsNotParallel() {
+		final ServerObjectOutputStream output = this.createParallelObjectOutputStream();
+		assertFalse(output.isParallel(CHUNK_SIZE - 1));
+		assertTrue(output.isParallel(CHUNK_SIZE * 2));
+
+		output.setParallelExecutor(null);
+		assertFalse(output.isParallel(ELEMENT_COUNT));
+	}
+
+	public void testIndependentElements() {
+		final List<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < ELEMENT_COUNT; i++) {
+			final ConcreteClass concreteClass = this.createConcreteClass();
+			concreteClass.value = i;
+			list.add(concreteClass);
+			list.add("string-" + (i % 7));
+		}
+		this.verifySameOutput(list);
+	}
+
+	public void testElementsSharedBetweenChunks() {
+		final ConcreteClass shared = this.createConcreteClass();
+		final List<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < ELEMENT_COUNT; i++) {
+			list.add(i % 30 == 0 ? shared : this.createConcreteClass());
+		}
+		this.verifySameOutput(list);
+	}
+
+	public void testElementWrittenBeforeList() {
+		final ConcreteClass earlier = this.createConcreteClass();
+		final List<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < ELEMENT_COUNT; i++) {
+			list.add(i == 50 ? earlier : this.createConcreteClass());
+		}
+		this.verifySameOutput(new Object[] { earlier, list });
+	}
+
+	public void testListContainingItself() {
+		final List<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < ELEMENT_COUNT; i++) {
+			list.add(i == 42 ? list : (Object) APPLE);
+		}
+		this.verifySameOutput(list);
+	}
+
+	public void testNestedLists() {
+		final List<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < ELEMENT_COUNT; i++) {
+			final List<Object> nested = new ArrayList<Object>();
+			for (int j = 0; j < ELEMENT_COUNT; j++) {
+				nested.add(j % 2 == 0 ? BANANA : (Object) this.createConcreteClass());
+			}
+			list.add(nested);
+		}
+		this.verifySameOutput(list);
+	}
+
+	public void testMap() {
+		final Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+		for (int i = 0; i < ELEMENT_COUNT; i++) {
+			map.put("key-" + i, i % 3 == 0 ? CARROT : (Object) this.createConcreteClass());
+		}
+		this.verifySameOutput(map);
+	}
+
+	public void testStringDictionary() {
+		final List<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < ELEMENT_COUNT; i++) {
+			list.add(i % 2 == 0 ? APPLE : CARROT + (i % 5));
+		}
+
+		final StringDictionary dictionary = new StringDictionary(Arrays.asList(new String[] { APPLE }));
+		final ServerObjectOutputStream sequential = this.createSequentialObjectOutputStream();
+		sequential.setStringDictionary(dictionary);
+		sequential.writeObject(list);
+
+		final ServerObjectOutputStream parallel = this.createParallelObjectOutputStream();
+		parallel.setStringDictionary(dictionary);
+		parallel.writeObject(list);
+
+		assertEquals(sequential.getText(), parallel.getText());
+	}
+
+	public void testStreaming() throws Exception {
+		final List<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < ELEMENT_COUNT; i++) {
+			list.add(i % 4 == 0 ? BANANA : (Object) this.createConcreteClass());
+		}
+		final ReplayableOutput replayable = new ReplayableOutput() {
+			public void write(final ObjectOutputStream objectOutputStream) {
+				objectOutputStream.writeObject(list);
+			}
+		};
+
+		final ServerObjectOutputStream sequential = this.createSequentialObjectOutputStream();
+		replayable.write(sequential);
+
+		final StreamingServerObjectOutputStream streaming = new StreamingServerObjectOutputStream();
+		this.prepare(streaming);
+		streaming.setFlushThreshold(64);
+		streaming.setStreamingThreshold(0);
+		final StringWriter writer = new StringWriter();
+		streaming.writeTo(replayable, writer);
+
+		assertEquals(sequential.getText(), writer.toString());
+	}
+
+	public void testFailureIsRethrown() {
+		final List<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < ELEMENT_COUNT; i++) {
+			list.add(i == 77 ? new Object() : APPLE);
+		}
+
+		final ServerObjectOutputStream output = this.createParallelObjectOutputStream();
+		try {
+			output.writeObject(list);
+			fail("Writing an unserializable object should have failed");
+		} catch (final RuntimeException expected) {
+		}
+	}
+
+	protected void verifySameOutput(final Object object) {
+		final ServerObjectOutputStream sequential = this.createSequentialObjectOutputStream();
+		this.write(object, sequential);
+
+		final ServerObjectOutputStream parallel = this.createParallelObjectOutputStream();
+		this.write(object, parallel);
+
+		final String text = sequential.getText();
+		assertEquals(text, parallel.getText());
+
+		// sanity check that the output can be read
+		final ObjectInputStream input = this.createObjectInputStream(text, this.createReaders());
+		if (object instanceof Object[]) {
+			final Object[] objects = (Object[]) object;
+			for (int i = 0; i < objects.length; i++) {
+				assertNotNull(input.readObject());
+			}
+		} else {
+			assertNotNull(input.readObject());
+		}
+		this.verifyFurtherReadsFail(input);
+	}
+
+	protected void write(final Object object, final ObjectOutputStream output) {
+		if (object instanceof Object[]) {
+			final Object[] objects = (Object[]) object;
+			for (int i = 0; i < objects.length; i++) {
+				output.writeObject(objects[i]);
+			}
+		} else {
+			output.writeObject(object);
+		}
+	}
+
+	protected ServerObjectOutputStream createSequentialObjectOutputStream() {
+		return this.createObjectOutputStream(this.createWriters());
+	}
+
+	protected ServerObjectOutputStream createParallelObjectOutputStream() {
+		final ServerObjectOutputStream output = this.createObjectOutputStream(this.createWriters());
+		this.prepare(output);
+		return output;
+	}
+
+	protected void prepare(final ServerObjectOutputStream output) {
+		final List<ServerObjectWriter> writers = new ArrayList<ServerObjectWriter>(this.createWriters());
+		writers.add(rocket.serialization.server.writer.ReflectiveWriter.instance);
+		output.setObjectWriters(writers);
+		output.setParallelExecutor(this.executor);
+		output.setParallelChunkSize(CHUNK_SIZE);
+		output.setParallelThreshold(CHUNK_SIZE * 2);
+	}
+
+	protected List<ServerObjectWriter> createWriters() {
+		final List<ServerObjectWriter> writers = new ArrayList<ServerObjectWriter>();
+		writers.add(ListWriter.instance);
+		writers.add(MapWriter.instance);
+		return writers;
+	}
+
+	protected List<ServerObjectReader> createReaders() {
+		final List<ServerObjectReader> readers = new ArrayList<ServerObjectReader>();
+		readers.add(ListReader.instance);
+		readers.add(MapReader.instance);
+		return readers;
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.BinaryServerObjectInputStream;
+import rocket.serialization.server.BinaryServerObjectOutputStream;
+import rocket.serialization.server.ReplayableOutput;
+import rocket.serialization.server.ServerObjectInputStream;
+import rocket.serialization.server.ServerObjectReader;
+import rocket.serialization.server.ServerObjectWriter;
+import rocket.serialization.server.StreamingServerObjectOutputStream;
+import rocket.serialization.server.reader.BooleanArrayReader;
+import rocket.serialization.server.reader.ByteArrayReader;
+import rocket.serialization.server.reader.CharArrayReader;
+import rocket.serialization.server.reader.DoubleArrayReader;
+import rocket.serialization.server.reader.FloatArrayReader;
+import rocket.serialization.server.reader.IntArrayReader;
+import rocket.serialization.server.reader.LongArrayReader;
+import rocket.serialization.server.reader.ShortArrayReader;
+import rocket.serialization.server.writer.BooleanArrayWriter;
+import rocket.serialization.server.writer.ByteArrayWriter;
+import rocket.serialization.server.writer.CharArrayWriter;
+import rocket.serialization.server.writer.DoubleArrayWriter;
+import rocket.serialization.server.writer.FloatArrayWriter;
+import rocket.serialization.server.writer.IntArrayWriter;
+import rocket.serialization.server.writer.LongArrayWriter;
+import rocket.serialization.server.writer.ShortArrayWriter;
+
+/**
+ * Round trips primitive arrays through the bulk array methods of each of the
+ * server streams.
+ */
+public class PrimitiveArrayTestCase extends ServerTestCase {
+
+	final static int LARGE = 3000;
+
+	public void testBulkOutputMatchesElementByElement() {
+		final int[] array = this.createIntArray(LARGE);
+
+		final TestServerObjectOutputStream bulk = this.createObjectOutputStream();
+		bulk.writeIntArray(array);
+		bulk.writeInt(-1);
+
+		final TestServerObjectOutputStream single = this.createObjectOutputStream();
+		single.writeInt(array.length);
+		for (int i = 0; i < array.length; i++) {
+			single.writeInt(array[i]);
+		}
+		single.writeInt(-1);
+
+		assertEquals(single.getText(), bulk.getText());
+	}
+
+	public void testLongArrayMatchesElementByElement() {
+		final long[] array = { 0, -1, Long.MAX_VALUE, Long.MIN_VALUE, 1L << 40 };
+
+		final TestServerObjectOutputStream bulk = this.createObjectOutputStream();
+		bulk.writeLongArray(array);
+
+		final TestServerObjectOutputStream single = this.createObjectOutputStream();
+		single.writeInt(array.length);
+		for (int i = 0; i < array.length; i++) {
+			single.writeLong(array[i]);
+		}
+
+		assertEquals(single.getText(), bulk.getText());
+	}
+
+	public void testText() {
+		final Object[] arrays = this.createArrays();
+
+		final TestServerObjectOutputStream output = this.createObjectOutputStream(this.createWriters());
+		this.writeArrays(arrays, output);
+
+		this.verifyArrays(arrays, this.createObjectInputStream(output.getText(), this.createReaders()));
+	}
+
+	public void testStreaming() throws Exception {
+		final Object[] arrays = this.createArrays();
+
+		final StreamingServerObjectOutputStream output = new StreamingServerObjectOutputStream();
+		output.setObjectWriters(this.createWriters());
+		output.setFlushThreshold(100);
+		output.setStreamingThreshold(0);
+
+		final StringWriter writer = new StringWriter();
+		output.writeTo(new ReplayableOutput() {
+			public void write(final ObjectOutputStream objectOutputStream) {
+				PrimitiveArrayTestCase.this.writeArrays(arrays, objectOutputStream);
+			}
+		}, writer);
+
+		this.verifyArrays(arrays, this.createObjectInputStream(writer.toString(), this.createReaders()));
+	}
+
+	public void testBase64ByteArrays() {
+		final byte[][] arrays = { new byte[0], new byte[] { 1 }, new byte[] { -1, 0 }, new byte[] { 1, 2, 3 }, this.createByteArray(LARGE) };
+
+		final TestServerObjectOutputStream output = this.createObjectOutputStream(ByteArrayWriter.instance);
+		output.setBase64ByteArrays(true);
+		for (int i = 0; i < arrays.length; i++) {
+			output.writeObject(arrays[i]);
+		}
+		final String text = output.getText();
+		assertTrue(text, text.indexOf("AQID") != -1);
+
+		final ObjectInputStream input = this.createObjectInputStream(text, ByteArrayReader.instance);
+		for (int i = 0; i < arrays.length; i++) {
+			assertTrue("" + i, Arrays.equals(arrays[i], (byte[]) input.readObject()));
+		}
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testNegativeCountFails() {
+		final ServerObjectInputStream input = (ServerObjectInputStream) this.createObjectInputStream("[0,1]");
+		try {
+			final int[] got = input.readIntArray(-1);
+			fail("An exception should have been thrown, but " + got + " was returned");
+		} catch (final Exception expected) {
+		}
+	}
+
+	public void testBinary() {
+		final Object[] arrays = this.createArrays();
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream output = new BinaryServerObjectOutputStream(bytes);
+		output.setObjectWriters(this.createWriters());
+		this.writeArrays(arrays, output);
+		output.flush();
+
+		final BinaryServerObjectInputStream input = new BinaryServerObjectInputStream(bytes.toByteArray());
+		input.setObjectReaders(this.createReaders());
+		this.verifyArrays(arrays, input);
+	}
+
+	protected Object[] createArrays() {
+		final int[] ints = this.createIntArray(LARGE);
+
+		final long[] longs = new long[LARGE];
+		final double[] doubles = new double[LARGE];
+		final float[] floats = new float[LARGE];
+		final short[] shorts = new short[LARGE];
+		final char[] chars = new char[LARGE];
+		final boolean[] booleans = new boolean[LARGE];
+		for (int i = 0; i < LARGE; i++) {
+			longs[i] = (long) ints[i] * 31 * Integer.MAX_VALUE;
+			doubles[i] = ints[i] / 7.0;
+			floats[i] = ints[i] / 3f;
+			shorts[i] = (short) ints[i];
+			chars[i] = (char) ints[i];
+			booleans[i] = (ints[i] & 1) == 0;
+		}
+
+		return new Object[] { new int[0], ints, longs, doubles, floats, shorts, chars, booleans, this.createByteArray(LARGE) };
+	}
+
+	protected int[] createIntArray(final int count) {
+		final int[] ints = new int[count];
+		int value = 12345;
+		for (int i = 0; i < count; i++) {
+			value = value * 1103515245 + 12345;
+			ints[i] = value;
+		}
+		return ints;
+	}
+
+	protected byte[] createByteArray(final int count) {
+		final int[] ints = this.createIntArray(count);
+		final byte[] bytes = new byte[count];
+		for (int i = 0; i < count; i++) {
+			bytes[i] = (byte) ints[i];
+		}
+		return bytes;
+	}
+
+	protected void writeArrays(final Object[] arrays, final ObjectOutputStream output) {
+		for (int i = 0; i < arrays.length; i++) {
+			output.writeObject(arrays[i]);
+		}
+		output.writeObject(arrays[1]);
+		output.writeInt(-1);
+	}
+
+	protected void verifyArrays(final Object[] arrays, final ObjectInputStream input) {
+		final Object[] read = new Object[arrays.length];
+		for (int i = 0; i < arrays.length; i++) {
+			read[i] = input.readObject();
+		}
+		assertTrue(Arrays.equals((int[]) arrays[0], (int[]) read[0]));
+		assertTrue(Arrays.equals((int[]) arrays[1], (int[]) read[1]));
+		assertTrue(Arrays.equals((long[]) arrays[2], (long[]) read[2]));
+		assertTrue(Arrays.equals((double[]) arrays[3], (double[]) read[3]));
+		assertTrue(Arrays.equals((float[]) arrays[4], (float[]) read[4]));
+		assertTrue(Arrays.equals((short[]) arrays[5], (short[]) read[5]));
+		assertTrue(Arrays.equals((char[]) arrays[6], (char[]) read[6]));
+		assertTrue(Arrays.equals((boolean[]) arrays[7], (boolean[]) read[7]));
+		assertTrue(Arrays.equals((byte[]) arrays[8], (byte[]) read[8]));
+
+		assertSame(read[1], input.readObject());
+		assertEquals(-1, input.readInt());
+		this.verifyFurtherReadsFail(input);
+	}
+
+	protected List<ServerObjectWriter> createWriters() {
+		final List<ServerObjectWriter> writers = new ArrayList<ServerObjectWriter>();
+		writers.add(BooleanArrayWriter.instance);
+		writers.add(ByteArrayWriter.instance);
+		writers.add(CharArrayWriter.instance);
+		writers.add(DoubleArrayWriter.instance);
+		writers.add(FloatArrayWriter.instance);
+		writers.add(IntArrayWriter.instance);
+		writers.add(LongArrayWriter.instance);
+		writers.add(ShortArrayWriter.instance);
+		return writers;
+	}
+
+	protected List<ServerObjectReader> createReaders() {
+		final List<ServerObjectReader> readers = new ArrayList<ServerObjectReader>();
+		readers.add(BooleanArrayReader.instance);
+		readers.add(ByteArrayReader.instance);
+		readers.add(CharArrayReader.instance);
+		readers.add(DoubleArrayReader.instance);
+		readers.add(FloatArrayReader.instance);
+		readers.add(IntArrayReader.instance);
+		readers.add(LongArrayReader.instance);
+		readers.add(ShortArrayReader.instance);
+		return readers;
+	}
+}
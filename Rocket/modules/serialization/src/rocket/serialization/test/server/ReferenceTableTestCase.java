@@ -0,0 +1,96 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+import rocket.serialization.server.ReferenceTable;
+
+public class ReferenceTableTestCase extends TestCase {
+
+	public void testIdentity() {
+		final ReferenceTable table = new ReferenceTable(true);
+		final String apple = new String("apple");
+		final String apple2 = new String("apple");
+
+		assertEquals(-1, table.indexOf(apple));
+		assertEquals(0, table.add(apple));
+		assertEquals(0, table.indexOf(apple));
+		assertEquals("equal but different instances should not be found", -1, table.indexOf(apple2));
+
+		assertEquals(1, table.add(apple2));
+		assertEquals(1, table.indexOf(apple2));
+		assertEquals(2, table.size());
+	}
+
+	public void testEquality() {
+		final ReferenceTable table = new ReferenceTable(false);
+		assertEquals(0, table.add(new String("apple")));
+		assertEquals(1, table.add("banana"));
+
+		assertEquals(0, table.indexOf(new String("apple")));
+		assertEquals(1, table.indexOf(new String("banana")));
+		assertEquals(-1, table.indexOf("carrot"));
+	}
+
+	public void testGrowKeepsInsertionOrder() {
+		final int count = 10000;
+		final ReferenceTable table = new ReferenceTable(true);
+		final Object[] objects = new Object[count];
+		for (int i = 0; i < count; i++) {
+			objects[i] = new Object();
+			assertEquals(i, table.add(objects[i]));
+		}
+		assertEquals(count, table.size());
+		assertTrue(table.getCapacity() >= count);
+
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, table.indexOf(objects[i]));
+			assertSame(objects[i], table.get(i));
+		}
+
+		final Iterator<Object> iterator = table.iterator();
+		for (int i = 0; i < count; i++) {
+			assertSame(objects[i], iterator.next());
+		}
+		assertFalse(iterator.hasNext());
+	}
+
+	public void testClear() {
+		final ReferenceTable table = new ReferenceTable(false);
+		table.add("apple");
+		table.add("banana");
+		table.clear();
+
+		assertEquals(0, table.size());
+		assertEquals(-1, table.indexOf("apple"));
+		assertFalse(table.iterator().hasNext());
+
+		assertEquals(0, table.add("banana"));
+	}
+
+	public void testGetOutOfBounds() {
+		final ReferenceTable table = new ReferenceTable(true);
+		table.add(new Object());
+		try {
+			table.get(1);
+			fail("An exception should have been thrown when getting an index beyond the size of the table.");
+		} catch (final IndexOutOfBoundsException expected) {
+
+		}
+	}
+}
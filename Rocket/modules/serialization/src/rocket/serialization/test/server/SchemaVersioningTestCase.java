@@ -0,0 +1,271 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import rocket.serialization.server.BinaryServerObjectInputStream;
+import rocket.serialization.server.BinaryServerObjectOutputStream;
+import rocket.serialization.server.ReflectionHelper;
+import rocket.serialization.server.ServerObjectInputStream;
+import rocket.serialization.server.ServerObjectReader;
+import rocket.serialization.server.ServerObjectWriter;
+import rocket.serialization.server.reader.ListReader;
+import rocket.serialization.server.reader.ReflectiveReader;
+import rocket.serialization.server.writer.ListWriter;
+import rocket.serialization.server.writer.ReflectiveWriter;
+
+/**
+ * Each test writes one version of a class and then renames the type within
+ * the stream so that a different version is read. All versions have names of
+ * the same length so the binary stream may be renamed in place.
+ */
+public class SchemaVersioningTestCase extends ServerTestCase {
+
+	final static String EMAIL = "apple@banana.carrot";
+
+	public void testUnversionedStreamUnchanged() {
+		final TestServerObjectOutputStream before = this.createObjectOutputStream();
+		before.writeObject(this.createPersonV1());
+
+		final TestServerObjectOutputStream after = this.createObjectOutputStream();
+		after.setVersioned(false);
+		after.writeObject(this.createPersonV1());
+
+		assertEquals(before.getText(), after.getText());
+	}
+
+	public void testSameVersion() {
+		final String text = this.writeVersioned(this.createPersonV1());
+
+		final ServerObjectInputStream input = this.createVersionedObjectInputStream(text);
+		this.verifyPersonV1((PersonV1) input.readObject());
+		this.verifyFurtherReadsFail(input);
+
+		assertSame("matching layouts should use the local layout", ReflectionHelper.getFieldLayout(PersonV1.class), input
+				.getFieldLayout(PersonV1.class.getName()));
+	}
+
+	public void testAddedField() {
+		final String text = this.writeVersioned(this.createPersonV1());
+
+		final ServerObjectInputStream input = this.createVersionedObjectInputStream(this.rename(text, PersonV1.class, PersonV2.class));
+		final PersonV2 person = (PersonV2) input.readObject();
+		assertEquals(1, person.id);
+		assertEquals(APPLE, person.name);
+		assertEquals(2, person.age);
+		assertNull(person.email);
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testRemovedField() {
+		final String text = this.writeVersioned(this.createPersonV2());
+
+		final ServerObjectInputStream input = this.createVersionedObjectInputStream(this.rename(text, PersonV2.class, PersonV1.class));
+		this.verifyPersonV1((PersonV1) input.readObject());
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testChangedFieldType() {
+		final String text = this.writeVersioned(this.createPersonV1());
+
+		final ServerObjectInputStream input = this.createVersionedObjectInputStream(this.rename(text, PersonV1.class, PersonV3.class));
+		final PersonV3 person = (PersonV3) input.readObject();
+		assertEquals(1, person.id);
+		assertEquals(APPLE, person.name);
+		assertEquals("age changed from int to long and should have been skipped", 0, person.age);
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testLayoutWrittenOncePerType() {
+		final List<Object> people = new ArrayList<Object>();
+		people.add(this.createPersonV2());
+		people.add(this.createPersonV2());
+
+		final TestServerObjectOutputStream output = this.createObjectOutputStream(ListWriter.instance);
+		output.setVersioned(true);
+		output.writeObject(people);
+		final String text = output.getText();
+
+		final TestServerObjectOutputStream single = this.createObjectOutputStream();
+		single.setVersioned(true);
+		single.writeObject(this.createPersonV2());
+		final String singleText = single.getText();
+
+		final TestServerObjectOutputStream unversioned = this.createObjectOutputStream();
+		unversioned.writeObject(this.createPersonV2());
+		final String unversionedText = unversioned.getText();
+		assertTrue(singleText.length() > unversionedText.length());
+
+		final ServerObjectInputStream input = (ServerObjectInputStream) this.createObjectInputStream(this.rename(text, PersonV2.class,
+				PersonV1.class), ListReader.instance);
+		input.setVersioned(true);
+		final List list = (List) input.readObject();
+		assertEquals(2, list.size());
+		this.verifyPersonV1((PersonV1) list.get(0));
+		this.verifyPersonV1((PersonV1) list.get(1));
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testRemovedFieldBinary() {
+		final List<ServerObjectWriter> writers = new ArrayList<ServerObjectWriter>();
+		writers.add(ReflectiveWriter.instance);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream output = new BinaryServerObjectOutputStream(bytes);
+		output.setObjectWriters(writers);
+		output.setVersioned(true);
+		output.writeObject(this.createPersonV2());
+		output.writeObject(this.createPersonV2());
+		output.flush();
+
+		final List<ServerObjectReader> readers = new ArrayList<ServerObjectReader>();
+		readers.add(ReflectiveReader.instance);
+
+		final BinaryServerObjectInputStream input = new BinaryServerObjectInputStream(this.rename(bytes.toByteArray(), PersonV2.class,
+				PersonV1.class));
+		input.setObjectReaders(readers);
+		input.setVersioned(true);
+		this.verifyPersonV1((PersonV1) input.readObject());
+		this.verifyPersonV1((PersonV1) input.readObject());
+	}
+
+	public void testIterative() {
+		final LinkV2 tail = new LinkV2();
+		tail.value = 2;
+		tail.label = BANANA;
+
+		final LinkV2 head = new LinkV2();
+		head.value = 1;
+		head.label = APPLE;
+		head.next = tail;
+
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		output.setVersioned(true);
+		output.setIterative(true);
+		output.writeObject(head);
+
+		final ServerObjectInputStream input = this.createVersionedObjectInputStream(this.rename(output.getText(), LinkV2.class,
+				LinkV1.class));
+		input.setIterative(true);
+		final LinkV1 link = (LinkV1) input.readObject();
+		assertEquals(1, link.value);
+		assertEquals(2, link.next.value);
+		assertNull(link.next.next);
+		this.verifyFurtherReadsFail(input);
+	}
+
+	protected String writeVersioned(final Object object) {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		output.setVersioned(true);
+		output.writeObject(object);
+		return output.getText();
+	}
+
+	protected ServerObjectInputStream createVersionedObjectInputStream(final String text) {
+		final ServerObjectInputStream input = (ServerObjectInputStream) this.createObjectInputStream(text);
+		input.setVersioned(true);
+		return input;
+	}
+
+	protected String rename(final String text, final Class from, final Class to) {
+		final String renamed = text.replace(from.getName(), to.getName());
+		assertFalse(text.equals(renamed));
+		return renamed;
+	}
+
+	protected byte[] rename(final byte[] bytes, final Class from, final Class to) {
+		try {
+			final String text = new String(bytes, "ISO-8859-1");
+			return this.rename(text, from, to).getBytes("ISO-8859-1");
+		} catch (final java.io.UnsupportedEncodingException unsupported) {
+			throw new RuntimeException(unsupported);
+		}
+	}
+
+	protected PersonV1 createPersonV1() {
+		final PersonV1 person = new PersonV1();
+		person.id = 1;
+		person.name = APPLE;
+		person.age = 2;
+		return person;
+	}
+
+	protected PersonV2 createPersonV2() {
+		final PersonV2 person = new PersonV2();
+		person.id = 1;
+		person.name = APPLE;
+		person.age = 2;
+		person.email = EMAIL;
+		return person;
+	}
+
+	protected void verifyPersonV1(final PersonV1 person) {
+		assertEquals(1, person.id);
+		assertEquals(APPLE, person.name);
+		assertEquals(2, person.age);
+	}
+
+	static public class Entity implements Serializable {
+		long id;
+	}
+
+	static public class PersonV1 extends Entity {
+		String name;
+
+		int age;
+	}
+
+	/**
+	 * Adds an email field which sorts between the existing fields.
+	 */
+	static public class PersonV2 extends Entity {
+		int age;
+
+		String email;
+
+		String name;
+	}
+
+	/**
+	 * Changes age from an int to a long.
+	 */
+	static public class PersonV3 extends Entity {
+		String name;
+
+		long age;
+	}
+
+	static public class LinkV1 implements Serializable {
+		int value;
+
+		LinkV1 next;
+	}
+
+	/**
+	 * Adds a label field.
+	 */
+	static public class LinkV2 implements Serializable {
+		String label;
+
+		int value;
+
+		LinkV2 next;
+	}
+}
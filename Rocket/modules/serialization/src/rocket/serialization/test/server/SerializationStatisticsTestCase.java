@@ -0,0 +1,169 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.ReplayableOutput;
+import rocket.serialization.server.SerializationStatistics;
+import rocket.serialization.server.ServerObjectInputStream;
+import rocket.serialization.server.ServerObjectWriter;
+import rocket.serialization.server.StreamingServerObjectOutputStream;
+import rocket.serialization.server.writer.ListWriter;
+import rocket.serialization.server.writer.ReflectiveWriter;
+
+public class SerializationStatisticsTestCase extends ServerTestCase {
+
+	public void testStringsWritten() {
+		final SerializationStatistics statistics = new SerializationStatistics();
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		output.setSerializationListener(statistics);
+		output.writeObject(APPLE);
+		output.writeObject(APPLE);
+		output.writeObject(BANANA);
+		output.writeObject(APPLE);
+
+		assertEquals(4, statistics.getStringsWritten());
+		assertEquals(0.5, statistics.getStringTableHitRate(), 0.0001);
+		assertEquals(0, statistics.getObjectsWritten());
+	}
+
+	public void testObjectsWritten() {
+		final SerializationStatistics statistics = new SerializationStatistics();
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		output.setSerializationListener(statistics);
+
+		final ConcreteClass concreteClass = this.createConcreteClass();
+		output.writeObject(concreteClass);
+		output.writeObject(concreteClass);
+		output.writeObject(this.createConcreteClass());
+
+		assertEquals(2, statistics.getObjectsWritten());
+
+		final SerializationStatistics.TypeStatistics type = statistics.getTypeStatistics(ConcreteClass.class);
+		assertEquals(2, type.getWritten());
+		assertTrue("" + type, type.getWrittenLength() > 0);
+		assertTrue("" + type, type.getWriteNanos() >= 0);
+		assertEquals(0, type.getRead());
+
+		final String[] summaries = statistics.getTypeSummaries();
+		assertEquals(1, summaries.length);
+		assertTrue(summaries[0], summaries[0].startsWith(CONCRETE_CLASS));
+	}
+
+	public void testOutputCompleted() {
+		final SerializationStatistics statistics = new SerializationStatistics();
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		output.setSerializationListener(statistics);
+		output.writeObject(APPLE);
+		output.writeObject(this.createConcreteClass());
+		output.writeObject(this.createConcreteClass());
+		output.reset();
+
+		assertEquals(1, statistics.getOutputStreamCount());
+		assertEquals(2.0, statistics.getAverageStringTableSize(), 0.0001);
+		assertEquals(2.0, statistics.getAverageOutputObjectTableSize(), 0.0001);
+		assertEquals(2, statistics.getLargestOutputObjectTableSize());
+	}
+
+	public void testObjectsRead() {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		final ConcreteClass concreteClass = this.createConcreteClass();
+		output.writeObject(concreteClass);
+		output.writeObject(concreteClass);
+		output.writeObject(APPLE);
+
+		final SerializationStatistics statistics = new SerializationStatistics();
+		final ServerObjectInputStream input = (ServerObjectInputStream) this.createObjectInputStream(output.getText());
+		input.setSerializationListener(statistics);
+		assertEquals(ConcreteClass.VALUE, ((ConcreteClass) input.readObject()).value);
+		input.readObject();
+		assertEquals(APPLE, input.readObject());
+
+		assertEquals(1, statistics.getObjectsRead());
+		final SerializationStatistics.TypeStatistics type = statistics.getTypeStatistics(ConcreteClass.class);
+		assertEquals(1, type.getRead());
+		assertTrue("" + type, type.getReadLength() > 0);
+
+		input.reset();
+		assertEquals(1, statistics.getInputStreamCount());
+		assertEquals(1, statistics.getLargestInputObjectTableSize());
+	}
+
+	public void testStreamingCountsEachObjectOnce() throws Exception {
+		this.assertStreamingCountsEachObjectOnce(0);
+	}
+
+	public void testStreamingSwitchedMidwayCountsEachObjectOnce() throws Exception {
+		this.assertStreamingCountsEachObjectOnce(8);
+	}
+
+	public void testSinglePassCountsEachObjectOnce() throws Exception {
+		this.assertStreamingCountsEachObjectOnce(Integer.MAX_VALUE);
+	}
+
+	protected void assertStreamingCountsEachObjectOnce(final int streamingThreshold) throws Exception {
+		final List<Object> list = new ArrayList<Object>();
+		list.add(APPLE);
+		list.add(this.createConcreteClass());
+		list.add(APPLE);
+
+		final ReplayableOutput output = new ReplayableOutput() {
+			public void write(final ObjectOutputStream objectOutputStream) {
+				objectOutputStream.writeObject(list);
+				objectOutputStream.writeObject(BANANA);
+			}
+		};
+
+		final List<ServerObjectWriter> writers = new ArrayList<ServerObjectWriter>();
+		writers.add(ListWriter.instance);
+		writers.add(ReflectiveWriter.instance);
+
+		final SerializationStatistics statistics = new SerializationStatistics();
+		final StreamingServerObjectOutputStream stream = new StreamingServerObjectOutputStream();
+		stream.setObjectWriters(writers);
+		stream.setSerializationListener(statistics);
+		stream.setFlushThreshold(1);
+		stream.setStreamingThreshold(streamingThreshold);
+
+		final StringWriter writer = new StringWriter();
+		stream.writeTo(output, writer);
+
+		assertEquals(2, statistics.getObjectsWritten());
+		assertEquals(1, statistics.getTypeStatistics(ArrayList.class).getWritten());
+		assertEquals(1, statistics.getTypeStatistics(ConcreteClass.class).getWritten());
+
+		final long listLength = statistics.getTypeStatistics(ArrayList.class).getWrittenLength();
+		assertTrue("" + listLength, listLength > 0 && listLength < writer.toString().length());
+	}
+
+	public void testReset() {
+		final SerializationStatistics statistics = new SerializationStatistics();
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		output.setSerializationListener(statistics);
+		output.writeObject(this.createConcreteClass());
+		output.reset();
+
+		statistics.reset();
+		assertEquals(0, statistics.getObjectsWritten());
+		assertEquals(0, statistics.getOutputStreamCount());
+		assertEquals(0, statistics.getTypeSummaries().length);
+		assertEquals(0.0, statistics.getStringTableHitRate(), 0.0001);
+	}
+}
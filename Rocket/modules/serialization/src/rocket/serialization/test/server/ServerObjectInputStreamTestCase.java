@@ -17,6 +17,7 @@ package rocket.serialization.test.server;
 
 import rocket.serialization.client.ObjectInputStream;
 import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.ServerObjectInputStream;
 
 public class ServerObjectInputStreamTestCase extends ServerTestCase {
 
@@ -272,4 +273,15 @@ public class ServerObjectInputStreamTestCase extends ServerTestCase {
 
 		this.verifyFurtherReadsFail(reader);
 	}
+
+	public void testReset() {
+		final ServerObjectInputStream reader = (ServerObjectInputStream) createObjectInputStream("[1,\"apple\",2,1]");
+		assertEquals(APPLE, reader.readObject());
+
+		reader.reset("[1,\"banana\",2,3]");
+		assertEquals(BANANA, reader.readObject());
+		assertEquals(3, reader.readInt());
+
+		this.verifyFurtherReadsFail(reader);
+	}
 }
@@ -70,7 +70,7 @@ public class ServerObjectOutputStreamTestCase extends ServerTestCase {
 		final TestServerObjectOutputStream output = createObjectOutputStream();
 		final String input = "" + (char) 20;
 		final String actual = output.escape(input);
-		final String expected = "\\x14;";
+		final String expected = "\\u0014";
 
 		assertEquals(input, expected, actual);
 	}
@@ -264,6 +264,20 @@ public class ServerObjectOutputStreamTestCase extends ServerTestCase {
 		assertEquals("[1,\"" + CONCRETE_SUBCLASS + "\"," + expectedValues + "]", text);
 	}
 
+	public void testReset() {
+		final TestServerObjectOutputStream output = createObjectOutputStream(new ConcreteClassObjectWriter());
+		output.writeObject(APPLE);
+		output.writeObject(createConcreteClass());
+		final String first = output.getText();
+
+		output.reset();
+		assertEquals("[0,]", output.getText());
+
+		output.writeObject(APPLE);
+		output.writeObject(createConcreteClass());
+		assertEquals(first, output.getText());
+	}
+
 	protected TestServerObjectOutputStream createObjectOutputStream(final ServerObjectWriter writer) {
 		return this.createObjectOutputStream(Collections.nCopies(1, writer));
 	}
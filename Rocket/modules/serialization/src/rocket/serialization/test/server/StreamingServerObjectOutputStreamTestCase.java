@@ -0,0 +1,174 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import rocket.serialization.client.ObjectOutputStream;
+import rocket.serialization.server.ReplayableOutput;
+import rocket.serialization.server.ServerObjectWriter;
+import rocket.serialization.server.StreamingServerObjectOutputStream;
+import rocket.serialization.server.writer.ListWriter;
+import rocket.serialization.server.writer.ReflectiveWriter;
+
+public class StreamingServerObjectOutputStreamTestCase extends ServerTestCase {
+
+	public void testWriteNothing() throws Exception {
+		final ReplayableOutput output = new ReplayableOutput() {
+			public void write(final ObjectOutputStream objectOutputStream) {
+			}
+		};
+		assertEquals("[0,]", this.writeTo(output, 8192, 0));
+		assertEquals("[0,]", this.writeTo(output, 8192, Integer.MAX_VALUE));
+	}
+
+	public void testWritePrimitives() throws Exception {
+		final ReplayableOutput output = new ReplayableOutput() {
+			public void write(final ObjectOutputStream objectOutputStream) {
+				objectOutputStream.writeBoolean(true);
+				objectOutputStream.writeInt(123);
+				objectOutputStream.writeLong(1);
+				objectOutputStream.writeChar('a');
+			}
+		};
+		assertEquals(this.getText(output), this.writeTo(output, 8192, 0));
+		assertEquals(this.getText(output), this.writeTo(output, 8192, Integer.MAX_VALUE));
+	}
+
+	public void testWriteStringsAndObjects() throws Exception {
+		final ReplayableOutput output = this.createGraph();
+		final String expected = this.getText(output);
+
+		assertEquals(expected, this.writeTo(output, 8192, 0));
+	}
+
+	public void testSinglePassBelowStreamingThreshold() throws Exception {
+		final CountingReplayableOutput output = new CountingReplayableOutput(this.createGraph());
+		final String expected = this.getText(output);
+		output.count = 0;
+
+		assertEquals(expected, this.writeTo(output, 8192, Integer.MAX_VALUE));
+		assertEquals(1, output.count);
+	}
+
+	public void testSinglePassLargerThanFlushSlice() throws Exception {
+		final ReplayableOutput output = new ReplayableOutput() {
+			public void write(final ObjectOutputStream objectOutputStream) {
+				for (int i = 0; i < 10000; i++) {
+					objectOutputStream.writeInt(i);
+				}
+			}
+		};
+		final String expected = this.getText(output);
+		assertTrue(expected.length() > 3 * 8192);
+
+		assertEquals(expected, this.writeTo(output, 8192, Integer.MAX_VALUE));
+	}
+
+	public void testTwoPassesAboveStreamingThreshold() throws Exception {
+		final CountingReplayableOutput output = new CountingReplayableOutput(this.createGraph());
+		final String expected = this.getText(output);
+		output.count = 0;
+
+		assertEquals(expected, this.writeTo(output, 8192, 4));
+		assertEquals(2, output.count);
+	}
+
+	public void testWriteWithTinyFlushThreshold() throws Exception {
+		final ReplayableOutput output = this.createGraph();
+		final String expected = this.getText(output);
+
+		assertEquals(expected, this.writeTo(output, 1, 0));
+	}
+
+	public void testWriteToOutputStream() throws Exception {
+		final ReplayableOutput output = this.createGraph();
+		final String expected = this.getText(output);
+
+		final StreamingServerObjectOutputStream stream = this.createStreamingObjectOutputStream();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		stream.writeTo(output, bytes, "UTF-8");
+
+		assertEquals(expected, new String(bytes.toByteArray(), "UTF-8"));
+	}
+
+	protected ReplayableOutput createGraph() {
+		final List<Object> list = new ArrayList<Object>();
+		final ConcreteClass concreteClass = this.createConcreteClass();
+		list.add(APPLE);
+		list.add(concreteClass);
+		list.add(BANANA);
+		list.add(concreteClass);
+		list.add(APPLE);
+		list.add(null);
+
+		return new ReplayableOutput() {
+			public void write(final ObjectOutputStream objectOutputStream) {
+				objectOutputStream.writeObject(CARROT);
+				objectOutputStream.writeObject(list);
+				objectOutputStream.writeObject(list);
+			}
+		};
+	}
+
+	protected String getText(final ReplayableOutput output) {
+		final TestServerObjectOutputStream stream = this.createObjectOutputStream(ListWriter.instance);
+		output.write(stream);
+		return stream.getText();
+	}
+
+	/**
+	 * Counts the number of times the wrapped output is written.
+	 */
+	static class CountingReplayableOutput implements ReplayableOutput {
+		CountingReplayableOutput(final ReplayableOutput output) {
+			super();
+			this.output = output;
+		}
+
+		final ReplayableOutput output;
+
+		int count = 0;
+
+		public void write(final ObjectOutputStream objectOutputStream) {
+			this.count++;
+			this.output.write(objectOutputStream);
+		}
+	}
+
+	protected String writeTo(final ReplayableOutput output, final int flushThreshold, final int streamingThreshold) throws Exception {
+		final StreamingServerObjectOutputStream stream = this.createStreamingObjectOutputStream();
+		stream.setFlushThreshold(flushThreshold);
+		stream.setStreamingThreshold(streamingThreshold);
+
+		final StringWriter writer = new StringWriter();
+		stream.writeTo(output, writer);
+		return writer.toString();
+	}
+
+	protected StreamingServerObjectOutputStream createStreamingObjectOutputStream() {
+		final List<ServerObjectWriter> writers = new ArrayList<ServerObjectWriter>();
+		writers.add(ListWriter.instance);
+		writers.add(ReflectiveWriter.instance);
+
+		final StreamingServerObjectOutputStream stream = new StreamingServerObjectOutputStream();
+		stream.setObjectWriters(writers);
+		return stream;
+	}
+}
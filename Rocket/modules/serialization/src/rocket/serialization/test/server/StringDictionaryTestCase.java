@@ -0,0 +1,202 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rocket.serialization.client.Constants;
+import rocket.serialization.client.ObjectInputStream;
+import rocket.serialization.client.SerializationException;
+import rocket.serialization.server.BinaryServerObjectInputStream;
+import rocket.serialization.server.BinaryServerObjectOutputStream;
+import rocket.serialization.server.ServerObjectInputStream;
+import rocket.serialization.server.ServerObjectReader;
+import rocket.serialization.server.StringDictionary;
+import rocket.serialization.server.reader.ListReader;
+import rocket.serialization.server.reader.ReflectiveReader;
+
+public class StringDictionaryTestCase extends ServerTestCase {
+
+	public void testReferences() {
+		final StringDictionary dictionary = this.createDictionary();
+		assertEquals(2, dictionary.getSize());
+		assertEquals(Constants.STRING_BIAS, dictionary.getReference(APPLE));
+		assertEquals(Constants.STRING_BIAS + 1, dictionary.getReference(BANANA));
+		assertEquals(0, dictionary.getReference(CARROT));
+
+		assertEquals(APPLE, dictionary.getString(Constants.STRING_BIAS));
+		assertTrue(dictionary.isDictionaryReference(Constants.STRING_BIAS + 1));
+		assertFalse(dictionary.isDictionaryReference(Constants.STRING_BIAS + 2));
+		assertFalse(dictionary.isDictionaryReference(Constants.NEW_OBJECT));
+	}
+
+	public void testDuplicateStringsFail() {
+		try {
+			final StringDictionary dictionary = new StringDictionary(Arrays.asList(new String[] { APPLE, APPLE }));
+			fail("An exception should have been thrown, but " + dictionary + " was returned");
+		} catch (final Exception expected) {
+		}
+	}
+
+	public void testDictionaryStringsAreNotInStringTable() {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		output.setStringDictionary(this.createDictionary());
+		output.writeObject(APPLE);
+		output.writeObject(CARROT);
+		output.writeObject(BANANA);
+		output.writeObject(CARROT);
+
+		assertEquals("[1,\"" + CARROT + "\",2,4,3,4]", output.getText());
+	}
+
+	public void testTextRoundTrip() {
+		final StringDictionary dictionary = this.createDictionary();
+
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		output.setStringDictionary(dictionary);
+		output.writeObject(APPLE);
+		output.writeObject(CARROT);
+		output.writeObject(BANANA);
+		output.writeObject(this.createConcreteClass());
+
+		final ServerObjectInputStream input = new ServerObjectInputStream(output.getText(), dictionary);
+		input.setObjectReaders(this.createReaders());
+		assertEquals(APPLE, input.readObject());
+		assertEquals(CARROT, input.readObject());
+		assertEquals(BANANA, input.readObject());
+		assertEquals(ConcreteClass.VALUE, ((ConcreteClass) input.readObject()).value);
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testBinaryRoundTrip() {
+		final StringDictionary dictionary = StringDictionary.forInterfaces(new Class[] { Service.class });
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream output = new BinaryServerObjectOutputStream(bytes);
+		output.setObjectWriters(new ArrayList());
+		output.setStringDictionary(dictionary);
+		output.writeObject(Service.class.getName());
+		output.writeObject("list");
+		output.writeObject(CARROT);
+		output.writeObject(CARROT);
+		output.flush();
+
+		final BinaryServerObjectInputStream input = new BinaryServerObjectInputStream(bytes.toByteArray());
+		input.setObjectReaders(this.createReaders());
+		input.setStringDictionary(dictionary);
+		assertEquals(Service.class.getName(), input.readObject());
+		assertEquals("list", input.readObject());
+		assertEquals(CARROT, input.readObject());
+		assertEquals(CARROT, input.readObject());
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testBinaryStreamWithDifferentDictionaryFails() {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream output = new BinaryServerObjectOutputStream(bytes);
+		output.setObjectWriters(new ArrayList());
+		output.setStringDictionary(this.createDictionary());
+		output.writeObject(APPLE);
+		output.flush();
+
+		final BinaryServerObjectInputStream input = new BinaryServerObjectInputStream(bytes.toByteArray());
+		input.setObjectReaders(this.createReaders());
+		try {
+			input.setStringDictionary(new StringDictionary(Arrays.asList(new String[] { BANANA, APPLE })));
+			fail("An exception should have been thrown because the dictionaries differ");
+		} catch (final SerializationException expected) {
+		}
+	}
+
+	public void testBinaryStreamWithoutDictionaryFails() {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream output = new BinaryServerObjectOutputStream(bytes);
+		output.setObjectWriters(new ArrayList());
+		output.writeObject(APPLE);
+		output.flush();
+
+		final BinaryServerObjectInputStream input = new BinaryServerObjectInputStream(bytes.toByteArray());
+		input.setObjectReaders(this.createReaders());
+		try {
+			input.setStringDictionary(this.createDictionary());
+			fail("An exception should have been thrown because the writer had no dictionary");
+		} catch (final SerializationException expected) {
+		}
+	}
+
+	public void testBinaryDictionaryIsRewrittenAfterReset() {
+		final StringDictionary dictionary = this.createDictionary();
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryServerObjectOutputStream output = new BinaryServerObjectOutputStream(bytes);
+		output.setObjectWriters(new ArrayList());
+		output.setStringDictionary(dictionary);
+		output.writeObject(CARROT);
+		output.reset();
+		output.writeObject(BANANA);
+		output.flush();
+
+		final BinaryServerObjectInputStream input = new BinaryServerObjectInputStream(bytes.toByteArray());
+		input.setObjectReaders(this.createReaders());
+		input.setStringDictionary(dictionary);
+		assertEquals(BANANA, input.readObject());
+		this.verifyFurtherReadsFail(input);
+	}
+
+	public void testFingerprint() {
+		assertEquals(this.createDictionary().getFingerprint(), this.createDictionary().getFingerprint());
+		assertFalse(this.createDictionary().getFingerprint() == new StringDictionary(Arrays.asList(new String[] { BANANA, APPLE }))
+				.getFingerprint());
+	}
+
+	public void testForInterfaces() {
+		final StringDictionary dictionary = StringDictionary.forInterfaces(new Class[] { Service.class });
+		assertTrue(0 != dictionary.getReference(Service.class.getName()));
+		assertTrue(0 != dictionary.getReference("list"));
+		assertTrue(0 != dictionary.getReference("size"));
+		assertTrue(0 != dictionary.getReference(List.class.getName()));
+		assertTrue(0 != dictionary.getReference(String.class.getName()));
+		assertTrue(0 != dictionary.getReference(IllegalStateException.class.getName()));
+		assertEquals(0, dictionary.getReference("int"));
+
+		final StringDictionary again = StringDictionary.forInterfaces(new Class[] { Service.class });
+		assertEquals(dictionary.getSize(), again.getSize());
+		for (int i = 0; i < dictionary.getSize(); i++) {
+			final int reference = i + Constants.STRING_BIAS;
+			assertEquals(dictionary.getString(reference), again.getString(reference));
+		}
+	}
+
+	static public interface Service {
+		List list(String name) throws IllegalStateException;
+
+		int size(List list);
+	}
+
+	protected StringDictionary createDictionary() {
+		return new StringDictionary(Arrays.asList(new String[] { APPLE, BANANA }));
+	}
+
+	protected List<ServerObjectReader> createReaders() {
+		final List<ServerObjectReader> readers = new ArrayList<ServerObjectReader>();
+		readers.add(ListReader.instance);
+		readers.add(ReflectiveReader.instance);
+		return readers;
+	}
+}
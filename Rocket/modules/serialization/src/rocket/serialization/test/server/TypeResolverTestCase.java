@@ -0,0 +1,201 @@
+/*
+ * Copyright Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package rocket.serialization.test.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import rocket.serialization.client.SerializationException;
+import rocket.serialization.server.ObjectReaderRegistry;
+import rocket.serialization.server.ServerObjectInputStream;
+import rocket.serialization.server.ServerObjectReader;
+import rocket.serialization.server.TypeResolver;
+import rocket.serialization.server.reader.ReflectiveReader;
+
+public class TypeResolverTestCase extends ServerTestCase {
+
+	public void testGetTypeIsCached() {
+		final TypeResolver resolver = new TypeResolver();
+		final Class type = resolver.getType(CONCRETE_CLASS);
+		assertSame(ConcreteClass.class, type);
+		assertSame(type, resolver.getType(CONCRETE_CLASS));
+	}
+
+	public void testGetArrayType() {
+		final TypeResolver resolver = new TypeResolver();
+		assertSame(int[][].class, resolver.getType("[[I"));
+		assertSame(String[].class, resolver.getType("[Ljava.lang.String;"));
+	}
+
+	public void testUnknownTypeFails() {
+		final TypeResolver resolver = new TypeResolver();
+		try {
+			final Class type = resolver.getType("unknown.Type");
+			fail("An exception should have been thrown, but " + type + " was returned");
+		} catch (final SerializationException expected) {
+		}
+	}
+
+	public void testAllowList() {
+		final TypeResolver resolver = new TypeResolver();
+		resolver.allow("java.lang.*");
+		resolver.allow(CONCRETE_CLASS);
+
+		assertTrue(resolver.isAllowed(STRING));
+		assertTrue(resolver.isAllowed(CONCRETE_CLASS));
+		assertTrue(resolver.isAllowed("[L" + CONCRETE_CLASS + ";"));
+		assertTrue(resolver.isAllowed("[B"));
+		assertFalse(resolver.isAllowed(CONCRETE_SUBCLASS));
+		assertFalse(resolver.isAllowed(HASHMAP));
+		assertFalse(resolver.isAllowed("[Ljava.util.HashMap;"));
+
+		try {
+			final Class type = resolver.getType(HASHMAP);
+			fail("An exception should have been thrown, but " + type + " was returned");
+		} catch (final SerializationException expected) {
+		}
+	}
+
+	public void testDenyList() {
+		final TypeResolver resolver = new TypeResolver();
+		resolver.deny("java.util.*");
+
+		assertTrue(resolver.isAllowed(STRING));
+		assertFalse(resolver.isAllowed(HASHMAP));
+	}
+
+	public void testDenyOverridesAllow() {
+		final TypeResolver resolver = new TypeResolver();
+		resolver.allow("java.util.*");
+		resolver.deny(HASHMAP);
+
+		assertTrue(resolver.isAllowed(ArrayList.class.getName()));
+		assertFalse(resolver.isAllowed(HASHMAP));
+	}
+
+	public void testPreviouslyResolvedTypeIsDeniedAfterDeny() {
+		final TypeResolver resolver = new TypeResolver();
+		resolver.getType(HASHMAP);
+		resolver.deny(HASHMAP);
+		try {
+			final Class type = resolver.getType(HASHMAP);
+			fail("An exception should have been thrown, but " + type + " was returned");
+		} catch (final SerializationException expected) {
+		}
+	}
+
+	public void testInvalidPattern() {
+		try {
+			new TypeResolver().allow("java.*.Map");
+			fail("An exception should have been thrown");
+		} catch (final IllegalArgumentException expected) {
+		}
+	}
+
+	public void testMalformedArrayTypesFail() {
+		final TypeResolver resolver = new TypeResolver();
+		final String[] malformed = { "[", "[[", "[L", "[L;", "[Ljava.lang.String", "[II", "[X" };
+		for (int i = 0; i < malformed.length; i++) {
+			final String typeName = malformed[i];
+			try {
+				final boolean allowed = resolver.isAllowed(typeName);
+				fail("An exception should have been thrown for \"" + typeName + "\", but " + allowed + " was returned");
+			} catch (final SerializationException expected) {
+			}
+			try {
+				final Class type = resolver.getType(typeName);
+				fail("An exception should have been thrown for \"" + typeName + "\", but " + type + " was returned");
+			} catch (final SerializationException expected) {
+			}
+		}
+	}
+
+	public void testWellFormedArrayTypes() {
+		final TypeResolver resolver = new TypeResolver();
+		assertTrue(resolver.isAllowed("[I"));
+		assertTrue(resolver.isAllowed("[[Z"));
+		assertTrue(resolver.isAllowed("[[L" + STRING + ";"));
+	}
+
+	public void testDenyPackageLists() {
+		final TypeResolver resolver = new TypeResolver();
+		resolver.denyPackageLists(new String[] { "rocket.serialization.client", "unknown.packagee" });
+
+		assertFalse(resolver.isAllowed("rocket.serialization.client.ObjectOutputStream"));
+		assertFalse(resolver.isAllowed("rocket.serialization.client.reader.ListReader"));
+		assertFalse(resolver.isAllowed("junit.framework.TestCase"));
+		assertTrue(resolver.isAllowed(SerializationException.class.getName()));
+	}
+
+	public void testAllowInterfaces() {
+		final TypeResolver resolver = new TypeResolver();
+		resolver.allowInterfaces(new Class[] { Service.class });
+
+		assertTrue(resolver.isAllowed(Service.class.getName()));
+		assertTrue(resolver.isAllowed(List.class.getName()));
+		assertTrue(resolver.isAllowed(CONCRETE_CLASS));
+		assertTrue(resolver.isAllowed(Map.class.getName()));
+		assertTrue(resolver.isAllowed(IllegalStateException.class.getName()));
+		assertFalse(resolver.isAllowed(HASHMAP));
+	}
+
+	public void testNewInstanceUsesPrivateConstructor() {
+		final Object instance = new TypeResolver().newInstance(PrivateConstructor.class);
+		assertTrue(instance instanceof PrivateConstructor);
+	}
+
+	public void testNewInstanceWithoutDefaultConstructorFails() {
+		try {
+			final Object instance = new TypeResolver().newInstance(Integer.class);
+			fail("An exception should have been thrown, but " + instance + " was returned");
+		} catch (final SerializationException expected) {
+		}
+	}
+
+	public void testReadingDeniedTypeFails() {
+		final TestServerObjectOutputStream output = this.createObjectOutputStream();
+		output.writeObject(this.createConcreteClass());
+
+		final TypeResolver resolver = new TypeResolver();
+		resolver.allow("java.lang.*");
+
+		final List<ServerObjectReader> readers = new ArrayList<ServerObjectReader>();
+		readers.add(ReflectiveReader.instance);
+
+		final ServerObjectInputStream input = new ServerObjectInputStream(output.getText());
+		input.setObjectReaderRegistry(new ObjectReaderRegistry(readers, resolver));
+		try {
+			final Object object = input.readObject();
+			fail("An exception should have been thrown, but " + object + " was returned");
+		} catch (final SerializationException expected) {
+		}
+
+		resolver.allow(CONCRETE_CLASS);
+		input.reset(output.getText());
+		assertEquals(ConcreteClass.VALUE, ((ConcreteClass) input.readObject()).value);
+	}
+
+	static public interface Service {
+		List find(ConcreteClass[] criteria, Map options) throws IllegalStateException;
+	}
+
+	static class PrivateConstructor {
+		private PrivateConstructor() {
+			super();
+		}
+	}
+}
@@ -17,7 +17,11 @@ package rocket.serialization.test.server.writer;
 
 import java.io.Serializable;
 
+import rocket.serialization.server.FieldPlan;
+import rocket.serialization.server.ReflectionHelper;
 import rocket.serialization.server.writer.ReflectiveWriter;
+import rocket.serialization.test.server.ConcreteClass;
+import rocket.serialization.test.server.ConcreteSubClass;
 import rocket.serialization.test.server.ServerTestCase;
 import rocket.serialization.test.server.TestServerObjectOutputStream;
 
@@ -37,6 +41,26 @@ public class ReflectiveWriterTestCase extends ServerTestCase {
 		assertEquals("[2,\"" + Test.class.getName() + "\",\"" + STRING + "\"," + expectedValues + "]", text);
 	}
 
+	public void testWriteSubClass() {
+		final TestServerObjectOutputStream output = createObjectOutputStream(ReflectiveWriter.instance);
+
+		output.writeObject(this.createConcreteSubClass());
+
+		final String expectedValues = "1,2," + ConcreteSubClass.VALUE + "," + ConcreteClass.VALUE;
+		final String text = output.getText();
+		assertEquals("[1,\"" + CONCRETE_SUBCLASS + "\"," + expectedValues + "]", text);
+	}
+
+	public void testFieldPlanIsCached() {
+		final FieldPlan plan = ReflectionHelper.getFieldPlan(ConcreteSubClass.class);
+		assertSame(plan, ReflectionHelper.getFieldPlan(ConcreteSubClass.class));
+
+		assertEquals(1, plan.getFieldCount());
+		assertEquals(FieldPlan.INT, plan.getFieldTypes()[0]);
+		assertSame(ConcreteClass.class, plan.getSuperType());
+		assertNull(ReflectionHelper.getFieldPlan(ConcreteClass.class).getSuperType());
+	}
+
 	static public class Test implements Serializable {
 		String string;
 	}